@@ -1,17 +1,25 @@
 package com.whu.bookapi.controller;
 
+import com.whu.bookapi.dto.BatchAuditRequest;
 import com.whu.bookapi.model.Book;
 import com.whu.bookapi.model.User;
 import com.whu.bookapi.model.Complaint;
 import com.whu.bookapi.model.OperationLog;
 import com.whu.bookapi.service.BookService;
+import com.whu.bookapi.service.CheckoutAdmission;
 import com.whu.bookapi.service.ComplaintService;
+import com.whu.bookapi.service.FlashSaleStock;
 import com.whu.bookapi.service.ReviewService;
+import com.whu.bookapi.service.SignedTokenService;
 import com.whu.bookapi.service.UserService;
 import com.whu.bookapi.service.NotificationService;
+import com.whu.bookapi.service.OrderService;
+import com.whu.bookapi.service.OutboxDispatcher;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -42,6 +50,13 @@ import java.util.Map;
  * 16. approveComplaint - Approves complaint.
  * 17. rejectComplaint - Rejects complaint.
  * 18. announce - Sends system announcement.
+ * 19. cacheStats - Reports in-memory cache statistics.
+ * 20. batchApprove - Approves many book listings at once.
+ * 21. batchReject - Rejects many book listings at once.
+ * 22. exportOrders - Streams orders as CSV.
+ * 23. setFlashSale - Turns flash-sale stock mode on or off for a book.
+ * 24. flashSaleStats - Reports flash-sale stock tokens.
+ * 25. rotateTokenKey - Rotates the session token signing key.
  * History:
  * 1. Date: 2024-11-20
  *    Author: WiseBookPal Team
@@ -49,6 +64,33 @@ import java.util.Map;
  * 2. Date: 2026-01-02
  *    Author: WiseBookPal Team
  *    Modification: Added U14 User Management features
+ * 3. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added cache statistics endpoint
+ * 4. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added batch book review endpoints
+ * 5. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added streaming order export
+ * 6. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added flash-sale stock mode endpoints
+ * 7. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Cache statistics include the checkout admission queue
+ * 8. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Review notices go through the outbox; cache statistics include the outbox
+ * 9. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Cache statistics include the session cache
+ * 10. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added signing key rotation for signed session tokens
+ * 11. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Order export escapes fields through the shared Csv helper
  */
 @RestController
 @RequestMapping("/admin")
@@ -58,13 +100,25 @@ public class AdminController {
     private final ComplaintService complaintService;
     private final NotificationService notificationService;
     private final ReviewService reviewService;
+    private final OrderService orderService;
+    private final FlashSaleStock flashSaleStock;
+    private final CheckoutAdmission checkoutAdmission;
+    private final OutboxDispatcher outboxDispatcher;
+    private final SignedTokenService signedTokenService;
+    /** Maximum listings per batch approve/reject */
+    private static final int MAX_BATCH_AUDIT = 500;
 
-    public AdminController(UserService userService, BookService bookService, ComplaintService complaintService, NotificationService notificationService, ReviewService reviewService) {
+    public AdminController(UserService userService, BookService bookService, ComplaintService complaintService, NotificationService notificationService, ReviewService reviewService, OrderService orderService, FlashSaleStock flashSaleStock, CheckoutAdmission checkoutAdmission, OutboxDispatcher outboxDispatcher, SignedTokenService signedTokenService) {
         this.userService = userService;
         this.bookService = bookService;
         this.complaintService = complaintService;
         this.notificationService = notificationService;
         this.reviewService = reviewService;
+        this.orderService = orderService;
+        this.flashSaleStock = flashSaleStock;
+        this.checkoutAdmission = checkoutAdmission;
+        this.outboxDispatcher = outboxDispatcher;
+        this.signedTokenService = signedTokenService;
     }
 
     /**
@@ -170,11 +224,11 @@ public class AdminController {
 
     /**
      * Function: approve
-     * Description: Approves a book listing.
-     * Calls: BookService.approve, NotificationService.addToUser
+     * Description: Approves a book listing. The seller notice is delivered from the outbox.
+     * Calls: BookService.approveAll
      * Called By: Frontend Admin Dashboard
      * Table Accessed: user_token, users, books
-     * Table Updated: books (status)
+     * Table Updated: books (status), outbox_event
      * Input: token (String) - Admin token
      *        id (Long) - Book ID
      * Output: None
@@ -186,25 +240,20 @@ public class AdminController {
                                      @PathVariable("id") Long id) {
         User u = userService.getByToken(token);
         if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        boolean ok = bookService.approve(id);
-        if (!ok) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        // 通知卖家审核结果
-        com.whu.bookapi.model.Book b = bookService.get(id);
-        if (b != null) {
-            notificationService.addToUser(b.getSellerName(), "audit", "教材审核通过", "您的教材《" + b.getBookName() + "》已通过审核");
-        }
+        if (id == null || bookService.approveAll(List.of(id)).isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         return ResponseEntity.ok().build();
     }
 
     /**
      * Function: reject
-     * Description: Rejects a book listing.
-     * Calls: BookService.reject, NotificationService.addToUser
+     * Description: Rejects a book listing. The seller notice is delivered from the outbox.
+     * Calls: BookService.rejectAll
      * Called By: Frontend Admin Dashboard
      * Table Accessed: user_token, users, books
-     * Table Updated: books (status)
+     * Table Updated: books (status, audit_reason), outbox_event
      * Input: token (String) - Admin token
      *        id (Long) - Book ID
+     *        body (Map) - Optional reason
      * Output: None
      * Return: ResponseEntity<?>
      * Others:
@@ -215,18 +264,77 @@ public class AdminController {
                                     @RequestBody(required = false) java.util.Map<String, String> body) {
         User u = userService.getByToken(token);
         if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        boolean ok = bookService.reject(id);
-        if (!ok) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         String reason = body == null ? null : body.get("reason");
-        if (reason != null && !reason.isBlank()) {
-            bookService.setAuditReason(id, reason);
+        if (id == null || bookService.rejectAll(List.of(id), reason).isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Function: batchApprove
+     * Description: Approves many book listings at once (one UPDATE, one load, one outbox batch).
+     * Calls: BookService.approveAll
+     * Called By: Frontend Admin Dashboard
+     * Table Accessed: user_token, users, books
+     * Table Updated: books (status), outbox_event
+     * Input: token (String) - Admin token
+     *        body (BatchAuditRequest) - Book IDs, at most 500
+     * Output: Map - approved ids and notFound ids
+     * Return: ResponseEntity<?>
+     * Others:
+     */
+    @PostMapping("/review/books/batch-approve")
+    public ResponseEntity<?> batchApprove(@RequestHeader(value = "token", required = false) String token,
+                                          @RequestBody(required = false) BatchAuditRequest body) {
+        User u = userService.getByToken(token);
+        if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        ResponseEntity<?> invalid = checkBatch(body);
+        if (invalid != null) return invalid;
+        List<Book> approved = bookService.approveAll(body.getIds());
+        return ResponseEntity.ok(batchResult(body.getIds(), approved));
+    }
+
+    /**
+     * Function: batchReject
+     * Description: Rejects many book listings at once with a shared optional reason.
+     * Calls: BookService.rejectAll
+     * Called By: Frontend Admin Dashboard
+     * Table Accessed: user_token, users, books
+     * Table Updated: books (status, audit_reason), outbox_event
+     * Input: token (String) - Admin token
+     *        body (BatchAuditRequest) - Book IDs (at most 500) and an optional reason
+     * Output: Map - rejected ids and notFound ids
+     * Return: ResponseEntity<?>
+     * Others:
+     */
+    @PostMapping("/review/books/batch-reject")
+    public ResponseEntity<?> batchReject(@RequestHeader(value = "token", required = false) String token,
+                                         @RequestBody(required = false) BatchAuditRequest body) {
+        User u = userService.getByToken(token);
+        if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        ResponseEntity<?> invalid = checkBatch(body);
+        if (invalid != null) return invalid;
+        List<Book> rejected = bookService.rejectAll(body.getIds(), body.getReason());
+        return ResponseEntity.ok(batchResult(body.getIds(), rejected));
+    }
+
+    private static ResponseEntity<?> checkBatch(BatchAuditRequest body) {
+        if (body == null || body.getIds() == null || body.getIds().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "请选择要审核的教材"));
         }
-        com.whu.bookapi.model.Book b = bookService.get(id);
-        if (b != null) {
-            String content = "您的教材《" + b.getBookName() + "》未通过审核" + (reason == null ? "" : "，原因：" + reason);
-            notificationService.addToUser(b.getSellerName(), "audit", "教材审核未通过", content);
+        if (body.getIds().size() > MAX_BATCH_AUDIT) {
+            return ResponseEntity.badRequest().body(Map.of("message", "单次最多审核" + MAX_BATCH_AUDIT + "本"));
         }
-        return ResponseEntity.ok().build();
+        return null;
+    }
+
+    private static Map<String, Object> batchResult(List<Long> requested, List<Book> done) {
+        java.util.Set<Long> doneIds = new java.util.LinkedHashSet<>();
+        for (Book b : done) doneIds.add(b.getId());
+        java.util.Set<Long> notFound = new java.util.LinkedHashSet<>();
+        for (Long id : requested) {
+            if (id != null && !doneIds.contains(id)) notFound.add(id);
+        }
+        return Map.of("updated", doneIds, "notFound", notFound);
     }
 
     /**
@@ -440,6 +548,51 @@ public class AdminController {
         return ResponseEntity.ok(logs);
     }
 
+    /**
+     * Function: exportOrders
+     * Description: Streams orders as CSV, newest first, optionally limited to a creation-time range
+     *              and a status. Rows are written to the response as they are read from a
+     *              forward-only cursor, so memory stays constant.
+     * Calls: OrderService.streamAll
+     * Called By: Frontend Admin Dashboard
+     * Table Accessed: user_token, users, orders
+     * Table Updated: None
+     * Input: token (String) - Admin token
+     *        startTime (Long) - Inclusive lower bound of create time (epoch ms), optional
+     *        endTime (Long) - Exclusive upper bound of create time (epoch ms), optional
+     *        status (String) - Order status, optional
+     * Output: CSV stream
+     * Return: ResponseEntity<StreamingResponseBody>
+     * Others:
+     */
+    @GetMapping(value = "/orders/export", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestHeader(value = "token", required = false) String token,
+                                                              @RequestParam(value = "startTime", required = false) Long startTime,
+                                                              @RequestParam(value = "endTime", required = false) Long endTime,
+                                                              @RequestParam(value = "status", required = false) String status) {
+        User u = userService.getByToken(token);
+        if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        StreamingResponseBody body = out -> {
+            java.time.format.DateTimeFormatter fmt = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            java.io.Writer w = new java.io.BufferedWriter(new java.io.OutputStreamWriter(out, java.nio.charset.StandardCharsets.UTF_8));
+            w.write("订单号,教材ID,书名,卖家,买家,金额,状态,下单时间\n");
+            orderService.streamAll(startTime, endTime, status, o -> {
+                try {
+                    w.write(o.getId() + "," + o.getBookId() + "," + Csv.field(o.getBookName()) + "," + Csv.field(o.getSellerName()) + ","
+                            + Csv.field(o.getBuyerName()) + "," + (o.getPrice() == null ? "" : String.format(java.util.Locale.US, "%.2f", o.getPrice())) + ","
+                            + Csv.field(o.getStatus()) + "," + (o.getCreateTime() == null ? "" : fmt.format(o.getCreateTime())) + "\n");
+                } catch (java.io.IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            });
+            w.flush();
+        };
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=\"orders.csv\"")
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, java.nio.charset.StandardCharsets.UTF_8))
+                .body(body);
+    }
+
     /**
      * Function: listComplaints
      * Description: Lists all complaints.
@@ -619,4 +772,88 @@ public class AdminController {
         if (!ok) return ResponseEntity.badRequest().body("Undo failed");
         return ResponseEntity.ok().build();
     }
+
+    /**
+     * Function: cacheStats
+     * Description: Reports in-memory cache statistics and the catalog memory footprint for capacity tuning,
+     *              plus the checkout admission queue, the outbox backlog and signed token counters.
+     * Calls: BookService.cacheStats, BookService.catalogStats, UserService.sessionStats, SignedTokenService.stats,
+     *        CheckoutAdmission.stats, OutboxDispatcher.stats
+     * Input: token (String) - Admin token
+     * Output: Map - Counters per cache
+     * Return: ResponseEntity<?>
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> cacheStats(@RequestHeader(value = "token", required = false) String token) {
+        User u = userService.getByToken(token);
+        if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        java.util.Map<String, Object> res = new java.util.LinkedHashMap<>();
+        res.put("books", bookService.cacheStats());
+        res.put("catalog", bookService.catalogStats());
+        res.put("sessions", userService.sessionStats());
+        res.put("signedTokens", signedTokenService.stats());
+        res.put("checkout", checkoutAdmission.stats());
+        res.put("outbox", outboxDispatcher.stats());
+        return ResponseEntity.ok(res);
+    }
+
+    /**
+     * Function: setFlashSale
+     * Description: Turns flash-sale stock mode on or off for a hot book. In this mode the remaining stock
+     *              is held as in-memory tokens and buyers without a token are rejected at once.
+     * Calls: FlashSaleStock.enable, FlashSaleStock.disable
+     * Table Accessed: books
+     * Table Updated: flash_sale_book
+     * Input: token (String) - Admin token
+     *        id (Long) - Book ID
+     *        enabled (boolean) - On or off, default on
+     * Output: None
+     * Return: ResponseEntity<?>
+     */
+    @PostMapping("/books/{id}/flash-sale")
+    public ResponseEntity<?> setFlashSale(@RequestHeader(value = "token", required = false) String token,
+                                          @PathVariable("id") Long id,
+                                          @RequestParam(value = "enabled", defaultValue = "true") boolean enabled) {
+        User u = userService.getByToken(token);
+        if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (!enabled) {
+            flashSaleStock.disable(id);
+            return ResponseEntity.ok().build();
+        }
+        if (!flashSaleStock.enable(id)) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Function: flashSaleStats
+     * Description: Reports tokens left, reservations in flight and instant rejections per flash-sale book.
+     * Calls: FlashSaleStock.stats
+     * Input: token (String) - Admin token
+     * Output: List<Map> - One entry per flash-sale book
+     * Return: ResponseEntity<?>
+     */
+    @GetMapping("/flash-sale/stats")
+    public ResponseEntity<?> flashSaleStats(@RequestHeader(value = "token", required = false) String token) {
+        User u = userService.getByToken(token);
+        if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        return ResponseEntity.ok(flashSaleStock.stats());
+    }
+
+    /**
+     * Function: rotateTokenKey
+     * Description: Creates a new signing key for signed session tokens. Tokens signed with earlier keys stay
+     *              valid until they expire; other instances pick the new key up on first sight of its id.
+     * Calls: SignedTokenService.rotate, SignedTokenService.stats
+     * Table Updated: auth_signing_key
+     * Input: token (String) - Admin token
+     * Output: Map - Signed token key ring and counters
+     * Return: ResponseEntity<?>
+     */
+    @PostMapping("/auth/keys/rotate")
+    public ResponseEntity<?> rotateTokenKey(@RequestHeader(value = "token", required = false) String token) {
+        User u = userService.getByToken(token);
+        if (!isAdmin(u)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        signedTokenService.rotate();
+        return ResponseEntity.ok(signedTokenService.stats());
+    }
 }
@@ -1,13 +1,17 @@
 package com.whu.bookapi.controller;
 
+import com.whu.bookapi.dto.BookAddResponse;
 import com.whu.bookapi.dto.PageResponse;
+import com.whu.bookapi.dto.PriceSuggestion;
 import com.whu.bookapi.model.Book;
 import com.whu.bookapi.model.User;
+import com.whu.bookapi.service.BookImportService;
 import com.whu.bookapi.service.BookService;
 import com.whu.bookapi.service.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 
@@ -21,30 +25,39 @@ import java.util.List;
  * History:
  * <author>          <time>          <version>          <desc>
  * Team              2024-11-20      1.0                Initial implementation
+ * WiseBookPal Team  2026-10-17      1.1                Added bulk listing import (JSON and CSV).
  */
 @RestController
 @RequestMapping("/books")
 public class BookController {
     private final BookService bookService;
     private final UserService userService;
+    private final BookImportService bookImportService;
 
-    public BookController(BookService bookService, UserService userService) {
+    public BookController(BookService bookService, UserService userService, BookImportService bookImportService) {
         this.bookService = bookService;
         this.userService = userService;
+        this.bookImportService = bookImportService;
     }
 
     /**
      * Function: page
      * Description: Paginates through the list of books with optional filters.
-     * Calls: BookService.page, BookService.count
+     *              When a cursor parameter is present (empty for the first page), switches to keyset
+     *              pagination and returns a nextCursor instead of relying on OFFSET.
+     * Calls: BookService.search, BookService.pageByCursor, BookService.searchGrouped
      * Input: bookName (String) - Filter by book name
      *        minPrice (Double) - Filter by minimum price
      *        maxPrice (Double) - Filter by maximum price
      *        conditionLevel (String) - Filter by book condition
-     *        pageNum (int) - Page number (default 1)
+     *        pageNum (int) - Page number (default 1), ignored in cursor mode
      *        pageSize (int) - Page size (default 10)
      *        sortBy (String) - Sort field
-     * Output: PageResponse<Book> - Paginated list of books
+     *        cursor (String) - Keyset cursor from the previous page
+     *        withTotal (boolean) - Whether cursor mode should include the total count (default false)
+     *        facets (boolean) - Whether to include condition, price range and seller type counts (default false)
+     *        groupBy (String) - "isbn" collapses listings of the same edition into one row (offset paging only)
+     * Output: PageResponse<Book>, PageResponse<IsbnGroup> or CursorPageResponse<Book> - Paginated list of books
      * Return: ResponseEntity<?>
      */
     @GetMapping("/page")
@@ -54,10 +67,19 @@ public class BookController {
                                   @RequestParam(value = "conditionLevel", required = false) String conditionLevel,
                                   @RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
                                   @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
-                                  @RequestParam(value = "sortBy", required = false) String sortBy) {
-        List<Book> records = bookService.page(bookName, minPrice, maxPrice, conditionLevel, pageNum, pageSize, sortBy);
-        long total = bookService.count(bookName, minPrice, maxPrice);
-        return ResponseEntity.ok(new PageResponse<>(total, records));
+                                  @RequestParam(value = "sortBy", required = false) String sortBy,
+                                  @RequestParam(value = "cursor", required = false) String cursor,
+                                  @RequestParam(value = "withTotal", defaultValue = "false") boolean withTotal,
+                                  @RequestParam(value = "facets", defaultValue = "false") boolean facets,
+                                  @RequestParam(value = "groupBy", required = false) String groupBy) {
+        if ("isbn".equals(groupBy)) {
+            return ResponseEntity.ok(bookService.searchGrouped(bookName, minPrice, maxPrice, conditionLevel, pageNum, pageSize, sortBy, facets));
+        }
+        if (cursor != null) {
+            return ResponseEntity.ok(bookService.pageByCursor(bookName, minPrice, maxPrice, conditionLevel, cursor, pageSize, sortBy, withTotal, facets));
+        }
+        PageResponse<Book> result = bookService.search(bookName, minPrice, maxPrice, conditionLevel, pageNum, pageSize, sortBy, facets);
+        return ResponseEntity.ok(result);
     }
 
     /**
@@ -78,10 +100,11 @@ public class BookController {
     /**
      * Function: add
      * Description: Adds a new book to the system.
-     * Calls: UserService.getByToken, BookService.add
+     *              The response carries the created book plus a price suggestion for its ISBN.
+     * Calls: UserService.getByToken, BookService.add, BookService.suggestPrice
      * Input: token (String) - User token
      *        book (Book) - Book object to add
-     * Output: Book - Created book object
+     * Output: BookAddResponse - Created book fields and priceSuggestion
      * Return: ResponseEntity<?>
      */
     @PostMapping("/add")
@@ -100,7 +123,84 @@ public class BookController {
         }
 
         Book created = bookService.add(book, user.getUsername());
-        return ResponseEntity.ok(created);
+        if (created == null) return ResponseEntity.ok(null);
+        return ResponseEntity.ok(new BookAddResponse(created, bookService.suggestPrice(created.getIsbn(), created.getConditionLevel())));
+    }
+
+    /**
+     * Function: bulkAdd
+     * Description: Adds up to 500 listings from a JSON array in one transaction.
+     *              Invalid rows are reported with their reason; the valid rows are still created.
+     * Calls: UserService.getByToken, BookImportService.importBooks
+     * Input: token (String) - User token
+     *        books (List<Book>) - Listings to add
+     * Output: BulkImportResult - Generated ids per row and rejected rows
+     * Return: ResponseEntity<?>
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkAdd(@RequestHeader(value = "token", required = false) String token,
+                                     @RequestBody List<Book> books) {
+        User user = userService.getByToken(token);
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if ("blacklist".equals(user.getStatus())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(java.util.Map.of("message", "账号已黑名单，无法发布教材。原因：" + (user.getBlacklistReason() != null ? user.getBlacklistReason() : "无")));
+        }
+        if (books == null || books.isEmpty()) return ResponseEntity.badRequest().body(java.util.Map.of("message", "导入数据为空"));
+        if (books.size() > BookImportService.MAX_ROWS) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("message", "单次最多导入" + BookImportService.MAX_ROWS + "本"));
+        }
+        return ResponseEntity.ok(bookImportService.importBooks(books, null, user.getUsername()));
+    }
+
+    /**
+     * Function: bulkAddCsv
+     * Description: Adds up to 500 listings from a CSV upload with a header row
+     *              (书名,作者,原价,售价,描述,封面,ISBN,出版社,出版日期,成色,库存 or the English field names).
+     * Calls: UserService.getByToken, BookImportService.parseCsv, BookImportService.importBooks
+     * Input: token (String) - User token
+     *        file (MultipartFile) - UTF-8 CSV file
+     * Output: BulkImportResult - Generated ids per row and rejected rows
+     * Return: ResponseEntity<?>
+     */
+    @PostMapping("/bulk/csv")
+    public ResponseEntity<?> bulkAddCsv(@RequestHeader(value = "token", required = false) String token,
+                                        @RequestPart("file") MultipartFile file) {
+        User user = userService.getByToken(token);
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if ("blacklist".equals(user.getStatus())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(java.util.Map.of("message", "账号已黑名单，无法发布教材。原因：" + (user.getBlacklistReason() != null ? user.getBlacklistReason() : "无")));
+        }
+        java.util.Map<Integer, String> parseErrors = new java.util.HashMap<>();
+        List<Book> rows;
+        try {
+            rows = bookImportService.parseCsv(file.getInputStream(), parseErrors);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("message", e.getMessage()));
+        } catch (java.io.IOException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("message", "文件读取失败"));
+        }
+        if (rows.isEmpty()) return ResponseEntity.badRequest().body(java.util.Map.of("message", "导入数据为空"));
+        if (rows.size() > BookImportService.MAX_ROWS) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("message", "单次最多导入" + BookImportService.MAX_ROWS + "本"));
+        }
+        return ResponseEntity.ok(bookImportService.importBooks(rows, parseErrors, user.getUsername()));
+    }
+
+    /**
+     * Function: priceSuggestion
+     * Description: Suggests a price for an ISBN while the seller fills in the listing form.
+     * Calls: BookService.suggestPrice
+     * Input: isbn (String) - ISBN from the lookup
+     *        conditionLevel (String) - Condition of the copy (optional)
+     * Output: PriceSuggestion - Percentiles by condition and the suggested price
+     * Return: ResponseEntity<?>
+     */
+    @GetMapping("/price-suggestion")
+    public ResponseEntity<?> priceSuggestion(@RequestParam("isbn") String isbn,
+                                             @RequestParam(value = "conditionLevel", required = false) String conditionLevel) {
+        PriceSuggestion suggestion = bookService.suggestPrice(isbn, conditionLevel);
+        if (suggestion == null) return ResponseEntity.badRequest().body(java.util.Map.of("message", "ISBN不能为空"));
+        return ResponseEntity.ok(suggestion);
     }
 
     /**
@@ -188,12 +288,18 @@ public class BookController {
      * Description: Retrieves a list of hot/popular books.
      * Calls: BookService.getHotBooks
      * Input: limit (int) - Number of books to return (default 6)
+     *        shuffle (boolean) - Whether to vary the list among the top candidates (default false)
+     *        seed (Long) - Shuffle seed; defaults to the current minute so the list rotates slowly
      * Output: List<Book> - List of hot books
      * Return: ResponseEntity<?>
      */
     @GetMapping("/hot")
-    public ResponseEntity<?> hot(@RequestParam(value = "limit", defaultValue = "6") int limit) {
-        return ResponseEntity.ok(bookService.getHotBooks(limit));
+    public ResponseEntity<?> hot(@RequestParam(value = "limit", defaultValue = "6") int limit,
+                                 @RequestParam(value = "shuffle", defaultValue = "false") boolean shuffle,
+                                 @RequestParam(value = "seed", required = false) Long seed) {
+        Long effectiveSeed = null;
+        if (shuffle) effectiveSeed = seed != null ? seed : System.currentTimeMillis() / 60000;
+        return ResponseEntity.ok(bookService.getHotBooks(limit, effectiveSeed));
     }
 
     /**
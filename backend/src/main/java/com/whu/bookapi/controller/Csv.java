@@ -0,0 +1,33 @@
+package com.whu.bookapi.controller;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: Csv.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Field escaping shared by the streaming CSV exports.
+ * Others:
+ * Function List:
+ * 1. field - Escape one CSV field (RFC 4180)
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation, extracted from AdminController and NotificationController
+ */
+final class Csv {
+    private Csv() {
+    }
+
+    /**
+     * Function: field
+     * Description: Quotes a field containing a comma, quote or line break and doubles its quotes.
+     * Called By: AdminController.exportOrders, NotificationController.exportSettlements
+     * Input: s (String) - Raw value, may be null
+     * Output: String - Escaped field, empty for null
+     * Return: String
+     */
+    static String field(String s) {
+        if (s == null) return "";
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+}
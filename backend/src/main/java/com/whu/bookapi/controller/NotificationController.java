@@ -1,13 +1,16 @@
 package com.whu.bookapi.controller;
 
 import com.whu.bookapi.model.Notification;
+import com.whu.bookapi.model.Settlement;
 import com.whu.bookapi.model.User;
 import com.whu.bookapi.service.NotificationService;
+import com.whu.bookapi.service.SettlementService;
 import com.whu.bookapi.service.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -25,10 +28,20 @@ import java.util.HashMap;
  * 3. unreadCount - Get count of unread notifications and chat messages
  * 4. markRead - Mark a notification as read
  * 5. markAllRead - Mark all notifications as read
+ * 6. exportSettlements - Stream settlement vouchers from the settlement ledger as CSV
  * History:
  * 1. Date: 2024-11-20
  *    Author: WiseBookPal Team
  *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Settlement export reads the settlement ledger instead of notification text
+ * 3. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Settlement export streams rows and accepts a date range
+ * 4. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Settlement export escapes fields through the shared Csv helper
  */
 @RestController
 @RequestMapping("/notifications")
@@ -36,11 +49,13 @@ public class NotificationController {
     private final NotificationService notificationService;
     private final UserService userService;
     private final com.whu.bookapi.service.ChatService chatService;
+    private final SettlementService settlementService;
 
-    public NotificationController(NotificationService notificationService, UserService userService, com.whu.bookapi.service.ChatService chatService) {
+    public NotificationController(NotificationService notificationService, UserService userService, com.whu.bookapi.service.ChatService chatService, SettlementService settlementService) {
         this.notificationService = notificationService;
         this.userService = userService;
         this.chatService = chatService;
+        this.settlementService = settlementService;
     }
 
     /**
@@ -187,54 +202,46 @@ public class NotificationController {
         return ResponseEntity.ok(res);
     }
 
+    /**
+     * Function: exportSettlements
+     * Description: Streams the seller's settlement vouchers as CSV from the settlement ledger.
+     *              Rows are written to the response as they are read, so memory stays constant.
+     * Calls: UserService.getByToken, SettlementService.streamBySeller
+     * Called By: Frontend Seller Center
+     * Table Accessed: user_token, users, funds_settlement, orders
+     * Input: token (String) - User token
+     *        startTime (Long) - Inclusive lower bound of settlement time (epoch ms), optional
+     *        endTime (Long) - Exclusive upper bound of settlement time (epoch ms), optional
+     * Output: CSV stream
+     * Return: ResponseEntity<StreamingResponseBody>
+     */
     @GetMapping(value = "/settlements/export", produces = MediaType.TEXT_PLAIN_VALUE)
-    public ResponseEntity<String> exportSettlements(@RequestHeader(value = "token", required = false) String token) {
+    public ResponseEntity<StreamingResponseBody> exportSettlements(@RequestHeader(value = "token", required = false) String token,
+                                                                   @RequestParam(value = "startTime", required = false) Long startTime,
+                                                                   @RequestParam(value = "endTime", required = false) Long endTime) {
         User u = userService.getByToken(token);
         if (u == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        List<Notification> list = notificationService.listByUser(u.getUsername());
-        StringBuilder sb = new StringBuilder();
-        sb.append("订单号,书名,交易金额,到账金额,结算时间,凭证号\n");
-        for (Notification n : list) {
-            if (!"settlement".equals(n.getType())) continue;
-            String content = n.getContent() == null ? "" : n.getContent();
-            String orderId = extract(content, "订单#", "（");
-            String bookName = extract(content, "（", "）");
-            String amount = extract(content, "交易金额: ", "\n");
-            String received = extract(content, "到账金额: ", "\n");
-            String time = extract(content, "结算时间: ", "\n");
-            String voucher = extract(content, "凭证号: ", null);
-            sb.append(safeCsv(orderId)).append(',')
-              .append(safeCsv(bookName)).append(',')
-              .append(safeCsv(amount)).append(',')
-              .append(safeCsv(received)).append(',')
-              .append(safeCsv(time)).append(',')
-              .append(safeCsv(voucher)).append('\n');
-        }
+        String seller = u.getUsername();
+        StreamingResponseBody body = out -> {
+            java.time.format.DateTimeFormatter fmt = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            java.io.Writer w = new java.io.BufferedWriter(new java.io.OutputStreamWriter(out, java.nio.charset.StandardCharsets.UTF_8));
+            w.write("订单号,书名,交易金额,到账金额,结算时间,凭证号\n");
+            settlementService.streamBySeller(seller, startTime, endTime, s -> {
+                try {
+                    w.write(s.getOrderId() + "," + Csv.field(s.getBookName() == null ? "-" : s.getBookName()) + ","
+                            + String.format(java.util.Locale.US, "%.2f", s.getAmount()) + ","
+                            + String.format(java.util.Locale.US, "%.2f", s.getReceivedAmount()) + ","
+                            + fmt.format(java.time.Instant.ofEpochMilli(s.getSettleTime()).atZone(java.time.ZoneId.systemDefault())) + ","
+                            + Csv.field(s.getVoucherNo()) + "\n");
+                } catch (java.io.IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            });
+            w.flush();
+        };
         return ResponseEntity.ok()
                 .header("Content-Disposition", "attachment; filename=\"settlement_vouchers.csv\"")
-                .contentType(MediaType.TEXT_PLAIN)
-                .body(sb.toString());
-    }
-
-    private static String extract(String text, String startToken, String endToken) {
-        if (text == null || startToken == null) return "";
-        int s = text.indexOf(startToken);
-        if (s < 0) return "";
-        s += startToken.length();
-        if (endToken == null) {
-            return text.substring(s).trim();
-        }
-        int e = text.indexOf(endToken, s);
-        if (e < 0) e = text.length();
-        return text.substring(s, e).trim();
-    }
-
-    private static String safeCsv(String s) {
-        if (s == null) return "";
-        String t = s.replace("\"", "\"\"");
-        if (t.contains(",") || t.contains("\n")) {
-            return "\"" + t + "\"";
-        }
-        return t;
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, java.nio.charset.StandardCharsets.UTF_8))
+                .body(body);
     }
 }
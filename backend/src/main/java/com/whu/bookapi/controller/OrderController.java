@@ -1,11 +1,18 @@
 package com.whu.bookapi.controller;
 
+import com.whu.bookapi.dto.CheckoutResult;
+import com.whu.bookapi.dto.OrderPlacement;
+import com.whu.bookapi.dto.OrderTransition;
 import com.whu.bookapi.model.Book;
 import com.whu.bookapi.model.Order;
 import com.whu.bookapi.model.User;
 import com.whu.bookapi.service.BookService;
-import com.whu.bookapi.service.NotificationService;
+import com.whu.bookapi.service.CheckoutAdmission;
+import com.whu.bookapi.service.FlashSaleStock;
+import com.whu.bookapi.service.OrderCounterService;
+import com.whu.bookapi.service.OrderExpiryQueue;
 import com.whu.bookapi.service.OrderService;
+import com.whu.bookapi.service.OrderStateMachine;
 import com.whu.bookapi.service.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -26,10 +33,48 @@ import java.util.List;
  * 4. pay - Pay for an order
  * 5. cancel - Cancel an order
  * 6. receive - Confirm receipt of an order
+ * 7. checkout - Buy several cart items at once
+ * 8. counts - Order counts by status for badges
  * History:
  * 1. Date: 2024-11-20
  *    Author: WiseBookPal Team
  *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Overdue payment expires the order through OrderExpiryQueue
+ * 3. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Receipt settles through the settlement ledger
+ * 4. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Order creation placed in one transaction through OrderService.place
+ * 5. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added multi-item cart checkout
+ * 6. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Flash-sale books admit buyers through in-memory stock tokens before placing the order
+ * 7. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Order creation and payment pass through the CheckoutAdmission queue
+ * 8. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Pay, cancel and receive move orders through compare-and-set OrderStateMachine transitions
+ * 9. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Buyer and seller order lists support cursor pagination and status filters
+ * 10. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added order counts from the per-user order counters
+ * 11. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Payment notice and receipt settlement run from the outbox after the transition commits
+ * 12. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Cancellation and its stock release commit together through OrderService.cancel
+ * 13. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Cart checkout passes through the CheckoutAdmission queue
  */
 @RestController
 @RequestMapping("/orders")
@@ -38,32 +83,51 @@ public class OrderController {
     private final UserService userService;
     private final BookService bookService;
     private final com.whu.bookapi.service.CartService cartService;
-    private final NotificationService notificationService;
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final FlashSaleStock flashSaleStock;
+    private final CheckoutAdmission checkoutAdmission;
+    private final OrderStateMachine orderStateMachine;
+    private final OrderCounterService orderCounterService;
 
-    public OrderController(OrderService orderService, UserService userService, BookService bookService, com.whu.bookapi.service.CartService cartService, NotificationService notificationService) {
+    public OrderController(OrderService orderService, UserService userService, BookService bookService, com.whu.bookapi.service.CartService cartService, OrderExpiryQueue orderExpiryQueue, FlashSaleStock flashSaleStock, CheckoutAdmission checkoutAdmission, OrderStateMachine orderStateMachine, OrderCounterService orderCounterService) {
         this.orderService = orderService;
         this.userService = userService;
         this.bookService = bookService;
         this.cartService = cartService;
-        this.notificationService = notificationService;
+        this.orderExpiryQueue = orderExpiryQueue;
+        this.flashSaleStock = flashSaleStock;
+        this.checkoutAdmission = checkoutAdmission;
+        this.orderStateMachine = orderStateMachine;
+        this.orderCounterService = orderCounterService;
     }
 
     /**
      * Function: list
      * Description: Lists orders where the current user is the buyer.
-     * Calls: UserService.getByToken, OrderService.listByBuyer
+     *              When a cursor or status parameter is present (cursor empty for the first page), returns
+     *              one page, newest first, with a nextCursor for the rest.
+     * Calls: UserService.getByToken, OrderService.listByBuyer, OrderService.pageByBuyer
      * Called By: Frontend Buyer Order Page
      * Table Accessed: user_token, users, orders
      * Table Updated: None
      * Input: token (String) - User token
-     * Output: List<Order> - List of orders
+     *        cursor (String) - Keyset cursor from the previous page
+     *        status (String) - Comma-separated statuses to include, e.g. "pending,paid"
+     *        pageSize (int) - Page size (default 20, at most 100)
+     * Output: List<Order> or CursorPageResponse<Order> - Orders
      * Return: ResponseEntity<?>
      * Others:
      */
     @GetMapping("/list")
-    public ResponseEntity<?> list(@RequestHeader(value = "token", required = false) String token) {
+    public ResponseEntity<?> list(@RequestHeader(value = "token", required = false) String token,
+                                  @RequestParam(value = "cursor", required = false) String cursor,
+                                  @RequestParam(value = "status", required = false) String status,
+                                  @RequestParam(value = "pageSize", defaultValue = "20") int pageSize) {
         User user = token == null ? null : userService.getByToken(token);
         if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (cursor != null || status != null) {
+            return ResponseEntity.ok(orderService.pageByBuyer(user.getUsername(), statuses(status), cursor, pageSize));
+        }
         List<Order> orders = orderService.listByBuyer(user.getUsername());
         return ResponseEntity.ok(orders);
     }
@@ -71,27 +135,66 @@ public class OrderController {
     /**
      * Function: listForSeller
      * Description: Lists orders where the current user is the seller.
-     * Calls: UserService.getByToken, OrderService.listBySeller
+     *              When a cursor or status parameter is present (cursor empty for the first page), returns
+     *              one page, newest first, with a nextCursor for the rest.
+     * Calls: UserService.getByToken, OrderService.listBySeller, OrderService.pageBySeller
      * Called By: Frontend Seller Order Page
      * Table Accessed: user_token, users, orders
      * Table Updated: None
      * Input: token (String) - User token
-     * Output: List<Order> - List of orders
+     *        cursor (String) - Keyset cursor from the previous page
+     *        status (String) - Comma-separated statuses to include, e.g. "paid,received"
+     *        pageSize (int) - Page size (default 20, at most 100)
+     * Output: List<Order> or CursorPageResponse<Order> - Orders
      * Return: ResponseEntity<?>
      * Others:
      */
     @GetMapping("/seller/list")
-    public ResponseEntity<?> listForSeller(@RequestHeader(value = "token", required = false) String token) {
+    public ResponseEntity<?> listForSeller(@RequestHeader(value = "token", required = false) String token,
+                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                           @RequestParam(value = "status", required = false) String status,
+                                           @RequestParam(value = "pageSize", defaultValue = "20") int pageSize) {
         User user = token == null ? null : userService.getByToken(token);
         if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (cursor != null || status != null) {
+            return ResponseEntity.ok(orderService.pageBySeller(user.getUsername(), statuses(status), cursor, pageSize));
+        }
         List<Order> orders = orderService.listBySeller(user.getUsername());
         return ResponseEntity.ok(orders);
     }
 
+    private static List<String> statuses(String status) {
+        List<String> res = new java.util.ArrayList<>();
+        if (status == null) return res;
+        for (String st : status.split(",")) {
+            if (!st.isBlank()) res.add(st.trim());
+        }
+        return res;
+    }
+
+    /**
+     * Function: counts
+     * Description: The current user's order counts by status, as buyer and as seller (dashboard badges).
+     * Calls: UserService.getByToken, OrderCounterService.counts
+     * Called By: Frontend Buyer / Seller Order Page
+     * Table Accessed: user_token, users, user_order_counter
+     * Table Updated: None
+     * Input: token (String) - User token
+     * Output: Map - {"buyer": {pending, paid, received, cancelled}, "seller": {...}}
+     * Return: ResponseEntity<?>
+     * Others: Expired orders are counted as cancelled.
+     */
+    @GetMapping("/counts")
+    public ResponseEntity<?> counts(@RequestHeader(value = "token", required = false) String token) {
+        User user = token == null ? null : userService.getByToken(token);
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        return ResponseEntity.ok(orderCounterService.counts(user.getUsername()));
+    }
+
     /**
      * Function: create
      * Description: Creates a new order for a book.
-     * Calls: UserService.getByToken, BookService.get, BookService.tryReserveStock, OrderService.create, CartService.remove
+     * Calls: UserService.getByToken, FlashSaleStock.tryAcquire, CheckoutAdmission.enter, OrderService.place
      * Called By: Frontend Book Detail / Cart Page
      * Table Accessed: user_token, users, books, orders, cart_items
      * Table Updated: orders, books (stock), cart_items
@@ -100,6 +203,9 @@ public class OrderController {
      * Output: Order - Created order
      * Return: ResponseEntity<?>
      * Others: Checks if user is buying their own book or if stock is available.
+     *         Reservation, order insert and cart removal run in one transaction.
+     *         For a flash-sale book a stock token is taken first; without one the request fails at once.
+     *         Returns 429 with the queue position or 503 when checkout is saturated (see admissionRefused).
      */
     @PostMapping("/create")
     public ResponseEntity<?> create(@RequestHeader(value = "token", required = false) String token,
@@ -111,43 +217,112 @@ public class OrderController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(java.util.Map.of("message", "账号已黑名单，无法购买教材。原因：" + (user.getBlacklistReason() != null ? user.getBlacklistReason() : "无")));
         }
 
-        Book b = bookService.get(bookId);
-        if (b == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        if (!"on_sale".equals(b.getStatus())) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "该教材不可购买"));
+        if (!flashSaleStock.tryAcquire(bookId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "库存不足"));
         }
-        
-        if (user.getUsername().equals(b.getSellerName())) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(java.util.Map.of("message", "Cannot buy your own book"));
+        CheckoutAdmission.Ticket ticket = checkoutAdmission.enter(user.getUsername());
+        if (!ticket.isAdmitted()) {
+            flashSaleStock.complete(bookId, false);
+            return admissionRefused(ticket);
         }
-
-        boolean reserved = bookService.tryReserveStock(bookId);
-        if (!reserved) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "库存不足"));
+        OrderPlacement placement;
+        try {
+            placement = orderService.place(bookId, user.getUsername());
+        } catch (RuntimeException e) {
+            flashSaleStock.complete(bookId, false);
+            throw e;
+        } finally {
+            checkoutAdmission.leave(ticket);
         }
-        Order o = orderService.create(b, user.getUsername());
-        cartService.remove(user.getUsername(), bookId);
+        // A token that met a sold-out or off-sale listing stood for no real copy, so it is not returned
+        OrderPlacement.Failure failure = placement.getFailure();
+        flashSaleStock.complete(bookId, failure == null || failure == OrderPlacement.Failure.OUT_OF_STOCK
+                || failure == OrderPlacement.Failure.NOT_ON_SALE);
+        if (placement.getFailure() != null) {
+            switch (placement.getFailure()) {
+                case NOT_FOUND:
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+                case NOT_ON_SALE:
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "该教材不可购买"));
+                case OWN_BOOK:
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(java.util.Map.of("message", "Cannot buy your own book"));
+                default:
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "库存不足"));
+            }
+        }
+        Order o = placement.getOrder();
         return ResponseEntity.ok(o);
     }
 
+    /**
+     * Function: checkout
+     * Description: Buys several cart items at once (the whole cart when no ids are given).
+     *              Reservations, order inserts and cart removal run in one transaction; items that
+     *              cannot be bought are listed with their reason and stay in the cart.
+     * Calls: UserService.getByToken, CheckoutAdmission.enter, OrderService.checkout
+     * Called By: Frontend Cart Page
+     * Table Accessed: user_token, users, cart_item, books, orders
+     * Table Updated: orders, books (stock), cart_item
+     * Input: token (String) - User token
+     *        body (Map) - bookIds (List<Long>) - Cart items to buy, optional
+     * Output: CheckoutResult - Created orders and per-item failures
+     * Return: ResponseEntity<?>
+     * Others: Returns 409 with the failures when nothing could be bought.
+     *         Returns 429 with the queue position or 503 when checkout is saturated (see admissionRefused).
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(@RequestHeader(value = "token", required = false) String token,
+                                      @RequestBody(required = false) java.util.Map<String, List<Long>> body) {
+        User user = token == null ? null : userService.getByToken(token);
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if ("blacklist".equals(user.getStatus())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(java.util.Map.of("message", "账号已黑名单，无法购买教材。原因：" + (user.getBlacklistReason() != null ? user.getBlacklistReason() : "无")));
+        }
+        List<Long> bookIds = body == null ? null : body.get("bookIds");
+        CheckoutAdmission.Ticket ticket = checkoutAdmission.enter(user.getUsername());
+        if (!ticket.isAdmitted()) return admissionRefused(ticket);
+        CheckoutResult result;
+        try {
+            result = orderService.checkout(user.getUsername(), bookIds);
+        } finally {
+            checkoutAdmission.leave(ticket);
+        }
+        if (result.getOrders().isEmpty() && result.getFailures().isEmpty()) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("message", "购物车为空"));
+        }
+        if (result.getOrders().isEmpty()) return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Function: pay
-     * Description: Processes payment for an order.
-     * Calls: UserService.getByToken, OrderService.get, OrderService.setStatus, NotificationService.addToUser, BookService.releaseStock
+     * Description: Processes payment for an order. The seller notice is delivered from the outbox.
+     * Calls: UserService.getByToken, CheckoutAdmission.enter, OrderService.get, OrderStateMachine.transition, OrderExpiryQueue.expire
      * Called By: Frontend Payment Page
      * Table Accessed: user_token, users, orders
-     * Table Updated: orders (status, payment_time), notifications, books (stock)
+     * Table Updated: orders (status, payment_time), outbox_event, books (stock)
      * Input: token (String) - User token
      *        id (Long) - Order ID
      * Output: Order - Updated order
      * Return: ResponseEntity<?>
      * Others: Checks for order expiration and valid status.
+     *         Returns 429 with the queue position or 503 when checkout is saturated (see admissionRefused).
      */
     @PostMapping("/pay/{id}")
     public ResponseEntity<?> pay(@RequestHeader(value = "token", required = false) String token,
                                  @PathVariable("id") Long id) {
         User user = token == null ? null : userService.getByToken(token);
         if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        CheckoutAdmission.Ticket ticket = checkoutAdmission.enter(user.getUsername());
+        if (!ticket.isAdmitted()) return admissionRefused(ticket);
+        try {
+            return payAdmitted(user, id);
+        } finally {
+            checkoutAdmission.leave(ticket);
+        }
+    }
+
+    private ResponseEntity<?> payAdmitted(User user, Long id) {
         Order existing = orderService.get(id);
         if (existing == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         if (!user.getUsername().equals(existing.getBuyerName())) {
@@ -156,25 +331,40 @@ public class OrderController {
         if ("paid".equals(existing.getStatus())) return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单已支付"));
         if (!"pending".equals(existing.getStatus())) return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单状态不可支付"));
         if (existing.getExpireAt() != null && System.currentTimeMillis() > existing.getExpireAt()) {
-            orderService.setStatus(id, "expired");
-            bookService.releaseStock(existing.getBookId());
+            orderExpiryQueue.expire(id, existing.getBookId());
             return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单已超时"));
         }
-        Order o = orderService.setStatus(id, "paid");
-        if (o == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        notificationService.addToUser(
-                o.getSellerName(),
-                "order",
-                "订单已付款",
-                "订单#" + o.getId() + "（" + o.getBookName() + "）已付款，金额已暂存至平台，买家确认收货后自动结算至您的账户"
-        );
-        return ResponseEntity.ok(o);
+        OrderTransition t = orderStateMachine.transition(existing, OrderStateMachine.PAID);
+        if (t.getFailure() != null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单状态已变化，请刷新后重试"));
+        }
+        return ResponseEntity.ok(t.getOrder());
+    }
+
+    /**
+     * Function: admissionRefused
+     * Description: Response for a checkout request that did not get a slot: 429 with the place in line,
+     *              or 503 when the request was shed. Both carry a Retry-After header.
+     * Input: ticket (CheckoutAdmission.Ticket) - Refused ticket
+     * Return: ResponseEntity<?>
+     */
+    private static ResponseEntity<?> admissionRefused(CheckoutAdmission.Ticket ticket) {
+        String retryAfter = String.valueOf(ticket.getRetryAfterSeconds());
+        if (ticket.getKind() == CheckoutAdmission.Ticket.Kind.SHED) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(org.springframework.http.HttpHeaders.RETRY_AFTER, retryAfter)
+                    .body(java.util.Map.of("message", "下单人数过多，请稍后再试", "retryAfter", ticket.getRetryAfterSeconds()));
+        }
+        String message = ticket.getPosition() == 0 ? "您的上一个请求正在处理，请稍候" : "下单排队中，前方还有" + (ticket.getPosition() - 1) + "人";
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(org.springframework.http.HttpHeaders.RETRY_AFTER, retryAfter)
+                .body(java.util.Map.of("message", message, "position", ticket.getPosition(), "retryAfter", ticket.getRetryAfterSeconds()));
     }
 
     /**
      * Function: cancel
      * Description: Cancels an order.
-     * Calls: UserService.getByToken, OrderService.get, OrderService.setStatus, BookService.releaseStock
+     * Calls: UserService.getByToken, OrderService.get, OrderService.cancel
      * Called By: Frontend Buyer Order Page
      * Table Accessed: user_token, users, orders
      * Table Updated: orders (status), books (stock)
@@ -182,7 +372,7 @@ public class OrderController {
      *        id (Long) - Order ID
      * Output: Order - Updated order
      * Return: ResponseEntity<?>
-     * Others: Only pending orders can be cancelled.
+     * Others: Only pending orders can be cancelled; stock is released only by the call that cancelled it.
      */
     @PostMapping("/cancel/{id}")
     public ResponseEntity<?> cancel(@RequestHeader(value = "token", required = false) String token,
@@ -197,18 +387,21 @@ public class OrderController {
         if (!"pending".equals(existing.getStatus())) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单状态不可取消"));
         }
-        Order o = orderService.setStatus(id, "cancelled");
-        bookService.releaseStock(existing.getBookId());
-        return ResponseEntity.ok(o);
+        OrderTransition t = orderService.cancel(existing);
+        if (t.getFailure() != null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单状态已变化，请刷新后重试"));
+        }
+        return ResponseEntity.ok(t.getOrder());
     }
 
     /**
      * Function: receive
-     * Description: Confirms receipt of an order by the buyer.
-     * Calls: UserService.getByToken, OrderService.get, OrderService.setStatus, NotificationService.addToUser
+     * Description: Confirms receipt of an order by the buyer. The order.received event settles the order
+     *              to the seller (and sends the voucher notice) from the outbox, retried until it succeeds.
+     * Calls: UserService.getByToken, OrderService.get, OrderStateMachine.transition
      * Called By: Frontend Buyer Order Page
      * Table Accessed: user_token, users, orders
-     * Table Updated: orders (status, finish_time), notifications
+     * Table Updated: orders (status, finish_time), outbox_event
      * Input: token (String) - User token
      *        id (Long) - Order ID
      * Output: Order - Updated order
@@ -228,22 +421,10 @@ public class OrderController {
         if (!"paid".equals(existing.getStatus())) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单状态不可确认收货"));
         }
-        Order o = orderService.setStatus(id, "received");
-        if (o == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        // 收货后立即结算到卖家账户并记录资金结算
-        boolean settled = orderService.settleToSeller(o);
-        if (!settled) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(java.util.Map.of("message", "结算失败"));
-        }
-        // 生成结算凭证通知（供卖家中心“结算记录”展示与导出）
-        notificationService.addSettlementVoucher(
-                o.getSellerName(),
-                o.getId(),
-                o.getBookName(),
-                o.getPrice() == null ? 0.0 : o.getPrice(),
-                o.getPrice() == null ? 0.0 : o.getPrice(),
-                System.currentTimeMillis()
-        );
-        return ResponseEntity.ok(o);
+        OrderTransition t = orderStateMachine.transition(existing, OrderStateMachine.RECEIVED);
+        if (t.getFailure() != null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(java.util.Map.of("message", "订单状态已变化，请刷新后重试"));
+        }
+        return ResponseEntity.ok(t.getOrder());
     }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BatchAuditRequest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: DTO for batch approve/reject of book listings.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for Batch Audit Request.
+ */
+public class BatchAuditRequest {
+    /** IDs of the books to audit */
+    private List<Long> ids;
+
+    /** Rejection reason (optional, reject only) */
+    private String reason;
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
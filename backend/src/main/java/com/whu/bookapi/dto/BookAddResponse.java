@@ -0,0 +1,51 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookAddResponse.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: DTO for the response of adding a book listing.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.whu.bookapi.model.Book;
+
+/**
+ * Data Transfer Object for the created listing plus a price suggestion.
+ * The book's fields stay at the top level, so existing clients read it as before.
+ */
+public class BookAddResponse {
+    /** The created listing */
+    @JsonUnwrapped
+    private Book book;
+
+    /** Suggested price for the listing's ISBN and condition, null without an ISBN */
+    private PriceSuggestion priceSuggestion;
+
+    public BookAddResponse() {
+    }
+
+    public BookAddResponse(Book book, PriceSuggestion priceSuggestion) {
+        this.book = book;
+        this.priceSuggestion = priceSuggestion;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+
+    public PriceSuggestion getPriceSuggestion() {
+        return priceSuggestion;
+    }
+
+    public void setPriceSuggestion(PriceSuggestion priceSuggestion) {
+        this.priceSuggestion = priceSuggestion;
+    }
+}
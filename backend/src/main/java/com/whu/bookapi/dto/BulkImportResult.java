@@ -0,0 +1,110 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BulkImportResult.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: DTO for the result of a bulk listing import.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Transfer Object listing the created ids and the rejected rows of an import.
+ */
+public class BulkImportResult {
+    /** Number of data rows received */
+    private int total;
+
+    /** Rows inserted, with their generated book ids */
+    private List<RowResult> created = new ArrayList<>();
+
+    /** Rows rejected, with the reason */
+    private List<RowResult> errors = new ArrayList<>();
+
+    /** Time spent validating and inserting, in milliseconds */
+    private long elapsedMs;
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public List<RowResult> getCreated() {
+        return created;
+    }
+
+    public void setCreated(List<RowResult> created) {
+        this.created = created;
+    }
+
+    public List<RowResult> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RowResult> errors) {
+        this.errors = errors;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * Outcome of one input row (1-based, header excluded).
+     */
+    public static class RowResult {
+        /** Row number in the upload */
+        private int row;
+
+        /** Generated book id, null for a rejected row */
+        private Long id;
+
+        /** Rejection reason, null for a created row */
+        private String message;
+
+        public RowResult() {
+        }
+
+        public RowResult(int row, Long id, String message) {
+            this.row = row;
+            this.id = id;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public void setRow(int row) {
+            this.row = row;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
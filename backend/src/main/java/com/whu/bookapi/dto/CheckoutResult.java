@@ -0,0 +1,102 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: CheckoutResult.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: DTO for the result of a multi-item cart checkout.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+import com.whu.bookapi.model.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Transfer Object listing the orders created by a checkout and the cart items that could not be bought.
+ */
+public class CheckoutResult {
+    /** Orders created, one per copy */
+    private List<Order> orders = new ArrayList<>();
+
+    /** Cart items that were not bought */
+    private List<ItemFailure> failures = new ArrayList<>();
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public void setOrders(List<Order> orders) {
+        this.orders = orders;
+    }
+
+    public List<ItemFailure> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(List<ItemFailure> failures) {
+        this.failures = failures;
+    }
+
+    /**
+     * One cart item that could not be bought.
+     */
+    public static class ItemFailure {
+        /** Book ID */
+        private Long bookId;
+
+        /** Book title, null when the book no longer exists */
+        private String bookName;
+
+        /** Machine-readable reason */
+        private OrderPlacement.Failure reason;
+
+        /** Message for the buyer */
+        private String message;
+
+        public ItemFailure() {
+        }
+
+        public ItemFailure(Long bookId, String bookName, OrderPlacement.Failure reason, String message) {
+            this.bookId = bookId;
+            this.bookName = bookName;
+            this.reason = reason;
+            this.message = message;
+        }
+
+        public Long getBookId() {
+            return bookId;
+        }
+
+        public void setBookId(Long bookId) {
+            this.bookId = bookId;
+        }
+
+        public String getBookName() {
+            return bookName;
+        }
+
+        public void setBookName(String bookName) {
+            this.bookName = bookName;
+        }
+
+        public OrderPlacement.Failure getReason() {
+            return reason;
+        }
+
+        public void setReason(OrderPlacement.Failure reason) {
+            this.reason = reason;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
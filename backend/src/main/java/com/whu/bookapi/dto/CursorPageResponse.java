@@ -0,0 +1,88 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: CursorPageResponse.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Generic DTO for keyset (cursor) paginated responses.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added facet counts
+ */
+package com.whu.bookapi.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generic class for cursor pagination response.
+ * @param <T> Type of the records
+ */
+public class CursorPageResponse<T> {
+    /** List of records for the current page */
+    private List<T> records;
+
+    /** Opaque cursor for the next page, null when there are no more records */
+    private String nextCursor;
+
+    /** Whether more records follow this page */
+    private boolean hasMore;
+
+    /** Total number of matching records, null when not requested */
+    private Long total;
+
+    /** Facet name to value counts, null when not requested */
+    private Map<String, Map<String, Long>> facets;
+
+    public CursorPageResponse() {
+    }
+
+    public CursorPageResponse(List<T> records, String nextCursor, Long total) {
+        this.records = records;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+        this.total = total;
+    }
+
+    public List<T> getRecords() {
+        return records;
+    }
+
+    public void setRecords(List<T> records) {
+        this.records = records;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Long>> facets) {
+        this.facets = facets;
+    }
+}
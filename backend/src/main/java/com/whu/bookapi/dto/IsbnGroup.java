@@ -0,0 +1,126 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: IsbnGroup.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: DTO for one edition (ISBN) in grouped search results.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+/**
+ * Data Transfer Object summarising the on-sale listings of one ISBN.
+ */
+public class IsbnGroup {
+    /** ISBN, null for a listing without one (a group of its own) */
+    private String isbn;
+
+    /** Title of the edition */
+    private String bookName;
+
+    /** Author of the edition */
+    private String author;
+
+    /** Publisher of the edition */
+    private String publisher;
+
+    /** Cover image of the cheapest listing */
+    private String coverUrl;
+
+    /** Number of on-sale listings */
+    private int count;
+
+    /** Lowest selling price, null when no listing has a price */
+    private Double minPrice;
+
+    /** Median selling price, null when no listing has a price */
+    private Double medianPrice;
+
+    /** Best condition level on offer */
+    private String bestCondition;
+
+    /** ID of the cheapest listing, for linking to its detail page */
+    private Long sampleBookId;
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public String getBookName() {
+        return bookName;
+    }
+
+    public void setBookName(String bookName) {
+        this.bookName = bookName;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public String getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(String publisher) {
+        this.publisher = publisher;
+    }
+
+    public String getCoverUrl() {
+        return coverUrl;
+    }
+
+    public void setCoverUrl(String coverUrl) {
+        this.coverUrl = coverUrl;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMedianPrice() {
+        return medianPrice;
+    }
+
+    public void setMedianPrice(Double medianPrice) {
+        this.medianPrice = medianPrice;
+    }
+
+    public String getBestCondition() {
+        return bestCondition;
+    }
+
+    public void setBestCondition(String bestCondition) {
+        this.bestCondition = bestCondition;
+    }
+
+    public Long getSampleBookId() {
+        return sampleBookId;
+    }
+
+    public void setSampleBookId(Long sampleBookId) {
+        this.sampleBookId = sampleBookId;
+    }
+}
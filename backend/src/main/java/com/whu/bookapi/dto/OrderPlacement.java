@@ -0,0 +1,59 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderPlacement.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Outcome of placing an order for one book.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+import com.whu.bookapi.model.Order;
+
+/**
+ * Result of OrderService.place: the created order, or why none was created.
+ */
+public class OrderPlacement {
+    /** Why an order could not be placed */
+    public enum Failure {
+        /** The book does not exist */
+        NOT_FOUND,
+        /** The book is not on sale */
+        NOT_ON_SALE,
+        /** The buyer is the seller */
+        OWN_BOOK,
+        /** No stock left */
+        OUT_OF_STOCK,
+        /** Not in the buyer's cart (checkout only) */
+        NOT_IN_CART
+    }
+
+    /** Created order, null on failure */
+    private final Order order;
+
+    /** Failure reason, null on success */
+    private final Failure failure;
+
+    private OrderPlacement(Order order, Failure failure) {
+        this.order = order;
+        this.failure = failure;
+    }
+
+    public static OrderPlacement placed(Order order) {
+        return new OrderPlacement(order, null);
+    }
+
+    public static OrderPlacement failed(Failure failure) {
+        return new OrderPlacement(null, failure);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public Failure getFailure() {
+        return failure;
+    }
+}
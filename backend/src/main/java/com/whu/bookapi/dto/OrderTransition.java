@@ -0,0 +1,53 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderTransition.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Outcome of moving an order to a new status.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+import com.whu.bookapi.model.Order;
+
+/**
+ * Result of OrderStateMachine.transition: the order in its new status, or why it did not move.
+ */
+public class OrderTransition {
+    /** Why a transition was rejected */
+    public enum Failure {
+        /** The order's status does not allow the requested one */
+        ILLEGAL,
+        /** The order changed since it was read (status or version no longer match) */
+        CONFLICT
+    }
+
+    /** Order after the transition, null on failure */
+    private final Order order;
+
+    /** Failure reason, null on success */
+    private final Failure failure;
+
+    private OrderTransition(Order order, Failure failure) {
+        this.order = order;
+        this.failure = failure;
+    }
+
+    public static OrderTransition moved(Order order) {
+        return new OrderTransition(order, null);
+    }
+
+    public static OrderTransition failed(Failure failure) {
+        return new OrderTransition(null, failure);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public Failure getFailure() {
+        return failure;
+    }
+}
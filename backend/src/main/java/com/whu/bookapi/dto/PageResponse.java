@@ -7,10 +7,14 @@
  * 1. Date: 2026-01-02
  *    Author: WiseBookPal Team
  *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added facet counts
  */
 package com.whu.bookapi.dto;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Generic class for pagination response.
@@ -23,6 +27,9 @@ public class PageResponse<T> {
     /** List of records for the current page */
     private List<T> records;
 
+    /** Facet name to value counts, null when not requested */
+    private Map<String, Map<String, Long>> facets;
+
     public PageResponse() {
     }
 
@@ -46,4 +53,12 @@ public class PageResponse<T> {
     public void setRecords(List<T> records) {
         this.records = records;
     }
+
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Long>> facets) {
+        this.facets = facets;
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: PriceSuggestion.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: DTO for the suggested selling price of an ISBN.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.dto;
+
+import java.util.Map;
+
+/**
+ * Data Transfer Object with the price distribution of one ISBN by condition level.
+ */
+public class PriceSuggestion {
+    /** Normalized ISBN */
+    private String isbn;
+
+    /** Condition level the suggestion is for */
+    private String conditionLevel;
+
+    /** Suggested selling price (median for the condition, else across all conditions), null without data */
+    private Double suggestedPrice;
+
+    /** Price distribution per condition level */
+    private Map<String, ConditionStats> byCondition;
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public String getConditionLevel() {
+        return conditionLevel;
+    }
+
+    public void setConditionLevel(String conditionLevel) {
+        this.conditionLevel = conditionLevel;
+    }
+
+    public Double getSuggestedPrice() {
+        return suggestedPrice;
+    }
+
+    public void setSuggestedPrice(Double suggestedPrice) {
+        this.suggestedPrice = suggestedPrice;
+    }
+
+    public Map<String, ConditionStats> getByCondition() {
+        return byCondition;
+    }
+
+    public void setByCondition(Map<String, ConditionStats> byCondition) {
+        this.byCondition = byCondition;
+    }
+
+    /**
+     * Percentiles over sold prices and current listing prices of one condition level.
+     */
+    public static class ConditionStats {
+        /** Number of sold copies in the window */
+        private int soldCount;
+
+        /** Number of copies currently on sale */
+        private int listingCount;
+
+        /** 25th percentile */
+        private double p25;
+
+        /** Median */
+        private double p50;
+
+        /** 75th percentile */
+        private double p75;
+
+        public int getSoldCount() {
+            return soldCount;
+        }
+
+        public void setSoldCount(int soldCount) {
+            this.soldCount = soldCount;
+        }
+
+        public int getListingCount() {
+            return listingCount;
+        }
+
+        public void setListingCount(int listingCount) {
+            this.listingCount = listingCount;
+        }
+
+        public double getP25() {
+            return p25;
+        }
+
+        public void setP25(double p25) {
+            this.p25 = p25;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public void setP50(double p50) {
+            this.p50 = p50;
+        }
+
+        public double getP75() {
+            return p75;
+        }
+
+        public void setP75(double p75) {
+            this.p75 = p75;
+        }
+    }
+}
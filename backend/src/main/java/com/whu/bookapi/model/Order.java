@@ -15,6 +15,9 @@ import java.time.LocalDateTime;
  * 1. Date: 2024-11-20
  *    Author: WiseBookPal Team
  *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added version for compare-and-set status transitions
  */
 public class Order {
     /** Unique ID of the order */
@@ -29,8 +32,10 @@ public class Order {
     private Double price;
     /** Username of the buyer */
     private String buyerName;
-    /** Order status (pending, paid, received, cancelled) */
+    /** Order status (pending, paid, received, cancelled, expired) */
     private String status; 
+    /** Incremented on every status change, for optimistic checks */
+    private Integer version;
     /** Timestamp of order creation */
     private LocalDateTime createTime;
     /** Timestamp when the order expires (if not paid) */
@@ -50,6 +55,8 @@ public class Order {
     public void setBuyerName(String buyerName) { this.buyerName = buyerName; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+    public Integer getVersion() { return version; }
+    public void setVersion(Integer version) { this.version = version; }
     public LocalDateTime getCreateTime() { return createTime; }
     public void setCreateTime(LocalDateTime createTime) { this.createTime = createTime; }
     public Long getExpireAt() { return expireAt; }
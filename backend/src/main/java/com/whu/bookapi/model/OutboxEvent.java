@@ -0,0 +1,62 @@
+package com.whu.bookapi.model;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OutboxEvent.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Model class representing one row of the outbox (outbox_event): a domain event
+ *              recorded with the state change that caused it, waiting to be delivered to its consumers.
+ * Others:
+ * Function List:
+ * 1. Getters and Setters for all fields.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+public class OutboxEvent {
+    /** Unique ID of the event, also its delivery order */
+    private Long id;
+    /** Event type, e.g. order.paid, book.approved, settlement.settled */
+    private String eventType;
+    /** ID of the order or book the event is about */
+    private Long aggregateId;
+    /** Event data */
+    private Map<String, Object> payload;
+    /** Delivery attempts so far */
+    private int attempts;
+    /** Consumers that already handled the event (skipped on retry) */
+    private Set<String> doneConsumers = new java.util.HashSet<>();
+    /** Timestamp of creation */
+    private long createdAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    public Long getAggregateId() { return aggregateId; }
+    public void setAggregateId(Long aggregateId) { this.aggregateId = aggregateId; }
+    public Map<String, Object> getPayload() { return payload; }
+    public void setPayload(Map<String, Object> payload) { this.payload = payload; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public Set<String> getDoneConsumers() { return doneConsumers; }
+    public void setDoneConsumers(Set<String> doneConsumers) { this.doneConsumers = doneConsumers; }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    /** Payload value as text, null when absent */
+    public String text(String key) {
+        Object v = payload == null ? null : payload.get(key);
+        return v == null ? null : v.toString();
+    }
+
+    /** Payload value as a number, null when absent */
+    public Number number(String key) {
+        Object v = payload == null ? null : payload.get(key);
+        return v instanceof Number ? (Number) v : null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.whu.bookapi.model;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: Settlement.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Model class representing one row of the settlement ledger (funds_settlement).
+ *              Each order is settled at most once; the seller's balance after the credit is kept
+ *              on the row as a snapshot.
+ * Others:
+ * Function List:
+ * 1. Getters and Setters for all fields.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+public class Settlement {
+    /** Unique ID of the ledger row */
+    private Long id;
+    /** Settled order (unique) */
+    private Long orderId;
+    /** Seller credited */
+    private String sellerName;
+    /** Title of the book sold */
+    private String bookName;
+    /** Transaction amount */
+    private double amount;
+    /** Amount credited to the seller */
+    private double receivedAmount;
+    /** Seller balance right after this credit */
+    private Double balanceAfter;
+    /** Voucher number shown to the seller */
+    private String voucherNo;
+    /** Settlement time (epoch ms) */
+    private long settleTime;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+    public String getSellerName() { return sellerName; }
+    public void setSellerName(String sellerName) { this.sellerName = sellerName; }
+    public String getBookName() { return bookName; }
+    public void setBookName(String bookName) { this.bookName = bookName; }
+    public double getAmount() { return amount; }
+    public void setAmount(double amount) { this.amount = amount; }
+    public double getReceivedAmount() { return receivedAmount; }
+    public void setReceivedAmount(double receivedAmount) { this.receivedAmount = receivedAmount; }
+    public Double getBalanceAfter() { return balanceAfter; }
+    public void setBalanceAfter(Double balanceAfter) { this.balanceAfter = balanceAfter; }
+    public String getVoucherNo() { return voucherNo; }
+    public void setVoucherNo(String voucherNo) { this.voucherNo = voucherNo; }
+    public long getSettleTime() { return settleTime; }
+    public void setSettleTime(long settleTime) { this.settleTime = settleTime; }
+}
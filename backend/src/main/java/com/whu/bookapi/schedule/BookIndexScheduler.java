@@ -0,0 +1,46 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookIndexScheduler.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Scheduled tasks for the in-memory book search index.
+ *              Builds the index at startup and rebuilds it periodically to repair drift.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Rebuild also reloads flash-sale stock tokens
+ */
+package com.whu.bookapi.schedule;
+
+import com.whu.bookapi.service.BookService;
+import com.whu.bookapi.service.FlashSaleStock;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for search index maintenance.
+ */
+@Component
+public class BookIndexScheduler {
+    private final BookService bookService;
+    private final FlashSaleStock flashSaleStock;
+
+    public BookIndexScheduler(BookService bookService, FlashSaleStock flashSaleStock) {
+        this.bookService = bookService;
+        this.flashSaleStock = flashSaleStock;
+    }
+
+    /**
+     * Function: rebuild
+     * Description: Rebuilds the book search index from the books table.
+     *              Runs once at startup and then every 10 minutes.
+     *              Flash-sale tokens are reloaded from the database stock at the same time.
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 600000)
+    public void rebuild() {
+        bookService.rebuildSearchIndex();
+        flashSaleStock.reload();
+    }
+}
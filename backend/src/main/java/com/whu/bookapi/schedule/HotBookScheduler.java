@@ -0,0 +1,48 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: HotBookScheduler.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Scheduled tasks for the hot books ranking.
+ *              Folds new favorites and orders into the ranking every minute and
+ *              recomputes it from scratch every 6 hours.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.schedule;
+
+import com.whu.bookapi.service.HotBookRanker;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for hot books ranking maintenance.
+ */
+@Component
+public class HotBookScheduler {
+    private final HotBookRanker hotBookRanker;
+
+    public HotBookScheduler(HotBookRanker hotBookRanker) {
+        this.hotBookRanker = hotBookRanker;
+    }
+
+    /**
+     * Function: refresh
+     * Description: Applies time decay and new favorite/order events, then republishes the snapshot.
+     *              Runs every 60 seconds; the first run performs a full rebuild.
+     */
+    @Scheduled(initialDelay = 5000, fixedDelay = 60000)
+    public void refresh() {
+        hotBookRanker.refresh();
+    }
+
+    /**
+     * Function: rebuild
+     * Description: Recomputes the ranking from scratch to drop removed favorites and cart items.
+     */
+    @Scheduled(cron = "0 0 */6 * * *")
+    public void rebuild() {
+        hotBookRanker.rebuild();
+    }
+}
@@ -3,27 +3,58 @@
  * File name: OrderScheduler.java
  * Author: WiseBookPal Team Version: 1.0 Date: 2026-01-02
  * Description: Scheduled tasks for order management.
- *              Handles automatic cancellation of expired orders.
+ *              Handles automatic cancellation of expired orders, auto-confirmation of receipt
+ *              and daily settlement.
  * History:
  * 1. Date: 2026-01-02
  *    Author: WiseBookPal Team
  *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Pending order expiry moved to OrderExpiryQueue
+ * 3. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Auto-confirm and settlement rewritten as checkpointed chunked jobs
+ * 4. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Daily settlement records and checks settlements in the ledger
+ * 5. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Auto-confirm and settlement voucher notices are delivered from the outbox
+ * 6. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: One-time order counter backfill
+ * 7. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Job reports go to the logger; each chunk commits together with its checkpoint
+ * 8. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: One-time backfill of notification-only settlement vouchers into the ledger
  */
 package com.whu.bookapi.schedule;
 
+import com.whu.bookapi.model.Notification;
 import com.whu.bookapi.model.Order;
+import com.whu.bookapi.service.JobCheckpointService;
+import com.whu.bookapi.service.OrderCounterService;
+import com.whu.bookapi.service.OrderExpiryQueue;
 import com.whu.bookapi.service.OrderService;
 import com.whu.bookapi.service.BookService;
 import com.whu.bookapi.service.NotificationService;
 import com.whu.bookapi.service.ComplaintService;
 import com.whu.bookapi.service.UserService;
 import com.whu.bookapi.service.ReviewService;
+import com.whu.bookapi.service.SettlementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.time.LocalDateTime;
 
 /**
@@ -37,103 +68,181 @@ public class OrderScheduler {
     private final ComplaintService complaintService;
     private final UserService userService;
     private final ReviewService reviewService;
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final JobCheckpointService checkpointService;
+    private final SettlementService settlementService;
+    private final OrderCounterService orderCounterService;
+
+    private static final Logger log = LoggerFactory.getLogger(OrderScheduler.class);
+
+    /** Orders per chunk of the confirm and settlement jobs */
+    private static final int CHUNK_SIZE = 500;
+    private static final String JOB_CONFIRM = "autoConfirmReceive";
+    private static final String JOB_SETTLEMENT = "dailySettlement";
 
-    public OrderScheduler(OrderService orderService, BookService bookService, NotificationService notificationService, ComplaintService complaintService, UserService userService, ReviewService reviewService) {
+    public OrderScheduler(OrderService orderService, BookService bookService, NotificationService notificationService, ComplaintService complaintService, UserService userService, ReviewService reviewService, OrderExpiryQueue orderExpiryQueue, JobCheckpointService checkpointService, SettlementService settlementService, OrderCounterService orderCounterService) {
         this.orderService = orderService;
         this.bookService = bookService;
         this.notificationService = notificationService;
         this.complaintService = complaintService;
         this.userService = userService;
         this.reviewService = reviewService;
+        this.orderExpiryQueue = orderExpiryQueue;
+        this.checkpointService = checkpointService;
+        this.settlementService = settlementService;
+        this.orderCounterService = orderCounterService;
+    }
+
+    /**
+     * Function: backfillOrderCounters
+     * Description: Counts existing orders into user_order_counter once per database. Runs at startup and
+     *              retries every 10 minutes until the backfill is committed; after that it returns at once.
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 600000)
+    public void backfillOrderCounters() {
+        try {
+            int written = orderCounterService.backfill();
+            if (written > 0) log.info("Order counter backfill: {} counter rows written", written);
+        } catch (RuntimeException e) {
+            log.warn("Order counter backfill failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Function: backfillSettlementVouchers
+     * Description: Copies settlement vouchers that exist only as notifications into the settlement ledger
+     *              once per database, so the seller export keeps them. Runs at startup and retries every
+     *              10 minutes until the backfill is committed; after that it returns at once.
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 600000)
+    public void backfillSettlementVouchers() {
+        try {
+            int written = settlementService.backfillVouchers();
+            if (written > 0) log.info("Settlement voucher backfill: {} ledger rows written", written);
+        } catch (RuntimeException e) {
+            log.warn("Settlement voucher backfill failed, will retry: {}", e.getMessage());
+        }
     }
 
     /**
      * Function: autoCancelPending
-     * Description: Automatically cancels pending orders that have expired.
-     *              Runs every 60 seconds.
-     * Logic:
-     * 1. List all pending orders.
-     * 2. Check if current time > expiration time.
-     * 3. If expired, set status to "expired" and release book stock.
+     * Description: Keeps the order expiry queue fed. Pending orders expire from OrderExpiryQueue
+     *              within about a second of expire_at; this job loads them at startup and then
+     *              every 60 seconds picks up pending orders expiring within the next minute
+     *              (e.g. created by another instance) through the (status, expire_at) index.
      */
-    @Scheduled(fixedDelay = 60000)
+    @Scheduled(initialDelay = 0, fixedDelay = 60000)
     public void autoCancelPending() {
-        List<Order> all = orderService.listAll();
-        long now = System.currentTimeMillis();
-        for (Order o : all) {
-            if ("pending".equals(o.getStatus())) {
-                Long expireAt = o.getExpireAt();
-                if (expireAt != null && expireAt > 0 && now > expireAt) {
-                    orderService.setStatus(o.getId(), "expired");
-                    bookService.releaseStock(o.getBookId());
-                }
-            }
-        }
+        orderExpiryQueue.sync();
     }
 
+    /**
+     * Function: autoConfirmReceive
+     * Description: Confirms receipt of orders paid more than 7 days ago; seller notices go out from the outbox.
+     *              Runs daily at 02:15 as a chunked pass over the (status, create_time) index.
+     */
     @Scheduled(cron = "0 15 2 * * *")
     public void autoConfirmReceive() {
-        List<Order> all = orderService.listAll();
-        long now = System.currentTimeMillis();
-        for (Order o : all) {
-            if (!"paid".equals(o.getStatus())) continue;
-            LocalDateTime ct = o.getCreateTime();
-            if (ct == null) continue;
-            long createMs = ct.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            if (now - createMs >= 7L * 24 * 60 * 60 * 1000) {
-                Order updated = orderService.setStatus(o.getId(), "received");
-                if (updated != null) {
-                    notificationService.addToUser(
-                            updated.getSellerName(),
-                            "order",
-                            "系统已自动确认收货",
-                            "订单#" + updated.getId() + "（" + updated.getBookName() + "）交易完成超过7天，系统已自动确认收货，后续将参与每日凌晨批量结算"
-                    );
-                }
-            }
-        }
+        resumeUnfinished();
+        confirmReceived(LocalDate.now().toString());
     }
+
+    /**
+     * Function: dailySettlement
+     * Description: Settles orders received yesterday through the settlement ledger (vouchers go out from
+     *              the outbox), unless the seller account is unhealthy or the order has an unresolved complaint.
+     *              Runs daily at 02:30.
+     */
     @Scheduled(cron = "0 30 2 * * *")
     public void dailySettlement() {
-        List<Order> all = orderService.listAll();
-        LocalDate yesterday = LocalDate.now().minusDays(1);
+        resumeUnfinished();
+        settleDay(LocalDate.now().minusDays(1));
+    }
+
+    /**
+     * Function: resumeUnfinished
+     * Description: Resumes a confirm or settlement run whose checkpoint shows it stopped part-way,
+     *              e.g. because the process was restarted. Runs 2 minutes after startup, hourly, and
+     *              before each new run so a run's checkpoint is never replaced before it completes.
+     */
+    @Scheduled(initialDelay = 120000, fixedDelay = 3600000)
+    public void resumeUnfinished() {
+        String confirmKey = checkpointService.unfinishedRunKey(JOB_CONFIRM);
+        if (confirmKey != null) confirmReceived(confirmKey);
+        String settleKey = checkpointService.unfinishedRunKey(JOB_SETTLEMENT);
+        if (settleKey != null) settleDay(LocalDate.parse(settleKey));
+    }
+
+    private void confirmReceived(String runKey) {
+        JobCheckpointService.Checkpoint cp = checkpointService.begin(JOB_CONFIRM, runKey);
+        if (cp == null) return;
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(7);
+        while (true) {
+            List<Order> chunk = orderService.listChunk("paid", null, cutoff, cp.getLastCreateTime(), cp.getLastId(), CHUNK_SIZE);
+            if (chunk.isEmpty()) break;
+            Order last = chunk.get(chunk.size() - 1);
+            checkpointService.processChunk(cp, last.getCreateTime(), last.getId(), chunk.size(),
+                    () -> orderService.markReceived(chunk).size());
+            if (chunk.size() < CHUNK_SIZE) break;
+        }
+        log.info("{}", checkpointService.finish(cp));
+    }
+
+    private void settleDay(LocalDate day) {
+        JobCheckpointService.Checkpoint cp = checkpointService.begin(JOB_SETTLEMENT, day.toString());
+        if (cp == null) return;
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay();
+        while (true) {
+            List<Order> chunk = orderService.listChunk("received", from, to, cp.getLastCreateTime(), cp.getLastId(), CHUNK_SIZE);
+            if (chunk.isEmpty()) break;
+            Order last = chunk.get(chunk.size() - 1);
+            checkpointService.processChunk(cp, last.getCreateTime(), last.getId(), chunk.size(), () -> settleChunk(chunk));
+            if (chunk.size() < CHUNK_SIZE) break;
+        }
+        log.info("{}", checkpointService.finish(cp));
+    }
+
+    /** Settles one chunk of received orders and returns how many were settled; runs in the chunk's transaction */
+    private int settleChunk(List<Order> chunk) {
+        Set<String> sellers = new HashSet<>();
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Order o : chunk) {
+            sellers.add(o.getSellerName());
+            ids.add(o.getId());
+        }
+        Set<Long> alreadySettled = settlementService.settledOrderIds(ids);
+        Set<String> healthy = userService.healthySellers(sellers);
+        Set<Long> complained = complaintService.ordersWithPendingComplaint(ids);
         long nowMs = System.currentTimeMillis();
-        for (Order o : all) {
-            if (!"received".equals(o.getStatus())) continue;
-            LocalDateTime ct = o.getCreateTime();
-            if (ct == null) continue;
-            LocalDate orderDate = ct.toLocalDate();
-            if (!orderDate.equals(yesterday)) continue;
-            if (notificationService.hasSettlementRecord(o.getSellerName(), o.getId())) continue;
-            if (!userService.isSellerAccountHealthy(o.getSellerName())) {
-                notificationService.addToUser(
-                        o.getSellerName(),
-                        "settlement",
-                        "账户异常，结算暂停",
-                        "订单#" + o.getId() + "（" + o.getBookName() + "）因账户状态异常已暂停结算，请尽快更新账户信息，修复后24小时内自动补结算"
-                );
+        List<Notification> notices = new ArrayList<>();
+        int settled = 0;
+        for (Order o : chunk) {
+            if (alreadySettled.contains(o.getId())) continue;
+            if (!healthy.contains(o.getSellerName())) {
+                notices.add(settlementNotice(o.getSellerName(), "账户异常，结算暂停",
+                        "订单#" + o.getId() + "（" + o.getBookName() + "）因账户状态异常已暂停结算，请尽快更新账户信息，修复后24小时内自动补结算"));
                 continue;
             }
-            if (complaintService.hasPendingComplaint(o.getId())) {
-                notificationService.addToUser(
-                        o.getSellerName(),
-                        "settlement",
-                        "结算中止（存在未解决投诉）",
-                        "订单#" + o.getId() + "存在未解决投诉，结算已中止，待纠纷处理完成后将重新核算结算金额"
-                );
+            if (complained.contains(o.getId())) {
+                notices.add(settlementNotice(o.getSellerName(), "结算中止（存在未解决投诉）",
+                        "订单#" + o.getId() + "存在未解决投诉，结算已中止，待纠纷处理完成后将重新核算结算金额"));
                 continue;
             }
-            double amount = o.getPrice() == null ? 0.0 : o.getPrice();
-            double receivedAmount = amount; // 可在纠纷后调整
-            notificationService.addSettlementVoucher(
-                    o.getSellerName(),
-                    o.getId(),
-                    o.getBookName(),
-                    amount,
-                    receivedAmount,
-                    nowMs
-            );
+            double receivedAmount = o.getPrice() == null ? 0.0 : o.getPrice(); // 可在纠纷后调整
+            if (settlementService.settle(o, receivedAmount, nowMs) != null) settled++;
         }
+        notificationService.addToUsers(notices);
+        return settled;
+    }
+
+    private static Notification settlementNotice(String toUser, String title, String content) {
+        Notification n = new Notification();
+        n.setToUser(toUser);
+        n.setType("settlement");
+        n.setTitle(title);
+        n.setContent(content);
+        return n;
     }
 
     @Scheduled(cron = "0 5 * * * *")
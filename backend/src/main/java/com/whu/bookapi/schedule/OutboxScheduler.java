@@ -0,0 +1,61 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OutboxScheduler.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Scheduled tasks for the transactional outbox.
+ *              Delivers due events every second and purges delivered events nightly.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Log through SLF4J instead of standard output
+ */
+package com.whu.bookapi.schedule;
+
+import com.whu.bookapi.service.OutboxDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for outbox delivery.
+ */
+@Component
+public class OutboxScheduler {
+    /** Delivered events are kept this long for troubleshooting */
+    private static final long RETAIN_DELIVERED_MS = 7L * 24 * 60 * 60 * 1000;
+    private static final Logger log = LoggerFactory.getLogger(OutboxScheduler.class);
+
+    private final OutboxDispatcher outboxDispatcher;
+
+    public OutboxScheduler(OutboxDispatcher outboxDispatcher) {
+        this.outboxDispatcher = outboxDispatcher;
+    }
+
+    /**
+     * Function: dispatch
+     * Description: Delivers every due event, one second after the previous pass finished.
+     *              Events left by a crash or a failed consumer are picked up by the next pass.
+     */
+    @Scheduled(initialDelay = 5000, fixedDelay = 1000)
+    public void dispatch() {
+        try {
+            outboxDispatcher.dispatchDue();
+        } catch (RuntimeException e) {
+            log.warn("Outbox dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Function: purge
+     * Description: Deletes delivered events older than a week. Runs daily at 03:45.
+     */
+    @Scheduled(cron = "0 45 3 * * *")
+    public void purge() {
+        int removed = outboxDispatcher.purgeDelivered(RETAIN_DELIVERED_MS);
+        if (removed > 0) log.info("Outbox purge: {} delivered events removed", removed);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: PriceStatsScheduler.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Scheduled tasks for the per-ISBN price statistics.
+ *              Folds settled orders into the statistics every minute and
+ *              reloads the last year of sales every night.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ */
+package com.whu.bookapi.schedule;
+
+import com.whu.bookapi.service.IsbnPriceStats;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for price statistics maintenance.
+ */
+@Component
+public class PriceStatsScheduler {
+    private final IsbnPriceStats isbnPriceStats;
+
+    public PriceStatsScheduler(IsbnPriceStats isbnPriceStats) {
+        this.isbnPriceStats = isbnPriceStats;
+    }
+
+    /**
+     * Function: refresh
+     * Description: Adds orders whose payment window has closed since the last run.
+     *              Runs every 60 seconds; the first run performs a full rebuild.
+     */
+    @Scheduled(initialDelay = 10000, fixedDelay = 60000)
+    public void refresh() {
+        isbnPriceStats.refresh();
+    }
+
+    /**
+     * Function: rebuild
+     * Description: Reloads the last year of sales, dropping older and refunded orders.
+     */
+    @Scheduled(cron = "0 30 4 * * *")
+    public void rebuild() {
+        isbnPriceStats.rebuild();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SignedTokenScheduler.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Scheduled tasks for signed session tokens.
+ *              Reloads the signing keys and picks up revocations recorded by other instances every 10 seconds.
+ * History:
+ * 1. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Initial implementation
+ * 2. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Periodic signing key reload
+ */
+package com.whu.bookapi.schedule;
+
+import com.whu.bookapi.service.SignedTokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for signed token keys and revocations.
+ */
+@Component
+public class SignedTokenScheduler {
+    private static final Logger log = LoggerFactory.getLogger(SignedTokenScheduler.class);
+
+    private final SignedTokenService signedTokenService;
+
+    public SignedTokenScheduler(SignedTokenService signedTokenService) {
+        this.signedTokenService = signedTokenService;
+    }
+
+    /**
+     * Function: refresh
+     * Description: Reloads the key ring, so a rotation on another instance switches this one to the new key,
+     *              and loads revocations recorded since the previous run, so a logout or blacklist on another
+     *              instance takes effect here within about 10 seconds. Runs at startup and every 10 seconds.
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 10000)
+    public void refresh() {
+        try {
+            signedTokenService.reloadKeys();
+            signedTokenService.syncRevocations();
+        } catch (RuntimeException e) {
+            log.warn("Signed token refresh failed: {}", e.getMessage());
+        }
+    }
+}
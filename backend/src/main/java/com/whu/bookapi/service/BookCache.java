@@ -0,0 +1,154 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookCache.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Bounded LRU cache of books by id behind BookService.get.
+ *              Entries are copied in and out, so callers may modify the Book they receive.
+ *              Writers invalidate the id; a load that raced with an invalidation is not cached.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+@Component
+public class BookCache {
+    private final int maxSize;
+    private final LinkedHashMap<Long, Book> entries;
+    /** Bumped on every invalidation; loads started before the bump are discarded */
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public BookCache(@Value("${app.cache.book-max-size:10000}") int maxSize) {
+        this.maxSize = Math.max(maxSize, 1);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Book> eldest) {
+                if (size() <= BookCache.this.maxSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Function: get
+     * Description: Looks up a cached book and records a hit or miss.
+     * Called By: BookService.get
+     * Input: id (Long) - Book ID
+     * Output: Book - A copy of the cached book, or null on a miss
+     * Return: Book
+     */
+    public synchronized Book get(Long id) {
+        Book b = entries.get(id);
+        if (b == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(b);
+    }
+
+    /**
+     * Function: generation
+     * Description: Current invalidation generation, read before loading a missed book.
+     * Called By: BookService.get
+     * Return: long
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Function: put
+     * Description: Caches a freshly loaded book unless it was invalidated while loading.
+     * Called By: BookService.get
+     * Input: book (Book) - Loaded book
+     *        loadedAt (long) - Generation read before the load started
+     * Return: void
+     */
+    public synchronized void put(Book book, long loadedAt) {
+        if (book == null || book.getId() == null || loadedAt != generation) return;
+        entries.put(book.getId(), copy(book));
+    }
+
+    /**
+     * Function: invalidate
+     * Description: Drops a book after it was written.
+     * Called By: BookService write paths
+     * Input: id (Long) - Book ID
+     * Return: void
+     */
+    public synchronized void invalidate(Long id) {
+        generation++;
+        if (id != null && entries.remove(id) != null) invalidations++;
+    }
+
+    /**
+     * Function: invalidateSeller
+     * Description: Drops every cached book of a seller, used when the account's listings are removed in bulk.
+     * Called By: UserService.deleteUser
+     * Input: sellerName (String) - Seller username
+     * Return: void
+     */
+    public synchronized void invalidateSeller(String sellerName) {
+        generation++;
+        if (sellerName == null) return;
+        int before = entries.size();
+        entries.values().removeIf(b -> sellerName.equals(b.getSellerName()));
+        invalidations += before - entries.size();
+    }
+
+    /**
+     * Function: stats
+     * Description: Hit/miss/eviction counters for sizing the cache.
+     * Called By: BookService.cacheStats
+     * Output: Map<String, Object> - size, maxSize, hits, misses, hitRate, evictions, invalidations
+     * Return: Map<String, Object>
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long lookups = hits + misses;
+        m.put("size", entries.size());
+        m.put("maxSize", maxSize);
+        m.put("hits", hits);
+        m.put("misses", misses);
+        m.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        m.put("evictions", evictions);
+        m.put("invalidations", invalidations);
+        return m;
+    }
+
+    private static Book copy(Book src) {
+        Book b = new Book();
+        b.setId(src.getId());
+        b.setBookName(src.getBookName());
+        b.setAuthor(src.getAuthor());
+        b.setOriginalPrice(src.getOriginalPrice());
+        b.setSellPrice(src.getSellPrice());
+        b.setDescription(src.getDescription());
+        b.setSellerName(src.getSellerName());
+        b.setCoverUrl(src.getCoverUrl());
+        b.setIsbn(src.getIsbn());
+        b.setPublisher(src.getPublisher());
+        b.setPublishDate(src.getPublishDate());
+        b.setConditionLevel(src.getConditionLevel());
+        b.setStock(src.getStock());
+        b.setStatus(src.getStatus());
+        b.setCreatedAt(src.getCreatedAt());
+        b.setSellerType(src.getSellerType());
+        b.setAuditReason(src.getAuditReason());
+        b.setAuditTime(src.getAuditTime());
+        return b;
+    }
+}
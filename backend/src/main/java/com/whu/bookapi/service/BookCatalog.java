@@ -0,0 +1,598 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookCatalog.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Columnar snapshot of on-sale listings for keyword-less browsing.
+ *              Ids, prices, creation times, stock and dictionary-encoded condition levels live in
+ *              parallel primitive arrays, so price/condition filtering and sorting never box.
+ *              Queries return only the ids of one page; callers hydrate them from BookSearchIndex.
+ *              Mirrors BookSearchIndex through BookListingListener; removals swap the last slot in.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Added keyword candidates, seller type and single-pass facet counts.
+ * WiseBookPal Team  2026-10-17      1.2                Index listener registered after construction.
+ * WiseBookPal Team  2026-10-17      1.3                Unsorted match scan feeding ids to a consumer, for grouped search.
+ */
+@Component
+public class BookCatalog implements BookListingListener {
+    private static final int SORT_ID = 0;
+    private static final int SORT_PRICE_ASC = 1;
+    private static final int SORT_PRICE_DESC = 2;
+    private static final int SORT_CREATED_DESC = 3;
+    /** Dictionary code of a missing value */
+    private static final int NONE = -1;
+    /** Dictionary code of a filter value no listing has */
+    private static final int UNKNOWN = -2;
+    /** Upper bounds of the price facet buckets; the last bucket is open-ended */
+    private static final double[] PRICE_BUCKET_BOUNDS = {10, 20, 50, 100};
+    private static final String[] PRICE_BUCKET_LABELS = {"0-10", "10-20", "20-50", "50-100", "100+"};
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size = 0;
+    private long[] ids = new long[0];
+    /** Sell price, NaN when the listing has none */
+    private double[] prices = new double[0];
+    /** Creation time, Long.MIN_VALUE when unknown */
+    private long[] createdAt = new long[0];
+    private int[] stock = new int[0];
+    private int[] conditionCodes = new int[0];
+    private int[] sellerTypeCodes = new int[0];
+    private final Dictionary conditions = new Dictionary();
+    private final Dictionary sellerTypes = new Dictionary();
+    private final SlotMap slots = new SlotMap();
+    private volatile boolean ready = false;
+
+    private final BookSearchIndex searchIndex;
+
+    public BookCatalog(BookSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    @PostConstruct
+    void register() {
+        searchIndex.addListener(this);
+    }
+
+    /**
+     * Function: isReady
+     * Description: Whether the catalog has been loaded from the listings.
+     * Return: boolean
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Function: query
+     * Description: Filters by price range and condition, sorts, and returns one page of ids.
+     *              Order matches BookSearchIndex: price ascending puts unpriced listings first,
+     *              descending orders put them last, ties break on id in the sort direction.
+     *              Facets are counted in the same pass: each facet ignores its own filter, so the
+     *              condition counts show what picking another condition would return.
+     * Called By: BookService.search
+     * Input: candidates (long[]) - Ids matching the keyword, null for every listing
+     *        minPrice (Double) - Minimum price filter
+     *        maxPrice (Double) - Maximum price filter
+     *        conditionLevel (String) - Condition level filter
+     *        sortBy (String) - "price_asc", "price_desc", "created_desc", otherwise id order
+     *        offset (int) - Rows to skip
+     *        limit (int) - Page size
+     *        withFacets (boolean) - Whether to count condition, price bucket and seller type facets
+     * Output: IdPage - Total match count, the ids of the page and the facets when requested
+     * Return: IdPage
+     */
+    public IdPage query(long[] candidates, Double minPrice, Double maxPrice, String conditionLevel, String sortBy,
+                        int offset, int limit, boolean withFacets) {
+        int sort = sortCode(sortBy);
+        lock.readLock().lock();
+        try {
+            FacetCounts facets = withFacets ? new FacetCounts() : null;
+            int[] matched = filter(candidates, minPrice, maxPrice, conditionLevel, false, facets);
+            sortSlots(matched, sort);
+            int from = Math.min(Math.max(offset, 0), matched.length);
+            int to = Math.min(from + Math.max(limit, 0), matched.length);
+            return new IdPage(matched.length, idsOf(matched, from, to), facets == null ? null : facets.toMap());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function: queryAfter
+     * Description: Keyset variant of query: ids of the listings that sort strictly after the cursor.
+     *              Price orders skip unpriced listings, matching the SQL keyset path.
+     * Called By: BookService.pageByCursor
+     * Input: candidates, minPrice, maxPrice, conditionLevel, sortBy - Same as query
+     *        after (PageCursor) - Last row of the previous page, null for the first page
+     *        limit (int) - Maximum ids to return
+     *        withFacets (boolean) - Same as query
+     * Output: IdPage - Total match count, the ids after the cursor and the facets when requested
+     * Return: IdPage
+     */
+    public IdPage queryAfter(long[] candidates, Double minPrice, Double maxPrice, String conditionLevel, String sortBy,
+                             PageCursor after, int limit, boolean withFacets) {
+        int sort = sortCode(sortBy);
+        boolean priceSort = sort == SORT_PRICE_ASC || sort == SORT_PRICE_DESC;
+        lock.readLock().lock();
+        try {
+            FacetCounts facets = withFacets ? new FacetCounts() : null;
+            int[] matched = filter(candidates, minPrice, maxPrice, conditionLevel, priceSort, facets);
+            sortSlots(matched, sort);
+            int from = 0;
+            if (after != null) {
+                double probePrice = priceSort ? toDouble(after.keyAsDouble()) : 0;
+                long probeCreated = sort == SORT_CREATED_DESC ? toLong(after.keyAsLong()) : 0;
+                long probeId = after.getId();
+                int lo = 0;
+                int hi = matched.length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (compareToProbe(matched[mid], sort, probePrice, probeCreated, probeId) <= 0) lo = mid + 1;
+                    else hi = mid;
+                }
+                from = lo;
+            }
+            int to = Math.min(from + Math.max(limit, 0), matched.length);
+            return new IdPage(matched.length, idsOf(matched, from, to), facets == null ? null : facets.toMap());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function: forEachMatch
+     * Description: Passes the id of every listing matching the filters to the sink, in slot order and without
+     *              sorting or collecting them, and counts facets in the same pass as query does.
+     *              The sink runs under the catalog's read lock and must not change listings.
+     * Called By: BookService.searchGrouped (through IsbnGroupIndex.groups)
+     * Input: candidates, minPrice, maxPrice, conditionLevel, withFacets - Same as query
+     *        sink (LongConsumer) - Receives each matching listing id
+     * Output: Map<String, Map<String, Long>> - The facets when requested, otherwise null
+     * Return: Map<String, Map<String, Long>>
+     */
+    public Map<String, Map<String, Long>> forEachMatch(long[] candidates, Double minPrice, Double maxPrice, String conditionLevel,
+                                                       boolean withFacets, LongConsumer sink) {
+        lock.readLock().lock();
+        try {
+            FacetCounts facets = withFacets ? new FacetCounts() : null;
+            scan(candidates, minPrice, maxPrice, conditionLevel, false, facets, null, sink);
+            return facets == null ? null : facets.toMap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function: memoryStats
+     * Description: Reports the memory held by the columns and the id index, and extrapolates it to 100k listings.
+     * Called By: BookService.catalogStats
+     * Output: Map<String, Object> - listings, capacity, columnBytes, indexBytes, dictionaryEntries,
+     *         bytesPerListing, bytesPer100k
+     * Return: Map<String, Object>
+     */
+    public Map<String, Object> memoryStats() {
+        lock.readLock().lock();
+        try {
+            long columnBytes = (long) ids.length * (Long.BYTES + Double.BYTES + Long.BYTES + 3 * Integer.BYTES);
+            long indexBytes = slots.bytes();
+            // Per-listing cost at the current fill, counting growth headroom in the arrays
+            double perListing = size == 0
+                    ? Long.BYTES + Double.BYTES + Long.BYTES + 3 * Integer.BYTES + 2.0 * (Long.BYTES + Integer.BYTES)
+                    : (double) (columnBytes + indexBytes) / size;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("listings", size);
+            m.put("capacity", ids.length);
+            m.put("columnBytes", columnBytes);
+            m.put("indexBytes", indexBytes);
+            m.put("dictionaryEntries", conditions.size() + sellerTypes.size());
+            m.put("bytesPerListing", Math.round(perListing));
+            m.put("bytesPer100k", Math.round(perListing * 100_000));
+            return m;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingChanged(Book before, Book after) {
+        lock.writeLock().lock();
+        try {
+            if (after != null) set(after);
+            else if (before != null) clear(before.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingsReloaded(Collection<Book> listings) {
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            int capacity = Math.max(16, listings.size() + listings.size() / 4);
+            ids = new long[capacity];
+            prices = new double[capacity];
+            createdAt = new long[capacity];
+            stock = new int[capacity];
+            conditionCodes = new int[capacity];
+            sellerTypeCodes = new int[capacity];
+            conditions.clear();
+            sellerTypes.clear();
+            slots.clear(capacity);
+            for (Book b : listings) set(b);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void set(Book b) {
+        if (b == null || b.getId() == null) return;
+        long id = b.getId();
+        int slot = slots.get(id);
+        if (slot < 0) {
+            ensureCapacity(size + 1);
+            slot = size++;
+            slots.put(id, slot);
+        }
+        ids[slot] = id;
+        prices[slot] = b.getSellPrice() == null ? Double.NaN : b.getSellPrice();
+        createdAt[slot] = b.getCreatedAt() == null ? Long.MIN_VALUE : b.getCreatedAt();
+        stock[slot] = b.getStock() == null ? 0 : b.getStock();
+        conditionCodes[slot] = conditions.encode(b.getConditionLevel());
+        sellerTypeCodes[slot] = sellerTypes.encode(b.getSellerType());
+    }
+
+    private void clear(Long id) {
+        if (id == null) return;
+        int slot = slots.remove(id);
+        if (slot < 0) return;
+        int last = --size;
+        if (slot != last) {
+            ids[slot] = ids[last];
+            prices[slot] = prices[last];
+            createdAt[slot] = createdAt[last];
+            stock[slot] = stock[last];
+            conditionCodes[slot] = conditionCodes[last];
+            sellerTypeCodes[slot] = sellerTypeCodes[last];
+            slots.put(ids[slot], slot);
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ids.length) return;
+        int capacity = Math.max(needed, Math.max(16, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        stock = Arrays.copyOf(stock, capacity);
+        conditionCodes = Arrays.copyOf(conditionCodes, capacity);
+        sellerTypeCodes = Arrays.copyOf(sellerTypeCodes, capacity);
+    }
+
+    private int[] filter(long[] candidates, Double minPrice, Double maxPrice, String conditionLevel,
+                         boolean requirePrice, FacetCounts facets) {
+        int[] out = new int[candidates == null ? size : candidates.length];
+        int m = scan(candidates, minPrice, maxPrice, conditionLevel, requirePrice, facets, out, null);
+        return m == out.length ? out : Arrays.copyOf(out, m);
+    }
+
+    /** Writes the matching slots to out, or passes their ids to sink when out is null; returns the match count */
+    private int scan(long[] candidates, Double minPrice, Double maxPrice, String conditionLevel,
+                     boolean requirePrice, FacetCounts facets, int[] out, LongConsumer sink) {
+        boolean hasMin = minPrice != null;
+        boolean hasMax = maxPrice != null;
+        double min = hasMin ? minPrice : 0;
+        double max = hasMax ? maxPrice : 0;
+        boolean byCondition = conditionLevel != null && !conditionLevel.isEmpty();
+        int condition = byCondition ? conditions.lookup(conditionLevel) : NONE;
+        if (byCondition && condition == UNKNOWN && facets == null) return 0;
+        boolean needPrice = requirePrice || hasMin || hasMax;
+        int[] conditionCounts = facets == null ? null : (facets.conditions = new int[conditions.size()]);
+        int[] bucketCounts = facets == null ? null : (facets.priceBuckets = new int[PRICE_BUCKET_LABELS.length]);
+        int[] sellerTypeCounts = facets == null ? null : (facets.sellerTypes = new int[sellerTypes.size()]);
+        int n = candidates == null ? size : candidates.length;
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int i = candidates == null ? k : slots.get(candidates[k]);
+            if (i < 0 || stock[i] <= 0) continue;
+            double p = prices[i];
+            boolean pricePass = !(needPrice && Double.isNaN(p)) && !(hasMin && p < min) && !(hasMax && p > max);
+            boolean conditionPass = !byCondition || conditionCodes[i] == condition;
+            if (facets != null) {
+                if (pricePass && conditionCodes[i] >= 0) conditionCounts[conditionCodes[i]]++;
+                if (conditionPass && !Double.isNaN(p)) bucketCounts[priceBucket(p)]++;
+                if (pricePass && conditionPass && sellerTypeCodes[i] >= 0) sellerTypeCounts[sellerTypeCodes[i]]++;
+            }
+            if (pricePass && conditionPass) {
+                if (out != null) out[m] = i;
+                else sink.accept(ids[i]);
+                m++;
+            }
+        }
+        return m;
+    }
+
+    private static int priceBucket(double p) {
+        int b = 0;
+        while (b < PRICE_BUCKET_BOUNDS.length && p >= PRICE_BUCKET_BOUNDS[b]) b++;
+        return b;
+    }
+
+    private long[] idsOf(int[] matched, int from, int to) {
+        long[] res = new long[to - from];
+        for (int i = from; i < to; i++) res[i - from] = ids[matched[i]];
+        return res;
+    }
+
+    /** Stable merge sort of slot numbers; keeps comparisons on the primitive columns */
+    private void sortSlots(int[] a, int sort) {
+        if (a.length < 2) return;
+        int[] buf = new int[a.length];
+        for (int width = 1; width < a.length; width <<= 1) {
+            for (int lo = 0; lo < a.length - width; lo += width << 1) {
+                int mid = lo + width;
+                int hi = Math.min(lo + (width << 1), a.length);
+                if (compare(a[mid - 1], a[mid], sort) <= 0) continue;
+                System.arraycopy(a, lo, buf, lo, hi - lo);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) a[k++] = compare(buf[i], buf[j], sort) <= 0 ? buf[i++] : buf[j++];
+                while (i < mid) a[k++] = buf[i++];
+                while (j < hi) a[k++] = buf[j++];
+            }
+        }
+    }
+
+    private int compare(int x, int y, int sort) {
+        switch (sort) {
+            case SORT_PRICE_ASC: {
+                int c = Double.compare(sortPrice(prices[x]), sortPrice(prices[y]));
+                return c != 0 ? c : Long.compare(ids[x], ids[y]);
+            }
+            case SORT_PRICE_DESC: {
+                int c = Double.compare(sortPrice(prices[y]), sortPrice(prices[x]));
+                return c != 0 ? c : Long.compare(ids[y], ids[x]);
+            }
+            case SORT_CREATED_DESC: {
+                int c = Long.compare(createdAt[y], createdAt[x]);
+                return c != 0 ? c : Long.compare(ids[y], ids[x]);
+            }
+            default:
+                return Long.compare(ids[x], ids[y]);
+        }
+    }
+
+    private int compareToProbe(int x, int sort, double price, long created, long id) {
+        switch (sort) {
+            case SORT_PRICE_ASC: {
+                int c = Double.compare(sortPrice(prices[x]), price);
+                return c != 0 ? c : Long.compare(ids[x], id);
+            }
+            case SORT_PRICE_DESC: {
+                int c = Double.compare(price, sortPrice(prices[x]));
+                return c != 0 ? c : Long.compare(id, ids[x]);
+            }
+            case SORT_CREATED_DESC: {
+                int c = Long.compare(created, createdAt[x]);
+                return c != 0 ? c : Long.compare(id, ids[x]);
+            }
+            default:
+                return Long.compare(ids[x], id);
+        }
+    }
+
+    /** Unpriced listings sort below every price: first ascending, last descending */
+    private static double sortPrice(double p) {
+        return Double.isNaN(p) ? Double.NEGATIVE_INFINITY : p;
+    }
+
+    private static double toDouble(Double d) {
+        return d == null ? Double.NEGATIVE_INFINITY : d;
+    }
+
+    private static long toLong(Long l) {
+        return l == null ? Long.MIN_VALUE : l;
+    }
+
+    private static int sortCode(String sortBy) {
+        if ("price_asc".equals(sortBy)) return SORT_PRICE_ASC;
+        if ("price_desc".equals(sortBy)) return SORT_PRICE_DESC;
+        if ("created_desc".equals(sortBy)) return SORT_CREATED_DESC;
+        return SORT_ID;
+    }
+
+    /**
+     * One page of matching listing ids and the total number of matches.
+     */
+    public static class IdPage {
+        private final long total;
+        private final long[] ids;
+        private final Map<String, Map<String, Long>> facets;
+
+        public IdPage(long total, long[] ids, Map<String, Map<String, Long>> facets) {
+            this.total = total;
+            this.ids = ids;
+            this.facets = facets;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long[] getIds() {
+            return ids;
+        }
+
+        public Map<String, Map<String, Long>> getFacets() {
+            return facets;
+        }
+    }
+
+    /** Facet counters filled by one filter pass, indexed by dictionary code or price bucket */
+    private class FacetCounts {
+        private int[] conditions;
+        private int[] priceBuckets;
+        private int[] sellerTypes;
+
+        /** Caller holds the read lock, so dictionary codes still resolve to the counted values */
+        Map<String, Map<String, Long>> toMap() {
+            Map<String, Map<String, Long>> m = new LinkedHashMap<>();
+            m.put("conditionLevel", byCount(conditions, BookCatalog.this.conditions));
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            for (int i = 0; i < PRICE_BUCKET_LABELS.length; i++) buckets.put(PRICE_BUCKET_LABELS[i], (long) priceBuckets[i]);
+            m.put("priceRange", buckets);
+            m.put("sellerType", byCount(sellerTypes, BookCatalog.this.sellerTypes));
+            return m;
+        }
+
+        private Map<String, Long> byCount(int[] counts, Dictionary dictionary) {
+            List<Integer> codes = new ArrayList<>();
+            for (int c = 0; c < counts.length; c++) {
+                if (counts[c] > 0) codes.add(c);
+            }
+            codes.sort((a, b) -> counts[b] != counts[a] ? Integer.compare(counts[b], counts[a]) : dictionary.value(a).compareTo(dictionary.value(b)));
+            Map<String, Long> res = new LinkedHashMap<>();
+            for (int c : codes) res.put(dictionary.value(c), (long) counts[c]);
+            return res;
+        }
+    }
+
+    /** String column values mapped to dense int codes */
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) return NONE;
+            Integer code = codes.get(value);
+            if (code != null) return code;
+            codes.put(value, values.size());
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        int lookup(String value) {
+            Integer code = codes.get(value);
+            return code == null ? UNKNOWN : code;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        void clear() {
+            codes.clear();
+            values.clear();
+        }
+    }
+
+    /** Open-addressing book id to slot map with linear probing; no boxed keys */
+    private static class SlotMap {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private long[] keys;
+        private int[] values;
+        private int count;
+
+        SlotMap() {
+            clear(16);
+        }
+
+        void clear(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            values = new int[capacity];
+            count = 0;
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == EMPTY) return -1;
+                if (keys[i] == key) return values[i];
+            }
+        }
+
+        void put(long key, int value) {
+            if ((count + 1) * 2 > keys.length) resize();
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == EMPTY) {
+                    keys[i] = key;
+                    values[i] = value;
+                    count++;
+                    return;
+                }
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+            }
+        }
+
+        int remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != key) {
+                if (keys[i] == EMPTY) return -1;
+                i = (i + 1) & mask;
+            }
+            int removed = values[i];
+            count--;
+            // Backward-shift the rest of the probe run so lookups never stop at a hole
+            int hole = i;
+            for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+                if (movable) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            keys[hole] = EMPTY;
+            return removed;
+        }
+
+        long bytes() {
+            return (long) keys.length * (Long.BYTES + Integer.BYTES);
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            clear(oldKeys.length);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
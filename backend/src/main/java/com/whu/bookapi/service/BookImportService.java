@@ -0,0 +1,205 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.BulkImportResult;
+import com.whu.bookapi.model.Book;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookImportService.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Bulk listing import for sellers with many books (clubs, graduating students).
+ *              Accepts parsed JSON rows or a CSV upload, validates every row, and inserts the valid
+ *              ones through BookService.addAll in one transaction; invalid rows are reported, not fatal.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+@Service
+public class BookImportService {
+    /** Maximum rows accepted per import */
+    public static final int MAX_ROWS = 500;
+
+    /** CSV header names (English field names or the Chinese labels of the listing form) */
+    private static final Map<String, String> HEADER_ALIASES = new HashMap<>();
+
+    static {
+        String[][] aliases = {
+                {"bookName", "书名"}, {"author", "作者"}, {"originalPrice", "原价"}, {"sellPrice", "售价"},
+                {"description", "描述"}, {"coverUrl", "封面"}, {"isbn", "ISBN"}, {"publisher", "出版社"},
+                {"publishDate", "出版日期"}, {"conditionLevel", "成色"}, {"stock", "库存"}
+        };
+        for (String[] a : aliases) {
+            HEADER_ALIASES.put(a[0].toLowerCase(), a[0]);
+            HEADER_ALIASES.put(a[1].toLowerCase(), a[0]);
+        }
+    }
+
+    private final BookService bookService;
+
+    public BookImportService(BookService bookService) {
+        this.bookService = bookService;
+    }
+
+    /**
+     * Function: importBooks
+     * Description: Validates the rows and inserts the valid ones in JDBC batches inside one transaction.
+     * Called By: BookController.bulkAdd, BookController.bulkAddCsv
+     * Table Updated: books
+     * Input: rows (List<Book>) - Rows in upload order; null entries are rows that failed to parse
+     *        parseErrors (Map<Integer, String>) - Parse errors by 1-based row number, may be null
+     *        sellerName (String) - The seller importing
+     * Output: BulkImportResult - Generated ids per row and the rejected rows with reasons
+     * Return: BulkImportResult
+     */
+    public BulkImportResult importBooks(List<Book> rows, Map<Integer, String> parseErrors, String sellerName) {
+        long start = System.currentTimeMillis();
+        BulkImportResult result = new BulkImportResult();
+        result.setTotal(rows.size());
+        List<Book> valid = new ArrayList<>();
+        List<Integer> validRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            int rowNum = i + 1;
+            String error = parseErrors == null ? null : parseErrors.get(rowNum);
+            if (error == null) error = validate(rows.get(i));
+            if (error != null) {
+                result.getErrors().add(new BulkImportResult.RowResult(rowNum, null, error));
+                continue;
+            }
+            valid.add(rows.get(i));
+            validRows.add(rowNum);
+        }
+        List<Book> created = bookService.addAll(valid, sellerName);
+        for (int i = 0; i < created.size(); i++) {
+            result.getCreated().add(new BulkImportResult.RowResult(validRows.get(i), created.get(i).getId(), null));
+        }
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Function: parseCsv
+     * Description: Parses a UTF-8 CSV upload (optional BOM, quoted fields, CRLF) into listings.
+     *              The first line is a header naming the columns; unknown columns are ignored.
+     * Called By: BookController.bulkAddCsv
+     * Input: in (InputStream) - CSV content
+     *        parseErrors (Map<Integer, String>) - Filled with errors by 1-based data row number
+     * Output: List<Book> - One entry per data row, null where the row could not be parsed
+     * Return: List<Book>
+     * Others: Throws IllegalArgumentException when the header has no 书名/bookName column
+     */
+    public List<Book> parseCsv(InputStream in, Map<Integer, String> parseErrors) throws IOException {
+        String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        if (text.startsWith("\uFEFF")) text = text.substring(1);
+        List<List<String>> lines = splitCsv(text);
+        List<Book> rows = new ArrayList<>();
+        if (lines.isEmpty()) return rows;
+        List<String> header = lines.get(0);
+        String[] fields = new String[header.size()];
+        boolean hasName = false;
+        for (int i = 0; i < header.size(); i++) {
+            fields[i] = HEADER_ALIASES.get(header.get(i).trim().toLowerCase());
+            if ("bookName".equals(fields[i])) hasName = true;
+        }
+        if (!hasName) throw new IllegalArgumentException("CSV表头缺少书名(bookName)列");
+        for (int r = 1; r < lines.size(); r++) {
+            List<String> cells = lines.get(r);
+            if (cells.size() == 1 && cells.get(0).isBlank()) continue;
+            Book b = new Book();
+            String error = null;
+            for (int c = 0; c < cells.size() && c < fields.length; c++) {
+                if (fields[c] == null) continue;
+                String v = cells.get(c).trim();
+                if (v.isEmpty()) continue;
+                try {
+                    set(b, fields[c], v);
+                } catch (NumberFormatException e) {
+                    error = header.get(c).trim() + "格式错误: " + v;
+                    break;
+                }
+            }
+            rows.add(error == null ? b : null);
+            if (error != null) parseErrors.put(rows.size(), error);
+        }
+        return rows;
+    }
+
+    private static void set(Book b, String field, String v) {
+        switch (field) {
+            case "bookName": b.setBookName(v); break;
+            case "author": b.setAuthor(v); break;
+            case "originalPrice": b.setOriginalPrice(Double.parseDouble(v)); break;
+            case "sellPrice": b.setSellPrice(Double.parseDouble(v)); break;
+            case "description": b.setDescription(v); break;
+            case "coverUrl": b.setCoverUrl(v); break;
+            case "isbn": b.setIsbn(v); break;
+            case "publisher": b.setPublisher(v); break;
+            case "publishDate": b.setPublishDate(v); break;
+            case "conditionLevel": b.setConditionLevel(v); break;
+            case "stock": b.setStock(Integer.parseInt(v)); break;
+            default: break;
+        }
+    }
+
+    private static String validate(Book b) {
+        if (b == null) return "数据为空";
+        if (b.getBookName() == null || b.getBookName().isBlank()) return "书名不能为空";
+        if (b.getBookName().length() > 255) return "书名过长";
+        if (b.getSellPrice() == null) return "售价不能为空";
+        if (b.getSellPrice() <= 0 || b.getSellPrice() > 9999) return "售价需在0到9999之间";
+        if (b.getOriginalPrice() != null && (b.getOriginalPrice() < 0 || b.getOriginalPrice() > 99999)) return "原价格式错误";
+        if (b.getStock() != null && (b.getStock() < 1 || b.getStock() > 999)) return "库存需在1到999之间";
+        if (b.getConditionLevel() != null && b.getConditionLevel().length() > 32) return "成色格式错误";
+        if (b.getIsbn() != null && b.getIsbn().length() > 32) return "ISBN格式错误";
+        return null;
+    }
+
+    /** RFC 4180 style splitting: commas, double-quoted fields with "" escapes, CR/LF line ends */
+    private static List<List<String>> splitCsv(String text) {
+        List<List<String>> lines = new ArrayList<>();
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cell.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else if (ch == '\n' || ch == '\r') {
+                if (ch == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') i++;
+                cells.add(cell.toString());
+                cell.setLength(0);
+                lines.add(cells);
+                cells = new ArrayList<>();
+            } else {
+                cell.append(ch);
+            }
+        }
+        if (cell.length() > 0 || !cells.isEmpty()) {
+            cells.add(cell.toString());
+            lines.add(cells);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,36 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+
+import java.util.Collection;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookListingListener.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Callback for in-memory structures derived from the set of on-sale listings.
+ *              Registered with BookSearchIndex. Single changes are delivered under the index write lock,
+ *              so they must be quick and must not call back into the index; a full reload is delivered
+ *              without that lock, and changes made during it are delivered after it returns.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+public interface BookListingListener {
+    /**
+     * Function: onListingChanged
+     * Description: A single listing changed.
+     * Input: before (Book) - Previous listed state, null if it was not listed
+     *        after (Book) - New listed state, null if it is no longer listed
+     * Return: void
+     */
+    void onListingChanged(Book before, Book after);
+
+    /**
+     * Function: onListingsReloaded
+     * Description: The full set of listings was reloaded.
+     * Input: listings (Collection<Book>) - Every on-sale listing
+     * Return: void
+     */
+    void onListingsReloaded(Collection<Book> listings);
+}
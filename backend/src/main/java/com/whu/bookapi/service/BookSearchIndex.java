@@ -0,0 +1,442 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookSearchIndex.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: In-process inverted index over on-sale book listings.
+ *              Title, author, ISBN and description are split into overlapping character bigrams,
+ *              which suits Chinese titles and course names that have no word boundaries.
+ *              Candidates from the rarest bigram are verified with a substring check, so results
+ *              match the LIKE '%kw%' semantics of the SQL path.
+ *              A full rebuild builds the next snapshot (and lets listeners rebuild) without the lock;
+ *              changes arriving meanwhile go to the current snapshot and are replayed onto the next
+ *              one when it is published, so readers only wait for that swap.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Rebuild outside the lock, published by reference swap.
+ */
+@Component
+public class BookSearchIndex {
+    /** Separates indexed fields so that a keyword never matches across two fields */
+    private static final char FIELD_SEPARATOR = '\u0001';
+
+    /** Guards in-place changes to the published snapshot and its swap */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Serializes full rebuilds; never taken by readers */
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Snapshot current = new Snapshot();
+    /** Changes made while a rebuild is running, replayed onto the rebuilt snapshot; null otherwise */
+    private List<java.util.function.Consumer<Snapshot>> pending = null;
+    private volatile boolean ready = false;
+    private final List<BookListingListener> listeners = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    /**
+     * Function: addListener
+     * Description: Registers a structure that mirrors the listing set (suggestions, catalog, aggregates).
+     * Input: listener (BookListingListener) - Listener to notify on every change
+     * Return: void
+     */
+    public void addListener(BookListingListener listener) {
+        if (listener != null) listeners.add(listener);
+    }
+
+    /**
+     * Function: isReady
+     * Description: Whether the index has been fully built at least once.
+     *              Callers fall back to SQL until then.
+     * Return: boolean
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Function: isListable
+     * Description: Whether a book should be visible to buyers (on sale with stock left).
+     * Input: b (Book) - The book to check
+     * Return: boolean
+     */
+    public static boolean isListable(Book b) {
+        return b != null && b.getId() != null && "on_sale".equals(b.getStatus()) && b.getStock() != null && b.getStock() > 0;
+    }
+
+    /**
+     * Function: rebuild
+     * Description: Replaces the whole index with the given listings. The next snapshot and the listener
+     *              structures are built without holding the index lock; the write lock is only taken to
+     *              publish the snapshot and replay the changes that arrived during the build.
+     * Called By: BookService.rebuildSearchIndex
+     * Input: books (List<Book>) - All on-sale listings
+     * Return: void
+     */
+    public void rebuild(List<Book> books) {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Snapshot next = new Snapshot();
+            if (books != null) {
+                for (Book b : books) {
+                    if (isListable(b)) next.put(b);
+                }
+            }
+            java.util.Collection<Book> listings = java.util.Collections.unmodifiableCollection(next.docs.values());
+            for (BookListingListener l : listeners) l.onListingsReloaded(listings);
+            lock.writeLock().lock();
+            try {
+                current = next;
+                List<java.util.function.Consumer<Snapshot>> replay = pending;
+                pending = null;
+                for (java.util.function.Consumer<Snapshot> change : replay) change.accept(next);
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Function: upsert
+     * Description: Indexes the latest state of a book, or drops it when it is no longer listable.
+     * Called By: BookService mutations
+     * Input: b (Book) - Fresh book row
+     * Return: void
+     */
+    public void upsert(Book b) {
+        if (b == null || b.getId() == null) return;
+        apply(snap -> {
+            Book before = snap.unput(b.getId());
+            Book after = null;
+            if (isListable(b)) {
+                snap.put(b);
+                after = b;
+            }
+            return new Book[]{before, after};
+        });
+    }
+
+    /**
+     * Function: remove
+     * Description: Drops a listing from the index.
+     * Input: id (Long) - Book ID
+     * Return: void
+     */
+    public void remove(Long id) {
+        if (id == null) return;
+        apply(snap -> new Book[]{snap.unput(id), null});
+    }
+
+    /**
+     * Function: removeSeller
+     * Description: Drops every listing of a seller (used when an account is deleted).
+     * Input: sellerName (String) - Seller username
+     * Return: void
+     */
+    public void removeSeller(String sellerName) {
+        if (sellerName == null) return;
+        apply(snap -> {
+            List<Book> removed = new ArrayList<>();
+            for (Book b : new ArrayList<>(snap.docs.values())) {
+                if (sellerName.equals(b.getSellerName())) removed.add(snap.unput(b.getId()));
+            }
+            Book[] changes = new Book[removed.size() * 2];
+            for (int i = 0; i < removed.size(); i++) changes[2 * i] = removed.get(i);
+            return changes;
+        });
+    }
+
+    /**
+     * Function: search
+     * Description: Answers a /books/page query from memory.
+     * Called By: BookService.search
+     * Input: keyword (String) - Keyword over title, author, isbn, description
+     *        minPrice (Double) - Minimum price filter
+     *        maxPrice (Double) - Maximum price filter
+     *        conditionLevel (String) - Condition level filter
+     *        sortBy (String) - "price_asc", "price_desc", "created_desc", otherwise id order
+     *        offset (int) - Rows to skip
+     *        limit (int) - Page size
+     * Output: SearchResult - Total match count and the requested page
+     * Return: SearchResult
+     */
+    public SearchResult search(String keyword, Double minPrice, Double maxPrice, String conditionLevel,
+                               String sortBy, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Book> matched = filter(current, keyword, minPrice, maxPrice, conditionLevel, false);
+            matched.sort(comparator(sortBy));
+            int from = Math.min(Math.max(offset, 0), matched.size());
+            int to = Math.min(from + Math.max(limit, 0), matched.size());
+            return new SearchResult(matched.size(), new ArrayList<>(matched.subList(from, to)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function: searchAfter
+     * Description: Keyset variant of search: returns the listings that sort strictly after the cursor.
+     *              Price orders skip listings without a price, matching the SQL keyset path.
+     * Called By: BookService.pageByCursor
+     * Input: keyword, minPrice, maxPrice, conditionLevel, sortBy - Same as search
+     *        after (PageCursor) - Last row of the previous page, null for the first page
+     *        limit (int) - Maximum rows to return
+     * Output: SearchResult - Total match count and the rows after the cursor
+     * Return: SearchResult
+     */
+    public SearchResult searchAfter(String keyword, Double minPrice, Double maxPrice, String conditionLevel,
+                                    String sortBy, PageCursor after, int limit) {
+        boolean priceSort = "price_asc".equals(sortBy) || "price_desc".equals(sortBy);
+        lock.readLock().lock();
+        try {
+            List<Book> matched = filter(current, keyword, minPrice, maxPrice, conditionLevel, priceSort);
+            Comparator<Book> cmp = comparator(sortBy);
+            matched.sort(cmp);
+            int from = 0;
+            if (after != null) {
+                Book probe = new Book();
+                probe.setId(after.getId());
+                probe.setSellPrice(after.keyAsDouble());
+                probe.setCreatedAt(after.keyAsLong());
+                int lo = 0;
+                int hi = matched.size();
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (cmp.compare(matched.get(mid), probe) <= 0) lo = mid + 1;
+                    else hi = mid;
+                }
+                from = lo;
+            }
+            int to = Math.min(from + Math.max(limit, 0), matched.size());
+            return new SearchResult(matched.size(), new ArrayList<>(matched.subList(from, to)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function: matchIds
+     * Description: Ids of the listings whose title, author, isbn or description contains the keyword.
+     * Called By: BookService.search, BookService.pageByCursor
+     * Input: keyword (String) - Search keyword
+     * Output: long[] - Matching ids, unordered
+     * Return: long[]
+     */
+    public long[] matchIds(String keyword) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (Long id : current.matchKeyword(keyword)) ids.add(id);
+            long[] res = new long[ids.size()];
+            for (int i = 0; i < res.length; i++) res[i] = ids.get(i);
+            return res;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function: get
+     * Description: Looks up an indexed listing.
+     * Input: id (Long) - Book ID
+     * Output: Book - The listing, or null when it is not on sale
+     * Return: Book
+     */
+    public Book get(Long id) {
+        if (id == null) return null;
+        lock.readLock().lock();
+        try {
+            return current.docs.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function: size
+     * Description: Number of indexed listings.
+     * Return: int
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return current.docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies one change to the published snapshot and notifies the listeners with its before/after
+     * pairs. During a rebuild the listeners are rebuilding from the next snapshot, so the change is
+     * recorded instead and notified when it is replayed onto that snapshot.
+     */
+    private void apply(java.util.function.Function<Snapshot, Book[]> change) {
+        lock.writeLock().lock();
+        try {
+            Book[] changes = change.apply(current);
+            if (pending != null) {
+                pending.add(snap -> fire(change.apply(snap)));
+            } else {
+                fire(changes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<Book> filter(Snapshot snap, String keyword, Double minPrice, Double maxPrice, String conditionLevel, boolean requirePrice) {
+        List<Book> matched = new ArrayList<>();
+        for (Long id : snap.matchKeyword(keyword)) {
+            Book b = snap.docs.get(id);
+            if (b == null) continue;
+            if (requirePrice && b.getSellPrice() == null) continue;
+            if (minPrice != null && (b.getSellPrice() == null || b.getSellPrice() < minPrice)) continue;
+            if (maxPrice != null && (b.getSellPrice() == null || b.getSellPrice() > maxPrice)) continue;
+            if (conditionLevel != null && !conditionLevel.isEmpty() && !conditionLevel.equals(b.getConditionLevel())) continue;
+            matched.add(b);
+        }
+        return matched;
+    }
+
+    private void fire(Book[] changes) {
+        for (int i = 0; i + 1 < changes.length; i += 2) {
+            if (changes[i] == null && changes[i + 1] == null) continue;
+            for (BookListingListener l : listeners) l.onListingChanged(changes[i], changes[i + 1]);
+        }
+    }
+
+    private static String normalize(Book b) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(b.getBookName() == null ? "" : b.getBookName()).append(FIELD_SEPARATOR);
+        sb.append(b.getAuthor() == null ? "" : b.getAuthor()).append(FIELD_SEPARATOR);
+        sb.append(b.getIsbn() == null ? "" : b.getIsbn()).append(FIELD_SEPARATOR);
+        sb.append(b.getDescription() == null ? "" : b.getDescription());
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static int bigram(char c1, char c2) {
+        return (c1 << 16) | c2;
+    }
+
+    private static Comparator<Book> comparator(String sortBy) {
+        // Ties break on id in the same direction as the sort key, matching the keyset SQL order
+        Comparator<Book> byId = Comparator.comparing(Book::getId);
+        // MySQL orders NULL first ascending and last descending; keep that for listings without a price
+        if ("price_asc".equals(sortBy)) {
+            return Comparator.comparing(Book::getSellPrice, Comparator.nullsFirst(Comparator.<Double>naturalOrder())).thenComparing(byId);
+        }
+        if ("price_desc".equals(sortBy)) {
+            return Comparator.comparing(Book::getSellPrice, Comparator.nullsLast(Comparator.<Double>reverseOrder())).thenComparing(byId.reversed());
+        }
+        if ("created_desc".equals(sortBy)) {
+            return Comparator.comparing(Book::getCreatedAt, Comparator.nullsLast(Comparator.<Long>reverseOrder())).thenComparing(byId.reversed());
+        }
+        return byId;
+    }
+
+    /**
+     * One generation of the index: listings, their normalized text and the bigram postings.
+     */
+    private static final class Snapshot {
+        /** Listing snapshot by book id */
+        private final Map<Long, Book> docs = new HashMap<>();
+        /** Normalized searchable text by book id */
+        private final Map<Long, String> texts = new HashMap<>();
+        /** Bigram (two chars packed into an int) to ids of listings containing it */
+        private final Map<Integer, Set<Long>> postings = new HashMap<>();
+
+        private Iterable<Long> matchKeyword(String keyword) {
+            if (keyword == null || keyword.isEmpty()) return docs.keySet();
+            String kw = keyword.toLowerCase(Locale.ROOT);
+            List<Long> res = new ArrayList<>();
+            Iterable<Long> candidates = docs.keySet();
+            if (kw.length() >= 2) {
+                Set<Long> rarest = null;
+                for (int i = 0; i + 1 < kw.length(); i++) {
+                    Set<Long> p = postings.get(bigram(kw.charAt(i), kw.charAt(i + 1)));
+                    if (p == null) return res;
+                    if (rarest == null || p.size() < rarest.size()) rarest = p;
+                }
+                candidates = rarest;
+            }
+            for (Long id : candidates) {
+                String text = texts.get(id);
+                if (text != null && text.contains(kw)) res.add(id);
+            }
+            return res;
+        }
+
+        private void put(Book b) {
+            String text = normalize(b);
+            docs.put(b.getId(), b);
+            texts.put(b.getId(), text);
+            for (int i = 0; i + 1 < text.length(); i++) {
+                char c1 = text.charAt(i);
+                char c2 = text.charAt(i + 1);
+                if (c1 == FIELD_SEPARATOR || c2 == FIELD_SEPARATOR) continue;
+                postings.computeIfAbsent(bigram(c1, c2), k -> new HashSet<>()).add(b.getId());
+            }
+        }
+
+        private Book unput(Long id) {
+            Book before = docs.remove(id);
+            String text = texts.remove(id);
+            if (text == null) return before;
+            for (int i = 0; i + 1 < text.length(); i++) {
+                char c1 = text.charAt(i);
+                char c2 = text.charAt(i + 1);
+                if (c1 == FIELD_SEPARATOR || c2 == FIELD_SEPARATOR) continue;
+                int key = bigram(c1, c2);
+                Set<Long> p = postings.get(key);
+                if (p == null) continue;
+                p.remove(id);
+                if (p.isEmpty()) postings.remove(key);
+            }
+            return before;
+        }
+    }
+
+    /**
+     * Result of an in-memory search: total match count and one page of listings.
+     */
+    public static class SearchResult {
+        private final long total;
+        private final List<Book> records;
+
+        public SearchResult(long total, List<Book> records) {
+            this.total = total;
+            this.records = records;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public List<Book> getRecords() {
+            return records;
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.whu.bookapi.service;
 
+import com.whu.bookapi.dto.CursorPageResponse;
+import com.whu.bookapi.dto.IsbnGroup;
+import com.whu.bookapi.dto.PageResponse;
+import com.whu.bookapi.dto.PriceSuggestion;
 import com.whu.bookapi.model.Book;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 
@@ -19,13 +26,59 @@ import java.util.List;
  * <author>          <time>          <version>          <desc>
  * WiseBookPal Team  2024-11-20      1.0                Initial implementation.
  * WiseBookPal Team  2024-12-25      1.1                Added stock management and admin review workflow.
+ * WiseBookPal Team  2026-10-17      1.2                Served keyword search from the in-memory BookSearchIndex.
+ * WiseBookPal Team  2026-10-17      1.3                Added keyset (cursor) pagination and a short-lived count cache.
+ * WiseBookPal Team  2026-10-17      1.4                Replaced ORDER BY RAND() hot books with HotBookRanker.
+ * WiseBookPal Team  2026-10-17      1.5                Served suggestions from the pinyin-aware SuggestionTrie.
+ * WiseBookPal Team  2026-10-17      1.6                Added the read-through BookCache behind get.
+ * WiseBookPal Team  2026-10-17      1.7                Served keyword-less browsing from the columnar BookCatalog.
+ * WiseBookPal Team  2026-10-17      1.8                Added optional facet counts to /books/page.
+ * WiseBookPal Team  2026-10-17      1.9                Added the grouped-by-ISBN search mode.
+ * WiseBookPal Team  2026-10-17      2.0                Added per-ISBN price suggestions.
+ * WiseBookPal Team  2026-10-17      2.1                Added batched multi-row insert for bulk imports.
+ * WiseBookPal Team  2026-10-17      2.2                Added set-based batch approve/reject.
+ * WiseBookPal Team  2026-10-17      2.3                Added transactional reservation with row snapshot for order placement.
+ * WiseBookPal Team  2026-10-17      2.4                Added batched multi-book reservation for cart checkout.
+ * WiseBookPal Team  2026-10-17      2.5                Kept flash-sale tokens in step with released and checked-out stock.
+ * WiseBookPal Team  2026-10-17      2.6                Batch approve/reject publish book.approved/book.rejected outbox events.
+ * WiseBookPal Team  2026-10-17      2.7                Delete and stock release refresh the cache and index after the write commits.
+ * WiseBookPal Team  2026-10-17      2.8                Stock updates assign status before stock, so it is decided on the stock before the change.
+ * WiseBookPal Team  2026-10-17      2.9                Flash-sale tokens are reset from committed stock after every stock or status change.
+ * WiseBookPal Team  2026-10-17      3.0                Bulk import writes explicit multi-row INSERTs instead of relying on driver batch rewriting.
+ * WiseBookPal Team  2026-10-17      3.1                Grouped search streams catalog matches into the ISBN groups instead of a full id array.
  */
 @Service
 public class BookService {
     private final JdbcTemplate jdbcTemplate;
+    private final BookSearchIndex searchIndex;
+    private final HotBookRanker hotBookRanker;
+    private final SuggestionTrie suggestionTrie;
+    private final BookCache bookCache;
+    private final BookCatalog catalog;
+    private final IsbnGroupIndex isbnGroups;
+    private final IsbnPriceStats priceStats;
+    private final FlashSaleStock flashSaleStock;
+    private final OutboxService outboxService;
+    /** Recent SQL counts by filter key: {count, expiresAt}; totals are approximate within the TTL */
+    private final java.util.Map<String, long[]> countCache = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final long COUNT_CACHE_TTL_MS = 30_000L;
+    private static final int COUNT_CACHE_MAX_KEYS = 1000;
+    private static final String BOOK_COLUMNS = "id, book_name, author, original_price, sell_price, description, seller_name, cover_url, isbn, publisher, publish_date, condition_level, stock, status, created_at, seller_type";
 
-    public BookService(JdbcTemplate jdbcTemplate) {
+    public BookService(JdbcTemplate jdbcTemplate, BookSearchIndex searchIndex, HotBookRanker hotBookRanker,
+                       SuggestionTrie suggestionTrie, BookCache bookCache, BookCatalog catalog,
+                       IsbnGroupIndex isbnGroups, IsbnPriceStats priceStats, FlashSaleStock flashSaleStock,
+                       OutboxService outboxService) {
         this.jdbcTemplate = jdbcTemplate;
+        this.searchIndex = searchIndex;
+        this.hotBookRanker = hotBookRanker;
+        this.suggestionTrie = suggestionTrie;
+        this.bookCache = bookCache;
+        this.catalog = catalog;
+        this.isbnGroups = isbnGroups;
+        this.priceStats = priceStats;
+        this.flashSaleStock = flashSaleStock;
+        this.outboxService = outboxService;
     }
 
     /**
@@ -70,47 +123,170 @@ public class BookService {
         }, keyHolder);
         Number key = keyHolder.getKey();
         if (key != null) book.setId(key.longValue());
+        searchIndex.upsert(book);
         return book;
     }
 
+    /**
+     * Function: addAll
+     * Description: Inserts many listings in one transaction, 100 rows per multi-row INSERT statement, so
+     *              each chunk is one round trip without enabling rewriteBatchedStatements for the whole
+     *              datasource. MySQL assigns the ids of a multi-row INSERT consecutively. Applies the same defaults as add (under_review, stock 1, 九成新) and sets the generated ids.
+     *              New listings are under review, so the search index is not touched.
+     * Called By: BookImportService.importBooks
+     * Table Accessed: books
+     * Table Updated: books
+     * Input: books (List<Book>) - Validated listings
+     *        sellerName (String) - The seller adding them
+     * Output: List<Book> - The same listings with ids set
+     * Return: List<Book>
+     */
+    @Transactional
+    public List<Book> addAll(List<Book> books, String sellerName) {
+        if (books == null || books.isEmpty()) return new java.util.ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Book book : books) {
+            book.setSellerName(sellerName);
+            if (book.getConditionLevel() == null) book.setConditionLevel("九成新");
+            if (book.getStock() == null) book.setStock(1);
+            book.setStatus("under_review");
+            book.setCreatedAt(now);
+        }
+        String insert = "INSERT INTO books (book_name, author, original_price, sell_price, description, seller_name, cover_url, isbn, publisher, publish_date, condition_level, stock, status, created_at, seller_type) VALUES ";
+        String row = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        final int batchSize = 100;
+        jdbcTemplate.execute((org.springframework.jdbc.core.ConnectionCallback<Void>) connection -> {
+            for (int from = 0; from < books.size(); from += batchSize) {
+                List<Book> chunk = books.subList(from, Math.min(from + batchSize, books.size()));
+                String sql = insert + String.join(", ", java.util.Collections.nCopies(chunk.size(), row));
+                try (var ps = connection.prepareStatement(sql, java.sql.Statement.RETURN_GENERATED_KEYS)) {
+                    int p = 1;
+                    for (Book book : chunk) {
+                        ps.setString(p++, book.getBookName());
+                        ps.setString(p++, book.getAuthor());
+                        ps.setObject(p++, book.getOriginalPrice());
+                        ps.setObject(p++, book.getSellPrice());
+                        ps.setString(p++, book.getDescription());
+                        ps.setString(p++, book.getSellerName());
+                        ps.setString(p++, book.getCoverUrl());
+                        ps.setString(p++, book.getIsbn());
+                        ps.setString(p++, book.getPublisher());
+                        ps.setString(p++, book.getPublishDate());
+                        ps.setString(p++, book.getConditionLevel());
+                        ps.setInt(p++, book.getStock());
+                        ps.setString(p++, book.getStatus());
+                        ps.setLong(p++, book.getCreatedAt());
+                        ps.setString(p++, book.getSellerType());
+                    }
+                    ps.executeUpdate();
+                    try (var keys = ps.getGeneratedKeys()) {
+                        int i = 0;
+                        while (keys.next() && i < chunk.size()) chunk.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+        return books;
+    }
+
+    /**
+     * Function: suggestPrice
+     * Description: Suggests a selling price from the sold and listed prices of the same ISBN.
+     * Called By: BookController.add, BookController.priceSuggestion
+     * Input: isbn (String) - ISBN of the book
+     *        conditionLevel (String) - Condition of the copy
+     * Output: PriceSuggestion - Percentiles by condition and the suggested price, null without an ISBN
+     * Return: PriceSuggestion
+     */
+    public PriceSuggestion suggestPrice(String isbn, String conditionLevel) {
+        return priceStats.suggest(isbn, conditionLevel);
+    }
+
     /**
      * Function: get
      * Description: Retrieves a book by its ID.
+     *              Read through BookCache; the returned object is a private copy.
      * Called By: BookController.get, OrderService.createOrder
-     * Table Accessed: books
+     * Table Accessed: books (on cache miss)
      * Input: id (Long) - The ID of the book to retrieve
      * Output: Book - The book object, or null if not found
      * Return: Book
      */
     public Book get(Long id) {
         if (id == null) return null;
+        Book cached = bookCache.get(id);
+        if (cached != null) return cached;
+        long generation = bookCache.generation();
+        Book loaded = load(id);
+        if (loaded != null) bookCache.put(loaded, generation);
+        return loaded;
+    }
+
+    /**
+     * Function: cacheStats
+     * Description: Hit/miss/eviction statistics of the book cache.
+     * Called By: AdminController.cacheStats
+     * Output: Map<String, Object> - Cache counters
+     * Return: Map<String, Object>
+     */
+    public java.util.Map<String, Object> cacheStats() {
+        return bookCache.stats();
+    }
+
+    /**
+     * Function: catalogStats
+     * Description: Memory footprint of the columnar catalog, including the extrapolation to 100k listings.
+     * Called By: AdminController.cacheStats
+     * Output: Map<String, Object> - Catalog memory figures
+     * Return: Map<String, Object>
+     */
+    public java.util.Map<String, Object> catalogStats() {
+        return catalog.memoryStats();
+    }
+
+    /**
+     * Function: invalidateSeller
+     * Description: Evicts a seller's books from memory once their bulk removal has committed.
+     * Called By: UserService.deleteUser
+     * Input: sellerName (String) - Seller username
+     * Return: void
+     */
+    public void invalidateSeller(String sellerName) {
+        afterCommit(() -> {
+            bookCache.invalidateSeller(sellerName);
+            searchIndex.removeSeller(sellerName);
+        });
+    }
+
+    private Book load(Long id) {
         java.util.List<Book> list = jdbcTemplate.query(
-                "SELECT id, book_name, author, original_price, sell_price, description, seller_name, cover_url, isbn, publisher, publish_date, condition_level, stock, status, created_at, seller_type FROM books WHERE id = ?",
-                (rs, rowNum) -> {
-                    Book b = new Book();
-                    b.setId(rs.getLong("id"));
-                    b.setBookName(rs.getString("book_name"));
-                    b.setAuthor(rs.getString("author"));
-                    b.setOriginalPrice((Double) rs.getObject("original_price"));
-                    b.setSellPrice((Double) rs.getObject("sell_price"));
-                    b.setDescription(rs.getString("description"));
-                    b.setSellerName(rs.getString("seller_name"));
-                    b.setCoverUrl(rs.getString("cover_url"));
-                    b.setIsbn(rs.getString("isbn"));
-                    b.setPublisher(rs.getString("publisher"));
-                    b.setPublishDate(rs.getString("publish_date"));
-                    b.setConditionLevel(rs.getString("condition_level"));
-                    b.setStock((Integer) rs.getObject("stock"));
-                    b.setStatus(rs.getString("status"));
-                    b.setCreatedAt(rs.getLong("created_at"));
-                    b.setSellerType(rs.getString("seller_type"));
-                    return b;
-                },
-                id
+                "SELECT " + BOOK_COLUMNS + " FROM books WHERE id = ?", BookService::mapBook, id
         );
         return list.isEmpty() ? null : list.get(0);
     }
 
+    private static Book mapBook(java.sql.ResultSet rs, int rowNum) throws java.sql.SQLException {
+        Book b = new Book();
+        b.setId(rs.getLong("id"));
+        b.setBookName(rs.getString("book_name"));
+        b.setAuthor(rs.getString("author"));
+        b.setOriginalPrice((Double) rs.getObject("original_price"));
+        b.setSellPrice((Double) rs.getObject("sell_price"));
+        b.setDescription(rs.getString("description"));
+        b.setSellerName(rs.getString("seller_name"));
+        b.setCoverUrl(rs.getString("cover_url"));
+        b.setIsbn(rs.getString("isbn"));
+        b.setPublisher(rs.getString("publisher"));
+        b.setPublishDate(rs.getString("publish_date"));
+        b.setConditionLevel(rs.getString("condition_level"));
+        b.setStock((Integer) rs.getObject("stock"));
+        b.setStatus(rs.getString("status"));
+        b.setCreatedAt(rs.getLong("created_at"));
+        b.setSellerType(rs.getString("seller_type"));
+        return b;
+    }
+
     /**
      * Function: tryReserveStock
      * Description: Attempts to reserve stock for a book order.
@@ -127,19 +303,119 @@ public class BookService {
         if (id == null) return false;
         int updated = jdbcTemplate.update(
                 "UPDATE books " +
-                        "SET stock = stock - 1, " +
-                        "    status = CASE WHEN status = 'on_sale' AND stock - 1 <= 0 THEN 'offline' ELSE status END " +
+                        "SET status = CASE WHEN status = 'on_sale' AND stock <= 1 THEN 'offline' ELSE status END, " +
+                        "    stock = stock - 1 " +
                         "WHERE id = ? AND stock > 0",
                 id
         );
+        if (updated > 0) afterCommit(() -> syncIndex(id));
         return updated > 0;
     }
 
+    /**
+     * Function: reserveForOrder
+     * Description: Reserves one copy of an on-sale book for a buyer other than its seller and returns the
+     *              row as reserved. Meant to run inside the order transaction: the conditional UPDATE takes
+     *              the row lock and the snapshot is read under that lock on the same connection (MySQL has
+     *              no UPDATE ... RETURNING), so order data always matches the reserved row. The cache and
+     *              search index are refreshed from the snapshot once the transaction commits.
+     * Called By: OrderService.place
+     * Table Accessed: books
+     * Table Updated: books
+     * Input: id (Long) - Book ID
+     *        buyerName (String) - Buyer, who must not be the seller
+     * Output: Book - Reserved row (stock already decremented), null when nothing was reserved
+     * Return: Book
+     */
+    public Book reserveForOrder(Long id, String buyerName) {
+        if (id == null || buyerName == null) return null;
+        int updated = jdbcTemplate.update(
+                // MySQL assigns left to right: status is set first so it still sees the stock before the decrement
+                "UPDATE books " +
+                        "SET status = CASE WHEN status = 'on_sale' AND stock <= 1 THEN 'offline' ELSE status END, " +
+                        "    stock = stock - 1 " +
+                        "WHERE id = ? AND status = 'on_sale' AND stock > 0 AND seller_name <> ?",
+                id, buyerName
+        );
+        if (updated == 0) return null;
+        Book snapshot = load(id);
+        afterCommit(() -> {
+            bookCache.invalidate(id);
+            if (snapshot == null) searchIndex.remove(id);
+            else searchIndex.upsert(snapshot);
+        });
+        return snapshot;
+    }
+
+    /**
+     * Function: reserveAllForOrder
+     * Description: Multi-book form of reserveForOrder for cart checkout. The conditional UPDATEs go out as
+     *              one JDBC batch in ascending book id order, so concurrent checkouts lock rows in the same
+     *              order and cannot deadlock; the reserved rows are then read back with one query under
+     *              those locks. Cache and index are refreshed after commit.
+     * Called By: OrderService.checkout
+     * Table Accessed: books
+     * Table Updated: books
+     * Input: quantities (SortedMap<Long, Integer>) - Copies to reserve by book ID, ascending IDs
+     *        buyerName (String) - Buyer, who must not be the seller
+     * Output: Map<Long, Book> - Reserved rows by book ID; books that could not be reserved are absent
+     * Return: Map<Long, Book>
+     */
+    public java.util.Map<Long, Book> reserveAllForOrder(java.util.SortedMap<Long, Integer> quantities, String buyerName) {
+        java.util.Map<Long, Book> res = new java.util.LinkedHashMap<>();
+        if (quantities == null || quantities.isEmpty() || buyerName == null) return res;
+        List<Long> ids = new java.util.ArrayList<>(quantities.keySet());
+        List<Object[]> args = new java.util.ArrayList<>(ids.size());
+        for (Long id : ids) {
+            int q = quantities.get(id);
+            args.add(new Object[]{q, q, id, q, buyerName});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(
+                // status first: MySQL assigns left to right, so it must see the stock before the decrement
+                "UPDATE books " +
+                        "SET status = CASE WHEN status = 'on_sale' AND stock <= ? THEN 'offline' ELSE status END, " +
+                        "    stock = stock - ? " +
+                        "WHERE id = ? AND status = 'on_sale' AND stock >= ? AND seller_name <> ?",
+                args
+        );
+        List<Long> reserved = new java.util.ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) reserved.add(ids.get(i));
+        }
+        if (reserved.isEmpty()) return res;
+        for (Book b : loadAll(reserved)) res.put(b.getId(), b);
+        List<Book> snapshots = new java.util.ArrayList<>(res.values());
+        afterCommit(() -> {
+            for (Book b : snapshots) {
+                bookCache.invalidate(b.getId());
+                searchIndex.upsert(b);
+                flashSaleStock.consume(b.getId(), quantities.get(b.getId()));
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Function: getAll
+     * Description: Loads several books with one query, bypassing the cache.
+     * Called By: OrderService.checkout
+     * Table Accessed: books
+     * Input: ids (List<Long>) - Book IDs
+     * Output: List<Book> - Existing books in ascending ID order
+     * Return: List<Book>
+     */
+    public List<Book> getAll(List<Long> ids) {
+        List<Long> distinct = distinctIds(ids);
+        if (distinct.isEmpty()) return new java.util.ArrayList<>();
+        return loadAll(distinct);
+    }
+
     /**
      * Function: releaseStock
      * Description: Releases reserved stock (e.g., if an order is cancelled).
      *              Increments stock by 1. If status was 'offline' and stock becomes positive, sets status back to 'on_sale'.
-     * Called By: OrderService.cancelOrder
+     *              Cache, index and flash-sale tokens are refreshed once the release commits.
+     * Called By: OrderService.cancel, OrderService.expire
      * Table Accessed: books
      * Table Updated: books
      * Input: id (Long) - The ID of the book to release
@@ -150,11 +426,15 @@ public class BookService {
         if (id == null) return;
         jdbcTemplate.update(
                 "UPDATE books " +
-                        "SET stock = stock + 1, " +
-                        "    status = CASE WHEN status = 'offline' AND stock = 0 THEN 'on_sale' ELSE status END " +
+                        "SET status = CASE WHEN status = 'offline' AND stock = 0 THEN 'on_sale' ELSE status END, " +
+                        "    stock = stock + 1 " +
                         "WHERE id = ?",
                 id
         );
+        afterCommit(() -> {
+            syncIndex(id);
+            syncFlashSale(id);
+        });
     }
 
     /**
@@ -162,7 +442,7 @@ public class BookService {
      * Description: Retrieves a paginated list of books based on various filters.
      *              Supports filtering by name, price range, and condition.
      *              Supports sorting by price or creation date.
-     * Called By: BookController.page
+     * Called By: BookService.search
      * Table Accessed: books
      * Input: bookName (String) - Search keyword for title, author, isbn, or description
      *        minPrice (Double) - Minimum price filter
@@ -236,51 +516,47 @@ public class BookService {
 
     /**
      * Function: getHotBooks
-     * Description: Retrieves a list of random "hot" books.
-     *              Currently implemented as random selection for demonstration.
-     * Called By: BookController.listHot
-     * Table Accessed: books
+     * Description: Retrieves the "hot" books ranked by recent favorites, cart additions and orders.
+     *              Served from the HotBookRanker snapshot; before the first build it falls back to the newest listings.
+     * Called By: BookController.hot
+     * Table Accessed: books (fallback only)
      * Input: limit (int) - Number of books to retrieve
+     *        seed (Long) - Optional seed to shuffle among the top candidates, null for strict ranking
      * Output: List<Book> - List of hot books
      * Return: List<Book>
      */
-    public List<Book> getHotBooks(int limit) {
-        // Simulate hot books by random selection for now
-        String sql = "SELECT id, book_name, author, original_price, sell_price, description, seller_name, cover_url, isbn, publisher, publish_date, condition_level, stock, status, created_at, seller_type FROM books WHERE status = 'on_sale' AND stock > 0 ORDER BY RAND() LIMIT ?";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Book b = new Book();
-            b.setId(rs.getLong("id"));
-            b.setBookName(rs.getString("book_name"));
-            b.setAuthor(rs.getString("author"));
-            b.setOriginalPrice((Double) rs.getObject("original_price"));
-            b.setSellPrice((Double) rs.getObject("sell_price"));
-            b.setDescription(rs.getString("description"));
-            b.setSellerName(rs.getString("seller_name"));
-            b.setCoverUrl(rs.getString("cover_url"));
-            b.setIsbn(rs.getString("isbn"));
-            b.setPublisher(rs.getString("publisher"));
-            b.setPublishDate(rs.getString("publish_date"));
-            b.setConditionLevel(rs.getString("condition_level"));
-            b.setStock((Integer) rs.getObject("stock"));
-            b.setStatus(rs.getString("status"));
-            b.setCreatedAt(rs.getLong("created_at"));
-            b.setSellerType(rs.getString("seller_type"));
-            return b;
-        }, limit);
+    public List<Book> getHotBooks(int limit, Long seed) {
+        int n = Math.min(Math.max(limit, 1), 50);
+        if (!hotBookRanker.isBuilt()) return listHot(n);
+        return hotBookRanker.top(n, seed);
     }
 
     /**
      * Function: getSuggestions
      * Description: Retrieves search suggestions based on a keyword.
-     *              Returns distinct book names matching the keyword.
+     *              Prefix matches on titles, authors and ISBNs (also by pinyin and pinyin initials)
+     *              come from the in-memory trie, most listed first; remaining slots are topped up with
+     *              book names containing the keyword. Falls back to SQL until the trie is built.
      * Called By: BookController.getSuggestions
-     * Table Accessed: books
+     * Table Accessed: books (only before the first index build)
      * Input: keyword (String) - Search keyword
-     * Output: List<String> - List of suggested book names
+     * Output: List<String> - List of suggestions
      * Return: List<String>
      */
     public List<String> getSuggestions(String keyword) {
         if (keyword == null || keyword.trim().isEmpty()) return new java.util.ArrayList<>();
+        if (suggestionTrie.isReady() && searchIndex.isReady()) {
+            java.util.LinkedHashSet<String> res = new java.util.LinkedHashSet<>(suggestionTrie.suggest(keyword, 10));
+            if (res.size() < 10) {
+                String kw = keyword.trim().toLowerCase();
+                for (Book b : searchIndex.search(kw, null, null, null, null, 0, 50).getRecords()) {
+                    if (res.size() >= 10) break;
+                    String name = b.getBookName();
+                    if (name != null && name.toLowerCase().contains(kw)) res.add(name);
+                }
+            }
+            return new java.util.ArrayList<>(res);
+        }
         String sql = "SELECT DISTINCT book_name FROM books WHERE LOWER(book_name) LIKE ? AND status = 'on_sale' LIMIT 10";
         return jdbcTemplate.queryForList(sql, String.class, "%" + keyword.toLowerCase() + "%");
     }
@@ -289,15 +565,16 @@ public class BookService {
      * Function: count
      * Description: Counts the total number of books matching search criteria.
      *              Used for pagination metadata.
-     * Called By: BookController.page
+     * Called By: BookService.search
      * Table Accessed: books
      * Input: bookName (String) - Search keyword
      *        minPrice (Double) - Minimum price filter
      *        maxPrice (Double) - Maximum price filter
+     *        conditionLevel (String) - Condition level filter
      * Output: long - Total count of matching books
      * Return: long
      */
-    public long count(String bookName, Double minPrice, Double maxPrice) {
+    public long count(String bookName, Double minPrice, Double maxPrice, String conditionLevel) {
         java.util.List<Object> params = new java.util.ArrayList<>();
         StringBuilder sb = new StringBuilder();
         sb.append("SELECT COUNT(1) FROM books WHERE status = 'on_sale' AND stock > 0");
@@ -317,6 +594,10 @@ public class BookService {
             sb.append(" AND sell_price IS NOT NULL AND sell_price <= ?");
             params.add(maxPrice);
         }
+        if (conditionLevel != null && !conditionLevel.isEmpty()) {
+            sb.append(" AND condition_level = ?");
+            params.add(conditionLevel);
+        }
         Long c = jdbcTemplate.queryForObject(sb.toString(), Long.class, params.toArray());
         return c == null ? 0 : c;
     }
@@ -324,7 +605,7 @@ public class BookService {
     /**
      * Function: listHot
      * Description: Retrieves a list of the most recently added books.
-     * Called By: BookController.listHot
+     * Called By: BookService.getHotBooks (fallback)
      * Table Accessed: books
      * Input: limit (int) - Number of books to retrieve
      * Output: List<Book> - List of recent books
@@ -373,7 +654,7 @@ public class BookService {
      */
     public Book update(Book incoming, String operator) {
         if (incoming == null || incoming.getId() == null) return null;
-        Book origin = get(incoming.getId());
+        Book origin = load(incoming.getId());
         if (origin == null) return null;
         if (operator == null || !operator.equals(origin.getSellerName())) return null;
         if (incoming.getBookName() != null) origin.setBookName(incoming.getBookName());
@@ -406,6 +687,11 @@ public class BookService {
                 origin.getId(),
                 operator
         );
+        afterCommit(() -> {
+            bookCache.invalidate(origin.getId());
+            searchIndex.upsert(origin);
+            syncFlashSale(origin.getId());
+        });
         return origin;
     }
 
@@ -424,6 +710,11 @@ public class BookService {
     public boolean offline(Long id, String operator) {
         if (id == null || operator == null) return false;
         int updated = jdbcTemplate.update("UPDATE books SET status = 'offline' WHERE id = ? AND seller_name = ?", id, operator);
+        if (updated > 0) {
+            bookCache.invalidate(id);
+            searchIndex.remove(id);
+            afterCommit(() -> syncFlashSale(id));
+        }
         return updated > 0;
     }
 
@@ -452,25 +743,33 @@ public class BookService {
         Integer orderCount = jdbcTemplate.queryForObject(
                 "SELECT COUNT(*) FROM orders WHERE book_id = ?", Integer.class, id);
 
+        boolean deleted;
         if (orderCount != null && orderCount > 0) {
             // Soft delete if orders exist
             jdbcTemplate.update(
                     "UPDATE books SET status = 'deleted' WHERE id = ? AND seller_name = ?", id, operator);
             // Always return true because we verified ownership, and if update returns 0 it means it's already deleted
-            return true;
+            deleted = true;
         } else {
             // Hard delete if no orders
             try {
                 int updated = jdbcTemplate.update(
                         "DELETE FROM books WHERE id = ? AND seller_name = ?", id, operator);
-                return updated > 0;
+                deleted = updated > 0;
             } catch (Exception e) {
                 // Fallback to soft delete if hard delete fails (e.g. other FK constraints)
                 jdbcTemplate.update(
                         "UPDATE books SET status = 'deleted' WHERE id = ? AND seller_name = ?", id, operator);
-                return true;
+                deleted = true;
             }
         }
+        // Only once the row is gone, so a concurrent get cannot re-cache it and a failed delete keeps it listed
+        afterCommit(() -> {
+            bookCache.invalidate(id);
+            searchIndex.remove(id);
+            syncFlashSale(id);
+        });
+        return deleted;
     }
 
     /**
@@ -548,37 +847,111 @@ public class BookService {
     }
 
     /**
-     * Function: approve
-     * Description: Approves a book listing, making it visible for sale.
-     * Called By: AdminController.approveBook
+     * Function: approveAll
+     * Description: Approves many listings with one UPDATE and reloads them with one query.
+     *              Same effect per listing as approve: on_sale, audit reason cleared, audit_time set to now.
+     *              One book.approved event (seller notice) per listing is published in the same transaction;
+     *              cache and index are refreshed after commit.
+     * Called By: AdminController.approve, AdminController.batchApprove
      * Table Accessed: books
-     * Table Updated: books
-     * Input: id (Long) - The ID of the book to approve
-     * Output: boolean - True if successful
-     * Return: boolean
+     * Table Updated: books, outbox_event
+     * Input: ids (List<Long>) - Book IDs, duplicates ignored
+     * Output: List<Book> - The approved listings; ids that do not exist are absent
+     * Return: List<Book>
      */
-    public boolean approve(Long id) {
-        if (id == null) return false;
+    @Transactional
+    public List<Book> approveAll(List<Long> ids) {
+        List<Long> distinct = distinctIds(ids);
+        if (distinct.isEmpty()) return new java.util.ArrayList<>();
         long now = System.currentTimeMillis();
-        int updated = jdbcTemplate.update("UPDATE books SET status = 'on_sale', audit_reason = NULL, audit_time = ? WHERE id = ?", now, id);
-        return updated > 0;
+        String in = placeholders(distinct.size());
+        List<Object> args = new java.util.ArrayList<>();
+        args.add(now);
+        args.addAll(distinct);
+        jdbcTemplate.update("UPDATE books SET status = 'on_sale', audit_reason = NULL, audit_time = ? WHERE id IN (" + in + ")", args.toArray());
+        List<Book> approved = loadAll(distinct);
+        outboxService.publishAll(auditEvents("book.approved", approved, null));
+        afterCommit(() -> {
+            for (Book b : approved) {
+                bookCache.invalidate(b.getId());
+                searchIndex.upsert(b);
+                syncFlashSale(b.getId());
+            }
+        });
+        return approved;
     }
 
     /**
-     * Function: reject
-     * Description: Rejects a book listing.
-     * Called By: AdminController.rejectBook
+     * Function: rejectAll
+     * Description: Rejects many listings with one UPDATE and reloads them with one query.
+     *              Same effect per listing as reject followed by setAuditReason when a reason is given.
+     *              One book.rejected event (seller notice) per listing is published in the same transaction;
+     *              cache and index are refreshed after commit.
+     * Called By: AdminController.reject, AdminController.batchReject
      * Table Accessed: books
-     * Table Updated: books
-     * Input: id (Long) - The ID of the book to reject
-     * Output: boolean - True if successful
-     * Return: boolean
+     * Table Updated: books, outbox_event
+     * Input: ids (List<Long>) - Book IDs, duplicates ignored
+     *        reason (String) - Audit reason, left unchanged when blank
+     * Output: List<Book> - The rejected listings; ids that do not exist are absent
+     * Return: List<Book>
      */
-    public boolean reject(Long id) {
-        if (id == null) return false;
+    @Transactional
+    public List<Book> rejectAll(List<Long> ids, String reason) {
+        List<Long> distinct = distinctIds(ids);
+        if (distinct.isEmpty()) return new java.util.ArrayList<>();
         long now = System.currentTimeMillis();
-        int updated = jdbcTemplate.update("UPDATE books SET status = 'rejected', audit_time = ? WHERE id = ?", now, id);
-        return updated > 0;
+        String in = placeholders(distinct.size());
+        List<Object> args = new java.util.ArrayList<>();
+        args.add(now);
+        boolean hasReason = reason != null && !reason.isBlank();
+        if (hasReason) {
+            args.add(reason);
+            args.addAll(distinct);
+            jdbcTemplate.update("UPDATE books SET status = 'rejected', audit_time = ?, audit_reason = ? WHERE id IN (" + in + ")", args.toArray());
+        } else {
+            args.addAll(distinct);
+            jdbcTemplate.update("UPDATE books SET status = 'rejected', audit_time = ? WHERE id IN (" + in + ")", args.toArray());
+        }
+        List<Book> rejected = loadAll(distinct);
+        outboxService.publishAll(auditEvents("book.rejected", rejected, hasReason ? reason : null));
+        afterCommit(() -> {
+            for (Book b : rejected) {
+                bookCache.invalidate(b.getId());
+                searchIndex.remove(b.getId());
+                syncFlashSale(b.getId());
+            }
+        });
+        return rejected;
+    }
+
+    private static List<com.whu.bookapi.model.OutboxEvent> auditEvents(String eventType, List<Book> books, String reason) {
+        List<com.whu.bookapi.model.OutboxEvent> events = new java.util.ArrayList<>(books.size());
+        for (Book b : books) {
+            java.util.Map<String, Object> payload = new java.util.LinkedHashMap<>();
+            payload.put("bookName", b.getBookName());
+            payload.put("sellerName", b.getSellerName());
+            if (reason != null) payload.put("reason", reason);
+            events.add(OutboxService.event(eventType, b.getId(), payload));
+        }
+        return events;
+    }
+
+    private List<Book> loadAll(List<Long> ids) {
+        return jdbcTemplate.query(
+                "SELECT " + BOOK_COLUMNS + " FROM books WHERE id IN (" + placeholders(ids.size()) + ") ORDER BY id",
+                BookService::mapBook, ids.toArray()
+        );
+    }
+
+    private static List<Long> distinctIds(List<Long> ids) {
+        if (ids == null) return new java.util.ArrayList<>();
+        java.util.LinkedHashSet<Long> set = new java.util.LinkedHashSet<>();
+        for (Long id : ids) if (id != null) set.add(id);
+        return new java.util.ArrayList<>(set);
+    }
+
+    private static String placeholders(int n) {
+        return String.join(", ", java.util.Collections.nCopies(n, "?"));
     }
 
     /**
@@ -590,6 +963,7 @@ public class BookService {
     public boolean setAuditReason(Long id, String reason) {
         if (id == null) return false;
         jdbcTemplate.update("UPDATE books SET audit_reason = ? WHERE id = ?", reason, id);
+        bookCache.invalidate(id);
         return true;
     }
 
@@ -606,6 +980,356 @@ public class BookService {
                 "UPDATE books SET status = 'under_review', audit_reason = NULL, audit_time = NULL WHERE id = ? AND audit_time IS NOT NULL AND audit_time >= ?",
                 id, limit
         );
+        if (updated > 0) {
+            bookCache.invalidate(id);
+            searchIndex.remove(id);
+            afterCommit(() -> syncFlashSale(id));
+        }
         return updated > 0;
     }
+
+    /**
+     * Function: search
+     * Description: Serves the /books/page listing with its total count.
+     *              Answered from BookSearchIndex once it is built; falls back to page/count SQL before that.
+     *              The columnar BookCatalog filters and sorts the keyword matches (or every listing),
+     *              counts the facets in the same pass, and only the page is hydrated.
+     * Called By: BookController.page
+     * Table Accessed: books (fallback only)
+     * Input: bookName (String) - Search keyword for title, author, isbn, or description
+     *        minPrice (Double) - Minimum price filter
+     *        maxPrice (Double) - Maximum price filter
+     *        conditionLevel (String) - Condition level filter
+     *        pageNum (int) - Page number (1-based)
+     *        pageSize (int) - Number of items per page
+     *        sortBy (String) - Sort criteria ("price_asc", "price_desc", "created_desc")
+     *        withFacets (boolean) - Whether to count condition, price range and seller type facets
+     *                               (omitted until the index is built)
+     * Output: PageResponse<Book> - Total count and the requested page
+     * Return: PageResponse<Book>
+     */
+    public PageResponse<Book> search(String bookName, Double minPrice, Double maxPrice, String conditionLevel, int pageNum, int pageSize, String sortBy,
+                                     boolean withFacets) {
+        if (!searchIndex.isReady()) {
+            List<Book> records = page(bookName, minPrice, maxPrice, conditionLevel, pageNum, pageSize, sortBy);
+            long total = cachedCount(bookName, minPrice, maxPrice, conditionLevel);
+            return new PageResponse<>(total, records);
+        }
+        int safePageNum = Math.max(pageNum, 1);
+        int safePageSize = Math.min(Math.max(pageSize, 1), 200);
+        if (catalog.isReady()) {
+            long[] candidates = bookName == null || bookName.isEmpty() ? null : searchIndex.matchIds(bookName);
+            BookCatalog.IdPage ids = catalog.query(candidates, minPrice, maxPrice, conditionLevel, sortBy,
+                    (safePageNum - 1) * safePageSize, safePageSize, withFacets);
+            PageResponse<Book> res = new PageResponse<>(ids.getTotal(), hydrate(ids.getIds()));
+            res.setFacets(ids.getFacets());
+            return res;
+        }
+        BookSearchIndex.SearchResult result = searchIndex.search(bookName, minPrice, maxPrice, conditionLevel, sortBy,
+                (safePageNum - 1) * safePageSize, safePageSize);
+        return new PageResponse<>(result.getTotal(), result.getRecords());
+    }
+
+    /**
+     * Function: searchGrouped
+     * Description: Grouped variant of search: listings sharing an ISBN collapse into one row with the
+     *              listing count, minimum and median price and best condition of that edition.
+     *              Before the in-memory index is built every listing is returned as its own row.
+     * Called By: BookController.page
+     * Table Accessed: books (fallback only)
+     * Input: bookName, minPrice, maxPrice, conditionLevel, pageNum, pageSize, withFacets - Same as search
+     *        sortBy (String) - "price_asc", "price_desc" (minimum price), "created_desc" (newest listing),
+     *                          otherwise editions with the most listings first
+     * Output: PageResponse<IsbnGroup> - Number of editions and the requested page
+     * Return: PageResponse<IsbnGroup>
+     */
+    public PageResponse<IsbnGroup> searchGrouped(String bookName, Double minPrice, Double maxPrice, String conditionLevel,
+                                                 int pageNum, int pageSize, String sortBy, boolean withFacets) {
+        int safePageNum = Math.max(pageNum, 1);
+        int safePageSize = Math.min(Math.max(pageSize, 1), 200);
+        if (!searchIndex.isReady() || !catalog.isReady() || !isbnGroups.isReady()) {
+            PageResponse<Book> flat = search(bookName, minPrice, maxPrice, conditionLevel, safePageNum, safePageSize, sortBy, false);
+            List<IsbnGroup> rows = new java.util.ArrayList<>();
+            for (Book b : flat.getRecords()) {
+                IsbnGroup g = new IsbnGroup();
+                g.setIsbn(IsbnGroupIndex.normalizeIsbn(b.getIsbn()));
+                g.setBookName(b.getBookName());
+                g.setAuthor(b.getAuthor());
+                g.setPublisher(b.getPublisher());
+                g.setCoverUrl(b.getCoverUrl());
+                g.setCount(1);
+                g.setMinPrice(b.getSellPrice());
+                g.setMedianPrice(b.getSellPrice());
+                g.setBestCondition(b.getConditionLevel());
+                g.setSampleBookId(b.getId());
+                rows.add(g);
+            }
+            return new PageResponse<>(flat.getTotal(), rows);
+        }
+        long[] candidates = bookName == null || bookName.isEmpty() ? null : searchIndex.matchIds(bookName);
+        // Matches stream from the catalog scan into the editions; no sorted id array of the whole result
+        List<java.util.Map<String, java.util.Map<String, Long>>> facets = new java.util.ArrayList<>(1);
+        PageResponse<IsbnGroup> res = isbnGroups.groups(
+                sink -> facets.add(catalog.forEachMatch(candidates, minPrice, maxPrice, conditionLevel, withFacets, sink)),
+                sortBy, (safePageNum - 1) * safePageSize, safePageSize);
+        res.setFacets(facets.isEmpty() ? null : facets.get(0));
+        return res;
+    }
+
+    /**
+     * Function: pageByCursor
+     * Description: Keyset pagination for /books/page.
+     *              The cursor carries the last (sort key, id), so every page is a range seek on
+     *              (status, sell_price, id) or (status, created_at, id) and costs the same at any depth.
+     *              Price orders skip listings without a price, which cannot be ordered anyway.
+     * Called By: BookController.page
+     * Table Accessed: books (when the search index is not ready)
+     * Input: bookName, minPrice, maxPrice, conditionLevel - Same filters as page
+     *        cursor (String) - Opaque cursor from the previous page, blank for the first page
+     *        pageSize (int) - Number of items per page
+     *        sortBy (String) - Sort criteria ("price_asc", "price_desc", "created_desc")
+     *        withTotal (boolean) - Whether to include the total count (exact from the index, cached from SQL)
+     *        withFacets (boolean) - Whether to count facets, as in search
+     * Output: CursorPageResponse<Book> - Page of books and the next cursor
+     * Return: CursorPageResponse<Book>
+     */
+    public CursorPageResponse<Book> pageByCursor(String bookName, Double minPrice, Double maxPrice, String conditionLevel,
+                                                 String cursor, int pageSize, String sortBy, boolean withTotal, boolean withFacets) {
+        int safePageSize = Math.min(Math.max(pageSize, 1), 200);
+        String sort = "price_asc".equals(sortBy) || "price_desc".equals(sortBy) || "created_desc".equals(sortBy) ? sortBy : "id";
+        PageCursor after = PageCursor.decode(cursor);
+        // A cursor issued for another sort order cannot be continued; start over
+        if (after != null && !sort.equals(after.getSort())) after = null;
+        List<Book> rows;
+        Long total = null;
+        java.util.Map<String, java.util.Map<String, Long>> facets = null;
+        if (catalog.isReady() && searchIndex.isReady()) {
+            long[] candidates = bookName == null || bookName.isEmpty() ? null : searchIndex.matchIds(bookName);
+            BookCatalog.IdPage ids = catalog.queryAfter(candidates, minPrice, maxPrice, conditionLevel, sort, after, safePageSize + 1, withFacets);
+            rows = hydrate(ids.getIds());
+            if (withTotal) total = ids.getTotal();
+            facets = ids.getFacets();
+        } else if (searchIndex.isReady()) {
+            BookSearchIndex.SearchResult result = searchIndex.searchAfter(bookName, minPrice, maxPrice, conditionLevel, sort, after, safePageSize + 1);
+            rows = result.getRecords();
+            if (withTotal) total = result.getTotal();
+        } else {
+            rows = seekPage(bookName, minPrice, maxPrice, conditionLevel, sort, after, safePageSize + 1);
+            if (withTotal) total = cachedCount(bookName, minPrice, maxPrice, conditionLevel);
+        }
+        String next = null;
+        if (rows.size() > safePageSize) {
+            rows = new java.util.ArrayList<>(rows.subList(0, safePageSize));
+            Book last = rows.get(rows.size() - 1);
+            String key;
+            if ("price_asc".equals(sort) || "price_desc".equals(sort)) key = String.valueOf(last.getSellPrice());
+            else if ("created_desc".equals(sort)) key = String.valueOf(last.getCreatedAt());
+            else key = "";
+            next = new PageCursor(sort, key, last.getId()).encode();
+        }
+        CursorPageResponse<Book> res = new CursorPageResponse<>(rows, next, total);
+        res.setFacets(facets);
+        return res;
+    }
+
+    private List<Book> seekPage(String bookName, Double minPrice, Double maxPrice, String conditionLevel,
+                                String sort, PageCursor after, int limit) {
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT id, book_name, author, original_price, sell_price, description, seller_name, cover_url, isbn, publisher, publish_date, condition_level, stock, status, created_at, seller_type FROM books WHERE status = 'on_sale' AND stock > 0");
+        if (bookName != null && !bookName.isEmpty()) {
+            sb.append(" AND (LOWER(book_name) LIKE ? OR LOWER(author) LIKE ? OR LOWER(isbn) LIKE ? OR LOWER(description) LIKE ?)");
+            String like = "%" + bookName.toLowerCase() + "%";
+            params.add(like);
+            params.add(like);
+            params.add(like);
+            params.add(like);
+        }
+        if (minPrice != null) {
+            sb.append(" AND sell_price >= ?");
+            params.add(minPrice);
+        }
+        if (maxPrice != null) {
+            sb.append(" AND sell_price <= ?");
+            params.add(maxPrice);
+        }
+        if (conditionLevel != null && !conditionLevel.isEmpty()) {
+            sb.append(" AND condition_level = ?");
+            params.add(conditionLevel);
+        }
+        if ("price_asc".equals(sort) || "price_desc".equals(sort)) {
+            sb.append(" AND sell_price IS NOT NULL");
+            Double key = after == null ? null : after.keyAsDouble();
+            String op = "price_asc".equals(sort) ? ">" : "<";
+            if (key != null) {
+                sb.append(" AND (sell_price ").append(op).append(" ? OR (sell_price = ? AND id ").append(op).append(" ?))");
+                params.add(key);
+                params.add(key);
+                params.add(after.getId());
+            }
+            String dir = "price_asc".equals(sort) ? "ASC" : "DESC";
+            sb.append(" ORDER BY sell_price ").append(dir).append(", id ").append(dir);
+        } else if ("created_desc".equals(sort)) {
+            Long key = after == null ? null : after.keyAsLong();
+            if (key != null) {
+                sb.append(" AND (created_at < ? OR (created_at = ? AND id < ?))");
+                params.add(key);
+                params.add(key);
+                params.add(after.getId());
+            }
+            sb.append(" ORDER BY created_at DESC, id DESC");
+        } else {
+            if (after != null) {
+                sb.append(" AND id > ?");
+                params.add(after.getId());
+            }
+            sb.append(" ORDER BY id ASC");
+        }
+        sb.append(" LIMIT ?");
+        params.add(limit);
+        return jdbcTemplate.query(
+                sb.toString(),
+                (rs, rowNum) -> {
+                    Book b = new Book();
+                    b.setId(rs.getLong("id"));
+                    b.setBookName(rs.getString("book_name"));
+                    b.setAuthor(rs.getString("author"));
+                    b.setOriginalPrice((Double) rs.getObject("original_price"));
+                    b.setSellPrice((Double) rs.getObject("sell_price"));
+                    b.setDescription(rs.getString("description"));
+                    b.setSellerName(rs.getString("seller_name"));
+                    b.setCoverUrl(rs.getString("cover_url"));
+                    b.setIsbn(rs.getString("isbn"));
+                    b.setPublisher(rs.getString("publisher"));
+                    b.setPublishDate(rs.getString("publish_date"));
+                    b.setConditionLevel(rs.getString("condition_level"));
+                    b.setStock((Integer) rs.getObject("stock"));
+                    b.setStatus(rs.getString("status"));
+                    b.setCreatedAt(rs.getLong("created_at"));
+                    b.setSellerType(rs.getString("seller_type"));
+                    return b;
+                },
+                params.toArray()
+        );
+    }
+
+    /**
+     * Function: cachedCount
+     * Description: count with a 30 second cache per filter combination, so paging through
+     *              the same result set does not re-run the COUNT scan on every request.
+     * Input: bookName, minPrice, maxPrice, conditionLevel - Same filters as count
+     * Output: long - Possibly slightly stale total
+     * Return: long
+     */
+    private long cachedCount(String bookName, Double minPrice, Double maxPrice, String conditionLevel) {
+        String key = bookName + "|" + minPrice + "|" + maxPrice + "|" + conditionLevel;
+        long now = System.currentTimeMillis();
+        long[] hit = countCache.get(key);
+        if (hit != null && hit[1] > now) return hit[0];
+        long total = count(bookName, minPrice, maxPrice, conditionLevel);
+        if (countCache.size() >= COUNT_CACHE_MAX_KEYS) countCache.clear();
+        countCache.put(key, new long[]{total, now + COUNT_CACHE_TTL_MS});
+        return total;
+    }
+
+    /**
+     * Function: rebuildSearchIndex
+     * Description: Reloads every on-sale listing into BookSearchIndex.
+     *              Incremental updates keep the index current; the periodic rebuild repairs any drift.
+     * Called By: BookIndexScheduler.rebuild
+     * Table Accessed: books
+     * Input: None
+     * Output: int - Number of indexed listings
+     * Return: int
+     */
+    public int rebuildSearchIndex() {
+        List<Book> listable = jdbcTemplate.query(
+                "SELECT id, book_name, author, original_price, sell_price, description, seller_name, cover_url, isbn, publisher, publish_date, condition_level, stock, status, created_at, seller_type FROM books WHERE status = 'on_sale' AND stock > 0",
+                (rs, rowNum) -> {
+                    Book b = new Book();
+                    b.setId(rs.getLong("id"));
+                    b.setBookName(rs.getString("book_name"));
+                    b.setAuthor(rs.getString("author"));
+                    b.setOriginalPrice((Double) rs.getObject("original_price"));
+                    b.setSellPrice((Double) rs.getObject("sell_price"));
+                    b.setDescription(rs.getString("description"));
+                    b.setSellerName(rs.getString("seller_name"));
+                    b.setCoverUrl(rs.getString("cover_url"));
+                    b.setIsbn(rs.getString("isbn"));
+                    b.setPublisher(rs.getString("publisher"));
+                    b.setPublishDate(rs.getString("publish_date"));
+                    b.setConditionLevel(rs.getString("condition_level"));
+                    b.setStock((Integer) rs.getObject("stock"));
+                    b.setStatus(rs.getString("status"));
+                    b.setCreatedAt(rs.getLong("created_at"));
+                    b.setSellerType(rs.getString("seller_type"));
+                    return b;
+                }
+        );
+        searchIndex.rebuild(listable);
+        return listable.size();
+    }
+
+    /**
+     * Function: hydrate
+     * Description: Resolves catalog ids to listings from the search index, keeping their order.
+     *              An id delisted since the catalog query is skipped.
+     * Input: ids (long[]) - Book IDs
+     * Output: List<Book> - Listings
+     * Return: List<Book>
+     */
+    private List<Book> hydrate(long[] ids) {
+        List<Book> res = new java.util.ArrayList<>(ids.length);
+        for (long id : ids) {
+            Book b = searchIndex.get(id);
+            if (b != null) res.add(b);
+        }
+        return res;
+    }
+
+    /**
+     * Function: afterCommit
+     * Description: Runs an in-memory update once the surrounding transaction commits, or right away
+     *              when there is none, so a rolled-back write never reaches the cache or the index.
+     * Input: action (Runnable) - Update to run
+     * Return: void
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Function: syncFlashSale
+     * Description: Resets the flash-sale tokens of a flagged book from its committed stock (0 unless on sale).
+     *              Runs after commit, so the stock read is the one other transactions see.
+     * Input: id (Long) - Book ID
+     * Return: void
+     */
+    private void syncFlashSale(Long id) {
+        if (!flashSaleStock.isFlagged(id)) return;
+        Book b = load(id);
+        flashSaleStock.reconcile(id, b == null || !"on_sale".equals(b.getStatus()) ? Integer.valueOf(0) : b.getStock());
+    }
+
+    /**
+     * Function: syncIndex
+     * Description: Re-reads a book after a status or stock change, refreshing the cache and the search index.
+     * Input: id (Long) - Book ID
+     * Return: void
+     */
+    private void syncIndex(Long id) {
+        bookCache.invalidate(id);
+        Book b = get(id);
+        if (b == null) searchIndex.remove(id);
+        else searchIndex.upsert(b);
+    }
 }
@@ -11,9 +11,11 @@
  * 2. remove - Removes a book from the cart (optionally specific quantity).
  * 3. clear - Clears all items from the user's cart.
  * 4. list - Lists all items in the user's cart.
+ * 5. removeAll - Removes several books from the cart (bought at checkout).
  * History:
  * <author>          <time>          <version>          <desc>
  * WiseBookPal Team  2026-01-02      1.0                Initial implementation
+ * WiseBookPal Team  2026-10-17      1.1                Removed cart items are counted out of the hot books ranking
  */
 
 package com.whu.bookapi.service;
@@ -33,10 +35,12 @@ import java.util.List;
 public class CartService {
     private final BookService bookService;
     private final JdbcTemplate jdbcTemplate;
+    private final HotBookRanker hotBookRanker;
 
-    public CartService(BookService bookService, JdbcTemplate jdbcTemplate) {
+    public CartService(BookService bookService, JdbcTemplate jdbcTemplate, HotBookRanker hotBookRanker) {
         this.bookService = bookService;
         this.jdbcTemplate = jdbcTemplate;
+        this.hotBookRanker = hotBookRanker;
     }
 
     /**
@@ -83,6 +87,7 @@ public class CartService {
                 username,
                 bookId
         );
+        if (currentQty == 0) hotBookRanker.recordCartAdd(bookId);
     }
 
     /**
@@ -114,7 +119,9 @@ public class CartService {
     public void remove(String username, Long bookId, Integer count) {
         if (username == null || bookId == null) return;
         if (count == null || count <= 0) {
-            jdbcTemplate.update("DELETE FROM cart_item WHERE username = ? AND book_id = ?", username, bookId);
+            if (jdbcTemplate.update("DELETE FROM cart_item WHERE username = ? AND book_id = ?", username, bookId) > 0) {
+                hotBookRanker.recordCartRemove(bookId);
+            }
             return;
         }
         Integer existingQty = null;
@@ -129,7 +136,9 @@ public class CartService {
         }
         if (existingQty == null) return;
         if (count >= existingQty) {
-            jdbcTemplate.update("DELETE FROM cart_item WHERE username = ? AND book_id = ?", username, bookId);
+            if (jdbcTemplate.update("DELETE FROM cart_item WHERE username = ? AND book_id = ?", username, bookId) > 0) {
+                hotBookRanker.recordCartRemove(bookId);
+            }
         } else {
             jdbcTemplate.update(
                     "UPDATE cart_item SET quantity = quantity - ? WHERE username = ? AND book_id = ?",
@@ -143,16 +152,39 @@ public class CartService {
     /**
      * Function: clear
      * Description: Removes all items from the user's cart.
-     * Calls: JdbcTemplate.update
+     * Calls: JdbcTemplate.queryForList, JdbcTemplate.update
      * Called By: CartController.clear
-     * Table Accessed: None
+     * Table Accessed: cart_item
      * Table Updated: cart_item
      * Input: username (String)
      * Output: None
      * Return: void
      */
     public void clear(String username) {
+        List<Long> bookIds = jdbcTemplate.queryForList("SELECT book_id FROM cart_item WHERE username = ?", Long.class, username);
         jdbcTemplate.update("DELETE FROM cart_item WHERE username = ?", username);
+        for (Long bookId : bookIds) hotBookRanker.recordCartRemove(bookId);
+    }
+
+    /**
+     * Function: removeAll
+     * Description: Removes several books from the user's cart with one DELETE.
+     * Calls: JdbcTemplate.update
+     * Called By: OrderService.checkout
+     * Table Accessed: None
+     * Table Updated: cart_item
+     * Input: username (String), bookIds (Collection<Long>)
+     * Output: None
+     * Return: void
+     */
+    public void removeAll(String username, java.util.Collection<Long> bookIds) {
+        if (username == null || bookIds == null || bookIds.isEmpty()) return;
+        List<Object> args = new ArrayList<>();
+        args.add(username);
+        args.addAll(bookIds);
+        jdbcTemplate.update("DELETE FROM cart_item WHERE username = ? AND book_id IN ("
+                + String.join(", ", java.util.Collections.nCopies(bookIds.size(), "?")) + ")", args.toArray());
+        for (Long bookId : bookIds) hotBookRanker.recordCartRemove(bookId);
     }
 
     /**
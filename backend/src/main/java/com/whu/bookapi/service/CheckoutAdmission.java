@@ -0,0 +1,174 @@
+package com.whu.bookapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: CheckoutAdmission.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Admission control in front of order creation and payment. A fixed number of slots
+ *              bounds how many checkout requests use the database at once; requests that find no
+ *              free slot join a bounded FIFO waiting line and are answered immediately with their
+ *              position and a retry-after, so no request thread is parked while waiting and
+ *              browsing keeps its threads and connections. Each user holds at most one slot or
+ *              place in line, and a request whose estimated wait exceeds the limit is shed.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+@Component
+public class CheckoutAdmission {
+    /** Extra time a waiting user has to come back after the suggested retry-after */
+    private static final long GRACE_MS = 5_000L;
+
+    private final int slots;
+    private final int maxQueue;
+    private final long maxWaitMs;
+
+    private int active = 0;
+    private final Set<String> activeUsers = new HashSet<>();
+    /** Waiting users in arrival order, with the time their place lapses if they do not retry */
+    private final LinkedHashMap<String, Long> waiting = new LinkedHashMap<>();
+    /** Moving average of the time a request holds a slot */
+    private double avgServiceMs = 50.0;
+    private long admitted = 0;
+    private long queued = 0;
+    private long shed = 0;
+
+    public CheckoutAdmission(@Value("${app.checkout.slots:8}") int slots,
+                             @Value("${app.checkout.max-queue:2000}") int maxQueue,
+                             @Value("${app.checkout.max-wait-ms:10000}") long maxWaitMs) {
+        this.slots = Math.max(1, slots);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /**
+     * Function: enter
+     * Description: Admits the user to a free slot when no one is ahead in line; otherwise keeps or
+     *              gives the user a place in line, or sheds the request when the line is full or the
+     *              estimated wait exceeds the limit.
+     * Called By: OrderController.create, OrderController.pay
+     * Input: username (String) - Requesting user
+     * Output: Ticket - Admitted (must be passed to leave), queued or shed
+     * Return: Ticket
+     */
+    public synchronized Ticket enter(String username) {
+        long now = System.currentTimeMillis();
+        purge(now);
+        if (activeUsers.contains(username)) {
+            return new Ticket(username, Ticket.Kind.QUEUED, 0, 1, now);
+        }
+        int position = indexOf(username);
+        boolean inLine = position >= 0;
+        if (!inLine) position = waiting.size();
+        if (position < slots - active) {
+            waiting.remove(username);
+            active++;
+            activeUsers.add(username);
+            admitted++;
+            return new Ticket(username, Ticket.Kind.ADMITTED, 0, 0, now);
+        }
+        long waitMs = (long) ((position + 1) * avgServiceMs / slots);
+        if (!inLine && (waiting.size() >= maxQueue || waitMs > maxWaitMs)) {
+            shed++;
+            return new Ticket(username, Ticket.Kind.SHED, 0, Math.max(1, maxWaitMs / 1000), now);
+        }
+        long retryAfter = Math.max(1, (waitMs + 999) / 1000);
+        waiting.put(username, now + retryAfter * 1000 + GRACE_MS);
+        if (!inLine) queued++;
+        return new Ticket(username, Ticket.Kind.QUEUED, position + 1, retryAfter, now);
+    }
+
+    /**
+     * Function: leave
+     * Description: Frees the slot of an admitted ticket and feeds its duration into the wait estimate.
+     * Called By: OrderController.create, OrderController.pay
+     * Input: ticket (Ticket) - Ticket returned by enter
+     * Return: void
+     */
+    public synchronized void leave(Ticket ticket) {
+        if (ticket == null || !ticket.isAdmitted() || !activeUsers.remove(ticket.username)) return;
+        active--;
+        avgServiceMs = avgServiceMs * 0.9 + (System.currentTimeMillis() - ticket.issuedAt) * 0.1;
+    }
+
+    /**
+     * Function: stats
+     * Description: Slot usage, line length and admission counters.
+     * Called By: AdminController.cacheStats
+     * Return: Map<String, Object>
+     */
+    public synchronized Map<String, Object> stats() {
+        purge(System.currentTimeMillis());
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("slots", slots);
+        m.put("active", active);
+        m.put("waiting", waiting.size());
+        m.put("admitted", admitted);
+        m.put("queued", queued);
+        m.put("shed", shed);
+        m.put("avgServiceMs", Math.round(avgServiceMs));
+        return m;
+    }
+
+    /** Drops waiting users who did not come back in time */
+    private void purge(long now) {
+        Iterator<Long> it = waiting.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() < now) it.remove();
+        }
+    }
+
+    private int indexOf(String username) {
+        int i = 0;
+        for (String u : waiting.keySet()) {
+            if (u.equals(username)) return i;
+            i++;
+        }
+        return -1;
+    }
+
+    /** Outcome of one admission attempt */
+    public static class Ticket {
+        public enum Kind {ADMITTED, QUEUED, SHED}
+
+        private final String username;
+        private final Kind kind;
+        private final int position;
+        private final long retryAfterSeconds;
+        private final long issuedAt;
+
+        Ticket(String username, Kind kind, int position, long retryAfterSeconds, long issuedAt) {
+            this.username = username;
+            this.kind = kind;
+            this.position = position;
+            this.retryAfterSeconds = retryAfterSeconds;
+            this.issuedAt = issuedAt;
+        }
+
+        public boolean isAdmitted() {
+            return kind == Kind.ADMITTED;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** 1-based place in line, 0 when not waiting in line */
+        public int getPosition() {
+            return position;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import java.util.List;
  * History:
  * <author>          <time>          <version>          <desc>
  * WiseBookPal Team  2024-11-20      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Added batch pending-complaint lookup.
  */
 @Service
 public class ComplaintService {
@@ -171,6 +172,29 @@ public class ComplaintService {
         return cnt != null && cnt > 0;
     }
 
+    /**
+     * Function: ordersWithPendingComplaint
+     * Description: Batch form of hasPendingComplaint.
+     * Called By: OrderScheduler.dailySettlement
+     * Table Accessed: complaints
+     * Input: orderIds (Collection<Long>) - Order IDs
+     * Output: Set<Long> - The orders that have an unresolved complaint
+     * Return: Set<Long>
+     */
+    public java.util.Set<Long> ordersWithPendingComplaint(java.util.Collection<Long> orderIds) {
+        java.util.Set<Long> res = new java.util.HashSet<>();
+        if (orderIds == null || orderIds.isEmpty()) return res;
+        String in = String.join(", ", java.util.Collections.nCopies(orderIds.size(), "?"));
+        jdbcTemplate.query(
+                "SELECT DISTINCT order_id FROM complaints WHERE order_id IN (" + in + ") AND status <> 'resolved'",
+                rs -> {
+                    res.add(rs.getLong("order_id"));
+                },
+                orderIds.toArray()
+        );
+        return res;
+    }
+
     /**
      * Function: audit
      * Description: Updates complaint status with audit metadata.
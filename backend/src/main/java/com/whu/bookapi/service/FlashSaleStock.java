@@ -0,0 +1,236 @@
+package com.whu.bookapi.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: FlashSaleStock.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Opt-in flash-sale mode for hot books. The remaining stock of a flagged book is held as
+ *              reservation tokens in striped atomic counters, so when many buyers race for the last
+ *              copies the losers are turned away without touching the database. A token only admits a
+ *              buyer to the normal conditional UPDATE, which stays the source of truth. Counters are
+ *              reset to the committed stock of the listing (0 unless on sale) after every committed stock
+ *              or status change and on every index rebuild. Reservations admitted but not yet decided are
+ *              counted separately and never subtracted: one that commits after a reset leaves a token
+ *              too many, which the next attempt burns when the UPDATE finds no stock, so the counters may
+ *              briefly overstate the stock but never understate it.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Reset from committed stock only; sold-out attempts burn their token.
+ */
+@Component
+public class FlashSaleStock {
+    private static final int STRIPES = 8;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Tokens> tokens = new ConcurrentHashMap<>();
+
+    public FlashSaleStock(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Function: isFlagged
+     * Description: Whether the book is in flash-sale mode.
+     * Input: bookId (Long) - Book ID
+     * Return: boolean
+     */
+    public boolean isFlagged(Long bookId) {
+        return bookId != null && tokens.containsKey(bookId);
+    }
+
+    /**
+     * Function: tryAcquire
+     * Description: Takes one reservation token. Books not in flash-sale mode always pass.
+     * Called By: OrderController.create
+     * Input: bookId (Long) - Book ID
+     * Output: boolean - False when a flagged book has no tokens left (reject without a DB call)
+     * Return: boolean
+     */
+    public boolean tryAcquire(Long bookId) {
+        Tokens t = bookId == null ? null : tokens.get(bookId);
+        if (t == null) return true;
+        if (t.take()) {
+            t.inFlight.incrementAndGet();
+            return true;
+        }
+        t.rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Function: complete
+     * Description: Ends a reservation attempt admitted by tryAcquire. The token stays taken when the copy
+     *              was reserved, and also when the UPDATE found the book sold out or off sale (the token did
+     *              not stand for a real copy); otherwise, e.g. the buyer was refused or the call failed, it is
+     *              returned.
+     * Called By: OrderController.create
+     * Input: bookId (Long) - Book ID
+     *        consumed (boolean) - Whether the token is used up
+     * Return: void
+     */
+    public void complete(Long bookId, boolean consumed) {
+        Tokens t = bookId == null ? null : tokens.get(bookId);
+        if (t == null) return;
+        t.inFlight.decrementAndGet();
+        if (!consumed) t.put(1);
+    }
+
+    /**
+     * Function: consume
+     * Description: Removes tokens for copies reserved outside tryAcquire (cart checkout).
+     * Called By: BookService.reserveAllForOrder
+     * Input: bookId (Long) - Book ID
+     *        count (int) - Copies reserved
+     * Return: void
+     */
+    public void consume(Long bookId, int count) {
+        Tokens t = bookId == null ? null : tokens.get(bookId);
+        if (t == null) return;
+        for (int i = 0; i < count; i++) {
+            if (!t.take()) break;
+        }
+    }
+
+    /**
+     * Function: reconcile
+     * Description: Resets the tokens of a flagged book to its committed stock. Reservations in flight are
+     *              not subtracted: those already committed are in the stock, the others may still fail.
+     * Called By: BookService stock and status changes, after commit
+     * Input: bookId (Long) - Book ID
+     *        stock (Integer) - Committed stock read from the database, 0 when the book is not on sale,
+     *                          null when it is gone
+     * Return: void
+     */
+    public void reconcile(Long bookId, Integer stock) {
+        Tokens t = bookId == null ? null : tokens.get(bookId);
+        if (t == null) return;
+        t.reset(Math.max(0, stock == null ? 0 : stock));
+    }
+
+    /**
+     * Function: enable
+     * Description: Puts a book into flash-sale mode (persisted in flash_sale_book) and loads its tokens.
+     * Called By: AdminController.setFlashSale
+     * Table Accessed: books
+     * Table Updated: flash_sale_book
+     * Input: bookId (Long) - Book ID
+     * Output: boolean - False when the book does not exist
+     * Return: boolean
+     */
+    public boolean enable(Long bookId) {
+        List<Integer> stock = jdbcTemplate.queryForList(
+                "SELECT CASE WHEN status = 'on_sale' THEN stock ELSE 0 END FROM books WHERE id = ?", Integer.class, bookId);
+        if (stock.isEmpty()) return false;
+        jdbcTemplate.update("INSERT IGNORE INTO flash_sale_book (book_id, created_at) VALUES (?, ?)", bookId, System.currentTimeMillis());
+        tokens.computeIfAbsent(bookId, k -> new Tokens()).reset(stock.get(0) == null ? 0 : stock.get(0));
+        return true;
+    }
+
+    /**
+     * Function: disable
+     * Description: Takes a book out of flash-sale mode.
+     * Called By: AdminController.setFlashSale
+     * Table Updated: flash_sale_book
+     * Input: bookId (Long) - Book ID
+     * Return: void
+     */
+    public void disable(Long bookId) {
+        jdbcTemplate.update("DELETE FROM flash_sale_book WHERE book_id = ?", bookId);
+        tokens.remove(bookId);
+    }
+
+    /**
+     * Function: reload
+     * Description: Loads the flagged books and resets every counter from the committed stock.
+     * Called By: BookIndexScheduler.rebuild
+     * Table Accessed: flash_sale_book, books
+     * Return: void
+     */
+    public void reload() {
+        Map<Long, Integer> stocks = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT f.book_id, CASE WHEN b.status = 'on_sale' THEN b.stock ELSE 0 END AS stock " +
+                        "FROM flash_sale_book f JOIN books b ON b.id = f.book_id",
+                rs -> {
+                    stocks.put(rs.getLong("book_id"), rs.getInt("stock"));
+                }
+        );
+        tokens.keySet().retainAll(stocks.keySet());
+        for (Map.Entry<Long, Integer> e : stocks.entrySet()) {
+            tokens.computeIfAbsent(e.getKey(), k -> new Tokens()).reset(Math.max(0, e.getValue()));
+        }
+    }
+
+    /**
+     * Function: stats
+     * Description: Tokens left, reservations in flight and instant rejections per flagged book.
+     * Called By: AdminController.flashSaleStats
+     * Return: List<Map<String, Object>>
+     */
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> res = new ArrayList<>();
+        for (Map.Entry<Long, Tokens> e : tokens.entrySet()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("bookId", e.getKey());
+            m.put("tokens", e.getValue().available());
+            m.put("inFlight", e.getValue().inFlight.get());
+            m.put("rejected", e.getValue().rejected.get());
+            res.add(m);
+        }
+        return res;
+    }
+
+    /** Striped token counters of one book */
+    private static final class Tokens {
+        private final AtomicInteger[] stripes = new AtomicInteger[STRIPES];
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        Tokens() {
+            for (int i = 0; i < STRIPES; i++) stripes[i] = new AtomicInteger();
+        }
+
+        /** Takes a token from a random stripe, probing the others when it is empty */
+        boolean take() {
+            int start = ThreadLocalRandom.current().nextInt(STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                AtomicInteger s = stripes[(start + i) % STRIPES];
+                int v = s.get();
+                while (v > 0) {
+                    if (s.compareAndSet(v, v - 1)) return true;
+                    v = s.get();
+                }
+            }
+            return false;
+        }
+
+        void put(int n) {
+            stripes[ThreadLocalRandom.current().nextInt(STRIPES)].addAndGet(n);
+        }
+
+        synchronized void reset(int total) {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i].set(total / STRIPES + (i < total % STRIPES ? 1 : 0));
+            }
+        }
+
+        int available() {
+            int sum = 0;
+            for (AtomicInteger s : stripes) sum += s.get();
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: HotBookRanker.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Popularity ranking for the home page "hot books" list.
+ *              Each favorite and order adds a weighted point that decays with a 3 day half-life;
+ *              books currently sitting in carts add a non-decaying level.
+ *              Scores are advanced incrementally from id/time watermarks in the background and
+ *              published as a ranked snapshot, so reads never touch the database.
+ *              Cart adds and removals only bump lock-free counters on top of the cart counts loaded by
+ *              the last rebuild; refresh and rebuild are serialized by their own lock, which the cart
+ *              path never takes.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Lock-free cart counters, cart removals counted, refresh lock not shared with writers.
+ */
+@Component
+public class HotBookRanker {
+    private static final double FAVORITE_WEIGHT = 3.0;
+    private static final double CART_WEIGHT = 2.0;
+    private static final double ORDER_WEIGHT = 4.0;
+    private static final double HALF_LIFE_MS = 3.0 * 24 * 60 * 60 * 1000;
+    private static final double DECAY_PER_MS = Math.log(2) / HALF_LIFE_MS;
+    /** Events older than this contribute less than 0.1% and are skipped on full rebuilds */
+    private static final long WINDOW_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final int SNAPSHOT_SIZE = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookSearchIndex searchIndex;
+
+    /** Serializes refresh and rebuild; guards eventScores, scoredAt and the watermarks */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    /** Decayed event score by book id, valid as of scoredAt */
+    private Map<Long, Double> eventScores = new HashMap<>();
+    /** Number of carts holding each book when the last rebuild read cart_item; replaced, never modified */
+    private volatile Map<Long, Integer> cartBase = Map.of();
+    /** Cart adds minus removals by book id since cartBase was read */
+    private volatile ConcurrentHashMap<Long, LongAdder> cartDeltas = new ConcurrentHashMap<>();
+    private long scoredAt = 0;
+    private long favoriteWatermark = 0;
+    private long orderWatermark = 0;
+    /** Ranked book ids, best first; replaced atomically after every refresh */
+    private volatile long[] ranked = new long[0];
+    private volatile boolean built = false;
+
+    public HotBookRanker(JdbcTemplate jdbcTemplate, BookSearchIndex searchIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Function: rebuild
+     * Description: Recomputes all scores from the last 30 days of favorites and orders and the current carts.
+     *              Also corrects drift from removed favorites and cart items.
+     * Called By: HotBookScheduler.rebuild
+     * Table Accessed: favorites, orders, cart_item
+     * Return: void
+     */
+    public void rebuild() {
+        refreshLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            eventScores = new HashMap<>();
+            favoriteWatermark = now - WINDOW_MS;
+            orderWatermark = 0;
+            Long minOrderId = jdbcTemplate.queryForObject(
+                    "SELECT MIN(id) FROM orders WHERE create_time >= ?",
+                    Long.class,
+                    new java.sql.Timestamp(now - WINDOW_MS)
+            );
+            if (minOrderId != null) orderWatermark = minOrderId - 1;
+            else {
+                Long maxOrderId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM orders", Long.class);
+                orderWatermark = maxOrderId == null ? 0 : maxOrderId;
+            }
+            // Start new deltas before reading the carts; a change racing the read may count twice until the next rebuild
+            cartDeltas = new ConcurrentHashMap<>();
+            Map<Long, Integer> base = new HashMap<>();
+            jdbcTemplate.query("SELECT book_id, COUNT(1) AS cnt FROM cart_item GROUP BY book_id", rs -> {
+                base.put(rs.getLong("book_id"), rs.getInt("cnt"));
+            });
+            cartBase = base;
+            scoredAt = now;
+            advance(now);
+            built = true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Function: refresh
+     * Description: Decays existing scores to now and folds in favorites and orders created since the last run.
+     * Called By: HotBookScheduler.refresh
+     * Table Accessed: favorites, orders
+     * Return: void
+     */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            if (!built) {
+                rebuild();
+                return;
+            }
+            advance(System.currentTimeMillis());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Function: recordCartAdd
+     * Description: Counts a book entering a cart immediately; cart_item rows carry no timestamp to poll on.
+     *              Lock-free, so the cart request never waits for a refresh.
+     * Called By: CartService.add
+     * Input: bookId (Long) - Book added to a cart
+     * Return: void
+     */
+    public void recordCartAdd(Long bookId) {
+        if (bookId == null) return;
+        cartDeltas.computeIfAbsent(bookId, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Function: recordCartRemove
+     * Description: Counts a book leaving a cart (removed, cleared or bought).
+     * Called By: CartService.remove, CartService.clear, CartService.removeAll
+     * Input: bookId (Long) - Book removed from a cart
+     * Return: void
+     */
+    public void recordCartRemove(Long bookId) {
+        if (bookId == null) return;
+        cartDeltas.computeIfAbsent(bookId, k -> new LongAdder()).decrement();
+    }
+
+    /**
+     * Function: top
+     * Description: Reads the hot list from the current snapshot.
+     *              With a seed, the top pool (three times the limit, at least 30) is shuffled
+     *              deterministically so the home page varies without losing relevance.
+     * Called By: BookService.getHotBooks
+     * Input: limit (int) - Number of books
+     *        seed (Long) - Shuffle seed, null for strict ranking
+     * Output: List<Book> - Hot books, or an empty list before the first build
+     * Return: List<Book>
+     */
+    public List<Book> top(int limit, Long seed) {
+        long[] snapshot = ranked;
+        int n = Math.max(limit, 0);
+        List<Book> res = new ArrayList<>(n);
+        if (seed == null) {
+            for (int i = 0; i < snapshot.length && res.size() < n; i++) {
+                Book b = searchIndex.get(snapshot[i]);
+                if (b != null) res.add(b);
+            }
+            return res;
+        }
+        int pool = Math.min(snapshot.length, Math.max(n * 3, 30));
+        List<Book> candidates = new ArrayList<>(pool);
+        for (int i = 0; i < pool; i++) {
+            Book b = searchIndex.get(snapshot[i]);
+            if (b != null) candidates.add(b);
+        }
+        Collections.shuffle(candidates, new Random(seed));
+        return new ArrayList<>(candidates.subList(0, Math.min(n, candidates.size())));
+    }
+
+    /**
+     * Function: isBuilt
+     * Description: Whether a snapshot has been published.
+     * Return: boolean
+     */
+    public boolean isBuilt() {
+        return built && searchIndex.isReady();
+    }
+
+    private void advance(long now) {
+        double factor = Math.exp(-DECAY_PER_MS * Math.max(now - scoredAt, 0));
+        eventScores.replaceAll((id, score) -> score * factor);
+        eventScores.values().removeIf(score -> score < 1e-3);
+        scoredAt = now;
+
+        long[] favMax = {favoriteWatermark};
+        jdbcTemplate.query(
+                "SELECT book_id, created_at FROM favorites WHERE created_at > ? ORDER BY created_at",
+                rs -> {
+                    long createdAt = rs.getLong("created_at");
+                    eventScores.merge(rs.getLong("book_id"), FAVORITE_WEIGHT * decay(now, createdAt), Double::sum);
+                    favMax[0] = Math.max(favMax[0], createdAt);
+                },
+                favoriteWatermark
+        );
+        favoriteWatermark = favMax[0];
+
+        long[] orderMax = {orderWatermark};
+        jdbcTemplate.query(
+                "SELECT id, book_id, create_time FROM orders WHERE id > ? ORDER BY id",
+                rs -> {
+                    java.sql.Timestamp ts = rs.getTimestamp("create_time");
+                    long createdAt = ts == null ? now : ts.getTime();
+                    eventScores.merge(rs.getLong("book_id"), ORDER_WEIGHT * decay(now, createdAt), Double::sum);
+                    orderMax[0] = Math.max(orderMax[0], rs.getLong("id"));
+                },
+                orderWatermark
+        );
+        orderWatermark = orderMax[0];
+
+        publish();
+    }
+
+    private void publish() {
+        Map<Long, Double> total = new HashMap<>(eventScores);
+        Map<Long, Long> carts = new HashMap<>();
+        for (Map.Entry<Long, Integer> e : cartBase.entrySet()) carts.put(e.getKey(), (long) e.getValue());
+        for (Map.Entry<Long, LongAdder> e : cartDeltas.entrySet()) carts.merge(e.getKey(), e.getValue().sum(), Long::sum);
+        for (Map.Entry<Long, Long> e : carts.entrySet()) {
+            if (e.getValue() > 0) total.merge(e.getKey(), CART_WEIGHT * e.getValue(), Double::sum);
+        }
+        List<Map.Entry<Long, Double>> entries = new ArrayList<>();
+        for (Map.Entry<Long, Double> e : total.entrySet()) {
+            if (searchIndex.get(e.getKey()) != null) entries.add(e);
+        }
+        entries.sort((a, b) -> {
+            int c = Double.compare(b.getValue(), a.getValue());
+            return c != 0 ? c : Long.compare(b.getKey(), a.getKey());
+        });
+        // Pad with the newest listings so a quiet catalogue still has a full hot list
+        java.util.LinkedHashSet<Long> ids = new java.util.LinkedHashSet<>();
+        for (int i = 0; i < entries.size() && ids.size() < SNAPSHOT_SIZE; i++) ids.add(entries.get(i).getKey());
+        if (ids.size() < SNAPSHOT_SIZE) {
+            for (Book b : searchIndex.search(null, null, null, null, "created_desc", 0, SNAPSHOT_SIZE).getRecords()) {
+                if (ids.size() >= SNAPSHOT_SIZE) break;
+                ids.add(b.getId());
+            }
+        }
+        long[] next = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids) next[i++] = id;
+        ranked = next;
+    }
+
+    private static double decay(long now, long eventTime) {
+        return Math.exp(-DECAY_PER_MS * Math.max(now - eventTime, 0));
+    }
+}
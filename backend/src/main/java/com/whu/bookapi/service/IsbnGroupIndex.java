@@ -0,0 +1,298 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.IsbnGroup;
+import com.whu.bookapi.dto.PageResponse;
+import com.whu.bookapi.model.Book;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: IsbnGroupIndex.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Per-ISBN aggregates of on-sale listings for the grouped search mode.
+ *              Each edition keeps its listings, a sorted price array (for min and median) and
+ *              condition counts, updated incrementally through BookListingListener.
+ *              Listings without an ISBN form a group of their own.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Index listener registered after construction.
+ * WiseBookPal Team  2026-10-17      1.2                Groups straight from a match scan instead of an id array.
+ */
+@Component
+public class IsbnGroupIndex implements BookListingListener {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Group> groups = new HashMap<>();
+    /** Group key of each indexed listing */
+    private final Map<Long, String> keyById = new HashMap<>();
+    private volatile boolean ready = false;
+
+    private final BookSearchIndex searchIndex;
+
+    public IsbnGroupIndex(BookSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    @PostConstruct
+    void register() {
+        searchIndex.addListener(this);
+    }
+
+    /**
+     * Function: isReady
+     * Description: Whether the aggregates have been loaded from the listings.
+     * Return: boolean
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Function: normalizeIsbn
+     * Description: Strips separators so "978-7-04-039663-8" and "9787040396638" share a group.
+     * Input: isbn (String) - Raw ISBN
+     * Output: String - Digits (and a trailing X) in upper case, null when nothing is left
+     * Return: String
+     */
+    public static String normalizeIsbn(String isbn) {
+        if (isbn == null) return null;
+        StringBuilder sb = new StringBuilder(isbn.length());
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (Character.isLetterOrDigit(c)) sb.append(Character.toUpperCase(c));
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * Function: conditionRank
+     * Description: Orders condition levels: 全新 is 10, "N成新" is N, anything else 0.
+     * Input: conditionLevel (String) - Condition level label
+     * Output: int - Higher is better
+     * Return: int
+     */
+    public static int conditionRank(String conditionLevel) {
+        if (conditionLevel == null) return 0;
+        String c = conditionLevel.trim();
+        if ("全新".equals(c)) return 10;
+        if (c.length() >= 3 && c.endsWith("成新")) {
+            int n = "一二三四五六七八九".indexOf(c.charAt(0));
+            if (n >= 0) return n + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Function: groups
+     * Description: Collapses matching listings into one row per ISBN and returns a page of rows.
+     *              The listing ids select which editions appear; each row summarises every on-sale
+     *              copy of that edition.
+     * Called By: IsbnGroupIndexTest
+     * Input: ids (long[]) - Ids of the listings matching the search filters
+     *        sortBy, offset, limit - Same as the scan variant
+     * Output: PageResponse<IsbnGroup> - Number of editions and the requested page
+     * Return: PageResponse<IsbnGroup>
+     */
+    public PageResponse<IsbnGroup> groups(long[] ids, String sortBy, int offset, int limit) {
+        return groups(sink -> {
+            for (long id : ids) sink.accept(id);
+        }, sortBy, offset, limit);
+    }
+
+    /**
+     * Function: groups
+     * Description: Scan variant: matches feeds the matching listing ids one at a time (e.g. a filtered
+     *              BookCatalog scan), so no id array is built; only the editions seen are collected.
+     *              Runs matches under this index's read lock, which is therefore taken before the catalog's.
+     * Called By: BookService.searchGrouped
+     * Input: matches (Consumer<LongConsumer>) - Passes every matching listing id to the given sink
+     *        sortBy (String) - "price_asc" / "price_desc" on the minimum price, "created_desc" on the
+     *                          newest listing, otherwise most listings first
+     *        offset (int) - Rows to skip
+     *        limit (int) - Page size
+     * Output: PageResponse<IsbnGroup> - Number of editions and the requested page
+     * Return: PageResponse<IsbnGroup>
+     */
+    public PageResponse<IsbnGroup> groups(Consumer<LongConsumer> matches, String sortBy, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Set<String> keys = new LinkedHashSet<>();
+            matches.accept(id -> {
+                String key = keyById.get(id);
+                if (key != null) keys.add(key);
+            });
+            List<Group> matched = new ArrayList<>(keys.size());
+            for (String key : keys) matched.add(groups.get(key));
+            matched.sort(comparator(sortBy));
+            int from = Math.min(Math.max(offset, 0), matched.size());
+            int to = Math.min(from + Math.max(limit, 0), matched.size());
+            List<IsbnGroup> rows = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) rows.add(matched.get(i).toDto());
+            return new PageResponse<>(matched.size(), rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingChanged(Book before, Book after) {
+        lock.writeLock().lock();
+        try {
+            if (before != null) unput(before.getId());
+            if (after != null) put(after);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingsReloaded(Collection<Book> listings) {
+        lock.writeLock().lock();
+        try {
+            groups.clear();
+            keyById.clear();
+            for (Book b : listings) put(b);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Book b) {
+        if (b == null || b.getId() == null) return;
+        unput(b.getId());
+        String isbn = normalizeIsbn(b.getIsbn());
+        String key = isbn == null ? "#" + b.getId() : isbn;
+        groups.computeIfAbsent(key, k -> new Group(k, isbn)).add(b);
+        keyById.put(b.getId(), key);
+    }
+
+    private void unput(Long id) {
+        if (id == null) return;
+        String key = keyById.remove(id);
+        if (key == null) return;
+        Group g = groups.get(key);
+        if (g == null) return;
+        g.remove(id);
+        if (g.members.isEmpty()) groups.remove(key);
+    }
+
+    private static Comparator<Group> comparator(String sortBy) {
+        Comparator<Group> byKey = Comparator.comparing(g -> g.key);
+        if ("price_asc".equals(sortBy)) {
+            return Comparator.comparingDouble((Group g) -> g.priced == 0 ? Double.MAX_VALUE : g.prices[0]).thenComparing(byKey);
+        }
+        if ("price_desc".equals(sortBy)) {
+            return Comparator.comparingDouble((Group g) -> g.priced == 0 ? -1 : g.prices[0]).reversed().thenComparing(byKey);
+        }
+        if ("created_desc".equals(sortBy)) {
+            return Comparator.comparingLong(Group::latestCreated).reversed().thenComparing(byKey);
+        }
+        return Comparator.comparingInt((Group g) -> g.members.size()).reversed().thenComparing(byKey);
+    }
+
+    /** Aggregates of one edition */
+    private static class Group {
+        private final String key;
+        private final String isbn;
+        private final Map<Long, Book> members = new HashMap<>(4);
+        /** Prices of the priced members, ascending */
+        private double[] prices = new double[4];
+        private int priced = 0;
+        private final Map<String, Integer> conditionCounts = new HashMap<>(4);
+
+        Group(String key, String isbn) {
+            this.key = key;
+            this.isbn = isbn;
+        }
+
+        void add(Book b) {
+            members.put(b.getId(), b);
+            if (b.getSellPrice() != null) {
+                double p = b.getSellPrice();
+                if (priced == prices.length) prices = Arrays.copyOf(prices, priced * 2);
+                int at = Arrays.binarySearch(prices, 0, priced, p);
+                if (at < 0) at = -at - 1;
+                System.arraycopy(prices, at, prices, at + 1, priced - at);
+                prices[at] = p;
+                priced++;
+            }
+            if (b.getConditionLevel() != null) conditionCounts.merge(b.getConditionLevel(), 1, Integer::sum);
+        }
+
+        void remove(Long id) {
+            Book b = members.remove(id);
+            if (b == null) return;
+            if (b.getSellPrice() != null) {
+                int at = Arrays.binarySearch(prices, 0, priced, b.getSellPrice());
+                if (at >= 0) {
+                    System.arraycopy(prices, at + 1, prices, at, priced - at - 1);
+                    priced--;
+                }
+            }
+            if (b.getConditionLevel() != null) {
+                conditionCounts.computeIfPresent(b.getConditionLevel(), (k, v) -> v > 1 ? v - 1 : null);
+            }
+        }
+
+        long latestCreated() {
+            long latest = Long.MIN_VALUE;
+            for (Book b : members.values()) {
+                if (b.getCreatedAt() != null) latest = Math.max(latest, b.getCreatedAt());
+            }
+            return latest;
+        }
+
+        IsbnGroup toDto() {
+            // The cheapest listing represents the edition; ties go to the lowest id
+            Book sample = null;
+            for (Book b : members.values()) {
+                if (sample == null || cheaper(b, sample)) sample = b;
+            }
+            String best = null;
+            for (String c : conditionCounts.keySet()) {
+                if (best == null || conditionRank(c) > conditionRank(best)
+                        || (conditionRank(c) == conditionRank(best) && c.compareTo(best) < 0)) best = c;
+            }
+            IsbnGroup dto = new IsbnGroup();
+            dto.setIsbn(isbn);
+            dto.setCount(members.size());
+            dto.setBestCondition(best);
+            if (priced > 0) {
+                dto.setMinPrice(prices[0]);
+                dto.setMedianPrice(priced % 2 == 1 ? prices[priced / 2] : (prices[priced / 2 - 1] + prices[priced / 2]) / 2);
+            }
+            if (sample != null) {
+                dto.setBookName(sample.getBookName());
+                dto.setAuthor(sample.getAuthor());
+                dto.setPublisher(sample.getPublisher());
+                dto.setCoverUrl(sample.getCoverUrl());
+                dto.setSampleBookId(sample.getId());
+            }
+            return dto;
+        }
+
+        private static boolean cheaper(Book a, Book b) {
+            Double pa = a.getSellPrice();
+            Double pb = b.getSellPrice();
+            if (pa != null && pb == null) return true;
+            if (pa == null && pb != null) return false;
+            if (pa != null && !pa.equals(pb)) return pa < pb;
+            return a.getId() < b.getId();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.PriceSuggestion;
+import com.whu.bookapi.model.Book;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: IsbnPriceStats.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Per-ISBN price distributions by condition level, used to suggest a price to sellers.
+ *              Sold prices of the last year come from orders and are folded in incrementally past an
+ *              (expire_at, id) watermark once an order's payment window has closed, so an older order
+ *              whose window closes late is still counted; current listing prices
+ *              follow BookSearchIndex through BookListingListener. A daily rebuild ages out old sales
+ *              and corrects orders refunded after they were counted.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Watermark keyed on (expire_at, id); listener registered after construction.
+ */
+@Component
+public class IsbnPriceStats implements BookListingListener {
+    private static final long WINDOW_MS = 365L * 24 * 60 * 60 * 1000;
+    /** Orders are counted this long after their payment deadline, when they are paid or cancelled for good */
+    private static final long SETTLE_MS = 60_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** ISBN -> condition level -> sold prices */
+    private final Map<String, Map<String, SortedPrices>> sold = new HashMap<>();
+    /** ISBN -> condition level -> current listing prices */
+    private final Map<String, Map<String, SortedPrices>> listed = new HashMap<>();
+    private final BookSearchIndex searchIndex;
+    /** expire_at and id of the last settled order folded in */
+    private long expireWatermark = 0;
+    private long idWatermark = 0;
+    private volatile boolean built = false;
+
+    public IsbnPriceStats(JdbcTemplate jdbcTemplate, BookSearchIndex searchIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchIndex = searchIndex;
+    }
+
+    @PostConstruct
+    void register() {
+        searchIndex.addListener(this);
+    }
+
+    /**
+     * Function: rebuild
+     * Description: Reloads sold prices of the last year from orders.
+     * Called By: PriceStatsScheduler.rebuild, refresh (first run)
+     * Table Accessed: orders, books
+     * Return: void
+     */
+    public synchronized void rebuild() {
+        long now = System.currentTimeMillis();
+        long cutoff = now - SETTLE_MS;
+        Map<String, Map<String, SortedPrices>> next = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT o.price, b.isbn, b.condition_level FROM orders o JOIN books b ON b.id = o.book_id " +
+                        "WHERE o.expire_at < ? AND o.create_time >= ? AND o.status IN ('paid', 'received', 'completed')",
+                rs -> {
+                    addSale(next, rs.getString("isbn"), rs.getString("condition_level"), rs.getDouble("price"));
+                },
+                cutoff, new java.sql.Timestamp(now - WINDOW_MS)
+        );
+        lock.writeLock().lock();
+        try {
+            sold.clear();
+            sold.putAll(next);
+            // Everything with expire_at below the cutoff has been read
+            expireWatermark = cutoff - 1;
+            idWatermark = Long.MAX_VALUE;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        built = true;
+    }
+
+    /**
+     * Function: refresh
+     * Description: Folds in orders whose payment window closed since the last run.
+     * Called By: PriceStatsScheduler.refresh
+     * Table Accessed: orders, books
+     * Return: void
+     */
+    public synchronized void refresh() {
+        if (!built) {
+            rebuild();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, SortedPrices>> delta = new HashMap<>();
+        long[] last = {expireWatermark, idWatermark};
+        jdbcTemplate.query(
+                "SELECT o.id, o.expire_at, o.price, o.status, b.isbn, b.condition_level FROM orders o JOIN books b ON b.id = o.book_id " +
+                        "WHERE (o.expire_at > ? OR (o.expire_at = ? AND o.id > ?)) AND o.expire_at < ? ORDER BY o.expire_at, o.id",
+                rs -> {
+                    String status = rs.getString("status");
+                    if ("paid".equals(status) || "received".equals(status) || "completed".equals(status)) {
+                        addSale(delta, rs.getString("isbn"), rs.getString("condition_level"), rs.getDouble("price"));
+                    }
+                    last[0] = rs.getLong("expire_at");
+                    last[1] = rs.getLong("id");
+                },
+                expireWatermark, expireWatermark, idWatermark, now - SETTLE_MS
+        );
+        if (delta.isEmpty() && last[0] == expireWatermark && last[1] == idWatermark) return;
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Map<String, SortedPrices>> e : delta.entrySet()) {
+                Map<String, SortedPrices> byCondition = sold.computeIfAbsent(e.getKey(), k -> new HashMap<>());
+                for (Map.Entry<String, SortedPrices> c : e.getValue().entrySet()) {
+                    SortedPrices target = byCondition.computeIfAbsent(c.getKey(), k -> new SortedPrices());
+                    for (int i = 0; i < c.getValue().size; i++) target.add(c.getValue().values[i]);
+                }
+            }
+            expireWatermark = last[0];
+            idWatermark = last[1];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Function: suggest
+     * Description: Price distribution of an ISBN by condition level and a suggested price for one condition.
+     *              The suggestion is the median for that condition, or across all conditions when it has no data.
+     * Called By: BookService.suggestPrice
+     * Input: isbn (String) - ISBN, separators ignored
+     *        conditionLevel (String) - Condition of the copy being listed, may be null
+     * Output: PriceSuggestion - Distribution and suggestion, null when the ISBN is blank
+     * Return: PriceSuggestion
+     */
+    public PriceSuggestion suggest(String isbn, String conditionLevel) {
+        String key = IsbnGroupIndex.normalizeIsbn(isbn);
+        if (key == null) return null;
+        PriceSuggestion res = new PriceSuggestion();
+        res.setIsbn(key);
+        res.setConditionLevel(conditionLevel);
+        Map<String, PriceSuggestion.ConditionStats> byCondition = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            Map<String, SortedPrices> s = sold.getOrDefault(key, Map.of());
+            Map<String, SortedPrices> l = listed.getOrDefault(key, Map.of());
+            // Best condition first
+            TreeSet<String> conditions = new TreeSet<>((a, b) -> {
+                int c = Integer.compare(IsbnGroupIndex.conditionRank(b), IsbnGroupIndex.conditionRank(a));
+                return c != 0 ? c : a.compareTo(b);
+            });
+            conditions.addAll(s.keySet());
+            conditions.addAll(l.keySet());
+            SortedPrices all = new SortedPrices();
+            for (String c : conditions) {
+                SortedPrices soldPrices = s.get(c);
+                SortedPrices listedPrices = l.get(c);
+                SortedPrices merged = SortedPrices.merge(soldPrices, listedPrices);
+                if (merged.size == 0) continue;
+                all = SortedPrices.merge(all, merged);
+                PriceSuggestion.ConditionStats stats = new PriceSuggestion.ConditionStats();
+                stats.setSoldCount(soldPrices == null ? 0 : soldPrices.size);
+                stats.setListingCount(listedPrices == null ? 0 : listedPrices.size);
+                stats.setP25(round(merged.percentile(0.25)));
+                stats.setP50(round(merged.percentile(0.5)));
+                stats.setP75(round(merged.percentile(0.75)));
+                byCondition.put(c, stats);
+            }
+            PriceSuggestion.ConditionStats own = conditionLevel == null ? null : byCondition.get(conditionLevel);
+            if (own != null) res.setSuggestedPrice(own.getP50());
+            else if (all.size > 0) res.setSuggestedPrice(round(all.percentile(0.5)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        res.setByCondition(byCondition);
+        return res;
+    }
+
+    @Override
+    public void onListingChanged(Book before, Book after) {
+        lock.writeLock().lock();
+        try {
+            if (before != null) removeListing(before);
+            if (after != null) addListing(listed, after);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingsReloaded(Collection<Book> listings) {
+        Map<String, Map<String, SortedPrices>> next = new HashMap<>();
+        for (Book b : listings) addListing(next, b);
+        lock.writeLock().lock();
+        try {
+            listed.clear();
+            listed.putAll(next);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void addSale(Map<String, Map<String, SortedPrices>> target, String isbn, String condition, double price) {
+        String key = IsbnGroupIndex.normalizeIsbn(isbn);
+        if (key == null || condition == null) return;
+        target.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(condition, k -> new SortedPrices()).add(price);
+    }
+
+    private static void addListing(Map<String, Map<String, SortedPrices>> target, Book b) {
+        if (b.getSellPrice() == null) return;
+        addSale(target, b.getIsbn(), b.getConditionLevel(), b.getSellPrice());
+    }
+
+    private void removeListing(Book b) {
+        String key = IsbnGroupIndex.normalizeIsbn(b.getIsbn());
+        if (key == null || b.getConditionLevel() == null || b.getSellPrice() == null) return;
+        Map<String, SortedPrices> byCondition = listed.get(key);
+        if (byCondition == null) return;
+        SortedPrices prices = byCondition.get(b.getConditionLevel());
+        if (prices == null) return;
+        prices.remove(b.getSellPrice());
+        if (prices.size == 0) byCondition.remove(b.getConditionLevel());
+        if (byCondition.isEmpty()) listed.remove(key);
+    }
+
+    private static double round(double price) {
+        return Math.round(price * 10) / 10.0;
+    }
+
+    /** Ascending multiset of prices in a primitive array */
+    private static class SortedPrices {
+        private double[] values = new double[4];
+        private int size = 0;
+
+        void add(double p) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            int at = Arrays.binarySearch(values, 0, size, p);
+            if (at < 0) at = -at - 1;
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = p;
+            size++;
+        }
+
+        void remove(double p) {
+            int at = Arrays.binarySearch(values, 0, size, p);
+            if (at < 0) return;
+            System.arraycopy(values, at + 1, values, at, size - at - 1);
+            size--;
+        }
+
+        /** Linear interpolation between closest ranks */
+        double percentile(double q) {
+            double pos = q * (size - 1);
+            int lo = (int) Math.floor(pos);
+            int hi = Math.min(lo + 1, size - 1);
+            return values[lo] + (values[hi] - values[lo]) * (pos - lo);
+        }
+
+        static SortedPrices merge(SortedPrices a, SortedPrices b) {
+            SortedPrices res = new SortedPrices();
+            int na = a == null ? 0 : a.size;
+            int nb = b == null ? 0 : b.size;
+            res.values = new double[Math.max(na + nb, 4)];
+            int i = 0;
+            int j = 0;
+            while (i < na || j < nb) {
+                if (j >= nb || (i < na && a.values[i] <= b.values[j])) res.values[res.size++] = a.values[i++];
+                else res.values[res.size++] = b.values[j++];
+            }
+            return res;
+        }
+    }
+}
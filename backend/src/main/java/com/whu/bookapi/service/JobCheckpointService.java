@@ -0,0 +1,168 @@
+package com.whu.bookapi.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: JobCheckpointService.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Checkpoints of chunked batch jobs. A job run is identified by job name and run key
+ *              (e.g. the day it processes); after each chunk the last (create_time, id) processed and
+ *              the running totals are saved, so a run that crashed resumes after the last chunk.
+ *              The checkpoint is saved in the chunk's own transaction, so a crash can neither repeat
+ *              a committed chunk nor skip an uncommitted one.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Chunk writes and checkpoint commit together.
+ */
+@Service
+public class JobCheckpointService {
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobCheckpointService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Function: begin
+     * Description: Starts a run, or resumes it when an unfinished checkpoint with the same run key exists.
+     * Called By: OrderScheduler.confirmReceived, OrderScheduler.settleDay
+     * Table Accessed: job_checkpoint
+     * Table Updated: job_checkpoint
+     * Input: jobName (String) - Job name
+     *        runKey (String) - Identifies the run, e.g. "2026-10-16"
+     * Output: Checkpoint - Position to continue from, null when this run already finished
+     * Return: Checkpoint
+     */
+    public Checkpoint begin(String jobName, String runKey) {
+        List<Checkpoint> rows = jdbcTemplate.query(
+                "SELECT run_key, status, last_create_time, last_id, scanned, affected, started_at FROM job_checkpoint WHERE job_name = ?",
+                (rs, rowNum) -> {
+                    Checkpoint cp = new Checkpoint(jobName, rs.getString("run_key"));
+                    cp.status = rs.getString("status");
+                    java.sql.Timestamp ts = rs.getTimestamp("last_create_time");
+                    cp.lastCreateTime = ts == null ? null : ts.toLocalDateTime();
+                    cp.lastId = rs.getLong("last_id");
+                    cp.scanned = rs.getLong("scanned");
+                    cp.affected = rs.getLong("affected");
+                    cp.startedAt = rs.getLong("started_at");
+                    return cp;
+                },
+                jobName
+        );
+        Checkpoint existing = rows.isEmpty() ? null : rows.get(0);
+        if (existing != null && runKey.equals(existing.runKey)) {
+            if ("done".equals(existing.status)) return null;
+            existing.resumed = true;
+            return existing;
+        }
+        Checkpoint cp = new Checkpoint(jobName, runKey);
+        cp.status = "running";
+        cp.startedAt = System.currentTimeMillis();
+        jdbcTemplate.update(
+                "INSERT INTO job_checkpoint (job_name, run_key, status, last_create_time, last_id, scanned, affected, started_at, updated_at) " +
+                        "VALUES (?, ?, 'running', NULL, 0, 0, 0, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE run_key = VALUES(run_key), status = 'running', last_create_time = NULL, last_id = 0, " +
+                        "scanned = 0, affected = 0, started_at = VALUES(started_at), updated_at = VALUES(updated_at)",
+                jobName, runKey, cp.startedAt, cp.startedAt
+        );
+        return cp;
+    }
+
+    /**
+     * Function: unfinishedRunKey
+     * Description: Run key of a run that started but never finished (e.g. the process died mid-run).
+     * Called By: OrderScheduler.resumeUnfinished
+     * Table Accessed: job_checkpoint
+     * Input: jobName (String) - Job name
+     * Output: String - Run key, null when the last run finished
+     * Return: String
+     */
+    public String unfinishedRunKey(String jobName) {
+        List<String> keys = jdbcTemplate.queryForList(
+                "SELECT run_key FROM job_checkpoint WHERE job_name = ? AND status = 'running'", String.class, jobName);
+        return keys.isEmpty() ? null : keys.get(0);
+    }
+
+    /**
+     * Function: processChunk
+     * Description: Runs a chunk's writes and records the chunk in the checkpoint in one transaction;
+     *              the writes join it through their own @Transactional methods.
+     * Called By: OrderScheduler.confirmReceived, OrderScheduler.settleDay
+     * Table Updated: job_checkpoint, and whatever the chunk writes
+     * Input: cp (Checkpoint) - Current run
+     *        lastCreateTime (LocalDateTime) - create_time of the last row of the chunk
+     *        lastId (long) - id of the last row of the chunk
+     *        scanned (int) - Rows read in the chunk
+     *        work (IntSupplier) - Processes the chunk and returns the rows it changed
+     * Output: int - Rows changed in the chunk
+     * Return: int
+     */
+    @Transactional
+    public int processChunk(Checkpoint cp, LocalDateTime lastCreateTime, long lastId, int scanned, IntSupplier work) {
+        int affected = work.getAsInt();
+        advance(cp, lastCreateTime, lastId, scanned, affected);
+        return affected;
+    }
+
+    /** Records a processed chunk: its last row and the rows it scanned and changed */
+    private void advance(Checkpoint cp, LocalDateTime lastCreateTime, long lastId, int scanned, int affected) {
+        cp.lastCreateTime = lastCreateTime;
+        cp.lastId = lastId;
+        cp.scanned += scanned;
+        cp.affected += affected;
+        jdbcTemplate.update(
+                "UPDATE job_checkpoint SET last_create_time = ?, last_id = ?, scanned = ?, affected = ?, updated_at = ? WHERE job_name = ?",
+                lastCreateTime == null ? null : java.sql.Timestamp.valueOf(lastCreateTime), lastId,
+                cp.scanned, cp.affected, System.currentTimeMillis(), cp.jobName
+        );
+    }
+
+    /**
+     * Function: finish
+     * Description: Marks the run done and returns its report line.
+     * Table Updated: job_checkpoint
+     * Input: cp (Checkpoint) - Current run
+     * Output: String - Rows scanned, rows changed and duration
+     * Return: String
+     */
+    public String finish(Checkpoint cp) {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update("UPDATE job_checkpoint SET status = 'done', updated_at = ? WHERE job_name = ?", now, cp.jobName);
+        return cp.jobName + " [" + cp.runKey + "]" + (cp.resumed ? " (resumed)" : "")
+                + ": scanned=" + cp.scanned + ", affected=" + cp.affected + ", durationMs=" + (now - cp.startedAt);
+    }
+
+    /** Position and totals of one job run */
+    public static class Checkpoint {
+        private final String jobName;
+        private final String runKey;
+        private String status;
+        private LocalDateTime lastCreateTime;
+        private long lastId;
+        private long scanned;
+        private long affected;
+        private long startedAt;
+        private boolean resumed;
+
+        Checkpoint(String jobName, String runKey) {
+            this.jobName = jobName;
+            this.runKey = runKey;
+        }
+
+        public LocalDateTime getLastCreateTime() {
+            return lastCreateTime;
+        }
+
+        public long getLastId() {
+            return lastId;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Notification;
+import com.whu.bookapi.model.OutboxEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: NotificationOutboxConsumer.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Turns order, settlement and moderation events into user notifications
+ *              (payment received, automatic receipt confirmation, settlement voucher, listing audit result).
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+@Component
+public class NotificationOutboxConsumer implements OutboxConsumer {
+    private static final Set<String> TYPES = Set.of(
+            "order.paid", "order.auto_confirmed", "settlement.settled", "book.approved", "book.rejected");
+
+    private final NotificationService notificationService;
+
+    public NotificationOutboxConsumer(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    @Override
+    public String name() {
+        return "notification";
+    }
+
+    @Override
+    public boolean accepts(String eventType) {
+        return TYPES.contains(eventType);
+    }
+
+    @Override
+    public void handle(OutboxEvent e) {
+        String seller = e.text("sellerName");
+        String bookName = e.text("bookName");
+        Notification n;
+        switch (e.getEventType()) {
+            case "order.paid":
+                n = notice(seller, "order", "订单已付款",
+                        "订单#" + e.getAggregateId() + "（" + bookName + "）已付款，金额已暂存至平台，买家确认收货后自动结算至您的账户");
+                break;
+            case "order.auto_confirmed":
+                n = notice(seller, "order", "系统已自动确认收货",
+                        "订单#" + e.getAggregateId() + "（" + bookName + "）交易完成超过7天，系统已自动确认收货，后续将参与每日凌晨批量结算");
+                break;
+            case "settlement.settled":
+                n = notificationService.settlementVoucher(seller, e.getAggregateId(), bookName,
+                        e.number("amount").doubleValue(), e.number("receivedAmount").doubleValue(), e.number("settleTime").longValue());
+                break;
+            case "book.approved":
+                n = notice(seller, "audit", "教材审核通过", "您的教材《" + bookName + "》已通过审核");
+                break;
+            case "book.rejected":
+                String reason = e.text("reason");
+                n = notice(seller, "audit", "教材审核未通过", "您的教材《" + bookName + "》未通过审核" + (reason == null ? "" : "，原因：" + reason));
+                break;
+            default:
+                return;
+        }
+        if (n.getToUser() != null) notificationService.addToUsers(List.of(n));
+    }
+
+    private static Notification notice(String toUser, String type, String title, String content) {
+        Notification n = new Notification();
+        n.setToUser(toUser);
+        n.setType(type);
+        n.setTitle(title);
+        n.setContent(content);
+        return n;
+    }
+}
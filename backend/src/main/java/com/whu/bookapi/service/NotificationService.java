@@ -19,6 +19,9 @@ import java.util.List;
  * History:
  * <author>          <time>          <version>          <desc>
  * WiseBookPal Team  2024-11-20      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Added batched notification insert.
+ * WiseBookPal Team  2026-10-17      1.2                Settlement idempotency moved to the settlement ledger.
+ * WiseBookPal Team  2026-10-17      1.3                Settlement vouchers are sent by NotificationOutboxConsumer.
  */
 @Service
 public class NotificationService {
@@ -65,6 +68,28 @@ public class NotificationService {
         return n;
     }
 
+    /**
+     * Function: addToUsers
+     * Description: Sends many targeted notifications with one JDBC batch insert.
+     * Called By: AdminController.batchApprove, AdminController.batchReject
+     * Table Accessed: notifications
+     * Table Updated: notifications
+     * Input: notifications (List<Notification>) - Recipient, type, title and content of each notification
+     * Output: None
+     * Return: void
+     */
+    public void addToUsers(List<Notification> notifications) {
+        if (notifications == null || notifications.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        List<Object[]> args = new ArrayList<>(notifications.size());
+        for (Notification n : notifications) {
+            n.setCreateTime(now);
+            n.setRead(false);
+            args.add(new Object[]{n.getToUser(), n.getType(), n.getTitle(), n.getContent(), now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO notifications (to_user, type, title, content, create_time, is_read) VALUES (?, ?, ?, ?, ?, 0)", args);
+    }
+
     /**
      * Function: add
      * Description: Simplified method to send a system notification to a user.
@@ -235,8 +260,13 @@ public class NotificationService {
         );
     }
 
-    public Notification addSettlementVoucher(String username, Long orderId, String bookName, double amount, double receivedAmount, long settlementTime) {
-        String title = "结算完成";
+    /**
+     * Function: settlementVoucher
+     * Description: Builds a settlement voucher notification without saving it, for addToUsers batches.
+     * Called By: NotificationOutboxConsumer.handle
+     * Return: Notification
+     */
+    public Notification settlementVoucher(String username, Long orderId, String bookName, double amount, double receivedAmount, long settlementTime) {
         String content = "订单#" + orderId + "（" + (bookName == null ? "-" : bookName) + "）结算完成\n" +
                 "交易金额: " + String.format(java.util.Locale.US, "%.2f", amount) + "\n" +
                 "到账金额: " + String.format(java.util.Locale.US, "%.2f", receivedAmount) + "\n" +
@@ -244,17 +274,11 @@ public class NotificationService {
                         java.time.Instant.ofEpochMilli(settlementTime).atZone(java.time.ZoneId.systemDefault())
                 ) + "\n" +
                 "凭证号: SET-" + orderId + "-" + settlementTime;
-        return addToUser(username, "settlement", title, content);
-    }
-
-    public boolean hasSettlementRecord(String username, Long orderId) {
-        if (username == null || orderId == null) return false;
-        Integer cnt = jdbcTemplate.queryForObject(
-                "SELECT COUNT(1) FROM notifications WHERE to_user = ? AND type = 'settlement' AND content LIKE ?",
-                Integer.class,
-                username,
-                "订单#" + orderId + "%"
-        );
-        return cnt != null && cnt > 0;
+        Notification n = new Notification();
+        n.setToUser(username);
+        n.setType("settlement");
+        n.setTitle("结算完成");
+        n.setContent(content);
+        return n;
     }
 }
@@ -0,0 +1,267 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderCounterService.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Per-user order counts by status, as buyer and as seller, kept in user_order_counter
+ *              (one row per user). Every order insert and status transition adjusts the counters in the
+ *              caller's transaction, so "does this user have open orders" and dashboard badges are one
+ *              primary-key read instead of scanning the user's orders. Expired orders count as cancelled.
+ *              Existing orders are counted once by a backfill guarded by a job_checkpoint row; until this
+ *              instance has seen the backfill done, hasOpenOrders answers from the orders table.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                One-time guarded backfill replaces the recount at every startup.
+ */
+@Service
+public class OrderCounterService {
+    private static final String[] STATUSES = {"pending", "paid", "received", "cancelled"};
+    private static final String[] COLUMNS = {
+            "buyer_pending", "buyer_paid", "buyer_received", "buyer_cancelled",
+            "seller_pending", "seller_paid", "seller_received", "seller_cancelled"
+    };
+    private static final String UPSERT;
+    private static final String JOB_BACKFILL = "orderCounterBackfill";
+
+    static {
+        StringBuilder sql = new StringBuilder("INSERT INTO user_order_counter (username");
+        for (String c : COLUMNS) sql.append(", ").append(c);
+        sql.append(") VALUES (?");
+        for (int i = 0; i < COLUMNS.length; i++) sql.append(", ?");
+        sql.append(") ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(COLUMNS[i]).append(" = GREATEST(").append(COLUMNS[i]).append(" + ?, 0)");
+        }
+        UPSERT = sql.toString();
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    /** Set once the backfill is known to be committed, by this instance or another */
+    private volatile boolean backfilled = false;
+
+    public OrderCounterService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Function: created
+     * Description: Counts newly inserted pending orders.
+     * Called By: OrderService.create, OrderService.checkout
+     * Table Updated: user_order_counter
+     * Input: orders (Collection<Order>) - New orders
+     * Return: void
+     */
+    public void created(Collection<Order> orders) {
+        moved(orders, null, "pending");
+    }
+
+    /**
+     * Function: moved
+     * Description: Moves orders from one status count to another for both their buyer and seller.
+     *              Deltas are merged per user and applied in username order with one batch, so two
+     *              transactions touching the same users lock their rows in the same order.
+     * Called By: OrderStateMachine.transition, OrderStateMachine.expire, OrderService.markReceived
+     * Table Updated: user_order_counter
+     * Input: orders (Collection<Order>) - Orders with buyer and seller names
+     *        from (String) - Previous status, null for a new order
+     *        to (String) - New status, null for a removed order
+     * Return: void
+     */
+    public void moved(Collection<Order> orders, String from, String to) {
+        int fromIdx = index(from);
+        int toIdx = index(to);
+        if (orders == null || orders.isEmpty() || fromIdx == toIdx) return;
+        Map<String, int[]> deltas = new TreeMap<>();
+        for (Order o : orders) {
+            add(deltas, o.getBuyerName(), 0, fromIdx, toIdx);
+            add(deltas, o.getSellerName(), STATUSES.length, fromIdx, toIdx);
+        }
+        apply(deltas);
+    }
+
+    /**
+     * Function: forgetUser
+     * Description: Removes a user's counter row and uncounts their orders from the other party's
+     *              counters, before the orders themselves are deleted.
+     * Called By: UserService.deleteUser
+     * Table Accessed: orders
+     * Table Updated: user_order_counter
+     * Input: username (String) - User being deleted
+     * Return: void
+     */
+    public void forgetUser(String username) {
+        if (username == null) return;
+        Map<String, int[]> deltas = new TreeMap<>();
+        jdbcTemplate.query(
+                "SELECT buyer_name, seller_name, status FROM orders WHERE buyer_name = ? OR seller_name = ?",
+                rs -> {
+                    int idx = index(rs.getString("status"));
+                    if (idx >= 0) {
+                        add(deltas, rs.getString("buyer_name"), 0, idx, -1);
+                        add(deltas, rs.getString("seller_name"), STATUSES.length, idx, -1);
+                    }
+                },
+                username, username
+        );
+        deltas.remove(username);
+        apply(deltas);
+        jdbcTemplate.update("DELETE FROM user_order_counter WHERE username = ?", username);
+    }
+
+    /**
+     * Function: backfill
+     * Description: Counts the orders that existed before the counters did, exactly once across all
+     *              instances. The job_checkpoint row is claimed with INSERT IGNORE in the same transaction
+     *              as the recount, so a concurrent instance waits for it and then skips, and a failed
+     *              recount rolls the claim back for the next try. The recount upserts absolute values and
+     *              never empties the table; the orders it reads stay locked until commit, so concurrent
+     *              counter updates (made in the order writes' transactions) are not lost.
+     * Called By: OrderScheduler.backfillOrderCounters
+     * Table Accessed: orders, job_checkpoint
+     * Table Updated: user_order_counter, job_checkpoint
+     * Output: int - Counter rows written, 0 when the backfill had already been done
+     * Return: int
+     */
+    @Transactional
+    public int backfill() {
+        if (backfilled) return 0;
+        long now = System.currentTimeMillis();
+        int claimed = jdbcTemplate.update(
+                "INSERT IGNORE INTO job_checkpoint (job_name, run_key, status, last_id, scanned, affected, started_at, updated_at) " +
+                        "VALUES (?, 'v1', 'done', 0, 0, 0, ?, ?)",
+                JOB_BACKFILL, now, now);
+        int written = 0;
+        if (claimed > 0) {
+            written = jdbcTemplate.update(
+                    "INSERT INTO user_order_counter (username, " + String.join(", ", COLUMNS) + ") " +
+                            "SELECT username, SUM(bp), SUM(bpa), SUM(br), SUM(bc), SUM(sp), SUM(spa), SUM(sr), SUM(sc) FROM (" +
+                            "SELECT buyer_name AS username, status = 'pending' AS bp, status = 'paid' AS bpa, status = 'received' AS br, " +
+                            "status IN ('cancelled', 'expired') AS bc, 0 AS sp, 0 AS spa, 0 AS sr, 0 AS sc FROM orders " +
+                            "UNION ALL SELECT seller_name, 0, 0, 0, 0, status = 'pending', status = 'paid', status = 'received', " +
+                            "status IN ('cancelled', 'expired') FROM orders) t GROUP BY username " +
+                            "ON DUPLICATE KEY UPDATE " + absoluteAssignments());
+            jdbcTemplate.update("UPDATE job_checkpoint SET affected = ?, updated_at = ? WHERE job_name = ?",
+                    written, System.currentTimeMillis(), JOB_BACKFILL);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    backfilled = true;
+                }
+            });
+        } else {
+            backfilled = true;
+        }
+        return written;
+    }
+
+    /**
+     * Function: hasOpenOrders
+     * Description: Whether the user has pending or paid orders as buyer or seller; read from the orders
+     *              table until the backfill is done.
+     * Called By: UserService.hasUncompletedOrders
+     * Table Accessed: user_order_counter, orders
+     * Input: username (String) - Username
+     * Return: boolean
+     */
+    public boolean hasOpenOrders(String username) {
+        if (!backfilled) {
+            Integer n = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(1) FROM orders WHERE (buyer_name = ? OR seller_name = ?) AND status IN ('pending', 'paid')",
+                    Integer.class, username, username);
+            return n != null && n > 0;
+        }
+        List<Integer> open = jdbcTemplate.queryForList(
+                "SELECT buyer_pending + buyer_paid + seller_pending + seller_paid FROM user_order_counter WHERE username = ?",
+                Integer.class, username);
+        return !open.isEmpty() && open.get(0) != null && open.get(0) > 0;
+    }
+
+    /**
+     * Function: counts
+     * Description: A user's order counts by status, as buyer and as seller (zeros when the user has no orders).
+     * Called By: OrderController.counts, UserService.getSellerStats
+     * Table Accessed: user_order_counter
+     * Input: username (String) - Username
+     * Output: Map - {"buyer": {status: count}, "seller": {status: count}}
+     * Return: Map<String, Map<String, Integer>>
+     */
+    public Map<String, Map<String, Integer>> counts(String username) {
+        int[] values = new int[COLUMNS.length];
+        jdbcTemplate.query(
+                "SELECT " + String.join(", ", COLUMNS) + " FROM user_order_counter WHERE username = ?",
+                rs -> {
+                    for (int i = 0; i < COLUMNS.length; i++) values[i] = rs.getInt(COLUMNS[i]);
+                },
+                username
+        );
+        Map<String, Map<String, Integer>> res = new LinkedHashMap<>();
+        Map<String, Integer> buyer = new LinkedHashMap<>();
+        Map<String, Integer> seller = new LinkedHashMap<>();
+        for (int i = 0; i < STATUSES.length; i++) {
+            buyer.put(STATUSES[i], values[i]);
+            seller.put(STATUSES[i], values[STATUSES.length + i]);
+        }
+        res.put("buyer", buyer);
+        res.put("seller", seller);
+        return res;
+    }
+
+    private static String absoluteAssignments() {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(COLUMNS[i]).append(" = VALUES(").append(COLUMNS[i]).append(")");
+        }
+        return sql.toString();
+    }
+
+    private static int index(String status) {
+        if (status == null) return -1;
+        if ("expired".equals(status)) return 3;
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) return i;
+        }
+        return -1;
+    }
+
+    private static void add(Map<String, int[]> deltas, String username, int offset, int fromIdx, int toIdx) {
+        if (username == null) return;
+        int[] d = deltas.computeIfAbsent(username, k -> new int[COLUMNS.length]);
+        if (fromIdx >= 0) d[offset + fromIdx]--;
+        if (toIdx >= 0) d[offset + toIdx]++;
+    }
+
+    private void apply(Map<String, int[]> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, int[]> e : deltas.entrySet()) {
+            int[] d = e.getValue();
+            Object[] row = new Object[1 + 2 * COLUMNS.length];
+            row[0] = e.getKey();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                row[1 + i] = Math.max(d[i], 0);
+                row[1 + COLUMNS.length + i] = d[i];
+            }
+            args.add(row);
+        }
+        if (!args.isEmpty()) jdbcTemplate.batchUpdate(UPSERT, args);
+    }
+}
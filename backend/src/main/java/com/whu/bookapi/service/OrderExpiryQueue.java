@@ -0,0 +1,174 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Order;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderExpiryQueue.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Expires pending orders at their expire_at using a DelayQueue drained by one worker thread.
+ *              New orders are offered by OrderService.create; pending orders are loaded once at startup
+ *              and a periodic catch-up only reads orders expiring within the next minute through the
+ *              (status, expire_at) index, so the cost follows the number of expiring orders.
+ *              Expiry is a conditional UPDATE on status = 'pending', so an order paid or cancelled
+ *              meanwhile is left alone and stock is released exactly once; the release commits with
+ *              the expiry, so a failed attempt leaves the order pending for the retry.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Expiry bumps the order version.
+ * WiseBookPal Team  2026-10-17      1.2                Expiry goes through OrderStateMachine.expire (keeps order counters in step).
+ * WiseBookPal Team  2026-10-17      1.3                Expiry and stock release share one transaction; worker started after construction.
+ */
+@Component
+public class OrderExpiryQueue {
+    /** Catch-up window of the periodic sync */
+    private static final long LOOKAHEAD_MS = 60_000L;
+    /** Delay before retrying an expiry that failed (e.g. database unavailable) */
+    private static final long RETRY_MS = 5_000L;
+    private static final Logger log = LoggerFactory.getLogger(OrderExpiryQueue.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderService orderService;
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+    /** Orders currently in the queue, to avoid queueing one twice */
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded = false;
+    private Thread worker;
+
+    public OrderExpiryQueue(JdbcTemplate jdbcTemplate, @Lazy OrderService orderService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderService = orderService;
+    }
+
+    @PostConstruct
+    void start() {
+        worker = new Thread(this::drain, "order-expiry");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (worker != null) worker.interrupt();
+    }
+
+    /**
+     * Function: schedule
+     * Description: Queues a pending order to expire at its expire_at.
+     * Called By: OrderService.create
+     * Input: o (Order) - Pending order with id, book id and expire time
+     * Return: void
+     */
+    public void schedule(Order o) {
+        if (o == null || o.getId() == null || o.getExpireAt() == null) return;
+        offer(o.getId(), o.getBookId(), o.getExpireAt());
+    }
+
+    /**
+     * Function: sync
+     * Description: Loads every pending order on the first run; afterwards queues only pending orders
+     *              expiring within the next minute, catching orders created outside this instance.
+     * Called By: OrderScheduler.autoCancelPending
+     * Table Accessed: orders
+     * Return: void
+     */
+    public void sync() {
+        String sql = "SELECT id, book_id, expire_at FROM orders WHERE status = 'pending'";
+        Object[] args = {};
+        if (loaded) {
+            sql += " AND expire_at <= ?";
+            args = new Object[]{System.currentTimeMillis() + LOOKAHEAD_MS};
+        }
+        jdbcTemplate.query(sql, rs -> {
+            offer(rs.getLong("id"), rs.getLong("book_id"), rs.getLong("expire_at"));
+        }, args);
+        loaded = true;
+    }
+
+    /**
+     * Function: expire
+     * Description: Marks a pending order expired and releases its stock in one transaction; does nothing
+     *              if the order is no longer pending.
+     * Calls: OrderService.expire
+     * Called By: drain, OrderController.pay
+     * Table Accessed: orders, books
+     * Table Updated: orders (status), user_order_counter, books (stock)
+     * Input: orderId (Long) - Order ID
+     *        bookId (Long) - Book of the order
+     * Output: boolean - True if this call expired the order
+     * Return: boolean
+     */
+    public boolean expire(Long orderId, Long bookId) {
+        if (orderId == null) return false;
+        return orderService.expire(orderId, bookId);
+    }
+
+    /**
+     * Function: size
+     * Description: Number of orders waiting to expire.
+     * Return: int
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    private void offer(Long orderId, Long bookId, long expireAt) {
+        if (queued.add(orderId)) queue.offer(new Expiry(orderId, bookId, expireAt));
+    }
+
+    private void drain() {
+        while (true) {
+            Expiry e;
+            try {
+                e = queue.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                expire(e.orderId, e.bookId);
+                queued.remove(e.orderId);
+            } catch (RuntimeException ex) {
+                log.warn("Order expiry failed for order {}, retrying: {}", e.orderId, ex.getMessage());
+                queue.offer(new Expiry(e.orderId, e.bookId, System.currentTimeMillis() + RETRY_MS));
+            }
+        }
+    }
+
+    /** A pending order and the time it expires */
+    private static final class Expiry implements Delayed {
+        private final Long orderId;
+        private final Long bookId;
+        private final long expireAt;
+
+        Expiry(Long orderId, Long bookId, long expireAt) {
+            this.orderId = orderId;
+            this.bookId = bookId;
+            this.expireAt = expireAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(expireAt, ((Expiry) o).expireAt);
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package com.whu.bookapi.service;
 
+import com.whu.bookapi.dto.CheckoutResult;
+import com.whu.bookapi.dto.CursorPageResponse;
+import com.whu.bookapi.dto.OrderPlacement;
+import com.whu.bookapi.dto.OrderTransition;
 import com.whu.bookapi.model.Book;
+import com.whu.bookapi.model.CartItem;
 import com.whu.bookapi.model.Order;
+import com.whu.bookapi.model.OutboxEvent;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,22 +31,228 @@ import java.util.List;
  * <author>          <time>          <version>          <desc>
  * WiseBookPal Team  2024-11-20      1.0                Initial implementation.
  * WiseBookPal Team  2024-12-25      1.1                Added expiration logic.
+ * WiseBookPal Team  2026-10-17      1.2                Expiry driven by OrderExpiryQueue instead of a table scan.
+ * WiseBookPal Team  2026-10-17      1.3                Added keyset chunk reads for batch jobs.
+ * WiseBookPal Team  2026-10-17      1.4                Settlement moved to SettlementService.
+ * WiseBookPal Team  2026-10-17      1.5                Added streaming read for the admin order export.
+ * WiseBookPal Team  2026-10-17      1.6                Added single-transaction order placement.
+ * WiseBookPal Team  2026-10-17      1.7                Added multi-item cart checkout.
+ * WiseBookPal Team  2026-10-17      1.8                Status changes moved to OrderStateMachine; orders carry a version.
+ * WiseBookPal Team  2026-10-17      1.9                Added keyset-paginated buyer and seller order history.
+ * WiseBookPal Team  2026-10-17      2.0                New and auto-confirmed orders update the per-user order counters.
+ * WiseBookPal Team  2026-10-17      2.1                Auto-confirmation publishes order.auto_confirmed outbox events.
+ * WiseBookPal Team  2026-10-17      2.2                Cancellation releases stock in the transaction that cancels the order.
+ * WiseBookPal Team  2026-10-17      2.3                Expiry releases stock in the transaction that expires the order.
+ * WiseBookPal Team  2026-10-17      2.4                Checkout orders go in explicit multi-row INSERTs instead of a JDBC batch.
  */
 @Service
 public class OrderService {
+    private static final String ORDER_COLUMNS = "id, book_id, book_name, seller_name, price, buyer_name, status, expire_at, create_time, version";
     private final JdbcTemplate jdbcTemplate;
+    private final OrderExpiryQueue expiryQueue;
+    private final BookService bookService;
+    private final CartService cartService;
+    private final OrderCounterService orderCounterService;
+    private final OutboxService outboxService;
+    private final OrderStateMachine orderStateMachine;
 
-    public OrderService(JdbcTemplate jdbcTemplate) {
+    public OrderService(JdbcTemplate jdbcTemplate, OrderExpiryQueue expiryQueue, BookService bookService, CartService cartService,
+                        OrderCounterService orderCounterService, OutboxService outboxService, OrderStateMachine orderStateMachine) {
         this.jdbcTemplate = jdbcTemplate;
+        this.expiryQueue = expiryQueue;
+        this.bookService = bookService;
+        this.cartService = cartService;
+        this.orderCounterService = orderCounterService;
+        this.outboxService = outboxService;
+        this.orderStateMachine = orderStateMachine;
+    }
+
+    /**
+     * Function: cancel
+     * Description: Cancels a pending order and releases its stock in one transaction, so the order is
+     *              never left cancelled with its stock unreturned. Stock is released only when this call
+     *              won the transition.
+     * Called By: OrderController.cancel
+     * Table Updated: orders (status, version), user_order_counter, outbox_event, books (stock)
+     * Input: current (Order) - Snapshot of the pending order
+     * Output: OrderTransition - The cancelled order, ILLEGAL or CONFLICT
+     * Return: OrderTransition
+     */
+    @Transactional
+    public OrderTransition cancel(Order current) {
+        OrderTransition t = orderStateMachine.transition(current, OrderStateMachine.CANCELLED);
+        if (t.getFailure() == null) bookService.releaseStock(current.getBookId());
+        return t;
+    }
+
+    /**
+     * Function: expire
+     * Description: Expires a pending order and releases its stock in one transaction. If the release
+     *              fails the order stays pending, so a retried expiry still releases the stock.
+     * Called By: OrderExpiryQueue.expire
+     * Table Updated: orders (status, version), user_order_counter, outbox_event, books (stock)
+     * Input: orderId (Long) - Order ID
+     *        bookId (Long) - Book of the order
+     * Output: boolean - True if this call expired the order
+     * Return: boolean
+     */
+    @Transactional
+    public boolean expire(Long orderId, Long bookId) {
+        if (!orderStateMachine.expire(orderId)) return false;
+        bookService.releaseStock(bookId);
+        return true;
+    }
+
+    /**
+     * Function: place
+     * Description: Places an order for one book in a single transaction on one connection:
+     *              reserve the stock, insert the order from the reserved row, and remove the book
+     *              from the buyer's cart. Any failure rolls all three back, so stock is never leaked.
+     * Called By: OrderController.create
+     * Table Accessed: books, orders, cart_item
+     * Table Updated: books (stock, status), orders, cart_item
+     * Input: bookId (Long) - Book to buy
+     *        buyerName (String) - The username of the buyer
+     * Output: OrderPlacement - The created order, or the reason none was created
+     * Return: OrderPlacement
+     */
+    @Transactional
+    public OrderPlacement place(Long bookId, String buyerName) {
+        Book reserved = bookService.reserveForOrder(bookId, buyerName);
+        if (reserved == null) {
+            // Failure path only: find out why the conditional reservation did not match
+            Book b = bookService.get(bookId);
+            if (b == null) return OrderPlacement.failed(OrderPlacement.Failure.NOT_FOUND);
+            if (!"on_sale".equals(b.getStatus())) return OrderPlacement.failed(OrderPlacement.Failure.NOT_ON_SALE);
+            if (buyerName.equals(b.getSellerName())) return OrderPlacement.failed(OrderPlacement.Failure.OWN_BOOK);
+            return OrderPlacement.failed(OrderPlacement.Failure.OUT_OF_STOCK);
+        }
+        Order o = create(reserved, buyerName);
+        cartService.remove(buyerName, bookId);
+        return OrderPlacement.placed(o);
+    }
+
+    /**
+     * Function: checkout
+     * Description: Buys several cart items in one transaction. Reservations are taken in ascending book id
+     *              order (one JDBC batch), all orders are inserted with one multi-row INSERT per 100 orders
+     *              (one order per copy, built from the reserved rows), and the purchased cart rows are removed with one
+     *              DELETE. Items that cannot be bought are reported and stay in the cart; the rest are bought.
+     * Called By: OrderController.checkout
+     * Table Accessed: cart_item, books, orders
+     * Table Updated: books (stock, status), orders, user_order_counter, cart_item
+     * Input: buyerName (String) - The username of the buyer
+     *        bookIds (List<Long>) - Cart items to buy, null or empty for the whole cart
+     * Output: CheckoutResult - Created orders and per-item failures
+     * Return: CheckoutResult
+     */
+    @Transactional
+    public CheckoutResult checkout(String buyerName, List<Long> bookIds) {
+        CheckoutResult result = new CheckoutResult();
+        java.util.SortedMap<Long, Integer> quantities = new java.util.TreeMap<>();
+        for (CartItem item : cartService.list(buyerName)) {
+            if (bookIds == null || bookIds.isEmpty() || bookIds.contains(item.getBookId())) {
+                quantities.put(item.getBookId(), Math.max(1, item.getQuantity() == null ? 1 : item.getQuantity()));
+            }
+        }
+        if (bookIds != null) {
+            for (Long id : new java.util.LinkedHashSet<>(bookIds)) {
+                if (id != null && !quantities.containsKey(id)) {
+                    result.getFailures().add(new CheckoutResult.ItemFailure(id, null, OrderPlacement.Failure.NOT_IN_CART, "该教材不在购物车中"));
+                }
+            }
+        }
+        if (quantities.isEmpty()) return result;
+
+        java.util.Map<Long, Book> reserved = bookService.reserveAllForOrder(quantities, buyerName);
+        List<Long> failedIds = new java.util.ArrayList<>();
+        for (Long id : quantities.keySet()) {
+            if (!reserved.containsKey(id)) failedIds.add(id);
+        }
+        if (!failedIds.isEmpty()) {
+            java.util.Map<Long, Book> current = new java.util.HashMap<>();
+            for (Book b : bookService.getAll(failedIds)) current.put(b.getId(), b);
+            for (Long id : failedIds) {
+                Book b = current.get(id);
+                if (b == null) {
+                    result.getFailures().add(new CheckoutResult.ItemFailure(id, null, OrderPlacement.Failure.NOT_FOUND, "教材不存在"));
+                } else if (!"on_sale".equals(b.getStatus())) {
+                    result.getFailures().add(new CheckoutResult.ItemFailure(id, b.getBookName(), OrderPlacement.Failure.NOT_ON_SALE, "该教材不可购买"));
+                } else if (buyerName.equals(b.getSellerName())) {
+                    result.getFailures().add(new CheckoutResult.ItemFailure(id, b.getBookName(), OrderPlacement.Failure.OWN_BOOK, "不能购买自己发布的教材"));
+                } else {
+                    result.getFailures().add(new CheckoutResult.ItemFailure(id, b.getBookName(), OrderPlacement.Failure.OUT_OF_STOCK, "库存不足"));
+                }
+            }
+        }
+        if (reserved.isEmpty()) return result;
+
+        List<Order> orders = new java.util.ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        long expireAt = now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 15L * 60 * 1000;
+        for (Book b : reserved.values()) {
+            for (int i = 0; i < quantities.get(b.getId()); i++) {
+                Order o = new Order();
+                o.setBookId(b.getId());
+                o.setBookName(b.getBookName());
+                o.setSellerName(b.getSellerName());
+                o.setPrice(b.getSellPrice());
+                o.setBuyerName(buyerName);
+                o.setStatus("pending");
+                o.setVersion(0);
+                o.setCreateTime(now);
+                o.setExpireAt(expireAt);
+                orders.add(o);
+            }
+        }
+        insertAll(orders);
+        orderCounterService.created(orders);
+        cartService.removeAll(buyerName, reserved.keySet());
+        for (Order o : orders) expiryQueue.schedule(o);
+        result.setOrders(orders);
+        return result;
+    }
+
+    /** One multi-row INSERT per 100 orders; MySQL assigns the ids of a multi-row INSERT consecutively */
+    private void insertAll(List<Order> orders) {
+        String insert = "INSERT INTO orders (book_id, book_name, seller_name, price, buyer_name, status, expire_at, create_time) VALUES ";
+        String row = "(?, ?, ?, ?, ?, ?, ?, ?)";
+        final int batchSize = 100;
+        jdbcTemplate.execute((org.springframework.jdbc.core.ConnectionCallback<Void>) connection -> {
+            for (int from = 0; from < orders.size(); from += batchSize) {
+                List<Order> chunk = orders.subList(from, Math.min(from + batchSize, orders.size()));
+                String sql = insert + String.join(", ", java.util.Collections.nCopies(chunk.size(), row));
+                try (var ps = connection.prepareStatement(sql, java.sql.Statement.RETURN_GENERATED_KEYS)) {
+                    int p = 1;
+                    for (Order o : chunk) {
+                        ps.setLong(p++, o.getBookId());
+                        ps.setString(p++, o.getBookName());
+                        ps.setString(p++, o.getSellerName());
+                        ps.setObject(p++, o.getPrice());
+                        ps.setString(p++, o.getBuyerName());
+                        ps.setString(p++, o.getStatus());
+                        ps.setLong(p++, o.getExpireAt());
+                        ps.setTimestamp(p++, java.sql.Timestamp.valueOf(o.getCreateTime()));
+                    }
+                    ps.executeUpdate();
+                    try (var keys = ps.getGeneratedKeys()) {
+                        int i = 0;
+                        while (keys.next() && i < chunk.size()) chunk.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
     }
 
     /**
      * Function: create
      * Description: Creates a new order for a specific book.
      *              Sets initial status to 'pending' and calculates expiration time (15 minutes from creation).
-     * Called By: OrderController.createOrder
+     *              The order is queued in OrderExpiryQueue to expire at that time.
+     * Called By: place
      * Table Accessed: orders
-     * Table Updated: orders
+     * Table Updated: orders, user_order_counter
      * Input: book (Book) - The book being purchased
      *        buyerName (String) - The username of the buyer
      * Output: Order - The created order object with generated ID
@@ -53,6 +267,7 @@ public class OrderService {
         o.setPrice(book.getSellPrice());
         o.setBuyerName(buyerName);
         o.setStatus("pending");
+        o.setVersion(0);
         o.setCreateTime(LocalDateTime.now());
         o.setExpireAt(o.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 15L * 60 * 1000);
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -71,6 +286,8 @@ public class OrderService {
         }, keyHolder);
         Number key = keyHolder.getKey();
         if (key != null) o.setId(key.longValue());
+        orderCounterService.created(List.of(o));
+        expiryQueue.schedule(o);
         return o;
     }
 
@@ -146,6 +363,80 @@ public class OrderService {
         );
     }
 
+    /**
+     * Function: pageByBuyer
+     * Description: One page of a buyer's orders, newest first, continuing after a cursor.
+     * Called By: OrderController.list
+     * Table Accessed: orders
+     * Input: buyerName (String) - The username of the buyer
+     *        statuses (List<String>) - Only orders in these statuses, null or empty for all
+     *        cursor (String) - Opaque cursor from the previous page, blank for the first page
+     *        pageSize (int) - Number of orders per page (1-100)
+     * Output: CursorPageResponse<Order> - Page of orders and the next cursor
+     * Return: CursorPageResponse<Order>
+     */
+    public CursorPageResponse<Order> pageByBuyer(String buyerName, List<String> statuses, String cursor, int pageSize) {
+        return pageByUser("buyer_name", buyerName, statuses, cursor, pageSize);
+    }
+
+    /**
+     * Function: pageBySeller
+     * Description: One page of a seller's orders, newest first, continuing after a cursor.
+     * Called By: OrderController.listForSeller
+     * Table Accessed: orders
+     * Input: sellerName (String) - The username of the seller
+     *        statuses (List<String>) - Only orders in these statuses, null or empty for all
+     *        cursor (String) - Opaque cursor from the previous page, blank for the first page
+     *        pageSize (int) - Number of orders per page (1-100)
+     * Output: CursorPageResponse<Order> - Page of orders and the next cursor
+     * Return: CursorPageResponse<Order>
+     */
+    public CursorPageResponse<Order> pageBySeller(String sellerName, List<String> statuses, String cursor, int pageSize) {
+        return pageByUser("seller_name", sellerName, statuses, cursor, pageSize);
+    }
+
+    /**
+     * Keyset page on (create_time, id) descending. The cursor carries the last row's create_time and id,
+     * so each page is a range seek on idx_orders_buyer / idx_orders_seller (InnoDB appends id to both)
+     * and costs the same at any depth.
+     */
+    private CursorPageResponse<Order> pageByUser(String column, String username, List<String> statuses, String cursor, int pageSize) {
+        if (username == null) return new CursorPageResponse<>(new java.util.ArrayList<>(), null, null);
+        int safePageSize = Math.min(Math.max(pageSize, 1), 100);
+        StringBuilder sql = new StringBuilder("SELECT " + ORDER_COLUMNS + " FROM orders WHERE " + column + " = ?");
+        List<Object> args = new java.util.ArrayList<>();
+        args.add(username);
+        if (statuses != null && !statuses.isEmpty()) {
+            sql.append(" AND status IN (").append(String.join(", ", java.util.Collections.nCopies(statuses.size(), "?"))).append(")");
+            args.addAll(statuses);
+        }
+        PageCursor after = PageCursor.decode(cursor);
+        LocalDateTime afterTime = null;
+        if (after != null && "orders".equals(after.getSort())) {
+            try {
+                afterTime = LocalDateTime.parse(after.getKey());
+            } catch (java.time.format.DateTimeParseException e) {
+                afterTime = null;
+            }
+        }
+        if (afterTime != null) {
+            sql.append(" AND (create_time < ? OR (create_time = ? AND id < ?))");
+            args.add(java.sql.Timestamp.valueOf(afterTime));
+            args.add(java.sql.Timestamp.valueOf(afterTime));
+            args.add(after.getId());
+        }
+        sql.append(" ORDER BY create_time DESC, id DESC LIMIT ?");
+        args.add(safePageSize + 1);
+        List<Order> rows = jdbcTemplate.query(sql.toString(), OrderService::mapOrder, args.toArray());
+        String next = null;
+        if (rows.size() > safePageSize) {
+            rows = new java.util.ArrayList<>(rows.subList(0, safePageSize));
+            Order last = rows.get(rows.size() - 1);
+            next = new PageCursor("orders", String.valueOf(last.getCreateTime()), last.getId()).encode();
+        }
+        return new CursorPageResponse<>(rows, next, null);
+    }
+
     /**
      * Function: get
      * Description: Retrieves an order by its ID.
@@ -159,25 +450,8 @@ public class OrderService {
         if (id == null) return null;
         try {
             return jdbcTemplate.queryForObject(
-                "SELECT id, book_id, book_name, seller_name, price, buyer_name, status, expire_at, create_time FROM orders WHERE id = ?",
-                    (rs, rowNum) -> {
-                        Order o = new Order();
-                        o.setId(rs.getLong("id"));
-                        o.setBookId(rs.getLong("book_id"));
-                        o.setBookName(rs.getString("book_name"));
-                        o.setSellerName(rs.getString("seller_name"));
-                        o.setPrice((Double) rs.getObject("price"));
-                        o.setBuyerName(rs.getString("buyer_name"));
-                        o.setStatus(rs.getString("status"));
-                        long expireAt = rs.getLong("expire_at");
-                        if (!rs.wasNull() && expireAt > 0) o.setExpireAt(expireAt);
-                        java.sql.Timestamp ts = rs.getTimestamp("create_time");
-                        o.setCreateTime(ts == null ? null : ts.toLocalDateTime());
-                        if (o.getExpireAt() == null && o.getCreateTime() != null) {
-                            o.setExpireAt(o.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 15L * 60 * 1000);
-                        }
-                        return o;
-                    },
+                    "SELECT " + ORDER_COLUMNS + " FROM orders WHERE id = ?",
+                    OrderService::mapOrder,
                     id
             );
         } catch (EmptyResultDataAccessException e) {
@@ -186,44 +460,130 @@ public class OrderService {
     }
 
     /**
-     * Function: setStatus
-     * Description: Updates the status of an order.
-     * Called By: OrderController.payOrder, OrderController.cancelOrder, OrderController.completeOrder
+     * Function: listChunk
+     * Description: Reads one chunk of orders in one status and creation-time range, in (create_time, id)
+     *              order after a keyset position, through the (status, create_time, id) index.
+     * Called By: OrderScheduler.autoConfirmReceive, OrderScheduler.dailySettlement
      * Table Accessed: orders
-     * Table Updated: orders
-     * Input: id (Long) - The ID of the order to update
-     *        status (String) - The new status (e.g., 'paid', 'cancelled', 'completed')
-     * Output: Order - The updated order object
-     * Return: Order
+     * Input: status (String) - Order status
+     *        from (LocalDateTime) - Inclusive lower bound of create_time, may be null
+     *        to (LocalDateTime) - Exclusive upper bound of create_time
+     *        afterTime (LocalDateTime) - create_time of the last row already processed, null to start at from
+     *        afterId (long) - id of the last row already processed
+     *        limit (int) - Chunk size
+     * Output: List<Order> - Next chunk, empty when the range is exhausted
+     * Return: List<Order>
      */
-    public Order setStatus(Long id, String status) {
-        if (id == null || status == null) return null;
-        jdbcTemplate.update("UPDATE orders SET status = ? WHERE id = ?", status, id);
-        return get(id);
+    public List<Order> listChunk(String status, LocalDateTime from, LocalDateTime to, LocalDateTime afterTime, long afterId, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT " + ORDER_COLUMNS + " FROM orders WHERE status = ? AND create_time < ?");
+        List<Object> args = new java.util.ArrayList<>();
+        args.add(status);
+        args.add(java.sql.Timestamp.valueOf(to));
+        if (afterTime != null) {
+            sql.append(" AND (create_time > ? OR (create_time = ? AND id > ?))");
+            args.add(java.sql.Timestamp.valueOf(afterTime));
+            args.add(java.sql.Timestamp.valueOf(afterTime));
+            args.add(afterId);
+        } else if (from != null) {
+            sql.append(" AND create_time >= ?");
+            args.add(java.sql.Timestamp.valueOf(from));
+        }
+        sql.append(" ORDER BY create_time, id LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), OrderService::mapOrder, args.toArray());
     }
 
     /**
-     * Function: settleToSeller
-     * Description: Immediately settles order amount to seller and records funds ledger.
-     * Called By: OrderController.receive
-     * Table Accessed: orders, users
-     * Table Updated: users (balance), funds_settlement
-     * Input: o (Order) - order to settle
-     * Output: boolean - success status
-     * Return: boolean
-     * Others:
+     * Function: markReceived
+     * Description: Moves paid orders to received with one JDBC batch of conditional updates.
+     *              The per-user order counters and the order.auto_confirmed events (seller notice)
+     *              are written in the same transaction.
+     * Called By: OrderScheduler.autoConfirmReceive
+     * Table Updated: orders, user_order_counter, outbox_event
+     * Input: orders (List<Order>) - Orders to confirm
+     * Output: List<Order> - The orders that were still paid and are now received
+     * Return: List<Order>
      */
-    public boolean settleToSeller(Order o) {
-        if (o == null || o.getId() == null || o.getSellerName() == null || o.getPrice() == null) return false;
-        // Credit seller balance
-        int u = jdbcTemplate.update("UPDATE users SET balance = balance + ? WHERE username = ?", o.getPrice(), o.getSellerName());
-        if (u <= 0) return false;
-        long now = System.currentTimeMillis();
-        jdbcTemplate.update(
-                "INSERT INTO funds_settlement (order_id, seller_name, amount, status, settle_time, created_time) VALUES (?, ?, ?, 'settled', ?, ?)",
-                o.getId(), o.getSellerName(), o.getPrice(), now, now
+    @Transactional
+    public List<Order> markReceived(List<Order> orders) {
+        List<Order> res = new java.util.ArrayList<>();
+        if (orders.isEmpty()) return res;
+        List<Object[]> args = new java.util.ArrayList<>(orders.size());
+        for (Order o : orders) args.add(new Object[]{o.getId()});
+        int[] counts = jdbcTemplate.batchUpdate("UPDATE orders SET status = 'received', version = version + 1 WHERE id = ? AND status = 'paid'", args);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 || counts[i] == java.sql.Statement.SUCCESS_NO_INFO) {
+                Order o = orders.get(i);
+                o.setStatus("received");
+                if (o.getVersion() != null) o.setVersion(o.getVersion() + 1);
+                res.add(o);
+            }
+        }
+        orderCounterService.moved(res, "paid", "received");
+        List<OutboxEvent> events = new ArrayList<>(res.size());
+        for (Order o : res) events.add(OutboxService.event("order.auto_confirmed", o.getId(), OrderStateMachine.payload(o)));
+        outboxService.publishAll(events);
+        return res;
+    }
+
+    private static Order mapOrder(java.sql.ResultSet rs, int rowNum) throws java.sql.SQLException {
+        Order o = new Order();
+        o.setId(rs.getLong("id"));
+        o.setBookId(rs.getLong("book_id"));
+        o.setBookName(rs.getString("book_name"));
+        o.setSellerName(rs.getString("seller_name"));
+        o.setPrice((Double) rs.getObject("price"));
+        o.setBuyerName(rs.getString("buyer_name"));
+        o.setStatus(rs.getString("status"));
+        o.setVersion(rs.getInt("version"));
+        long expireAt = rs.getLong("expire_at");
+        if (!rs.wasNull() && expireAt > 0) o.setExpireAt(expireAt);
+        java.sql.Timestamp ts = rs.getTimestamp("create_time");
+        o.setCreateTime(ts == null ? null : ts.toLocalDateTime());
+        if (o.getExpireAt() == null && o.getCreateTime() != null) {
+            o.setExpireAt(o.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 15L * 60 * 1000);
+        }
+        return o;
+    }
+
+    /**
+     * Function: streamAll
+     * Description: Streams orders in a creation-time range, newest first, over a forward-only cursor
+     *              (fetch size Integer.MIN_VALUE makes MySQL send rows one at a time), so memory stays
+     *              constant whatever the number of rows.
+     * Called By: AdminController.exportOrders
+     * Table Accessed: orders
+     * Input: startTime (Long) - Inclusive lower bound of create_time (epoch ms), may be null
+     *        endTime (Long) - Exclusive upper bound of create_time (epoch ms), may be null
+     *        status (String) - Only orders in this status, may be null
+     *        sink (Consumer<Order>) - Receives each order as it is read
+     * Return: void
+     */
+    public void streamAll(Long startTime, Long endTime, String status, java.util.function.Consumer<Order> sink) {
+        StringBuilder sql = new StringBuilder("SELECT " + ORDER_COLUMNS + " FROM orders WHERE 1 = 1");
+        List<Object> args = new java.util.ArrayList<>();
+        if (status != null && !status.isBlank()) {
+            sql.append(" AND status = ?");
+            args.add(status);
+        }
+        if (startTime != null) {
+            sql.append(" AND create_time >= ?");
+            args.add(new java.sql.Timestamp(startTime));
+        }
+        if (endTime != null) {
+            sql.append(" AND create_time < ?");
+            args.add(new java.sql.Timestamp(endTime));
+        }
+        sql.append(" ORDER BY create_time DESC, id DESC");
+        jdbcTemplate.query(
+                connection -> {
+                    java.sql.PreparedStatement ps = connection.prepareStatement(sql.toString(), java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                    for (int k = 0; k < args.size(); k++) ps.setObject(k + 1, args.get(k));
+                    return ps;
+                },
+                (org.springframework.jdbc.core.RowCallbackHandler) rs -> sink.accept(mapOrder(rs, 0))
         );
-        return true;
     }
 
     /**
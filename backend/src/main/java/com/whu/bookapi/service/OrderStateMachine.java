@@ -0,0 +1,155 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.OrderTransition;
+import com.whu.bookapi.model.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderStateMachine.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Order lifecycle. Legal moves are
+ *              pending -> paid | cancelled | expired and paid -> received; cancelled, expired and
+ *              received are final. A transition is one compare-and-set UPDATE on id, status and
+ *              version, so of two concurrent transitions exactly one wins; the new row is the
+ *              caller's snapshot with the new status and version, without reading it back.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Transitions adjust the per-user order counters in the same transaction.
+ * WiseBookPal Team  2026-10-17      1.2                Transitions publish order.<status> outbox events in the same transaction.
+ */
+@Service
+public class OrderStateMachine {
+    public static final String PENDING = "pending";
+    public static final String PAID = "paid";
+    public static final String RECEIVED = "received";
+    public static final String CANCELLED = "cancelled";
+    public static final String EXPIRED = "expired";
+
+    private static final Map<String, Set<String>> MOVES = Map.of(
+            PENDING, Set.of(PAID, CANCELLED, EXPIRED),
+            PAID, Set.of(RECEIVED)
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderCounterService orderCounterService;
+    private final OutboxService outboxService;
+
+    public OrderStateMachine(JdbcTemplate jdbcTemplate, OrderCounterService orderCounterService, OutboxService outboxService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderCounterService = orderCounterService;
+        this.outboxService = outboxService;
+    }
+
+    /**
+     * Function: payload
+     * Description: Outbox payload describing an order.
+     * Input: o (Order) - Order
+     * Return: Map<String, Object>
+     */
+    public static Map<String, Object> payload(Order o) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("bookId", o.getBookId());
+        m.put("bookName", o.getBookName());
+        m.put("sellerName", o.getSellerName());
+        m.put("buyerName", o.getBuyerName());
+        m.put("price", o.getPrice());
+        return m;
+    }
+
+    /**
+     * Function: canMove
+     * Description: Whether an order may go from one status to another.
+     * Input: from (String) - Current status
+     *        to (String) - Requested status
+     * Return: boolean
+     */
+    public static boolean canMove(String from, String to) {
+        Set<String> next = from == null ? null : MOVES.get(from);
+        return next != null && next.contains(to);
+    }
+
+    /**
+     * Function: transition
+     * Description: Moves an order read earlier to a new status if it is still in the status and
+     *              version it was read with.
+     * Called By: OrderController.pay, OrderController.receive, OrderService.cancel
+     * Table Updated: orders (status, version), user_order_counter, outbox_event
+     * Input: current (Order) - Snapshot of the order
+     *        to (String) - Requested status
+     * Output: OrderTransition - The order in its new status, ILLEGAL or CONFLICT
+     * Return: OrderTransition
+     */
+    @Transactional
+    public OrderTransition transition(Order current, String to) {
+        if (current == null || current.getId() == null || !canMove(current.getStatus(), to)) {
+            return OrderTransition.failed(OrderTransition.Failure.ILLEGAL);
+        }
+        int updated;
+        if (current.getVersion() == null) {
+            updated = jdbcTemplate.update(
+                    "UPDATE orders SET status = ?, version = version + 1 WHERE id = ? AND status = ?",
+                    to, current.getId(), current.getStatus());
+        } else {
+            updated = jdbcTemplate.update(
+                    "UPDATE orders SET status = ?, version = version + 1 WHERE id = ? AND status = ? AND version = ?",
+                    to, current.getId(), current.getStatus(), current.getVersion());
+        }
+        if (updated == 0) return OrderTransition.failed(OrderTransition.Failure.CONFLICT);
+        orderCounterService.moved(List.of(current), current.getStatus(), to);
+        outboxService.publish("order." + to, current.getId(), payload(current));
+        Order o = new Order();
+        o.setId(current.getId());
+        o.setBookId(current.getBookId());
+        o.setBookName(current.getBookName());
+        o.setSellerName(current.getSellerName());
+        o.setPrice(current.getPrice());
+        o.setBuyerName(current.getBuyerName());
+        o.setStatus(to);
+        o.setVersion(current.getVersion() == null ? null : current.getVersion() + 1);
+        o.setCreateTime(current.getCreateTime());
+        o.setExpireAt(current.getExpireAt());
+        return OrderTransition.moved(o);
+    }
+
+    /**
+     * Function: expire
+     * Description: Moves a pending order to expired, knowing only its id.
+     * Called By: OrderService.expire
+     * Table Accessed: orders
+     * Table Updated: orders (status, version), user_order_counter, outbox_event
+     * Input: orderId (Long) - Order ID
+     * Output: boolean - True if this call expired the order, false if it was no longer pending
+     * Return: boolean
+     */
+    @Transactional
+    public boolean expire(Long orderId) {
+        int updated = jdbcTemplate.update(
+                "UPDATE orders SET status = 'expired', version = version + 1 WHERE id = ? AND status = 'pending'", orderId);
+        if (updated == 0) return false;
+        List<Order> parties = jdbcTemplate.query(
+                "SELECT book_id, book_name, seller_name, buyer_name, price FROM orders WHERE id = ?",
+                (rs, rowNum) -> {
+                    Order o = new Order();
+                    o.setBookId(rs.getLong("book_id"));
+                    o.setBookName(rs.getString("book_name"));
+                    o.setSellerName(rs.getString("seller_name"));
+                    o.setBuyerName(rs.getString("buyer_name"));
+                    o.setPrice((Double) rs.getObject("price"));
+                    return o;
+                },
+                orderId
+        );
+        orderCounterService.moved(parties, PENDING, EXPIRED);
+        for (Order o : parties) outboxService.publish("order." + EXPIRED, orderId, payload(o));
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.OutboxEvent;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OutboxConsumer.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Side effect driven by outbox events. OutboxDispatcher calls every consumer that accepts
+ *              an event, on a virtual thread, until each has succeeded once. Delivery is at least once,
+ *              so handle must tolerate seeing an event again after a crash.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+public interface OutboxConsumer {
+    /**
+     * Function: name
+     * Description: Stable consumer name, recorded on events it has handled.
+     * Return: String
+     */
+    String name();
+
+    /**
+     * Function: accepts
+     * Description: Whether this consumer handles events of the type.
+     * Input: eventType (String) - Event type
+     * Return: boolean
+     */
+    boolean accepts(String eventType);
+
+    /**
+     * Function: handle
+     * Description: Performs the side effect; throwing schedules a retry of this consumer only.
+     * Input: event (OutboxEvent) - Event to handle
+     * Return: void
+     */
+    void handle(OutboxEvent event);
+}
@@ -0,0 +1,266 @@
+package com.whu.bookapi.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whu.bookapi.model.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OutboxDispatcher.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Delivers outbox events to their consumers. Due events are claimed in batches with one
+ *              conditional UPDATE that stamps a claim id and a lease on rows nobody holds, so instances
+ *              (or an overlapping pass) never dispatch the same row; a claim whose holder died is taken
+ *              over once its lease has run out. Claimed events are handled on virtual threads, at most
+ *              app.outbox.concurrency at once so consumers cannot drain the connection pool; results
+ *              are written back (only while the claim is still ours) with one UPDATE for the delivered
+ *              events and one batch for the rest. A consumer that fails is retried with exponential
+ *              backoff while the consumers that succeeded are not run again; after MAX_ATTEMPTS, or at
+ *              once when the payload cannot be read, the event is parked as 'dead'.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Lease-based claims, bounded concurrency, unreadable payloads dead-lettered.
+ */
+@Component
+public class OutboxDispatcher {
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long MAX_BACKOFF_MS = 600_000L;
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final List<OutboxConsumer> consumers;
+    /** Bounds the consumers running at once (each may hold a pooled connection) */
+    private final Semaphore permits;
+    private final int concurrency;
+    /** How long a claim protects a row; must exceed the time a batch takes */
+    private final long leaseMs;
+    /** Prefix of this instance's claim ids */
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+
+    public OutboxDispatcher(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, List<OutboxConsumer> consumers,
+                            @Value("${app.outbox.concurrency:4}") int concurrency,
+                            @Value("${app.outbox.lease-ms:300000}") long leaseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.consumers = consumers;
+        this.concurrency = Math.max(1, concurrency);
+        this.permits = new Semaphore(this.concurrency);
+        this.leaseMs = Math.max(leaseMs, 1000L);
+    }
+
+    /**
+     * Function: dispatchDue
+     * Description: Delivers due events batch by batch until none is left.
+     * Called By: OutboxScheduler.dispatch
+     * Table Accessed: outbox_event
+     * Table Updated: outbox_event
+     * Output: int - Events processed
+     * Return: int
+     */
+    public int dispatchDue() {
+        int total = 0;
+        while (true) {
+            int n = dispatchBatch();
+            total += n;
+            if (n < BATCH_SIZE || Thread.currentThread().isInterrupted()) return total;
+        }
+    }
+
+    /**
+     * Function: purgeDelivered
+     * Description: Deletes delivered events older than the given age.
+     * Called By: OutboxScheduler.purge
+     * Table Updated: outbox_event
+     * Input: olderThanMs (long) - Minimum age in milliseconds
+     * Output: int - Rows deleted
+     * Return: int
+     */
+    public int purgeDelivered(long olderThanMs) {
+        return jdbcTemplate.update("DELETE FROM outbox_event WHERE status = 'done' AND created_at < ?",
+                System.currentTimeMillis() - olderThanMs);
+    }
+
+    /**
+     * Function: stats
+     * Description: Backlog and delivery counters.
+     * Called By: AdminController.cacheStats
+     * Table Accessed: outbox_event
+     * Return: Map<String, Object>
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("pending", jdbcTemplate.queryForObject("SELECT COUNT(1) FROM outbox_event WHERE status = 'pending'", Long.class));
+        m.put("deadTotal", jdbcTemplate.queryForObject("SELECT COUNT(1) FROM outbox_event WHERE status = 'dead'", Long.class));
+        m.put("delivered", delivered.get());
+        m.put("retried", retried.get());
+        m.put("dead", dead.get());
+        m.put("concurrency", concurrency);
+        m.put("inFlight", concurrency - permits.availablePermits());
+        return m;
+    }
+
+    private int dispatchBatch() {
+        long now = System.currentTimeMillis();
+        String claimId = instanceId + "-" + UUID.randomUUID().toString().substring(0, 8);
+        int claimed = jdbcTemplate.update(
+                "UPDATE outbox_event SET locked_by = ?, lease_until = ? " +
+                        "WHERE status = 'pending' AND next_attempt_at <= ? AND (lease_until IS NULL OR lease_until < ?) " +
+                        "ORDER BY next_attempt_at, id LIMIT ?",
+                claimId, now + leaseMs, now, now, BATCH_SIZE
+        );
+        if (claimed == 0) return 0;
+        Map<Long, String> unreadable = new LinkedHashMap<>();
+        List<OutboxEvent> due = jdbcTemplate.query(
+                "SELECT id, event_type, aggregate_id, payload, attempts, done_consumers, created_at FROM outbox_event " +
+                        "WHERE locked_by = ? AND status = 'pending' ORDER BY next_attempt_at, id",
+                (rs, rowNum) -> {
+                    OutboxEvent e = new OutboxEvent();
+                    e.setId(rs.getLong("id"));
+                    e.setEventType(rs.getString("event_type"));
+                    long aggregateId = rs.getLong("aggregate_id");
+                    e.setAggregateId(rs.wasNull() ? null : aggregateId);
+                    try {
+                        e.setPayload(parse(rs.getString("payload")));
+                    } catch (Exception ex) {
+                        unreadable.put(e.getId(), "payload: " + ex.getMessage());
+                    }
+                    e.setAttempts(rs.getInt("attempts"));
+                    String done = rs.getString("done_consumers");
+                    if (done != null && !done.isEmpty()) e.setDoneConsumers(new HashSet<>(Arrays.asList(done.split(","))));
+                    e.setCreatedAt(rs.getLong("created_at"));
+                    return e;
+                },
+                claimId
+        );
+        if (due.isEmpty()) return claimed;
+
+        List<String> errors = new ArrayList<>(Collections.nCopies(due.size(), null));
+        List<Callable<String>> tasks = new ArrayList<>(due.size());
+        List<Integer> taskIndex = new ArrayList<>(due.size());
+        for (int i = 0; i < due.size(); i++) {
+            OutboxEvent e = due.get(i);
+            if (unreadable.containsKey(e.getId())) {
+                errors.set(i, unreadable.get(e.getId()));
+                continue;
+            }
+            tasks.add(() -> {
+                permits.acquire();
+                try {
+                    return deliver(e);
+                } finally {
+                    permits.release();
+                }
+            });
+            taskIndex.add(i);
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> results = executor.invokeAll(tasks);
+            for (int k = 0; k < results.size(); k++) {
+                try {
+                    errors.set(taskIndex.get(k), results.get(k).get());
+                } catch (ExecutionException ex) {
+                    errors.set(taskIndex.get(k), String.valueOf(ex.getCause()));
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+
+        List<Long> deliveredIds = new ArrayList<>();
+        List<Object[]> failed = new ArrayList<>();
+        long finishedAt = System.currentTimeMillis();
+        for (int i = 0; i < due.size(); i++) {
+            OutboxEvent e = due.get(i);
+            String error = errors.get(i);
+            if (error == null) {
+                deliveredIds.add(e.getId());
+                continue;
+            }
+            int attempts = e.getAttempts() + 1;
+            boolean giveUp = attempts >= MAX_ATTEMPTS || unreadable.containsKey(e.getId());
+            failed.add(new Object[]{giveUp ? "dead" : "pending", attempts, finishedAt + backoffMs(attempts),
+                    String.join(",", e.getDoneConsumers()), abbreviate(error), e.getId(), claimId});
+            if (giveUp) {
+                dead.incrementAndGet();
+                log.error("Outbox event {} ({}) gave up after {} attempts: {}", e.getId(), e.getEventType(), attempts, error);
+            } else {
+                retried.incrementAndGet();
+            }
+        }
+        if (!deliveredIds.isEmpty()) {
+            List<Object> args = new ArrayList<>();
+            args.add(finishedAt);
+            args.add(claimId);
+            args.addAll(deliveredIds);
+            jdbcTemplate.update("UPDATE outbox_event SET status = 'done', attempts = attempts + 1, next_attempt_at = ?, locked_by = NULL, lease_until = NULL " +
+                    "WHERE locked_by = ? AND id IN (" + String.join(", ", Collections.nCopies(deliveredIds.size(), "?")) + ")", args.toArray());
+            delivered.addAndGet(deliveredIds.size());
+        }
+        if (!failed.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE outbox_event SET status = ?, attempts = ?, next_attempt_at = ?, done_consumers = ?, last_error = ?, locked_by = NULL, lease_until = NULL " +
+                            "WHERE id = ? AND locked_by = ?",
+                    failed);
+        }
+        return claimed;
+    }
+
+    /** Delay before the next attempt: 2^attempts seconds, capped at MAX_BACKOFF_MS */
+    static long backoffMs(int attempts) {
+        return Math.min(MAX_BACKOFF_MS, 1000L << Math.min(Math.max(attempts, 0), 20));
+    }
+
+    /** Runs every accepting consumer not yet done; returns the failures, or null when all succeeded */
+    private String deliver(OutboxEvent e) {
+        StringBuilder errors = null;
+        for (OutboxConsumer c : consumers) {
+            if (!c.accepts(e.getEventType()) || e.getDoneConsumers().contains(c.name())) continue;
+            try {
+                c.handle(e);
+                e.getDoneConsumers().add(c.name());
+            } catch (RuntimeException ex) {
+                if (errors == null) errors = new StringBuilder();
+                else errors.append("; ");
+                errors.append(c.name()).append(": ").append(ex.getMessage());
+            }
+        }
+        return errors == null ? null : errors.toString();
+    }
+
+    /** Reads a payload; throws when the JSON is malformed so the event is dead-lettered, not run empty */
+    private Map<String, Object> parse(String json) throws Exception {
+        return json == null ? Map.of() : objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+    }
+
+    private static String abbreviate(String s) {
+        return s.length() <= 500 ? s : s.substring(0, 500);
+    }
+}
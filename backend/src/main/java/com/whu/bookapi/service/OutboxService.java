@@ -0,0 +1,92 @@
+package com.whu.bookapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whu.bookapi.model.OutboxEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OutboxService.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Writes domain events to the outbox table. Callers publish inside the transaction of the
+ *              state change, so an event exists exactly when its change committed; OutboxDispatcher
+ *              delivers it to the consumers afterwards, off the request thread.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+@Service
+public class OutboxService {
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Function: event
+     * Description: Builds an event for publishAll.
+     * Input: eventType (String) - Event type
+     *        aggregateId (Long) - Order or book ID
+     *        payload (Map<String, Object>) - Event data
+     * Return: OutboxEvent
+     */
+    public static OutboxEvent event(String eventType, Long aggregateId, Map<String, Object> payload) {
+        OutboxEvent e = new OutboxEvent();
+        e.setEventType(eventType);
+        e.setAggregateId(aggregateId);
+        e.setPayload(payload);
+        return e;
+    }
+
+    /**
+     * Function: publish
+     * Description: Records one event in the caller's transaction.
+     * Called By: OrderStateMachine, SettlementService.settle
+     * Table Updated: outbox_event
+     * Input: eventType (String) - Event type
+     *        aggregateId (Long) - Order or book ID
+     *        payload (Map<String, Object>) - Event data
+     * Return: void
+     */
+    public void publish(String eventType, Long aggregateId, Map<String, Object> payload) {
+        publishAll(List.of(event(eventType, aggregateId, payload)));
+    }
+
+    /**
+     * Function: publishAll
+     * Description: Records several events with one JDBC batch, in the caller's transaction.
+     * Called By: OrderService.markReceived, BookService.approveAll, BookService.rejectAll
+     * Table Updated: outbox_event
+     * Input: events (List<OutboxEvent>) - Events
+     * Return: void
+     */
+    public void publishAll(List<OutboxEvent> events) {
+        if (events == null || events.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (OutboxEvent e : events) {
+            args.add(new Object[]{e.getEventType(), e.getAggregateId(), json(e.getPayload()), now, now});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO outbox_event (event_type, aggregate_id, payload, status, attempts, next_attempt_at, created_at) VALUES (?, ?, ?, 'pending', 0, ?, ?)",
+                args
+        );
+    }
+
+    private String json(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload == null ? Map.of() : payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable", e);
+        }
+    }
+}
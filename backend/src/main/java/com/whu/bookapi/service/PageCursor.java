@@ -0,0 +1,95 @@
+package com.whu.bookapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: PageCursor.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Opaque keyset pagination cursor.
+ *              Encodes the sort order, the sort key of the last returned row and its id,
+ *              so the next page can be fetched with a range seek instead of OFFSET.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+public final class PageCursor {
+    private final String sort;
+    private final String key;
+    private final long id;
+
+    public PageCursor(String sort, String key, long id) {
+        this.sort = sort == null ? "" : sort;
+        this.key = key == null ? "" : key;
+        this.id = id;
+    }
+
+    /**
+     * Function: encode
+     * Description: Serializes the cursor into a URL-safe token.
+     * Return: String
+     */
+    public String encode() {
+        String raw = sort + "|" + key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Function: decode
+     * Description: Parses a token produced by encode.
+     * Input: token (String) - Cursor token from the client
+     * Output: PageCursor - Parsed cursor, or null when the token is blank or malformed
+     * Return: PageCursor
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int first = raw.indexOf('|');
+            int last = raw.lastIndexOf('|');
+            if (first < 0 || last <= first) return null;
+            return new PageCursor(raw.substring(0, first), raw.substring(first + 1, last), Long.parseLong(raw.substring(last + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Function: keyAsDouble
+     * Description: Sort key parsed as a number, or null when it is not numeric.
+     * Return: Double
+     */
+    public Double keyAsDouble() {
+        try {
+            return Double.valueOf(key);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Function: keyAsLong
+     * Description: Sort key parsed as a long, or null when it is not numeric.
+     * Return: Long
+     */
+    public Long keyAsLong() {
+        try {
+            return Long.valueOf(key);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SessionCache.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Bounded LRU cache from session token to the resolved User (with role) behind
+ *              UserService.getByToken, saving the token join and the roles query on almost every request.
+ *              Writers invalidate the user's sessions here at once; the change is also written to
+ *              auth_revocation, and every other instance drops the same sessions when
+ *              SignedTokenScheduler polls it, so a blacklist, role or password change is seen everywhere
+ *              within about 10 seconds. The 30-second TTL is the upper bound should that polling fail.
+ *              A load that raced with an invalidation is not cached. Users are copied in and out.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Invalidated on every instance through auth_revocation; TTL cut to 30 s.
+ */
+@Component
+public class SessionCache {
+    /** Database queries a cache miss costs in getByToken (token join, roles) */
+    private static final int QUERIES_PER_LOAD = 2;
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    /** Bumped on every invalidation; loads started before the bump are discarded */
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long expirations = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public SessionCache(@Value("${app.cache.session-max-size:10000}") int maxSize,
+                        @Value("${app.cache.session-ttl-ms:30000}") long ttlMs) {
+        this.maxSize = Math.max(maxSize, 1);
+        this.ttlMs = Math.max(ttlMs, 0);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= SessionCache.this.maxSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Function: get
+     * Description: Looks up a live session and records a hit or miss; expired entries are dropped.
+     * Called By: UserService.getByToken
+     * Input: token (String) - Session token
+     * Output: User - A copy of the cached user, or null on a miss
+     * Return: User
+     */
+    public synchronized User get(String token) {
+        Entry e = entries.get(token);
+        if (e != null && e.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(token);
+            expirations++;
+            e = null;
+        }
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(e.user);
+    }
+
+    /**
+     * Function: generation
+     * Description: Current invalidation generation, read before loading a missed session.
+     * Called By: UserService.getByToken
+     * Return: long
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Function: put
+     * Description: Caches a freshly resolved session unless a session was invalidated while loading.
+     * Called By: UserService.getByToken
+     * Input: token (String) - Session token
+     *        user (User) - Resolved user
+     *        loadedAt (long) - Generation read before the load started
+     * Return: void
+     */
+    public synchronized void put(String token, User user, long loadedAt) {
+        if (token == null || user == null || ttlMs == 0 || loadedAt != generation) return;
+        entries.put(token, new Entry(copy(user), System.currentTimeMillis() + ttlMs));
+    }
+
+    /**
+     * Function: invalidateToken
+     * Description: Drops one session, now and again after the surrounding transaction commits.
+     * Called By: UserService.logout, SignedTokenService (logout on another instance)
+     * Input: token (String) - Session token
+     * Return: void
+     */
+    public void invalidateToken(String token) {
+        if (token == null) return;
+        nowAndAfterCommit(() -> removeToken(token));
+    }
+
+    /**
+     * Function: invalidateUser
+     * Description: Drops every session of a user after their account, status or roles changed, now and
+     *              again after the surrounding transaction commits so a reload cannot cache the old row.
+     * Called By: UserService write paths, SignedTokenService (change on another instance)
+     * Input: username (String) - Username
+     * Return: void
+     */
+    public void invalidateUser(String username) {
+        if (username == null) return;
+        nowAndAfterCommit(() -> removeUser(username));
+    }
+
+    /**
+     * Function: stats
+     * Description: Hit/miss counters, the database queries the hits saved, and eviction counters.
+     * Called By: UserService.sessionStats
+     * Output: Map<String, Object> - size, maxSize, ttlMs, hits, misses, hitRate, queriesSaved, expirations, evictions, invalidations
+     * Return: Map<String, Object>
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long lookups = hits + misses;
+        m.put("size", entries.size());
+        m.put("maxSize", maxSize);
+        m.put("ttlMs", ttlMs);
+        m.put("hits", hits);
+        m.put("misses", misses);
+        m.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        m.put("queriesSaved", hits * QUERIES_PER_LOAD);
+        m.put("expirations", expirations);
+        m.put("evictions", evictions);
+        m.put("invalidations", invalidations);
+        return m;
+    }
+
+    private synchronized void removeToken(String token) {
+        generation++;
+        if (entries.remove(token) != null) invalidations++;
+    }
+
+    private synchronized void removeUser(String username) {
+        generation++;
+        int before = entries.size();
+        entries.values().removeIf(e -> username.equals(e.user.getUsername()));
+        invalidations += before - entries.size();
+    }
+
+    private static void nowAndAfterCommit(Runnable action) {
+        action.run();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static User copy(User src) {
+        User u = new User();
+        u.setUsername(src.getUsername());
+        u.setRole(src.getRole());
+        u.setToken(src.getToken());
+        u.setSellerStatus(src.getSellerStatus());
+        u.setPhone(src.getPhone());
+        u.setEmail(src.getEmail());
+        u.setGender(src.getGender());
+        u.setLastAuditTime(src.getLastAuditTime());
+        u.setRealName(src.getRealName());
+        u.setIsVerified(src.getIsVerified());
+        u.setStatus(src.getStatus());
+        u.setBlacklistReason(src.getBlacklistReason());
+        return u;
+    }
+
+    private static final class Entry {
+        private final User user;
+        private final long expiresAt;
+
+        Entry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
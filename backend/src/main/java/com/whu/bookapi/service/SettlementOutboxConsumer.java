@@ -0,0 +1,57 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Order;
+import com.whu.bookapi.model.OutboxEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SettlementOutboxConsumer.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Settles an order with its seller when the buyer confirms receipt (order.received).
+ *              SettlementService.settle is idempotent per order, so a redelivered event credits nothing twice;
+ *              the voucher notification follows from the settlement.settled event it publishes. An order
+ *              that is neither settled now nor already in the ledger (e.g. the seller row is missing) throws,
+ *              so the event is retried and finally dead-lettered instead of being marked done.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Unsettleable orders fail the event instead of passing silently.
+ */
+@Component
+public class SettlementOutboxConsumer implements OutboxConsumer {
+    private final SettlementService settlementService;
+
+    public SettlementOutboxConsumer(SettlementService settlementService) {
+        this.settlementService = settlementService;
+    }
+
+    @Override
+    public String name() {
+        return "settlement";
+    }
+
+    @Override
+    public boolean accepts(String eventType) {
+        return "order.received".equals(eventType);
+    }
+
+    @Override
+    public void handle(OutboxEvent e) {
+        Order o = new Order();
+        o.setId(e.getAggregateId());
+        o.setBookId(e.number("bookId") == null ? null : e.number("bookId").longValue());
+        o.setBookName(e.text("bookName"));
+        o.setSellerName(e.text("sellerName"));
+        o.setBuyerName(e.text("buyerName"));
+        o.setPrice(e.number("price") == null ? null : e.number("price").doubleValue());
+        double amount = o.getPrice() == null ? 0.0 : o.getPrice();
+        if (settlementService.settle(o, amount, System.currentTimeMillis()) != null) return;
+        // settle returns null both for a redelivery and for an order it could not settle
+        if (o.getId() == null || !settlementService.settledOrderIds(List.of(o.getId())).contains(o.getId())) {
+            throw new IllegalStateException("order " + o.getId() + " not settled: seller " + o.getSellerName() + " not found");
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Order;
+import com.whu.bookapi.model.Settlement;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SettlementService.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Settlement ledger on funds_settlement. An order is settled at most once (unique order_id);
+ *              settling credits the seller balance under a row lock and stores the balance after the
+ *              credit on the ledger row. Idempotency checks are primary-key style lookups and exports
+ *              are range scans of (seller_name, settle_time). Vouchers issued before the ledger existed
+ *              (notification text only) are copied into it once, guarded by a job_checkpoint row.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Streaming ledger reads for exports.
+ * WiseBookPal Team  2026-10-17      1.2                Settling publishes a settlement.settled outbox event (voucher notice).
+ * WiseBookPal Team  2026-10-17      1.3                One-time backfill of notification-only vouchers into the ledger.
+ * WiseBookPal Team  2026-10-17      1.4                Export order is stable within a settle_time (id tiebreak).
+ */
+@Service
+public class SettlementService {
+    private static final String COLUMNS = "f.id, f.order_id, f.seller_name, COALESCE(f.book_name, o.book_name) AS book_name, f.amount, " +
+            "COALESCE(f.received_amount, f.amount) AS received_amount, f.balance_after, f.voucher_no, f.settle_time";
+    private static final String JOB_VOUCHER_BACKFILL = "settlementVoucherBackfill";
+    /** Voucher text written by NotificationService.settlementVoucher (and the daily job before the ledger) */
+    private static final Pattern VOUCHER = Pattern.compile(
+            "^订单#(\\d+)（(.*)）结算完成\\n交易金额: (-?[\\d.]+)\\n到账金额: (-?[\\d.]+)\\n.*凭证号: (SET-\\1-(\\d+))", Pattern.DOTALL);
+    private static final int BACKFILL_BATCH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OutboxService outboxService;
+    /** Set once the voucher backfill is known to be committed, by this instance or another */
+    private volatile boolean vouchersBackfilled = false;
+
+    public SettlementService(JdbcTemplate jdbcTemplate, OutboxService outboxService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.outboxService = outboxService;
+    }
+
+    /**
+     * Function: settle
+     * Description: Credits the seller with the order amount and records the ledger row, once per order.
+     *              A settlement.settled event (voucher notice) is published in the same transaction.
+     * Called By: SettlementOutboxConsumer.handle, OrderScheduler.settleDay
+     * Table Accessed: users, funds_settlement
+     * Table Updated: users (balance), funds_settlement, outbox_event
+     * Input: o (Order) - Order to settle
+     *        receivedAmount (double) - Amount credited to the seller
+     *        settleTime (long) - Settlement time, epoch ms
+     * Output: Settlement - The new ledger row, null when the order was already settled or the seller is missing
+     * Return: Settlement
+     */
+    @Transactional
+    public Settlement settle(Order o, double receivedAmount, long settleTime) {
+        if (o == null || o.getId() == null || o.getSellerName() == null) return null;
+        List<Double> balance = jdbcTemplate.queryForList(
+                "SELECT balance FROM users WHERE username = ? FOR UPDATE", Double.class, o.getSellerName());
+        if (balance.isEmpty()) return null;
+        Settlement s = new Settlement();
+        s.setOrderId(o.getId());
+        s.setSellerName(o.getSellerName());
+        s.setBookName(o.getBookName());
+        s.setAmount(o.getPrice() == null ? 0.0 : o.getPrice());
+        s.setReceivedAmount(receivedAmount);
+        s.setBalanceAfter((balance.get(0) == null ? 0.0 : balance.get(0)) + receivedAmount);
+        s.setVoucherNo("SET-" + o.getId() + "-" + settleTime);
+        s.setSettleTime(settleTime);
+        int inserted = jdbcTemplate.update(
+                "INSERT IGNORE INTO funds_settlement (order_id, seller_name, book_name, amount, received_amount, balance_after, voucher_no, status, settle_time, created_time) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, 'settled', ?, ?)",
+                s.getOrderId(), s.getSellerName(), s.getBookName(), s.getAmount(), s.getReceivedAmount(),
+                s.getBalanceAfter(), s.getVoucherNo(), settleTime, System.currentTimeMillis()
+        );
+        if (inserted == 0) return null;
+        jdbcTemplate.update("UPDATE users SET balance = balance + ? WHERE username = ?", receivedAmount, o.getSellerName());
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("sellerName", s.getSellerName());
+        payload.put("bookName", s.getBookName());
+        payload.put("amount", s.getAmount());
+        payload.put("receivedAmount", s.getReceivedAmount());
+        payload.put("settleTime", s.getSettleTime());
+        outboxService.publish("settlement.settled", s.getOrderId(), payload);
+        return s;
+    }
+
+    /**
+     * Function: settledOrderIds
+     * Description: Which of the orders already have a ledger row (unique index lookups on order_id).
+     * Called By: OrderScheduler.settleDay
+     * Table Accessed: funds_settlement
+     * Input: orderIds (Collection<Long>) - Order IDs
+     * Output: Set<Long> - The ones already settled
+     * Return: Set<Long>
+     */
+    public Set<Long> settledOrderIds(Collection<Long> orderIds) {
+        Set<Long> res = new HashSet<>();
+        if (orderIds == null || orderIds.isEmpty()) return res;
+        String in = String.join(", ", Collections.nCopies(orderIds.size(), "?"));
+        res.addAll(jdbcTemplate.queryForList("SELECT order_id FROM funds_settlement WHERE order_id IN (" + in + ")", Long.class, orderIds.toArray()));
+        return res;
+    }
+
+    /**
+     * Function: backfillVouchers
+     * Description: Copies the settlement vouchers that exist only as notification text (the daily job
+     *              before the ledger issued them without a ledger row) into funds_settlement, exactly once
+     *              across all instances, so they stay in the seller export. The job_checkpoint row is
+     *              claimed with INSERT IGNORE in the same transaction, as in OrderCounterService.backfill.
+     *              Copied rows have status 'backfilled' and no balance_after; the seller balance is not
+     *              touched. Orders that already have a ledger row, or whose order or seller is gone, are
+     *              left out by INSERT IGNORE.
+     * Called By: OrderScheduler.backfillSettlementVouchers
+     * Table Accessed: notifications, job_checkpoint
+     * Table Updated: funds_settlement, job_checkpoint
+     * Output: int - Ledger rows written, 0 when the backfill had already been done
+     * Return: int
+     */
+    @Transactional
+    public int backfillVouchers() {
+        if (vouchersBackfilled) return 0;
+        long now = System.currentTimeMillis();
+        int claimed = jdbcTemplate.update(
+                "INSERT IGNORE INTO job_checkpoint (job_name, run_key, status, last_id, scanned, affected, started_at, updated_at) " +
+                        "VALUES (?, 'v1', 'done', 0, 0, 0, ?, ?)",
+                JOB_VOUCHER_BACKFILL, now, now);
+        int[] scanned = {0};
+        int[] written = {0};
+        if (claimed > 0) {
+            List<Object[]> batch = new ArrayList<>();
+            jdbcTemplate.query(
+                    "SELECT to_user, content FROM notifications WHERE type = 'settlement' AND content LIKE '订单#%' ORDER BY id",
+                    (RowCallbackHandler) rs -> {
+                        scanned[0]++;
+                        Object[] row = voucherRow(rs.getString("to_user"), rs.getString("content"), now);
+                        if (row != null) batch.add(row);
+                        if (batch.size() >= BACKFILL_BATCH) written[0] += insertBackfilled(batch);
+                    });
+            written[0] += insertBackfilled(batch);
+            jdbcTemplate.update("UPDATE job_checkpoint SET scanned = ?, affected = ?, updated_at = ? WHERE job_name = ?",
+                    scanned[0], written[0], System.currentTimeMillis(), JOB_VOUCHER_BACKFILL);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    vouchersBackfilled = true;
+                }
+            });
+        } else {
+            vouchersBackfilled = true;
+        }
+        return written[0];
+    }
+
+    /** Ledger row parameters from a voucher notification, null when the text is not a voucher */
+    static Object[] voucherRow(String seller, String content, long now) {
+        if (seller == null || content == null) return null;
+        Matcher m = VOUCHER.matcher(content);
+        if (!m.find()) return null;
+        String bookName = "-".equals(m.group(2)) ? null : m.group(2);
+        return new Object[]{Long.parseLong(m.group(1)), seller, bookName, Double.parseDouble(m.group(3)),
+                Double.parseDouble(m.group(4)), m.group(5), Long.parseLong(m.group(6)), now};
+    }
+
+    private int insertBackfilled(List<Object[]> batch) {
+        if (batch.isEmpty()) return 0;
+        int[] counts = jdbcTemplate.batchUpdate(
+                "INSERT IGNORE INTO funds_settlement (order_id, seller_name, book_name, amount, received_amount, voucher_no, status, settle_time, created_time) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, 'backfilled', ?, ?)",
+                batch);
+        batch.clear();
+        int n = 0;
+        for (int c : counts) if (c > 0) n++;
+        return n;
+    }
+
+    /**
+     * Function: streamBySeller
+     * Description: Streams a seller's ledger rows, newest first (ties, such as one settlement run, by id),
+     *              over a forward-only cursor
+     *              (fetch size Integer.MIN_VALUE makes MySQL send rows one at a time), so memory
+     *              stays constant whatever the number of rows.
+     * Called By: NotificationController.exportSettlements
+     * Table Accessed: funds_settlement, orders
+     * Input: sellerName (String) - Seller username
+     *        startTime (Long) - Inclusive lower bound of settle_time (epoch ms), may be null
+     *        endTime (Long) - Exclusive upper bound of settle_time (epoch ms), may be null
+     *        sink (Consumer<Settlement>) - Receives each row as it is read
+     * Return: void
+     */
+    public void streamBySeller(String sellerName, Long startTime, Long endTime, Consumer<Settlement> sink) {
+        if (sellerName == null) return;
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM funds_settlement f LEFT JOIN orders o ON o.id = f.order_id WHERE f.seller_name = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(sellerName);
+        if (startTime != null) {
+            sql.append(" AND f.settle_time >= ?");
+            args.add(startTime);
+        }
+        if (endTime != null) {
+            sql.append(" AND f.settle_time < ?");
+            args.add(endTime);
+        }
+        sql.append(" ORDER BY f.settle_time DESC, f.id DESC");
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                    for (int k = 0; k < args.size(); k++) ps.setObject(k + 1, args.get(k));
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> sink.accept(mapSettlement(rs))
+        );
+    }
+
+    private static Settlement mapSettlement(ResultSet rs) throws SQLException {
+        Settlement s = new Settlement();
+        s.setId(rs.getLong("id"));
+        s.setOrderId(rs.getLong("order_id"));
+        s.setSellerName(rs.getString("seller_name"));
+        s.setBookName(rs.getString("book_name"));
+        s.setAmount(rs.getDouble("amount"));
+        s.setReceivedAmount(rs.getDouble("received_amount"));
+        s.setBalanceAfter((Double) rs.getObject("balance_after"));
+        s.setSettleTime(rs.getLong("settle_time"));
+        String voucher = rs.getString("voucher_no");
+        s.setVoucherNo(voucher != null ? voucher : "SET-" + s.getOrderId() + "-" + s.getSettleTime());
+        return s;
+    }
+}
@@ -0,0 +1,518 @@
+package com.whu.bookapi.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SignedTokenService.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Self-validating session tokens: "v1." + base64url(JSON claims) + "." + base64url(HMAC-SHA256),
+ *              the claims being username (sub), roles, issue time (iat), signing key id (kid) and a random
+ *              token id (jti) that keeps two logins in the same millisecond from sharing a token (and a logout).
+ *              A token is authenticated from its signature and age alone, without a database lookup.
+ *              Signing keys live in auth_signing_key: rotation adds a new key that signs from then on,
+ *              while earlier keys keep verifying until every token they signed has expired. Every instance
+ *              reloads the key ring every 10 seconds, so all of them sign with the newest key shortly after
+ *              a rotation, long before the previous key can be retired. Revocations
+ *              (logged-out tokens, a per-user "issued before" cutoff fed by blacklisting and account
+ *              deletion, and role changes) are written to auth_revocation and mirrored in memory; every
+ *              instance loads them before its first verification and then polls for new ones, so a
+ *              revocation holds on every instance and across restarts. Rows are dropped once the tokens
+ *              they cover have expired. The same rows carry session cache invalidations ('session' for a
+ *              user whose account changed, 'logout' for a random token), and every applied row drops the
+ *              matching SessionCache entries, so no instance serves a cached User past the next poll.
+ *              Issuing is opt-in (app.auth.signed-tokens); verification is
+ *              always on, and random user_token tokens keep working alongside.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Revocations persisted in auth_revocation and polled by every instance.
+ * WiseBookPal Team  2026-10-17      1.2                Periodic key reload; the first key is created once across instances.
+ * WiseBookPal Team  2026-10-17      1.3                Revocation polling also invalidates SessionCache entries on every instance.
+ * WiseBookPal Team  2026-10-17      1.4                Random jti claim: tokens issued together no longer coincide.
+ * WiseBookPal Team  2026-10-17      1.5                Rotation inserts the new key before superseding the old one, in one transaction.
+ * WiseBookPal Team  2026-10-17      1.6                Revocations apply locally after the recording transaction commits.
+ */
+@Service
+public class SignedTokenService {
+    private static final String PREFIX = "v1.";
+    private static final String ALGORITHM = "HmacSHA256";
+    /** Tolerated clock difference between instances for the issue time */
+    private static final long CLOCK_SKEW_MS = 60_000L;
+    /** Minimum time between key reloads triggered by an unknown key id (the scheduled reload uses the same period) */
+    private static final long RELOAD_INTERVAL_MS = 10_000L;
+    /** Id of the first signing key; fixed so that instances starting together create only one */
+    private static final String FIRST_KID = "k0";
+    private static final long PURGE_INTERVAL_MS = 60_000L;
+    private static final String REVOKED_TOKEN = "token";
+    private static final String REVOKED_USER = "user";
+    private static final String ROLES_CHANGED = "roles";
+    private static final String SESSION_CHANGED = "session";
+    private static final String SESSION_ENDED = "logout";
+    /** Session invalidations only need to outlive one poll on every instance */
+    private static final long SESSION_ROW_MS = 10 * 60_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SessionCache sessionCache;
+    private final boolean enabled;
+    private final long ttlMs;
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<String, byte[]> keys = new ConcurrentHashMap<>();
+    private volatile String activeKid;
+    private volatile long lastReload = 0;
+    private volatile long lastPurge = 0;
+    /** Time of the last revocation poll, 0 before the first full load */
+    private volatile long revocationsSyncedAt = 0;
+    /** Logged-out tokens by signature, with the time they expire anyway */
+    private final Map<String, Long> deniedTokens = new ConcurrentHashMap<>();
+    /** Tokens of the user issued at or before the time are revoked */
+    private final Map<String, Long> deniedBefore = new ConcurrentHashMap<>();
+    /** Tokens of the user issued at or before the time carry outdated roles */
+    private final Map<String, Long> rolesChangedAt = new ConcurrentHashMap<>();
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong revoked = new AtomicLong();
+    /** This bean through its proxy, so issue() rotates in a transaction; the instance itself outside Spring */
+    private SignedTokenService self = this;
+
+    public SignedTokenService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, SessionCache sessionCache,
+                              @Value("${app.auth.signed-tokens:false}") boolean enabled,
+                              @Value("${app.auth.token-ttl-ms:604800000}") long ttlMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.sessionCache = sessionCache;
+        this.enabled = enabled;
+        this.ttlMs = Math.max(ttlMs, 60_000L);
+    }
+
+    @Autowired
+    void setSelf(@Lazy SignedTokenService self) {
+        this.self = self;
+    }
+
+    /**
+     * Function: isEnabled
+     * Description: Whether login issues signed tokens instead of user_token rows.
+     * Called By: UserService.login
+     * Return: boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Function: isSigned
+     * Description: Whether the token is in the signed format (random tokens never are).
+     * Called By: UserService.logout, UserService.getByToken
+     * Input: token (String) - Session token
+     * Return: boolean
+     */
+    public boolean isSigned(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    /**
+     * Function: issue
+     * Description: Signs a new token for the user with the active key, creating the first key if none exists.
+     *              The first key has a fixed id and is inserted with INSERT IGNORE, so when several instances
+     *              issue their first token together exactly one key is created and all of them sign with it.
+     * Called By: UserService.login
+     * Table Accessed: auth_signing_key (first use only)
+     * Table Updated: auth_signing_key (first use only)
+     * Input: username (String) - Username
+     *        roles (Collection<String>) - Roles at login
+     * Output: String - Signed token
+     * Return: String
+     */
+    public String issue(String username, Collection<String> roles) {
+        if (activeKid == null) reloadKeys();
+        if (activeKid == null) createFirstKey();
+        if (activeKid == null) self.rotate();
+        String kid = activeKid;
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", username);
+        claims.put("roles", roles == null ? List.of() : new ArrayList<>(roles));
+        claims.put("iat", System.currentTimeMillis());
+        claims.put("kid", kid);
+        byte[] jti = new byte[12];
+        random.nextBytes(jti);
+        claims.put("jti", encode(jti));
+        String signingInput;
+        try {
+            signingInput = PREFIX + encode(objectMapper.writeValueAsBytes(claims));
+        } catch (Exception e) {
+            throw new IllegalStateException("Token claims are not serializable", e);
+        }
+        issued.incrementAndGet();
+        return signingInput + "." + encode(sign(keys.get(kid), signingInput));
+    }
+
+    /**
+     * Function: verify
+     * Description: Authenticates a signed token from its signature, age and the denylist, without a database
+     *              lookup (an unknown key id reloads the keys at most every 10 seconds; the first call loads
+     *              the revocations).
+     * Called By: UserService.getByToken
+     * Input: token (String) - Session token
+     * Output: Claims - The token's claims, or null when it is not a valid, live signed token
+     * Return: Claims
+     */
+    public Claims verify(String token) {
+        if (!isSigned(token)) return null;
+        if (revocationsSyncedAt == 0) syncRevocations();
+        int dot = token.lastIndexOf('.');
+        Claims c = dot > PREFIX.length() ? parse(token.substring(PREFIX.length(), dot)) : null;
+        byte[] key = c == null ? null : key(c.kid);
+        byte[] signature = key == null ? null : decode(token.substring(dot + 1));
+        if (signature == null || !MessageDigest.isEqual(sign(key, token.substring(0, dot)), signature)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (c.issuedAt > now + CLOCK_SKEW_MS || c.issuedAt + ttlMs <= now) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        Long before = deniedBefore.get(c.username);
+        if (deniedTokens.containsKey(token.substring(dot + 1)) || (before != null && c.issuedAt <= before)) {
+            revoked.incrementAndGet();
+            return null;
+        }
+        verified.incrementAndGet();
+        return c;
+    }
+
+    /**
+     * Function: revoke
+     * Description: Denylists one signed token until it would have expired.
+     * Called By: UserService.logout
+     * Table Updated: auth_revocation
+     * Input: token (String) - Signed token
+     * Return: void
+     */
+    public void revoke(String token) {
+        Claims c = verify(token);
+        if (c == null) return;
+        record(REVOKED_TOKEN, token.substring(token.lastIndexOf('.') + 1), c.issuedAt, c.issuedAt + ttlMs);
+    }
+
+    /**
+     * Function: revokeUser
+     * Description: Revokes every signed token of the user issued up to now.
+     * Called By: UserService.updateUserStatus, UserService.deleteUser
+     * Table Updated: auth_revocation
+     * Input: username (String) - Username
+     * Return: void
+     */
+    public void revokeUser(String username) {
+        if (username == null) return;
+        long now = System.currentTimeMillis();
+        record(REVOKED_USER, username, now, now + ttlMs);
+    }
+
+    /**
+     * Function: rolesChanged
+     * Description: Marks the roles carried by the user's existing tokens as outdated.
+     * Called By: UserService.setUserRole, UserService.approveSeller
+     * Table Updated: auth_revocation
+     * Input: username (String) - Username
+     * Return: void
+     */
+    public void rolesChanged(String username) {
+        if (username == null) return;
+        long now = System.currentTimeMillis();
+        record(ROLES_CHANGED, username, now, now + ttlMs);
+    }
+
+    /**
+     * Function: sessionsChanged
+     * Description: Drops the user's cached sessions here and, at their next poll, on every other instance.
+     * Called By: UserService write paths that change the users row without revoking tokens or roles
+     * Table Updated: auth_revocation
+     * Input: username (String) - Username
+     * Return: void
+     */
+    public void sessionsChanged(String username) {
+        if (username == null) return;
+        long now = System.currentTimeMillis();
+        record(SESSION_CHANGED, username, now, now + SESSION_ROW_MS);
+    }
+
+    /**
+     * Function: sessionEnded
+     * Description: Drops a logged-out random token from the session cache of every instance.
+     * Called By: UserService.logout
+     * Table Updated: auth_revocation
+     * Input: token (String) - Random session token
+     * Return: void
+     */
+    public void sessionEnded(String token) {
+        if (token == null) return;
+        long now = System.currentTimeMillis();
+        record(SESSION_ENDED, token, now, now + SESSION_ROW_MS);
+    }
+
+    /**
+     * Function: syncRevocations
+     * Description: Loads every live revocation on the first call, afterwards only those recorded since the
+     *              previous poll (with a clock-skew overlap, so rows committed late or by an instance with a
+     *              slightly different clock are not missed; applying a row twice is harmless). Also deletes
+     *              expired rows about once a minute.
+     * Called By: SignedTokenScheduler.refresh, verify (first call)
+     * Table Accessed: auth_revocation
+     * Table Updated: auth_revocation (purge)
+     * Return: void
+     */
+    public synchronized void syncRevocations() {
+        long now = System.currentTimeMillis();
+        long since = revocationsSyncedAt == 0 ? 0 : revocationsSyncedAt - CLOCK_SKEW_MS;
+        jdbcTemplate.query(
+                "SELECT kind, subject, cutoff_at, expires_at FROM auth_revocation WHERE created_at >= ? AND expires_at > ?",
+                rs -> {
+                    apply(rs.getString("kind"), rs.getString("subject"), rs.getLong("cutoff_at"), rs.getLong("expires_at"));
+                },
+                since, now
+        );
+        revocationsSyncedAt = now;
+        if (now - lastPurge >= PURGE_INTERVAL_MS) {
+            lastPurge = now;
+            jdbcTemplate.update("DELETE FROM auth_revocation WHERE expires_at <= ?", now);
+            deniedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+            deniedBefore.values().removeIf(t -> t + ttlMs <= now);
+            rolesChangedAt.values().removeIf(t -> t + ttlMs <= now);
+        }
+    }
+
+    /**
+     * Function: rolesOutdated
+     * Description: Whether the user's roles changed after the token was issued.
+     * Called By: UserService.getByToken
+     * Input: claims (Claims) - Verified claims
+     * Return: boolean
+     */
+    public boolean rolesOutdated(Claims claims) {
+        Long changed = rolesChangedAt.get(claims.username);
+        return changed != null && claims.issuedAt <= changed;
+    }
+
+    /**
+     * Function: rotate
+     * Description: Creates a new signing key that signs every token from now on. Earlier keys keep verifying;
+     *              keys superseded longer than the token TTL ago are retired. The new key is inserted before
+     *              the others are superseded, in one transaction, so a concurrent reload on another instance
+     *              always finds an active key; this instance reloads its ring once the rotation has committed.
+     * Called By: AdminController.rotateTokenKey, issue
+     * Table Updated: auth_signing_key
+     * Output: String - The new key id
+     * Return: String
+     */
+    @Transactional
+    public synchronized String rotate() {
+        long now = System.currentTimeMillis();
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        String kid = Long.toString(now, 36) + Integer.toString(random.nextInt(36 * 36), 36);
+        jdbcTemplate.update("INSERT INTO auth_signing_key (kid, secret, created_at) VALUES (?, ?, ?)",
+                kid, Base64.getEncoder().encodeToString(secret), now);
+        jdbcTemplate.update("UPDATE auth_signing_key SET superseded_at = ? WHERE superseded_at IS NULL AND kid <> ?", now, kid);
+        jdbcTemplate.update("UPDATE auth_signing_key SET retired_at = ? WHERE retired_at IS NULL AND superseded_at < ?", now, now - ttlMs);
+        afterCommit(this::reloadKeys);
+        return kid;
+    }
+
+    /**
+     * Function: reloadKeys
+     * Description: Loads the keys that are not retired; the one not yet superseded signs.
+     * Called By: SignedTokenScheduler.refresh, issue, rotate, verify (unknown key id)
+     * Table Accessed: auth_signing_key
+     * Return: void
+     */
+    public synchronized void reloadKeys() {
+        lastReload = System.currentTimeMillis();
+        Map<String, byte[]> loaded = new HashMap<>();
+        String[] active = new String[1];
+        jdbcTemplate.query(
+                "SELECT kid, secret, superseded_at FROM auth_signing_key WHERE retired_at IS NULL ORDER BY created_at, kid",
+                rs -> {
+                    loaded.put(rs.getString("kid"), Base64.getDecoder().decode(rs.getString("secret")));
+                    if (rs.getObject("superseded_at") == null) active[0] = rs.getString("kid");
+                }
+        );
+        keys.keySet().retainAll(loaded.keySet());
+        keys.putAll(loaded);
+        activeKid = active[0];
+    }
+
+    /**
+     * Function: stats
+     * Description: Key ring, denylist size and verification counters.
+     * Called By: AdminController.cacheStats, AdminController.rotateTokenKey
+     * Return: Map<String, Object>
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("ttlMs", ttlMs);
+        m.put("activeKid", activeKid);
+        m.put("keys", keys.size());
+        m.put("deniedTokens", deniedTokens.size());
+        m.put("deniedUsers", deniedBefore.size());
+        m.put("revocationsSyncedAt", revocationsSyncedAt);
+        m.put("issued", issued.get());
+        m.put("verified", verified.get());
+        m.put("rejected", rejected.get());
+        m.put("revoked", revoked.get());
+        return m;
+    }
+
+    private synchronized void createFirstKey() {
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        jdbcTemplate.update("INSERT IGNORE INTO auth_signing_key (kid, secret, created_at) VALUES (?, ?, ?)",
+                FIRST_KID, Base64.getEncoder().encodeToString(secret), System.currentTimeMillis());
+        reloadKeys();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private byte[] key(String kid) {
+        if (kid == null) return null;
+        byte[] k = keys.get(kid);
+        if (k == null && System.currentTimeMillis() - lastReload > RELOAD_INTERVAL_MS) {
+            reloadKeys();
+            k = keys.get(kid);
+        }
+        return k;
+    }
+
+    /**
+     * Persists a revocation for the other instances and applies it here once the caller's transaction
+     * commits (at once without one), so a rolled-back change is not enforced on this instance alone
+     */
+    private void record(String kind, String subject, long at, long expiresAt) {
+        jdbcTemplate.update("INSERT INTO auth_revocation (kind, subject, cutoff_at, expires_at, created_at) VALUES (?, ?, ?, ?, ?)",
+                kind, subject, at, expiresAt, System.currentTimeMillis());
+        afterCommit(() -> apply(kind, subject, at, expiresAt));
+    }
+
+    private void apply(String kind, String subject, long at, long expiresAt) {
+        if (REVOKED_TOKEN.equals(kind)) deniedTokens.put(subject, expiresAt);
+        else if (REVOKED_USER.equals(kind)) deniedBefore.merge(subject, at, Math::max);
+        else if (ROLES_CHANGED.equals(kind)) rolesChangedAt.merge(subject, at, Math::max);
+        if (SESSION_ENDED.equals(kind)) sessionCache.invalidateToken(subject);
+        else if (!REVOKED_TOKEN.equals(kind)) sessionCache.invalidateUser(subject);
+    }
+
+    private Claims parse(String body) {
+        byte[] json = decode(body);
+        if (json == null) return null;
+        try {
+            Map<String, Object> m = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+            Object sub = m.get("sub");
+            Object iat = m.get("iat");
+            Object kid = m.get("kid");
+            if (!(sub instanceof String) || !(iat instanceof Number) || !(kid instanceof String)) return null;
+            Set<String> roles = new LinkedHashSet<>();
+            if (m.get("roles") instanceof List<?> list) {
+                for (Object r : list) if (r instanceof String) roles.add((String) r);
+            }
+            return new Claims((String) sub, roles, ((Number) iat).longValue(), (String) kid);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] sign(byte[] key, String input) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac.doFinal(input.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] decode(String s) {
+        try {
+            return Base64.getUrlDecoder().decode(s);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Verified claims of a signed token */
+    public static class Claims {
+        private final String username;
+        private final Set<String> roles;
+        private final long issuedAt;
+        private final String kid;
+
+        Claims(String username, Set<String> roles, long issuedAt, String kid) {
+            this.username = username;
+            this.roles = roles;
+            this.issuedAt = issuedAt;
+            this.kid = kid;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public Set<String> getRoles() {
+            return roles;
+        }
+
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+    }
+}
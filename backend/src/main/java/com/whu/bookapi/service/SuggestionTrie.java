@@ -0,0 +1,258 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import jakarta.annotation.PostConstruct;
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SuggestionTrie.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Frequency-weighted prefix trie for search-box autocomplete.
+ *              Every on-sale title, author and ISBN is reachable by its own text, its full pinyin
+ *              ("gaodengshuxue") and its pinyin initials ("gdsx"). Each node caches its top
+ *              suggestions, so a lookup is a walk of the typed prefix with no database access.
+ *              Mirrors BookSearchIndex through BookListingListener.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Index listener registered after construction.
+ */
+@Component
+public class SuggestionTrie implements BookListingListener {
+    private static final int TOP_K = 10;
+    private static final HanyuPinyinOutputFormat PINYIN_FORMAT = new HanyuPinyinOutputFormat();
+
+    static {
+        PINYIN_FORMAT.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        PINYIN_FORMAT.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        PINYIN_FORMAT.setVCharType(HanyuPinyinVCharType.WITH_V);
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Number of on-sale listings carrying each suggestion text */
+    private Map<String, Integer> weights = new HashMap<>();
+    private Node root = new Node();
+    private volatile boolean ready = false;
+
+    private final BookSearchIndex searchIndex;
+
+    public SuggestionTrie(BookSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    @PostConstruct
+    void register() {
+        searchIndex.addListener(this);
+    }
+
+    /**
+     * Function: isReady
+     * Description: Whether the trie has been built from the listings.
+     * Return: boolean
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Function: suggest
+     * Description: Returns the most frequent suggestions under the typed prefix.
+     *              The prefix is matched against the text itself, its full pinyin and its initials.
+     * Called By: BookService.getSuggestions
+     * Input: prefix (String) - What the user has typed so far
+     *        limit (int) - Maximum suggestions
+     * Output: List<String> - Suggestions, most frequent first
+     * Return: List<String>
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> res = new ArrayList<>();
+        if (prefix == null) return res;
+        String key = normalizeKey(prefix);
+        if (key.isEmpty()) return res;
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) return res;
+            for (String s : node.top) {
+                if (res.size() >= limit) break;
+                res.add(s);
+            }
+            return res;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingChanged(Book before, Book after) {
+        List<String> removed = terms(before);
+        List<String> added = terms(after);
+        if (removed.equals(added)) return;
+        lock.writeLock().lock();
+        try {
+            for (String t : removed) adjust(t, -1);
+            for (String t : added) adjust(t, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onListingsReloaded(Collection<Book> listings) {
+        // Build off to the side and swap, so readers keep the previous trie meanwhile
+        Map<String, Integer> nextWeights = new HashMap<>();
+        for (Book b : listings) {
+            for (String t : terms(b)) nextWeights.merge(t, 1, Integer::sum);
+        }
+        Node nextRoot = new Node();
+        for (String t : nextWeights.keySet()) {
+            for (String k : keys(t)) insertTerminal(nextRoot, k, t);
+        }
+        recomputeAll(nextRoot, nextWeights);
+        lock.writeLock().lock();
+        try {
+            weights = nextWeights;
+            root = nextRoot;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void adjust(String term, int delta) {
+        int before = weights.getOrDefault(term, 0);
+        int after = Math.max(before + delta, 0);
+        if (after == 0) weights.remove(term);
+        else weights.put(term, after);
+        for (String k : keys(term)) {
+            if (before == 0 && after > 0) insertTerminal(root, k, term);
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            for (int i = 0; i < k.length() && node != null; i++) {
+                node = node.children.get(k.charAt(i));
+                if (node != null) path.add(node);
+            }
+            if (node == null) continue;
+            if (after == 0) node.terminals.remove(term);
+            for (int i = path.size() - 1; i >= 0; i--) recompute(path.get(i), weights);
+            // Prune branches that no longer lead to any suggestion
+            for (int i = path.size() - 1; i >= 0 && path.get(i).top.length == 0; i--) {
+                Node parent = i == 0 ? root : path.get(i - 1);
+                parent.children.remove(k.charAt(i));
+            }
+        }
+    }
+
+    private static void insertTerminal(Node root, String key, String term) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        }
+        if (!node.terminals.contains(term)) node.terminals.add(term);
+    }
+
+    private static void recomputeAll(Node node, Map<String, Integer> weights) {
+        for (Node child : node.children.values()) recomputeAll(child, weights);
+        recompute(node, weights);
+    }
+
+    /** A node's top list is the best of its own terminals and its children's top lists */
+    private static void recompute(Node node, Map<String, Integer> weights) {
+        Set<String> candidates = new LinkedHashSet<>(node.terminals);
+        for (Node child : node.children.values()) {
+            for (String s : child.top) candidates.add(s);
+        }
+        List<String> sorted = new ArrayList<>(candidates);
+        sorted.sort((a, b) -> {
+            int c = Integer.compare(weights.getOrDefault(b, 0), weights.getOrDefault(a, 0));
+            return c != 0 ? c : a.compareTo(b);
+        });
+        int n = Math.min(sorted.size(), TOP_K);
+        node.top = sorted.subList(0, n).toArray(new String[0]);
+    }
+
+    private static List<String> terms(Book b) {
+        List<String> res = new ArrayList<>();
+        if (b == null) return res;
+        if (b.getBookName() != null && !b.getBookName().isBlank()) res.add(b.getBookName().trim());
+        if (b.getAuthor() != null && !b.getAuthor().isBlank()) res.add(b.getAuthor().trim());
+        if (b.getIsbn() != null && !b.getIsbn().isBlank()) res.add(b.getIsbn().trim());
+        return res;
+    }
+
+    /** Lookup keys of a suggestion: the text, its full pinyin and its pinyin initials */
+    private static Set<String> keys(String term) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(normalizeKey(term));
+        StringBuilder full = new StringBuilder();
+        StringBuilder initials = new StringBuilder();
+        boolean hasHan = false;
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            String py = pinyin(c);
+            if (py != null) {
+                hasHan = true;
+                full.append(py);
+                initials.append(py.charAt(0));
+            } else if (!Character.isWhitespace(c)) {
+                char lc = Character.toLowerCase(c);
+                full.append(lc);
+                initials.append(lc);
+            }
+        }
+        if (hasHan) {
+            keys.add(full.toString());
+            keys.add(initials.toString());
+        }
+        keys.remove("");
+        return keys;
+    }
+
+    private static String pinyin(char c) {
+        if (Character.UnicodeScript.of(c) != Character.UnicodeScript.HAN) return null;
+        try {
+            String[] readings = PinyinHelper.toHanyuPinyinStringArray(c, PINYIN_FORMAT);
+            // Polyphonic characters use their first (most common) reading
+            return readings == null || readings.length == 0 ? null : readings[0];
+        } catch (BadHanyuPinyinOutputFormatCombination e) {
+            return null;
+        }
+    }
+
+    private static String normalizeKey(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isWhitespace(c)) sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        /** Suggestions whose key ends at this node */
+        private final List<String> terminals = new ArrayList<>(1);
+        /** Best suggestions in this subtree, most frequent first */
+        private String[] top = new String[0];
+    }
+}
@@ -49,6 +49,8 @@ import java.util.ArrayList;
  * 22. approveSeller - Approves seller application.
  * 23. rejectSeller - Rejects seller application.
  * 24. listSellerApplications - Lists seller applications.
+ * 25. healthySellers - Batch seller account health check.
+ * 26. sessionStats - Session cache statistics.
  * History:
  * 1. Date: 2024-11-20
  *    Author: WiseBookPal Team
@@ -56,18 +58,42 @@ import java.util.ArrayList;
  * 3. Date: 2026-01-02
  *    Author: WiseBookPal Team
  *    Modification: Added validation for register, removed payment code from seller application.
+ * 4. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Added batch seller health check for settlement chunks.
+ * 5. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Open-order check and sold count read the per-user order counters.
+ * 6. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: getByToken served from the SessionCache; account, status and role changes invalidate it.
+ * 7. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Optional HMAC-signed session tokens, revoked on logout, blacklisting and deletion.
+ * 8. Date: 2026-10-17
+ *    Author: WiseBookPal Team
+ *    Modification: Session cache invalidations reach every instance through auth_revocation.
  */
 @Service
 public class UserService {
     private final JdbcTemplate jdbcTemplate;
     private final NotificationService notificationService;
-    private final OrderService orderService;
+    private final BookService bookService;
+    private final OrderCounterService orderCounterService;
+    private final SessionCache sessionCache;
+    private final SignedTokenService signedTokenService;
     private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private static final String SESSION_COLUMNS = "u.username, u.current_role, u.seller_status, u.phone, u.email, u.gender, u.last_audit_time, u.real_name, u.is_verified, u.status, u.blacklist_reason";
 
-    public UserService(JdbcTemplate jdbcTemplate, @Lazy NotificationService notificationService, @Lazy OrderService orderService) {
+    public UserService(JdbcTemplate jdbcTemplate, @Lazy NotificationService notificationService, BookService bookService,
+                       OrderCounterService orderCounterService, SessionCache sessionCache,
+                       SignedTokenService signedTokenService) {
         this.jdbcTemplate = jdbcTemplate;
         this.notificationService = notificationService;
-        this.orderService = orderService;
+        this.bookService = bookService;
+        this.orderCounterService = orderCounterService;
+        this.sessionCache = sessionCache;
+        this.signedTokenService = signedTokenService;
     }
 
     private static String resolveRole(String currentRole, java.util.Set<String> roles, boolean loginPriority) {
@@ -87,8 +113,9 @@ public class UserService {
 
     /**
      * Function: login
-     * Description: Authenticates user credentials and generates a session token.
-     * Calls: JdbcTemplate.queryForList, JdbcTemplate.update
+     * Description: Authenticates user credentials and generates a session token: a signed token when
+     *              app.auth.signed-tokens is on, otherwise a random token stored in user_token.
+     * Calls: JdbcTemplate.queryForList, JdbcTemplate.update, SignedTokenService.issue
      * Called By: UserController.login
      * Table Accessed: users, user_roles
      * Table Updated: user_token, users
@@ -161,14 +188,19 @@ public class UserService {
         String role = resolveRole(currentRole, roles, true);
         if (role == null) return null;
 
-        String token = UUID.randomUUID().toString();
+        String token;
         long now = System.currentTimeMillis();
-        jdbcTemplate.update(
-                "INSERT INTO user_token (token, username, created_at) VALUES (?, ?, ?)",
-                token,
-                req.getUsername(),
-                now
-        );
+        if (signedTokenService.isEnabled()) {
+            token = signedTokenService.issue(req.getUsername(), roles);
+        } else {
+            token = UUID.randomUUID().toString();
+            jdbcTemplate.update(
+                    "INSERT INTO user_token (token, username, created_at) VALUES (?, ?, ?)",
+                    token,
+                    req.getUsername(),
+                    now
+            );
+        }
         // Reset failed attempts on successful login
         jdbcTemplate.update("UPDATE users SET last_login_time = ?, failed_login_attempts = 0, lockout_end_time = NULL WHERE username = ?", now, req.getUsername());
 
@@ -185,8 +217,8 @@ public class UserService {
 
     /**
      * Function: logout
-     * Description: Invalidates the user's session token.
-     * Calls: JdbcTemplate.update
+     * Description: Invalidates the user's session token (signed tokens go on the denylist).
+     * Calls: JdbcTemplate.update, SignedTokenService.revoke, SignedTokenService.sessionEnded
      * Called By: UserController.logout
      * Table Accessed: None
      * Table Updated: user_token
@@ -197,15 +229,24 @@ public class UserService {
      */
     public void logout(String token) {
         if (token == null) return;
-        jdbcTemplate.update("DELETE FROM user_token WHERE token = ?", token);
+        if (signedTokenService.isSigned(token)) {
+            signedTokenService.revoke(token);
+        } else {
+            jdbcTemplate.update("DELETE FROM user_token WHERE token = ?", token);
+            signedTokenService.sessionEnded(token);
+        }
+        sessionCache.invalidateToken(token);
     }
 
     /**
      * Function: getByToken
      * Description: Retrieves user information associated with a valid token.
-     * Calls: JdbcTemplate.queryForList
+     *              Served from the SessionCache; a miss loads the session and caches it.
+     *              A signed token is authenticated from its signature first; its cache miss reads only
+     *              the users row, roles coming from the token unless they changed since it was issued.
+     * Calls: SignedTokenService.verify, SessionCache.get, SessionCache.put, loadByToken, loadByClaims
      * Called By: UserController methods, AdminController methods
-     * Table Accessed: user_token, users, user_roles
+     * Table Accessed: user_token, users, user_roles (on a cache miss)
      * Table Updated: None
      * Input: token (String) - Session token
      * Output: User - User object
@@ -214,12 +255,58 @@ public class UserService {
      */
     public User getByToken(String token) {
         if (token == null) return null;
+        SignedTokenService.Claims claims = null;
+        if (signedTokenService.isSigned(token)) {
+            claims = signedTokenService.verify(token);
+            if (claims == null) return null;
+        }
+        User cached = sessionCache.get(token);
+        if (cached != null) return cached;
+        long generation = sessionCache.generation();
+        User u = claims != null ? loadByClaims(token, claims) : loadByToken(token);
+        sessionCache.put(token, u, generation);
+        return u;
+    }
+
+    /**
+     * Function: sessionStats
+     * Description: Session cache hit rate and the database queries it saved.
+     * Called By: AdminController.cacheStats
+     * Return: Map<String, Object>
+     */
+    public Map<String, Object> sessionStats() {
+        return sessionCache.stats();
+    }
+
+    private User loadByToken(String token) {
         java.util.List<java.util.Map<String, Object>> rows = jdbcTemplate.queryForList(
-                "SELECT u.username, u.current_role, u.seller_status, u.phone, u.email, u.gender, u.last_audit_time, u.real_name, u.is_verified, u.status, u.blacklist_reason FROM user_token t JOIN users u ON t.username = u.username WHERE t.token = ?",
+                "SELECT " + SESSION_COLUMNS + " FROM user_token t JOIN users u ON t.username = u.username WHERE t.token = ?",
                 token
         );
         if (rows.isEmpty()) return null;
         java.util.Map<String, Object> row = rows.get(0);
+        return sessionUser(row, token, loadRoles((String) row.get("username")));
+    }
+
+    private User loadByClaims(String token, SignedTokenService.Claims claims) {
+        java.util.List<java.util.Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT " + SESSION_COLUMNS + " FROM users u WHERE u.username = ?",
+                claims.getUsername()
+        );
+        if (rows.isEmpty()) return null;
+        java.util.Set<String> roles = signedTokenService.rolesOutdated(claims) ? loadRoles(claims.getUsername()) : claims.getRoles();
+        return sessionUser(rows.get(0), token, roles);
+    }
+
+    private java.util.Set<String> loadRoles(String username) {
+        return new java.util.HashSet<>(jdbcTemplate.queryForList(
+                "SELECT role FROM user_roles WHERE username = ?",
+                String.class,
+                username
+        ));
+    }
+
+    private static User sessionUser(java.util.Map<String, Object> row, String token, java.util.Set<String> roles) {
         String username = (String) row.get("username");
         String currentRole = (String) row.get("current_role");
         String sellerStatus = (String) row.get("seller_status");
@@ -233,12 +320,7 @@ public class UserService {
         boolean isVerified = ivObj instanceof Boolean ? (Boolean) ivObj : (ivObj instanceof Number && ((Number) ivObj).intValue() != 0);
         String status = (String) row.get("status");
         String blacklistReason = (String) row.get("blacklist_reason");
-        
-        java.util.Set<String> roles = new java.util.HashSet<>(jdbcTemplate.queryForList(
-                "SELECT role FROM user_roles WHERE username = ?",
-                String.class,
-                username
-        ));
+
         String role = resolveRole(currentRole, roles, true);
         if (role == null) return null;
         User u = new User();
@@ -282,6 +364,8 @@ public class UserService {
                 g,
                 username
         );
+        signedTokenService.sessionsChanged(username);
+        sessionCache.invalidateUser(username);
         return true;
     }
 
@@ -321,6 +405,8 @@ public class UserService {
                 passwordEncoder.encode(newPassword),
                 username
         );
+        signedTokenService.sessionsChanged(username);
+        sessionCache.invalidateUser(username);
         return updated > 0;
     }
 
@@ -585,6 +671,8 @@ public class UserService {
         // 2. Update users table
         String updateSql = "UPDATE users SET real_name = ?, is_verified = 1, student_id = ? WHERE username = ?";
         int rows = jdbcTemplate.update(updateSql, name, studentId, username);
+        signedTokenService.sessionsChanged(username);
+        sessionCache.invalidateUser(username);
         
         return rows > 0;
     }
@@ -677,9 +765,12 @@ public class UserService {
         if ("blacklist".equals(status)) {
             jdbcTemplate.update("UPDATE users SET status = ?, blacklist_reason = ?, blacklist_time = ?, blacklist_operator = ? WHERE username = ?", 
                 status, reason, System.currentTimeMillis(), operator, targetUser);
+            signedTokenService.revokeUser(targetUser);
         } else {
             jdbcTemplate.update("UPDATE users SET status = ?, blacklist_reason = NULL, blacklist_time = NULL, blacklist_operator = NULL WHERE username = ?", status, targetUser);
+            signedTokenService.sessionsChanged(targetUser);
         }
+        sessionCache.invalidateUser(targetUser);
         
         logOperation(operator, targetUser, "update_status", "Status changed to " + status + ". Reason: " + reason);
         
@@ -722,6 +813,8 @@ public class UserService {
         }
 
         jdbcTemplate.update("UPDATE users SET status = 'normal' WHERE username = ?", targetUser);
+        signedTokenService.sessionsChanged(targetUser);
+        sessionCache.invalidateUser(targetUser);
         logOperation(operator, targetUser, "undo_blacklist", "Undo blacklist. Reason: " + (reason == null ? "No reason provided" : reason));
         notificationService.addToUser(targetUser, "system", "Blacklist Removed", "Your blacklist status has been revoked.");
         return true;
@@ -745,6 +838,8 @@ public class UserService {
             "UPDATE users SET phone = ?, student_id = ?, credit_score = ? WHERE username = ?",
             user.getPhone(), user.getStudentId(), user.getCreditScore(), user.getUsername()
         );
+        signedTokenService.sessionsChanged(user.getUsername());
+        sessionCache.invalidateUser(user.getUsername());
         logOperation(operator, user.getUsername(), "update_info", "Updated info");
         return true;
     }
@@ -848,27 +943,17 @@ public class UserService {
     /**
      * Function: hasUncompletedOrders
      * Description: Checks if user has pending/paid orders (U14).
-     * Calls: OrderService.listByBuyer, OrderService.listBySeller
+     * Calls: OrderCounterService.hasOpenOrders
      * Called By: updateUserStatus
-     * Table Accessed: orders
+     * Table Accessed: user_order_counter
      * Table Updated: None
      * Input: username
      * Output: boolean
      * Return: boolean
-     * Others:
+     * Others: One primary-key read of the user's order counters, as buyer and as seller.
      */
     public boolean hasUncompletedOrders(String username) {
-        // Check as buyer
-        List<com.whu.bookapi.model.Order> buyerOrders = orderService.listByBuyer(username);
-        for (com.whu.bookapi.model.Order o : buyerOrders) {
-            if ("pending".equals(o.getStatus()) || "paid".equals(o.getStatus())) return true;
-        }
-        // Check as seller
-        List<com.whu.bookapi.model.Order> sellerOrders = orderService.listBySeller(username);
-        for (com.whu.bookapi.model.Order o : sellerOrders) {
-            if ("pending".equals(o.getStatus()) || "paid".equals(o.getStatus())) return true;
-        }
-        return false;
+        return orderCounterService.hasOpenOrders(username);
     }
 
     /**
@@ -978,15 +1063,17 @@ public class UserService {
         if (username == null || role == null) return false;
         if (!exists(username)) return false;
         jdbcTemplate.update("INSERT IGNORE INTO user_roles (username, role) VALUES (?, ?)", username, role);
+        signedTokenService.rolesChanged(username);
+        sessionCache.invalidateUser(username);
         return true;
     }
 
     /**
      * Function: getSellerStats
      * Description: Calculates seller stats.
-     * Calls: JdbcTemplate.queryForObject
+     * Calls: JdbcTemplate.queryForObject, OrderCounterService.counts
      * Called By: SellerController.getStats
-     * Table Accessed: reviews, orders
+     * Table Accessed: reviews, orders, user_order_counter
      * Table Updated: None
      * Input: username
      * Output: Map
@@ -1001,9 +1088,8 @@ public class UserService {
         String sqlScore = "SELECT AVG((r.score_service + r.score_condition) / 2.0) FROM reviews r JOIN orders o ON r.order_id = o.id WHERE o.seller_name = ?";
         Double score = jdbcTemplate.queryForObject(sqlScore, Double.class, username);
 
-        // Calculate sold count (orders with status 'received')
-        String sqlCount = "SELECT COUNT(1) FROM orders WHERE seller_name = ? AND status = 'received'";
-        Long count = jdbcTemplate.queryForObject(sqlCount, Long.class, username);
+        // Sold count (orders with status 'received') from the order counters
+        Integer count = orderCounterService.counts(username).get("seller").get("received");
 
         java.util.Map<String, Object> stats = new java.util.HashMap<>();
         stats.put("username", username);
@@ -1066,11 +1152,13 @@ public class UserService {
             jdbcTemplate.update("DELETE FROM chat_message WHERE from_user = ? OR to_user = ?", username, username);
 
             // 12. Delete orders (buyer or seller)
-            // Note: orders reference books, so delete orders first
+            // Note: orders reference books, so delete orders first; uncount them from the other parties first
+            orderCounterService.forgetUser(username);
             jdbcTemplate.update("DELETE FROM orders WHERE seller_name = ? OR buyer_name = ?", username, username);
 
             // 13. Delete books (as seller)
             jdbcTemplate.update("DELETE FROM books WHERE seller_name = ?", username);
+            bookService.invalidateSeller(username);
 
             // 14. Delete operation_logs where target_user or operator is this user
             jdbcTemplate.update("DELETE FROM operation_logs WHERE target_user = ?", username);
@@ -1086,6 +1174,8 @@ public class UserService {
 
         // Finally, delete user
         int updated = jdbcTemplate.update("DELETE FROM users WHERE username = ?", username);
+        signedTokenService.revokeUser(username);
+        sessionCache.invalidateUser(username);
         return updated > 0;
     }
 
@@ -1136,6 +1226,8 @@ public class UserService {
             }
         }
         jdbcTemplate.update("UPDATE users SET seller_status = 'PENDING' WHERE username = ?", username);
+        signedTokenService.sessionsChanged(username);
+        sessionCache.invalidateUser(username);
     }
 
     /**
@@ -1164,6 +1256,8 @@ public class UserService {
         if (!"admin".equals(currentRole)) {
             jdbcTemplate.update("UPDATE users SET current_role = 'seller' WHERE username = ?", username);
         }
+        signedTokenService.rolesChanged(username);
+        sessionCache.invalidateUser(username);
     }
 
     /**
@@ -1181,6 +1275,8 @@ public class UserService {
     public void rejectSeller(String username) {
         if (username == null) return;
         jdbcTemplate.update("UPDATE users SET seller_status = 'REJECTED', last_audit_time = ? WHERE username = ?", System.currentTimeMillis(), username);
+        signedTokenService.sessionsChanged(username);
+        sessionCache.invalidateUser(username);
     }
 
     /**
@@ -1224,4 +1320,27 @@ public class UserService {
         boolean accountNormal = status == null || "normal".equals(status);
         return sellerApproved && accountNormal;
     }
+
+    /**
+     * Function: healthySellers
+     * Description: Batch form of isSellerAccountHealthy: which of the given sellers are approved and normal.
+     * Called By: OrderScheduler.dailySettlement
+     * Table Accessed: users
+     * Input: usernames (Collection<String>) - Seller usernames
+     * Output: Set<String> - The healthy ones
+     * Return: Set<String>
+     */
+    public java.util.Set<String> healthySellers(java.util.Collection<String> usernames) {
+        java.util.Set<String> res = new java.util.HashSet<>();
+        if (usernames == null || usernames.isEmpty()) return res;
+        String in = String.join(", ", java.util.Collections.nCopies(usernames.size(), "?"));
+        jdbcTemplate.query(
+                "SELECT username FROM users WHERE username IN (" + in + ") AND seller_status = 'APPROVED' AND (status IS NULL OR status = 'normal')",
+                rs -> {
+                    res.add(rs.getString("username"));
+                },
+                usernames.toArray()
+        );
+        return res;
+    }
 }
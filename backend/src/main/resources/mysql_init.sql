@@ -188,7 +188,9 @@ CREATE TABLE IF NOT EXISTS books (
   audit_time BIGINT,
   INDEX idx_books_seller (seller_name),
   INDEX idx_books_status_created (status, created_at),
-  INDEX idx_books_price (sell_price)
+  INDEX idx_books_price (sell_price),
+  INDEX idx_books_status_price_id (status, sell_price, id),
+  INDEX idx_books_status_created_id (status, created_at, id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- Add audit columns to books (idempotent check)
@@ -198,6 +200,19 @@ PREPARE stmt_books_audit FROM @books_audit_reason_sql;
 EXECUTE stmt_books_audit;
 DEALLOCATE PREPARE stmt_books_audit;
 
+-- Keyset pagination indexes for /books/page cursor mode (idempotent check)
+SET @books_has_status_price_id := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'books' AND INDEX_NAME = 'idx_books_status_price_id');
+SET @books_status_price_id_sql := IF(@books_has_status_price_id = 0, 'ALTER TABLE books ADD INDEX idx_books_status_price_id (status, sell_price, id)', 'SELECT 1');
+PREPARE stmt_books_status_price_id FROM @books_status_price_id_sql;
+EXECUTE stmt_books_status_price_id;
+DEALLOCATE PREPARE stmt_books_status_price_id;
+
+SET @books_has_status_created_id := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'books' AND INDEX_NAME = 'idx_books_status_created_id');
+SET @books_status_created_id_sql := IF(@books_has_status_created_id = 0, 'ALTER TABLE books ADD INDEX idx_books_status_created_id (status, created_at, id)', 'SELECT 1');
+PREPARE stmt_books_status_created_id FROM @books_status_created_id_sql;
+EXECUTE stmt_books_status_created_id;
+DEALLOCATE PREPARE stmt_books_status_created_id;
+
 CREATE TABLE IF NOT EXISTS cart_item (
   username VARCHAR(64) NOT NULL,
   book_id BIGINT NOT NULL,
@@ -214,10 +229,18 @@ CREATE TABLE IF NOT EXISTS favorites (
   created_at BIGINT NOT NULL,
   PRIMARY KEY (username, book_id),
   INDEX idx_favorites_user (username),
+  INDEX idx_favorites_created (created_at),
   CONSTRAINT fk_favorites_user FOREIGN KEY (username) REFERENCES users(username) ON DELETE CASCADE,
   CONSTRAINT fk_favorites_book FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Hot books ranking polls new favorites by created_at (idempotent check)
+SET @favorites_has_created_idx := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'favorites' AND INDEX_NAME = 'idx_favorites_created');
+SET @favorites_created_idx_sql := IF(@favorites_has_created_idx = 0, 'ALTER TABLE favorites ADD INDEX idx_favorites_created (created_at)', 'SELECT 1');
+PREPARE stmt_favorites_created_idx FROM @favorites_created_idx_sql;
+EXECUTE stmt_favorites_created_idx;
+DEALLOCATE PREPARE stmt_favorites_created_idx;
+
 CREATE TABLE IF NOT EXISTS orders (
   id BIGINT PRIMARY KEY AUTO_INCREMENT,
   book_id BIGINT NOT NULL,
@@ -228,6 +251,7 @@ CREATE TABLE IF NOT EXISTS orders (
   status VARCHAR(32) NOT NULL,
   expire_at BIGINT NOT NULL,
   create_time TIMESTAMP NOT NULL,
+  version INT NOT NULL DEFAULT 0,
   INDEX idx_orders_buyer (buyer_name, create_time),
   INDEX idx_orders_seller (seller_name, create_time),
   CONSTRAINT fk_orders_book FOREIGN KEY (book_id) REFERENCES books(id)
@@ -249,6 +273,41 @@ PREPARE stmt_orders_expire_at FROM @orders_expire_at_sql;
 EXECUTE stmt_orders_expire_at;
 DEALLOCATE PREPARE stmt_orders_expire_at;
 
+-- Version bumped by every status change (compare-and-set transitions)
+SET @orders_has_version := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'orders' AND COLUMN_NAME = 'version');
+SET @orders_version_sql := IF(@orders_has_version = 0, 'ALTER TABLE orders ADD COLUMN version INT NOT NULL DEFAULT 0', 'SELECT 1');
+PREPARE stmt_orders_version FROM @orders_version_sql;
+EXECUTE stmt_orders_version;
+DEALLOCATE PREPARE stmt_orders_version;
+
+-- Pending order expiry lookups (idempotent check)
+SET @orders_has_status_expire := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'orders' AND INDEX_NAME = 'idx_orders_status_expire');
+SET @orders_status_expire_sql := IF(@orders_has_status_expire = 0, 'ALTER TABLE orders ADD INDEX idx_orders_status_expire (status, expire_at)', 'SELECT 1');
+PREPARE stmt_orders_status_expire FROM @orders_status_expire_sql;
+EXECUTE stmt_orders_status_expire;
+DEALLOCATE PREPARE stmt_orders_status_expire;
+
+-- Range scans of batch jobs by status and creation time (idempotent check)
+SET @orders_has_status_create := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'orders' AND INDEX_NAME = 'idx_orders_status_create');
+SET @orders_status_create_sql := IF(@orders_has_status_create = 0, 'ALTER TABLE orders ADD INDEX idx_orders_status_create (status, create_time, id)', 'SELECT 1');
+PREPARE stmt_orders_status_create FROM @orders_status_create_sql;
+EXECUTE stmt_orders_status_create;
+DEALLOCATE PREPARE stmt_orders_status_create;
+
+-- Date-range order exports (idempotent check)
+SET @orders_has_create := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'orders' AND INDEX_NAME = 'idx_orders_create');
+SET @orders_create_sql := IF(@orders_has_create = 0, 'ALTER TABLE orders ADD INDEX idx_orders_create (create_time, id)', 'SELECT 1');
+PREPARE stmt_orders_create FROM @orders_create_sql;
+EXECUTE stmt_orders_create;
+DEALLOCATE PREPARE stmt_orders_create;
+
+-- Price stats scan of settled orders by payment deadline (idempotent check)
+SET @orders_has_expire_id := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'orders' AND INDEX_NAME = 'idx_orders_expire_id');
+SET @orders_expire_id_sql := IF(@orders_has_expire_id = 0, 'ALTER TABLE orders ADD INDEX idx_orders_expire_id (expire_at, id)', 'SELECT 1');
+PREPARE stmt_orders_expire_id FROM @orders_expire_id_sql;
+EXECUTE stmt_orders_expire_id;
+DEALLOCATE PREPARE stmt_orders_expire_id;
+
 CREATE TABLE IF NOT EXISTS reviews (
   id BIGINT PRIMARY KEY AUTO_INCREMENT,
   order_id BIGINT NOT NULL,
@@ -290,12 +349,59 @@ CREATE TABLE IF NOT EXISTS funds_settlement (
   status VARCHAR(32) NOT NULL DEFAULT 'settled',
   settle_time BIGINT NOT NULL,
   created_time BIGINT NOT NULL,
+  book_name VARCHAR(255),
+  received_amount DOUBLE,
+  balance_after DOUBLE,
+  voucher_no VARCHAR(64),
   INDEX idx_funds_seller (seller_name, settle_time),
-  INDEX idx_funds_order (order_id),
+  UNIQUE KEY uk_funds_order (order_id),
   CONSTRAINT fk_funds_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,
   CONSTRAINT fk_funds_seller FOREIGN KEY (seller_name) REFERENCES users(username) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Extend funds_settlement into the settlement ledger (idempotent check)
+SET @funds_has_voucher := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'funds_settlement' AND COLUMN_NAME = 'voucher_no');
+SET @funds_voucher_sql := IF(@funds_has_voucher = 0, 'ALTER TABLE funds_settlement ADD COLUMN book_name VARCHAR(255), ADD COLUMN received_amount DOUBLE, ADD COLUMN balance_after DOUBLE, ADD COLUMN voucher_no VARCHAR(64)', 'SELECT 1');
+PREPARE stmt_funds_voucher FROM @funds_voucher_sql;
+EXECUTE stmt_funds_voucher;
+DEALLOCATE PREPARE stmt_funds_voucher;
+
+-- Ledger rows moved out by the dedup below. A second row for an order is evidence of a double credit,
+-- so it is kept here (with the id of the row that stayed) for reconciliation instead of being dropped
+CREATE TABLE IF NOT EXISTS funds_settlement_duplicate (
+  id BIGINT PRIMARY KEY,
+  order_id BIGINT NOT NULL,
+  seller_name VARCHAR(64) NOT NULL,
+  amount DOUBLE NOT NULL,
+  status VARCHAR(32) NOT NULL,
+  settle_time BIGINT NOT NULL,
+  created_time BIGINT NOT NULL,
+  book_name VARCHAR(255),
+  received_amount DOUBLE,
+  balance_after DOUBLE,
+  voucher_no VARCHAR(64),
+  kept_id BIGINT NOT NULL,
+  moved_time BIGINT NOT NULL,
+  INDEX idx_funds_duplicate_order (order_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- One ledger row per order: move duplicates to funds_settlement_duplicate, then enforce it
+SET @funds_has_uk_order := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'funds_settlement' AND INDEX_NAME = 'uk_funds_order');
+SET @funds_keep_dup_sql := IF(@funds_has_uk_order = 0, 'INSERT IGNORE INTO funds_settlement_duplicate (id, order_id, seller_name, amount, status, settle_time, created_time, book_name, received_amount, balance_after, voucher_no, kept_id, moved_time) SELECT f1.id, f1.order_id, f1.seller_name, f1.amount, f1.status, f1.settle_time, f1.created_time, f1.book_name, f1.received_amount, f1.balance_after, f1.voucher_no, MIN(f2.id), ROUND(UNIX_TIMESTAMP(NOW(3)) * 1000) FROM funds_settlement f1 JOIN funds_settlement f2 ON f1.order_id = f2.order_id AND f1.id > f2.id GROUP BY f1.id', 'SELECT 1');
+PREPARE stmt_funds_keep_dup FROM @funds_keep_dup_sql;
+EXECUTE stmt_funds_keep_dup;
+DEALLOCATE PREPARE stmt_funds_keep_dup;
+SET @funds_dedup_sql := IF(@funds_has_uk_order = 0, 'DELETE f1 FROM funds_settlement f1 JOIN funds_settlement_duplicate d ON d.id = f1.id', 'SELECT 1');
+PREPARE stmt_funds_dedup FROM @funds_dedup_sql;
+EXECUTE stmt_funds_dedup;
+DEALLOCATE PREPARE stmt_funds_dedup;
+SET @funds_uk_order_sql := IF(@funds_has_uk_order = 0, 'ALTER TABLE funds_settlement ADD UNIQUE KEY uk_funds_order (order_id)', 'SELECT 1');
+PREPARE stmt_funds_uk_order FROM @funds_uk_order_sql;
+EXECUTE stmt_funds_uk_order;
+DEALLOCATE PREPARE stmt_funds_uk_order;
+-- Vouchers issued before the ledger existed (notification text only) are copied into it once by
+-- SettlementService.backfillVouchers, guarded by a job_checkpoint row
+
 CREATE TABLE IF NOT EXISTS review_draft (
   username VARCHAR(64) NOT NULL,
   order_id BIGINT NOT NULL,
@@ -444,3 +550,86 @@ SET @users_lockout_time_sql := IF(@users_has_lockout_time = 0, 'ALTER TABLE user
 PREPARE stmt_users_lockout_time FROM @users_lockout_time_sql;
 EXECUTE stmt_users_lockout_time;
 DEALLOCATE PREPARE stmt_users_lockout_time;
+
+-- Progress of chunked batch jobs, so a crashed run resumes where it stopped
+CREATE TABLE IF NOT EXISTS job_checkpoint (
+  job_name VARCHAR(64) PRIMARY KEY,
+  run_key VARCHAR(32) NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  last_create_time TIMESTAMP NULL,
+  last_id BIGINT NOT NULL DEFAULT 0,
+  scanned BIGINT NOT NULL DEFAULT 0,
+  affected BIGINT NOT NULL DEFAULT 0,
+  started_at BIGINT NOT NULL,
+  updated_at BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Books in flash-sale stock mode (stock held as in-memory tokens, see FlashSaleStock)
+CREATE TABLE IF NOT EXISTS flash_sale_book (
+  book_id BIGINT PRIMARY KEY,
+  created_at BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Per-user order counts by status (see OrderCounterService); expired orders count as cancelled.
+-- Existing orders are counted once by OrderCounterService.backfill, guarded by a job_checkpoint row
+CREATE TABLE IF NOT EXISTS user_order_counter (
+  username VARCHAR(64) PRIMARY KEY,
+  buyer_pending INT NOT NULL DEFAULT 0,
+  buyer_paid INT NOT NULL DEFAULT 0,
+  buyer_received INT NOT NULL DEFAULT 0,
+  buyer_cancelled INT NOT NULL DEFAULT 0,
+  seller_pending INT NOT NULL DEFAULT 0,
+  seller_paid INT NOT NULL DEFAULT 0,
+  seller_received INT NOT NULL DEFAULT 0,
+  seller_cancelled INT NOT NULL DEFAULT 0
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Transactional outbox: side effects of order and review changes, written in the same transaction and
+-- delivered by OutboxDispatcher (status pending -> done, or dead after repeated failures)
+CREATE TABLE IF NOT EXISTS outbox_event (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  event_type VARCHAR(64) NOT NULL,
+  aggregate_id BIGINT NULL,
+  payload TEXT NULL,
+  status VARCHAR(16) NOT NULL DEFAULT 'pending',
+  attempts INT NOT NULL DEFAULT 0,
+  next_attempt_at BIGINT NOT NULL,
+  done_consumers VARCHAR(255) NULL,
+  last_error VARCHAR(512) NULL,
+  locked_by VARCHAR(64) NULL,
+  lease_until BIGINT NULL,
+  created_at BIGINT NOT NULL,
+  INDEX idx_outbox_due (status, next_attempt_at, id),
+  INDEX idx_outbox_claim (locked_by)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Dispatch claims: the dispatcher stamps its claim id and a lease on the rows it takes
+SET @outbox_has_locked_by := (SELECT COUNT(1) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'outbox_event' AND COLUMN_NAME = 'locked_by');
+SET @outbox_locked_by_sql := IF(@outbox_has_locked_by = 0, 'ALTER TABLE outbox_event ADD COLUMN locked_by VARCHAR(64) NULL, ADD COLUMN lease_until BIGINT NULL, ADD INDEX idx_outbox_claim (locked_by)', 'SELECT 1');
+PREPARE stmt_outbox_locked_by FROM @outbox_locked_by_sql;
+EXECUTE stmt_outbox_locked_by;
+DEALLOCATE PREPARE stmt_outbox_locked_by;
+
+-- Signing keys of signed session tokens (see SignedTokenService); the key not yet superseded signs,
+-- superseded keys verify until their tokens expire and are then retired
+CREATE TABLE IF NOT EXISTS auth_signing_key (
+  kid VARCHAR(32) PRIMARY KEY,
+  secret VARCHAR(128) NOT NULL,
+  created_at BIGINT NOT NULL,
+  superseded_at BIGINT NULL,
+  retired_at BIGINT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Signed-token revocations (see SignedTokenService), polled by every instance: kind 'token' denies one
+-- token by signature, 'user' denies a user's tokens issued up to cutoff_at, 'roles' marks their roles outdated;
+-- 'session' and 'logout' only drop cached sessions of a user or a random token (see SessionCache)
+CREATE TABLE IF NOT EXISTS auth_revocation (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  kind VARCHAR(16) NOT NULL,
+  subject VARCHAR(128) NOT NULL,
+  cutoff_at BIGINT NOT NULL,
+  expires_at BIGINT NOT NULL,
+  created_at BIGINT NOT NULL,
+  INDEX idx_revocation_created (created_at),
+  INDEX idx_revocation_expires (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
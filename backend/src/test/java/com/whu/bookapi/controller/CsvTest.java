@@ -0,0 +1,53 @@
+package com.whu.bookapi.controller;
+
+import com.whu.bookapi.model.Book;
+import com.whu.bookapi.service.BookImportService;
+import com.whu.bookapi.service.BookService;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: CsvTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for Csv.field: plain values pass through, others are quoted, and every
+ *              escaped value reads back unchanged through the CSV import parser.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class CsvTest {
+
+    @Test
+    void quotesOnlyWhenNeeded() {
+        assertEquals("", Csv.field(null));
+        assertEquals("高等数学", Csv.field("高等数学"));
+        assertEquals("\"a,b\"", Csv.field("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", Csv.field("say \"hi\""));
+        assertEquals("\"line1\nline2\"", Csv.field("line1\nline2"));
+        assertEquals("\"cr\r\"", Csv.field("cr\r"));
+    }
+
+    @Test
+    void escapedFieldsReadBackUnchanged() throws Exception {
+        String[] values = {"高等数学", "a,b", "say \"hi\"", "line1\nline2", "\"", ",,", "crlf\r\ninside"};
+        StringBuilder csv = new StringBuilder("bookName,description\r\n");
+        for (String v : values) csv.append(Csv.field(v)).append(',').append(Csv.field(v)).append("\r\n");
+
+        List<Book> rows = new BookImportService(mock(BookService.class)).parseCsv(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), new HashMap<>());
+
+        assertEquals(values.length, rows.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], rows.get(i).getBookName());
+            assertEquals(values[i], rows.get(i).getDescription());
+        }
+    }
+}
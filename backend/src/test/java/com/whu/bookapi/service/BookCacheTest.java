@@ -0,0 +1,89 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookCacheTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for BookCache: LRU eviction, defensive copies, and loads that raced with
+ *              an invalidation.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class BookCacheTest {
+
+    @Test
+    void evictsTheLeastRecentlyUsedBook() {
+        BookCache cache = new BookCache(2);
+        cache.put(book(1L, "alice"), cache.generation());
+        cache.put(book(2L, "alice"), cache.generation());
+        assertNotNull(cache.get(1L));
+        cache.put(book(3L, "bob"), cache.generation());
+
+        assertNotNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(3L));
+        Map<String, Object> stats = cache.stats();
+        assertEquals(2, stats.get("size"));
+        assertEquals(1L, stats.get("evictions"));
+        assertEquals(3L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void callersCannotChangeTheCachedBook() {
+        BookCache cache = new BookCache(10);
+        Book loaded = book(1L, "alice");
+        cache.put(loaded, cache.generation());
+        loaded.setStock(0);
+        cache.get(1L).setStock(0);
+
+        assertEquals(1, cache.get(1L).getStock());
+    }
+
+    @Test
+    void discardsALoadThatRacedWithAnInvalidation() {
+        BookCache cache = new BookCache(10);
+        long loadedAt = cache.generation();
+        // A writer commits while the row is being read
+        cache.invalidate(1L);
+        cache.put(book(1L, "alice"), loadedAt);
+
+        assertNull(cache.get(1L));
+        cache.put(book(1L, "alice"), cache.generation());
+        assertNotNull(cache.get(1L));
+    }
+
+    @Test
+    void invalidatesEveryBookOfASeller() {
+        BookCache cache = new BookCache(10);
+        cache.put(book(1L, "alice"), cache.generation());
+        cache.put(book(2L, "alice"), cache.generation());
+        cache.put(book(3L, "bob"), cache.generation());
+        cache.invalidateSeller("alice");
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(3L));
+        assertEquals(2L, cache.stats().get("invalidations"));
+    }
+
+    private static Book book(Long id, String seller) {
+        Book b = new Book();
+        b.setId(id);
+        b.setBookName("教材" + id);
+        b.setSellerName(seller);
+        b.setStatus("on_sale");
+        b.setStock(1);
+        return b;
+    }
+}
@@ -0,0 +1,129 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookCatalogTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for BookCatalog: filtering and sorting agree with BookSearchIndex,
+ *              keyset pages, listing changes and facet counts.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Facet counts.
+ */
+class BookCatalogTest {
+    private BookSearchIndex searchIndex;
+    private BookCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new BookSearchIndex();
+        catalog = new BookCatalog(searchIndex);
+        catalog.register();
+        List<Book> books = new ArrayList<>();
+        books.add(book(1L, 15.0, "九成新", "student"));
+        books.add(book(2L, 8.0, "全新", "student"));
+        books.add(book(3L, null, "八成新", "club"));
+        books.add(book(4L, 60.0, "九成新", "club"));
+        books.add(book(5L, 15.0, "全新", "student"));
+        books.add(book(6L, 120.0, "八成新", "student"));
+        searchIndex.rebuild(books);
+    }
+
+    @Test
+    void sortsLikeTheSearchIndex() {
+        for (String sort : new String[]{"price_asc", "price_desc", "created_desc", null}) {
+            long[] expected = idsOf(searchIndex.search(null, null, null, null, sort, 0, 10).getRecords());
+            assertArrayEquals(expected, catalog.query(null, null, null, null, sort, 0, 10, false).getIds(), "sort " + sort);
+        }
+        assertArrayEquals(new long[]{3, 2, 1, 5, 4, 6}, catalog.query(null, null, null, null, "price_asc", 0, 10, false).getIds());
+    }
+
+    @Test
+    void filtersByCandidatesPriceAndCondition() {
+        BookCatalog.IdPage page = catalog.query(new long[]{1, 2, 4, 5, 99}, 10.0, 100.0, "九成新", "price_desc", 0, 10, false);
+        assertEquals(2, page.getTotal());
+        assertArrayEquals(new long[]{4, 1}, page.getIds());
+        assertNull(page.getFacets());
+
+        // Unknown condition matches nothing rather than everything
+        assertEquals(0, catalog.query(null, null, null, "五成新", null, 0, 10, false).getTotal());
+    }
+
+    @Test
+    void keysetPagesSkipUnpricedListingsAndCoverTheRest() {
+        List<Long> seen = new ArrayList<>();
+        PageCursor cursor = null;
+        while (true) {
+            long[] ids = catalog.queryAfter(null, null, null, null, "price_asc", cursor, 2, false).getIds();
+            if (ids.length == 0) break;
+            for (long id : ids) seen.add(id);
+            Book last = searchIndex.get(ids[ids.length - 1]);
+            cursor = new PageCursor("price_asc", String.valueOf(last.getSellPrice()), last.getId());
+        }
+        assertEquals(List.of(2L, 1L, 5L, 4L, 6L), seen);
+    }
+
+    @Test
+    void eachFacetIgnoresOnlyItsOwnFilter() {
+        BookCatalog.IdPage page = catalog.query(null, 10.0, null, "全新", null, 0, 10, true);
+        assertArrayEquals(new long[]{5}, page.getIds());
+
+        Map<String, Map<String, Long>> facets = page.getFacets();
+        // Conditions of every listing priced 10 or more, most frequent first
+        assertEquals(List.of("九成新", "全新", "八成新"), new ArrayList<>(facets.get("conditionLevel").keySet()));
+        assertEquals(2L, facets.get("conditionLevel").get("九成新"));
+        // Prices of every 全新 listing, including the one below the minimum price
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        buckets.put("0-10", 1L);
+        buckets.put("10-20", 1L);
+        buckets.put("20-50", 0L);
+        buckets.put("50-100", 0L);
+        buckets.put("100+", 0L);
+        assertEquals(buckets, facets.get("priceRange"));
+        assertEquals(Map.of("student", 1L), facets.get("sellerType"));
+    }
+
+    @Test
+    void followsListingChanges() {
+        Book repriced = book(6L, 5.0, "八成新", "student");
+        searchIndex.upsert(repriced);
+        searchIndex.remove(2L);
+        searchIndex.upsert(book(7L, 30.0, "七成新", "club"));
+
+        assertArrayEquals(new long[]{3, 6, 1, 5, 7, 4}, catalog.query(null, null, null, null, "price_asc", 0, 10, false).getIds());
+        assertArrayEquals(new long[]{7}, catalog.query(null, null, null, "七成新", null, 0, 10, false).getIds());
+    }
+
+    private static Book book(Long id, Double price, String condition, String sellerType) {
+        Book b = new Book();
+        b.setId(id);
+        b.setBookName("教材" + id);
+        b.setSellPrice(price);
+        b.setConditionLevel(condition);
+        b.setSellerType(sellerType);
+        b.setStatus("on_sale");
+        b.setStock(1);
+        b.setCreatedAt(id * 1000);
+        return b;
+    }
+
+    private static long[] idsOf(List<Book> books) {
+        long[] ids = new long[books.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = books.get(i).getId();
+        return ids;
+    }
+}
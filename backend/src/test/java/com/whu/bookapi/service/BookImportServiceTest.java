@@ -0,0 +1,112 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.BulkImportResult;
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookImportServiceTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for BookImportService: CSV parsing (headers, quoting, line ends) and
+ *              per-row validation with the created ids mapped back to their row numbers.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class BookImportServiceTest {
+
+    @Test
+    void parsesChineseHeadersQuotedFieldsAndCrlf() throws Exception {
+        String csv = "﻿书名,售价,描述,库存,unknown\r\n"
+                + "高等数学,20.5,\"上下册, 有笔记\",2,x\r\n"
+                + "\"线性代数\"\"第六版\"\"\",15,\"第一行\n第二行\",,y\r\n"
+                + "\r\n"
+                + "概率论,abc,,,\n";
+        Map<Integer, String> errors = new HashMap<>();
+        List<Book> rows = service(mock(BookService.class)).parseCsv(in(csv), errors);
+
+        assertEquals(3, rows.size());
+        assertEquals("高等数学", rows.get(0).getBookName());
+        assertEquals(20.5, rows.get(0).getSellPrice());
+        assertEquals("上下册, 有笔记", rows.get(0).getDescription());
+        assertEquals(2, rows.get(0).getStock());
+        assertEquals("线性代数\"第六版\"", rows.get(1).getBookName());
+        assertEquals("第一行\n第二行", rows.get(1).getDescription());
+        assertNull(rows.get(1).getStock());
+        assertNull(rows.get(2));
+        assertEquals(Map.of(3, "售价格式错误: abc"), errors);
+    }
+
+    @Test
+    void rejectsAHeaderWithoutTheTitleColumn() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service(mock(BookService.class)).parseCsv(in("author,sellPrice\nx,1\n"), new HashMap<>()));
+    }
+
+    @Test
+    void insertsOnlyValidRowsAndReportsTheRestByRowNumber() {
+        BookService bookService = mock(BookService.class);
+        when(bookService.addAll(anyList(), eq("alice"))).thenAnswer(inv -> {
+            List<Book> books = inv.getArgument(0);
+            long id = 100;
+            for (Book b : books) b.setId(id++);
+            return books;
+        });
+        List<Book> rows = new ArrayList<>(Arrays.asList(
+                book("高等数学", 20.0),
+                book("", 20.0),
+                null,
+                book("线性代数", 0.0),
+                book("概率论", 9.9)
+        ));
+
+        BulkImportResult result = service(bookService).importBooks(rows, Map.of(3, "售价格式错误: abc"), "alice");
+
+        assertEquals(5, result.getTotal());
+        assertEquals(List.of(1, 5), rowsOf(result.getCreated()));
+        assertEquals(100L, result.getCreated().get(0).getId());
+        assertEquals(101L, result.getCreated().get(1).getId());
+        assertEquals(List.of(2, 3, 4), rowsOf(result.getErrors()));
+        assertEquals("书名不能为空", result.getErrors().get(0).getMessage());
+        assertEquals("售价格式错误: abc", result.getErrors().get(1).getMessage());
+        assertEquals("售价需在0到9999之间", result.getErrors().get(2).getMessage());
+    }
+
+    private static BookImportService service(BookService bookService) {
+        return new BookImportService(bookService);
+    }
+
+    private static ByteArrayInputStream in(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Book book(String name, Double price) {
+        Book b = new Book();
+        b.setBookName(name);
+        b.setSellPrice(price);
+        return b;
+    }
+
+    private static List<Integer> rowsOf(List<BulkImportResult.RowResult> results) {
+        List<Integer> res = new ArrayList<>();
+        for (BulkImportResult.RowResult r : results) res.add(r.getRow());
+        return res;
+    }
+}
@@ -0,0 +1,154 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookSearchIndexTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for BookSearchIndex: bigram keyword matching, incremental updates,
+ *              sorting and keyset paging, and changes made while a rebuild is running.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class BookSearchIndexTest {
+
+    @Test
+    void matchesSubstringsInAnyFieldButNotAcrossFields() {
+        BookSearchIndex index = new BookSearchIndex();
+        index.rebuild(List.of(
+                book(1L, "高等数学", "同济大学", 20.0),
+                book(2L, "Linear Algebra", "Strang", 35.0),
+                book(3L, "数学分析", "华东师大", 25.0)
+        ));
+
+        assertArrayEquals(new long[]{1, 3}, sorted(index.matchIds("数学")));
+        assertArrayEquals(new long[]{2}, sorted(index.matchIds("ALGEBRA")));
+        assertArrayEquals(new long[]{1, 3}, sorted(index.matchIds("学")));
+        // "Algebra" ends the title and "Strang" starts the author; the pair never matches
+        assertEquals(0, index.matchIds("brastr").length);
+        assertEquals(0, index.matchIds("线性代数").length);
+    }
+
+    @Test
+    void upsertAndRemoveKeepPostingsInStep() {
+        BookSearchIndex index = new BookSearchIndex();
+        index.rebuild(List.of(book(1L, "高等数学", "同济", 20.0)));
+
+        Book renamed = book(1L, "大学物理", "同济", 20.0);
+        index.upsert(renamed);
+        assertEquals(0, index.matchIds("数学").length);
+        assertArrayEquals(new long[]{1}, index.matchIds("物理"));
+
+        Book soldOut = book(1L, "大学物理", "同济", 20.0);
+        soldOut.setStock(0);
+        index.upsert(soldOut);
+        assertNull(index.get(1L));
+        assertEquals(0, index.matchIds("物理").length);
+
+        index.upsert(book(2L, "大学物理", "马文蔚", 18.0));
+        index.remove(2L);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void searchAfterContinuesWhereSearchLeftOff() {
+        BookSearchIndex index = new BookSearchIndex();
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) books.add(book(id, "教材" + id, "作者", (double) (id % 4)));
+        index.rebuild(books);
+
+        List<Long> offsetOrder = ids(index.search(null, null, null, null, "price_asc", 0, 10).getRecords());
+        List<Long> keysetOrder = new ArrayList<>();
+        PageCursor cursor = null;
+        while (true) {
+            List<Book> page = index.searchAfter(null, null, null, null, "price_asc", cursor, 3).getRecords();
+            if (page.isEmpty()) break;
+            keysetOrder.addAll(ids(page));
+            Book last = page.get(page.size() - 1);
+            cursor = new PageCursor("price_asc", String.valueOf(last.getSellPrice()), last.getId());
+        }
+
+        assertEquals(offsetOrder, keysetOrder);
+        assertEquals(Arrays.asList(4L, 8L, 1L, 5L, 9L, 2L, 6L, 10L, 3L, 7L), keysetOrder);
+    }
+
+    @Test
+    void changesDuringRebuildAreReplayedOntoTheNewSnapshot() throws Exception {
+        BookSearchIndex index = new BookSearchIndex();
+        CountDownLatch reloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> events = new java.util.concurrent.CopyOnWriteArrayList<>();
+        index.addListener(new BookListingListener() {
+            @Override
+            public void onListingChanged(Book before, Book after) {
+                events.add("change:" + (after == null ? before.getId() : after.getId()));
+            }
+
+            @Override
+            public void onListingsReloaded(Collection<Book> listings) {
+                events.add("reload:" + listings.size());
+                reloading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        Thread rebuild = new Thread(() -> index.rebuild(List.of(book(1L, "高等数学", "同济", 20.0))));
+        rebuild.start();
+        assertTrue(reloading.await(5, TimeUnit.SECONDS));
+        // Neither blocks on the rebuild: the change lands on the old snapshot and is queued for the new one
+        index.upsert(book(2L, "大学物理", "马文蔚", 18.0));
+        assertNotNull(index.get(2L));
+        release.countDown();
+        rebuild.join(5000);
+
+        assertNotNull(index.get(1L));
+        assertNotNull(index.get(2L));
+        assertArrayEquals(new long[]{2}, index.matchIds("物理"));
+        assertEquals(List.of("reload:1", "change:2"), events);
+        assertTrue(index.isReady());
+    }
+
+    private static Book book(Long id, String name, String author, Double price) {
+        Book b = new Book();
+        b.setId(id);
+        b.setBookName(name);
+        b.setAuthor(author);
+        b.setSellPrice(price);
+        b.setStatus("on_sale");
+        b.setStock(1);
+        b.setCreatedAt(id);
+        return b;
+    }
+
+    private static long[] sorted(long[] ids) {
+        long[] copy = ids.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        List<Long> res = new ArrayList<>();
+        for (Book b : books) res.add(b.getId());
+        return res;
+    }
+}
@@ -0,0 +1,185 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import com.whu.bookapi.model.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: BookServiceTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for BookService write paths against a mocked JdbcTemplate.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Batch approve and reject.
+ */
+class BookServiceTest {
+    private JdbcTemplate jdbcTemplate;
+    private BookSearchIndex searchIndex;
+    private OutboxService outboxService;
+    private BookService bookService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        searchIndex = new BookSearchIndex();
+        outboxService = mock(OutboxService.class);
+        bookService = new BookService(jdbcTemplate, searchIndex, mock(HotBookRanker.class),
+                mock(SuggestionTrie.class), new BookCache(10), mock(BookCatalog.class), mock(IsbnGroupIndex.class),
+                mock(IsbnPriceStats.class), mock(FlashSaleStock.class), outboxService);
+    }
+
+    @Test
+    void addAllSendsOneMultiRowInsertPerHundredRows() throws Exception {
+        Connection connection = mock(Connection.class);
+        List<String> statements = new ArrayList<>();
+        long[] nextId = {1000};
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            statements.add(sql);
+            int rows = sql.split("\\(\\?, \\?", -1).length - 1;
+            PreparedStatement ps = mock(PreparedStatement.class);
+            ResultSet keys = mock(ResultSet.class);
+            int[] read = {0};
+            when(keys.next()).thenAnswer(k -> read[0]++ < rows);
+            when(keys.getLong(1)).thenAnswer(k -> nextId[0]++);
+            when(ps.getGeneratedKeys()).thenReturn(keys);
+            when(ps.executeUpdate()).thenReturn(rows);
+            return ps;
+        });
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(inv -> {
+            ConnectionCallback<?> callback = inv.getArgument(0);
+            return callback.doInConnection(connection);
+        });
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            Book b = new Book();
+            b.setBookName("教材" + i);
+            b.setSellPrice(10.0);
+            books.add(b);
+        }
+
+        List<Book> created = bookService.addAll(books, "alice");
+
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0).startsWith("INSERT INTO books ("));
+        assertEquals(100, statements.get(0).split("\\(\\?, \\?", -1).length - 1);
+        assertEquals(50, statements.get(1).split("\\(\\?, \\?", -1).length - 1);
+        verify(connection, times(2)).prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS));
+        assertEquals(1000L, created.get(0).getId());
+        assertEquals(1149L, created.get(149).getId());
+        assertEquals("under_review", created.get(0).getStatus());
+        assertEquals("alice", created.get(0).getSellerName());
+        assertEquals(1, created.get(0).getStock());
+    }
+
+    @Test
+    void approvesABatchWithOneUpdateAndOneEventPerListing() throws Exception {
+        List<Object[]> updates = stubBatchAudit("on_sale");
+
+        List<Book> approved = bookService.approveAll(Arrays.asList(3L, 1L, 3L, null, 2L));
+
+        assertEquals(1, updates.size());
+        Object[] args = updates.get(0);
+        assertEquals(List.of(3L, 1L, 2L), Arrays.asList(args).subList(1, args.length));
+        assertEquals(List.of(1L, 2L, 3L), idsOf(approved));
+        assertNotNull(searchIndex.get(2L));
+        List<OutboxEvent> events = published();
+        assertEquals(3, events.size());
+        assertEquals("book.approved", events.get(0).getEventType());
+        assertFalse(events.get(0).getPayload().containsKey("reason"));
+
+        assertTrue(bookService.approveAll(Arrays.asList(null, null)).isEmpty());
+        assertEquals(1, updates.size());
+    }
+
+    @Test
+    void rejectsABatchWithTheReasonWhenGiven() throws Exception {
+        Book listed = new Book();
+        listed.setId(1L);
+        listed.setBookName("教材1");
+        listed.setStatus("on_sale");
+        listed.setStock(1);
+        searchIndex.rebuild(List.of(listed));
+        List<Object[]> updates = stubBatchAudit("rejected");
+
+        bookService.rejectAll(List.of(1L, 2L), "封面不清晰");
+        assertEquals(List.of("封面不清晰", 1L, 2L), Arrays.asList(updates.get(0)).subList(1, 4));
+        assertNull(searchIndex.get(1L));
+        assertEquals("封面不清晰", published().get(0).getPayload().get("reason"));
+
+        // A blank reason leaves audit_reason as it was
+        bookService.rejectAll(List.of(2L), " ");
+        assertEquals(List.of(2L), Arrays.asList(updates.get(1)).subList(1, 2));
+    }
+
+    /** Records the bound parameters of every batch audit UPDATE; the reload returns the ids with the status */
+    private List<Object[]> stubBatchAudit(String status) throws Exception {
+        List<Object[]> updates = new ArrayList<>();
+        doAnswer(inv -> {
+            Object[] args = Arrays.copyOfRange(inv.getArguments(), 1, inv.getArguments().length);
+            updates.add(args);
+            return args.length - 1;
+        }).when(jdbcTemplate).update(startsWith("UPDATE books SET status = '"), any(Object[].class));
+        doAnswer(inv -> {
+            RowMapper<Book> mapper = inv.getArgument(1);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 2; i < inv.getArguments().length; i++) ids.add((Long) inv.getArguments()[i]);
+            ids.sort(null);
+            List<Book> res = new ArrayList<>();
+            for (Long id : ids) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("id")).thenReturn(id);
+                when(rs.getString("book_name")).thenReturn("教材" + id);
+                when(rs.getString("seller_name")).thenReturn("alice");
+                when(rs.getString("status")).thenReturn(status);
+                when(rs.getObject("stock")).thenReturn(1);
+                res.add(mapper.mapRow(rs, res.size()));
+            }
+            return res;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, book_name"), any(RowMapper.class), any(Object[].class));
+        return updates;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<OutboxEvent> published() {
+        ArgumentCaptor<List<OutboxEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(outboxService, org.mockito.Mockito.atLeastOnce()).publishAll(events.capture());
+        return events.getValue();
+    }
+
+    private static List<Long> idsOf(List<Book> books) {
+        List<Long> ids = new ArrayList<>();
+        for (Book b : books) ids.add(b.getId());
+        return ids;
+    }
+}
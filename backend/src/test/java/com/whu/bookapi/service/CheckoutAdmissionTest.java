@@ -0,0 +1,122 @@
+package com.whu.bookapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: CheckoutAdmissionTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for CheckoutAdmission: first-come first-served line, one slot or place per
+ *              user, shedding on a full line or a long wait, and the slot bound under concurrent use.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class CheckoutAdmissionTest {
+
+    @Test
+    void freedSlotGoesToTheHeadOfTheLine() {
+        CheckoutAdmission admission = new CheckoutAdmission(2, 10, 60_000);
+        CheckoutAdmission.Ticket a = admission.enter("a");
+        assertTrue(a.isAdmitted());
+        assertTrue(admission.enter("b").isAdmitted());
+        CheckoutAdmission.Ticket c = admission.enter("c");
+        assertEquals(CheckoutAdmission.Ticket.Kind.QUEUED, c.getKind());
+        assertEquals(1, c.getPosition());
+        assertTrue(c.getRetryAfterSeconds() >= 1);
+        assertEquals(2, admission.enter("d").getPosition());
+
+        admission.leave(a);
+        // d retries first but c is still ahead of it; a newcomer does not jump the line either
+        assertEquals(2, admission.enter("d").getPosition());
+        assertEquals(3, admission.enter("e").getPosition());
+        assertTrue(admission.enter("c").isAdmitted());
+        assertEquals(1, admission.enter("d").getPosition());
+        assertEquals(2, admission.enter("e").getPosition());
+    }
+
+    @Test
+    void aUserHoldsAtMostOneSlot() {
+        CheckoutAdmission admission = new CheckoutAdmission(2, 10, 60_000);
+        CheckoutAdmission.Ticket first = admission.enter("a");
+        CheckoutAdmission.Ticket again = admission.enter("a");
+        assertFalse(again.isAdmitted());
+        assertEquals(1, admission.stats().get("active"));
+        assertEquals(0, admission.stats().get("waiting"));
+
+        // Leaving twice, or with a ticket that was not admitted, frees nothing extra
+        admission.leave(again);
+        assertEquals(1, admission.stats().get("active"));
+        admission.leave(first);
+        admission.leave(first);
+        assertEquals(0, admission.stats().get("active"));
+    }
+
+    @Test
+    void shedsWhenTheLineIsFullOrTheWaitTooLong() {
+        CheckoutAdmission full = new CheckoutAdmission(1, 1, 60_000);
+        full.enter("a");
+        assertEquals(CheckoutAdmission.Ticket.Kind.QUEUED, full.enter("b").getKind());
+        assertEquals(CheckoutAdmission.Ticket.Kind.SHED, full.enter("c").getKind());
+        // Already in line: keeps its place even though the line is full
+        assertEquals(CheckoutAdmission.Ticket.Kind.QUEUED, full.enter("b").getKind());
+        assertEquals(1L, full.stats().get("shed"));
+
+        CheckoutAdmission slow = new CheckoutAdmission(1, 10, 0);
+        slow.enter("a");
+        CheckoutAdmission.Ticket shed = slow.enter("b");
+        assertEquals(CheckoutAdmission.Ticket.Kind.SHED, shed.getKind());
+        assertEquals(1, shed.getRetryAfterSeconds());
+    }
+
+    @Test
+    void neverAdmitsMoreThanTheSlotsConcurrently() throws Exception {
+        CheckoutAdmission admission = new CheckoutAdmission(4, 1000, 60_000);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger served = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> users = new ArrayList<>();
+        for (int u = 0; u < 32; u++) {
+            String username = "u" + u;
+            users.add(pool.submit(() -> {
+                start.await();
+                while (true) {
+                    CheckoutAdmission.Ticket t = admission.enter(username);
+                    if (t.isAdmitted()) {
+                        peak.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        Thread.sleep(1);
+                        inside.decrementAndGet();
+                        admission.leave(t);
+                        served.incrementAndGet();
+                        return null;
+                    }
+                    Thread.sleep(1);
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : users) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(32, served.get());
+        assertTrue(peak.get() <= 4, "peak " + peak.get());
+        assertEquals(0, admission.stats().get("active"));
+        assertEquals(0, admission.stats().get("waiting"));
+        assertEquals(32L, admission.stats().get("admitted"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.whu.bookapi.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: FlashSaleStockTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for FlashSaleStock: concurrent buyers never take more tokens than the stock,
+ *              returned and burnt tokens, reconcile and reload from the committed stock.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class FlashSaleStockTest {
+    private JdbcTemplate jdbcTemplate;
+    private FlashSaleStock stock;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(startsWith("SELECT CASE WHEN status"), eq(Integer.class), eq(1L))).thenReturn(List.of(10));
+        when(jdbcTemplate.queryForList(startsWith("SELECT CASE WHEN status"), eq(Integer.class), eq(2L))).thenReturn(List.of());
+        stock = new FlashSaleStock(jdbcTemplate);
+    }
+
+    @Test
+    void unflaggedBooksAlwaysPass() {
+        assertFalse(stock.enable(2L));
+        assertFalse(stock.isFlagged(2L));
+        assertTrue(stock.tryAcquire(2L));
+        assertTrue(stock.tryAcquire(null));
+        stock.complete(2L, false);
+        assertTrue(stock.stats().isEmpty());
+    }
+
+    @Test
+    void concurrentBuyersTakeAtMostTheStock() throws Exception {
+        assertTrue(stock.enable(1L));
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            attempts.add(pool.submit(() -> {
+                start.await();
+                return stock.tryAcquire(1L);
+            }));
+        }
+        start.countDown();
+        int admitted = 0;
+        for (Future<Boolean> f : attempts) {
+            if (f.get(10, TimeUnit.SECONDS)) admitted++;
+        }
+        pool.shutdown();
+
+        assertEquals(10, admitted);
+        Map<String, Object> s = stock.stats().get(0);
+        assertEquals(0, s.get("tokens"));
+        assertEquals(10, s.get("inFlight"));
+        assertEquals(190L, s.get("rejected"));
+    }
+
+    @Test
+    void refusedAttemptsReturnTheirTokenAndSoldOutOnesBurnIt() {
+        stock.enable(1L);
+        stock.reconcile(1L, 2);
+        assertTrue(stock.tryAcquire(1L));
+        assertTrue(stock.tryAcquire(1L));
+        assertFalse(stock.tryAcquire(1L));
+
+        // The buyer was refused: the copy is still for sale
+        stock.complete(1L, false);
+        assertTrue(stock.tryAcquire(1L));
+        // Reserved, or the UPDATE found it sold out: the token stays taken
+        stock.complete(1L, true);
+        stock.complete(1L, true);
+        assertFalse(stock.tryAcquire(1L));
+        assertEquals(0, stock.stats().get(0).get("inFlight"));
+    }
+
+    @Test
+    void reconcileAndReloadFollowTheCommittedStock() throws Exception {
+        stock.enable(1L);
+        stock.consume(1L, 4);
+        assertEquals(6, stock.stats().get(0).get("tokens"));
+        stock.consume(1L, 20);
+        assertEquals(0, stock.stats().get(0).get("tokens"));
+
+        stock.reconcile(1L, 3);
+        assertEquals(3, stock.stats().get(0).get("tokens"));
+        stock.reconcile(1L, null);
+        assertEquals(0, stock.stats().get(0).get("tokens"));
+
+        // reload keeps only the flagged books in flash_sale_book and resets them
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            handler.processRow(row(3L, 5));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT f.book_id"), any(RowCallbackHandler.class));
+        stock.reload();
+        assertFalse(stock.isFlagged(1L));
+        assertTrue(stock.isFlagged(3L));
+        assertEquals(5, stock.stats().get(0).get("tokens"));
+
+        stock.disable(3L);
+        assertTrue(stock.tryAcquire(3L));
+        assertTrue(stock.stats().isEmpty());
+    }
+
+    private static ResultSet row(long bookId, int stock) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("book_id")).thenReturn(bookId);
+        when(rs.getInt("stock")).thenReturn(stock);
+        return rs;
+    }
+}
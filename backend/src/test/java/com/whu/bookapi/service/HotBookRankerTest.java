@@ -0,0 +1,150 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: HotBookRankerTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for HotBookRanker cart counters: removals lower the score, concurrent
+ *              adds and removals are all counted, and cart writes never wait for a refresh.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class HotBookRankerTest {
+    private JdbcTemplate jdbcTemplate;
+    private BookSearchIndex searchIndex;
+    private HotBookRanker ranker;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        searchIndex = new BookSearchIndex();
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) books.add(book(id));
+        searchIndex.rebuild(books);
+        ranker = new HotBookRanker(jdbcTemplate, searchIndex);
+    }
+
+    @Test
+    void cartRemovalsLowerTheScore() {
+        cartCounts(Map.of(1L, 1));
+        ranker.rebuild();
+        assertEquals(List.of(1L, 3L, 2L), top());
+
+        ranker.recordCartAdd(2L);
+        ranker.recordCartAdd(2L);
+        ranker.recordCartRemove(1L);
+        ranker.refresh();
+
+        // Book 1 is back to no carts and only padded in by recency
+        assertEquals(List.of(2L, 3L, 1L), top());
+    }
+
+    @Test
+    void concurrentAddsAndRemovesAreAllCounted() throws Exception {
+        cartCounts(Map.of(1L, 7999, 3L, 8001));
+        ranker.rebuild();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < 1500; i++) ranker.recordCartAdd(2L);
+                    for (int i = 0; i < 500; i++) ranker.recordCartRemove(2L);
+                }));
+            }
+            for (Future<?> f : tasks) f.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        ranker.refresh();
+
+        // 8 x (1500 - 500) = 8000 carts, between its neighbours
+        assertEquals(List.of(3L, 2L, 1L), top());
+    }
+
+    @Test
+    void cartWritesDoNotWaitForARefresh() throws Exception {
+        cartCounts(Map.of());
+        ranker.rebuild();
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            refreshing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT book_id, created_at FROM favorites"), any(RowCallbackHandler.class), anyLong());
+
+        Thread refresh = new Thread(ranker::refresh);
+        refresh.start();
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            ranker.recordCartAdd(1L);
+            ranker.recordCartRemove(1L);
+            ranker.recordCartAdd(1L);
+        });
+        release.countDown();
+        refresh.join(5000);
+
+        ranker.refresh();
+        assertEquals(1L, top().get(0));
+    }
+
+    private void cartCounts(Map<Long, Integer> counts) {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Map.Entry<Long, Integer> e : counts.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("book_id")).thenReturn(e.getKey());
+                when(rs.getInt("cnt")).thenReturn(e.getValue());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT book_id, COUNT(1) AS cnt FROM cart_item GROUP BY book_id"), any(RowCallbackHandler.class));
+    }
+
+    private List<Long> top() {
+        List<Long> ids = new ArrayList<>();
+        for (Book b : ranker.top(3, null)) ids.add(b.getId());
+        return ids;
+    }
+
+    private static Book book(long id) {
+        Book b = new Book();
+        b.setId(id);
+        b.setBookName("教材" + id);
+        b.setSellPrice(10.0);
+        b.setStatus("on_sale");
+        b.setStock(1);
+        b.setCreatedAt(id);
+        return b;
+    }
+}
@@ -0,0 +1,137 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.IsbnGroup;
+import com.whu.bookapi.dto.PageResponse;
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: IsbnGroupIndexTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for IsbnGroupIndex: ISBN normalization, per-edition minimum and median
+ *              prices, best condition, group ordering and listing changes.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Groups fed from a catalog scan.
+ */
+class IsbnGroupIndexTest {
+    private BookSearchIndex searchIndex;
+    private IsbnGroupIndex index;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new BookSearchIndex();
+        index = new IsbnGroupIndex(searchIndex);
+        index.register();
+        searchIndex.rebuild(listings());
+    }
+
+    @Test
+    void normalizesIsbnAndRanksConditions() {
+        assertEquals("9787040396638", IsbnGroupIndex.normalizeIsbn("978-7-04-039663-8"));
+        assertEquals("754X", IsbnGroupIndex.normalizeIsbn("7-5-4x"));
+        assertNull(IsbnGroupIndex.normalizeIsbn(" - "));
+        assertEquals(10, IsbnGroupIndex.conditionRank("全新"));
+        assertEquals(9, IsbnGroupIndex.conditionRank("九成新"));
+        assertEquals(0, IsbnGroupIndex.conditionRank("旧"));
+    }
+
+    @Test
+    void summarisesEachEdition() {
+        List<IsbnGroup> rows = index.groups(new long[]{1, 2, 3, 4, 5}, null, 0, 10).getRecords();
+        assertEquals(3, rows.size());
+        IsbnGroup first = rows.get(0);
+        assertEquals("9787040396638", first.getIsbn());
+        assertEquals(3, first.getCount());
+        assertEquals(20.0, first.getMinPrice());
+        assertEquals(25.0, first.getMedianPrice());
+        assertEquals("全新", first.getBestCondition());
+        assertEquals(1L, first.getSampleBookId());
+        // A listing without an ISBN stays on its own
+        assertNull(rows.get(1).getIsbn());
+        assertEquals(5L, rows.get(1).getSampleBookId());
+        assertEquals("9787302", rows.get(2).getIsbn());
+    }
+
+    @Test
+    void onlyMatchedEditionsAppearAndSortByMinimumPrice() {
+        PageResponse<IsbnGroup> page = index.groups(new long[]{2, 4}, "price_asc", 0, 10);
+        assertEquals(2, page.getTotal());
+        assertEquals(List.of("9787302", "9787040396638"), isbns(page.getRecords()));
+        assertEquals(List.of("9787040396638", "9787302"), isbns(index.groups(new long[]{2, 4}, "price_desc", 0, 10).getRecords()));
+    }
+
+    @Test
+    void followsListingChanges() {
+        searchIndex.remove(1L);
+        searchIndex.upsert(book(6L, "9787040396638", 10.0, "五成新"));
+
+        IsbnGroup g = index.groups(new long[]{2}, null, 0, 10).getRecords().get(0);
+        assertEquals(3, g.getCount());
+        assertEquals(10.0, g.getMinPrice());
+        assertEquals(25.0, g.getMedianPrice());
+        assertEquals(6L, g.getSampleBookId());
+
+        searchIndex.remove(4L);
+        assertEquals(0, index.groups(new long[]{4}, null, 0, 10).getTotal());
+    }
+
+    @Test
+    void groupsStraightFromACatalogScan() {
+        BookCatalog catalog = new BookCatalog(searchIndex);
+        catalog.register();
+        searchIndex.rebuild(listings());
+
+        List<Map<String, Map<String, Long>>> facets = new ArrayList<>();
+        PageResponse<IsbnGroup> page = index.groups(
+                sink -> facets.add(catalog.forEachMatch(null, 18.0, null, null, true, sink)), "price_asc", 0, 10);
+        // Listing 4 (15.0) is filtered out; the rest give the same rows as their ids would
+        assertEquals(index.groups(new long[]{1, 2, 3, 5}, "price_asc", 0, 10).getTotal(), page.getTotal());
+        assertEquals(Arrays.asList("9787040396638", null), isbns(page.getRecords()));
+        assertEquals(3, page.getRecords().get(0).getCount());
+        assertNotNull(facets.get(0));
+        assertEquals(2L, facets.get(0).get("conditionLevel").get("九成新"));
+        assertNull(catalog.forEachMatch(null, null, null, "五成新", false, id -> { throw new AssertionError(id); }));
+    }
+
+    private static List<Book> listings() {
+        return List.of(
+                book(1L, "978-7-04-039663-8", 20.0, "八成新"),
+                book(2L, "9787040396638", 30.0, "全新"),
+                book(3L, "978 7 04 039663 8", 25.0, "九成新"),
+                book(4L, "9787302", 15.0, "七成新"),
+                book(5L, null, 40.0, "九成新")
+        );
+    }
+
+    private static Book book(Long id, String isbn, Double price, String condition) {
+        Book b = new Book();
+        b.setId(id);
+        b.setBookName("教材" + id);
+        b.setIsbn(isbn);
+        b.setSellPrice(price);
+        b.setConditionLevel(condition);
+        b.setStatus("on_sale");
+        b.setStock(1);
+        b.setCreatedAt(id);
+        return b;
+    }
+
+    private static List<String> isbns(List<IsbnGroup> rows) {
+        List<String> res = new ArrayList<>();
+        for (IsbnGroup g : rows) res.add(g.getIsbn());
+        return res;
+    }
+}
@@ -0,0 +1,155 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.PriceSuggestion;
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: IsbnPriceStatsTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for IsbnPriceStats: percentiles and suggestions, and the (expire_at, id)
+ *              watermark that folds in orders whose payment window closes out of id order.
+ *              The orders table is an in-memory list evaluated against the bound parameters.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class IsbnPriceStatsTest {
+    private static final long SETTLE_MS = 60_000L;
+    private static final String ISBN = "9787040396638";
+
+    private final List<Order> orders = new ArrayList<>();
+    private BookSearchIndex searchIndex;
+    private IsbnPriceStats stats;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        // rebuild: expire_at < cutoff, counted statuses only
+        doAnswer(inv -> {
+            long cutoff = inv.getArgument(2);
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Order o : orders) {
+                if (o.expireAt < cutoff && !"cancelled".equals(o.status)) handler.processRow(o.row());
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT o.price, b.isbn"), any(RowCallbackHandler.class), any(), any());
+        // refresh: (expire_at, id) after the watermark and expire_at < cutoff, in (expire_at, id) order
+        doAnswer(inv -> {
+            long expireMark = inv.getArgument(2);
+            long idMark = inv.getArgument(4);
+            long cutoff = inv.getArgument(5);
+            RowCallbackHandler handler = inv.getArgument(1);
+            List<Order> rows = new ArrayList<>();
+            for (Order o : orders) {
+                boolean after = o.expireAt > expireMark || (o.expireAt == expireMark && o.id > idMark);
+                if (after && o.expireAt < cutoff) rows.add(o);
+            }
+            rows.sort(Comparator.comparingLong((Order o) -> o.expireAt).thenComparingLong(o -> o.id));
+            for (Order o : rows) handler.processRow(o.row());
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT o.id, o.expire_at"), any(RowCallbackHandler.class), any(), any(), any(), any());
+        searchIndex = new BookSearchIndex();
+        stats = new IsbnPriceStats(jdbcTemplate, searchIndex);
+        stats.register();
+    }
+
+    @Test
+    void foldsInALowerIdWhoseWindowClosesLater() throws Exception {
+        long now = System.currentTimeMillis();
+        orders.add(new Order(2, now - SETTLE_MS - 60_000, 30.0, "paid"));
+        // Created first but given a longer payment window; it settles a moment after the rebuild
+        orders.add(new Order(1, now - SETTLE_MS + 300, 20.0, "paid"));
+        stats.rebuild();
+        assertEquals(1, sold("九成新"));
+
+        Thread.sleep(400);
+        stats.refresh();
+        assertEquals(2, sold("九成新"));
+
+        // A later order settling at the same instant as the watermark row is still read
+        long sameInstant = orders.get(1).expireAt;
+        orders.add(new Order(3, sameInstant, 40.0, "completed"));
+        orders.add(new Order(4, sameInstant, 50.0, "cancelled"));
+        stats.refresh();
+        assertEquals(3, sold("九成新"));
+
+        // Nothing new: counts are unchanged by another pass
+        stats.refresh();
+        assertEquals(3, sold("九成新"));
+    }
+
+    @Test
+    void suggestsTheMedianOfSalesAndListings() {
+        long now = System.currentTimeMillis();
+        orders.add(new Order(1, now - 3 * SETTLE_MS, 20.0, "paid"));
+        orders.add(new Order(2, now - 3 * SETTLE_MS, 30.0, "received"));
+        stats.rebuild();
+        Book listed = new Book();
+        listed.setId(10L);
+        listed.setIsbn("978-7-04-039663-8");
+        listed.setConditionLevel("九成新");
+        listed.setSellPrice(40.0);
+        listed.setStatus("on_sale");
+        listed.setStock(1);
+        searchIndex.rebuild(List.of(listed));
+
+        PriceSuggestion s = stats.suggest("978 7 04 039663 8", "九成新");
+        PriceSuggestion.ConditionStats c = s.getByCondition().get("九成新");
+        assertEquals(2, c.getSoldCount());
+        assertEquals(1, c.getListingCount());
+        assertEquals(25.0, c.getP25());
+        assertEquals(30.0, s.getSuggestedPrice());
+
+        // No data for the condition: fall back to every condition
+        assertEquals(30.0, stats.suggest(ISBN, "全新").getSuggestedPrice());
+        searchIndex.remove(10L);
+        assertEquals(0, stats.suggest(ISBN, "九成新").getByCondition().get("九成新").getListingCount());
+    }
+
+    private int sold(String condition) {
+        PriceSuggestion.ConditionStats c = stats.suggest(ISBN, condition).getByCondition().get(condition);
+        return c == null ? 0 : c.getSoldCount();
+    }
+
+    private static final class Order {
+        private final long id;
+        private final long expireAt;
+        private final double price;
+        private final String status;
+
+        Order(long id, long expireAt, double price, String status) {
+            this.id = id;
+            this.expireAt = expireAt;
+            this.price = price;
+            this.status = status;
+        }
+
+        ResultSet row() throws Exception {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("id")).thenReturn(id);
+            when(rs.getLong("expire_at")).thenReturn(expireAt);
+            when(rs.getDouble("price")).thenReturn(price);
+            when(rs.getString("status")).thenReturn(status);
+            when(rs.getString("isbn")).thenReturn(ISBN);
+            when(rs.getString("condition_level")).thenReturn("九成新");
+            return rs;
+        }
+    }
+}
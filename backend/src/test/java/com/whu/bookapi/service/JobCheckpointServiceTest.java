@@ -0,0 +1,126 @@
+package com.whu.bookapi.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: JobCheckpointServiceTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for JobCheckpointService: a run resumes after a crash from the last recorded
+ *              chunk, a failed chunk leaves the checkpoint where it was, and a finished run is not
+ *              repeated. The job_checkpoint row is held in memory.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class JobCheckpointServiceTest {
+    private static final String JOB = "settleDay";
+
+    /** run_key, status, last_create_time, last_id, scanned, affected, started_at; null when absent */
+    private Object[] row;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(inv -> {
+            if (row == null) return List.of();
+            RowMapper<JobCheckpointService.Checkpoint> mapper = inv.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("run_key")).thenReturn((String) row[0]);
+            when(rs.getString("status")).thenReturn((String) row[1]);
+            when(rs.getTimestamp("last_create_time")).thenReturn((Timestamp) row[2]);
+            when(rs.getLong("last_id")).thenReturn((Long) row[3]);
+            when(rs.getLong("scanned")).thenReturn((Long) row[4]);
+            when(rs.getLong("affected")).thenReturn((Long) row[5]);
+            when(rs.getLong("started_at")).thenReturn((Long) row[6]);
+            return List.of(mapper.mapRow(rs, 0));
+        }).when(jdbcTemplate).query(startsWith("SELECT run_key, status"), any(RowMapper.class), any(Object[].class));
+        doAnswer(inv -> {
+            row = new Object[]{inv.getArgument(2), "running", null, 0L, 0L, 0L, inv.getArgument(3)};
+            return 1;
+        }).when(jdbcTemplate).update(startsWith("INSERT INTO job_checkpoint"), any(Object[].class));
+        doAnswer(inv -> {
+            row[2] = inv.getArgument(1);
+            row[3] = inv.getArgument(2);
+            row[4] = inv.getArgument(3);
+            row[5] = inv.getArgument(4);
+            return 1;
+        }).when(jdbcTemplate).update(startsWith("UPDATE job_checkpoint SET last_create_time"), any(Object[].class));
+        doAnswer(inv -> {
+            row[1] = "done";
+            return 1;
+        }).when(jdbcTemplate).update(startsWith("UPDATE job_checkpoint SET status = 'done'"), any(Object[].class));
+        when(jdbcTemplate.queryForList(startsWith("SELECT run_key FROM job_checkpoint"), eq(String.class), any(Object[].class)))
+                .thenAnswer(inv -> row != null && "running".equals(row[1]) ? List.of(row[0]) : List.of());
+    }
+
+    @Test
+    void resumesAnInterruptedRunFromTheLastChunk() {
+        JobCheckpointService first = new JobCheckpointService(jdbcTemplate);
+        JobCheckpointService.Checkpoint cp = first.begin(JOB, "2026-10-16");
+        LocalDateTime t1 = LocalDateTime.of(2026, 10, 16, 9, 0);
+        assertEquals(3, first.processChunk(cp, t1, 42L, 100, () -> 3));
+
+        // The process dies here; after the restart the unfinished run is found and continued
+        JobCheckpointService restarted = new JobCheckpointService(jdbcTemplate);
+        assertEquals("2026-10-16", restarted.unfinishedRunKey(JOB));
+        JobCheckpointService.Checkpoint resumed = restarted.begin(JOB, "2026-10-16");
+        assertEquals(t1, resumed.getLastCreateTime());
+        assertEquals(42L, resumed.getLastId());
+
+        restarted.processChunk(resumed, t1.plusHours(1), 90L, 50, () -> 2);
+        String report = restarted.finish(resumed);
+        assertTrue(report.startsWith("settleDay [2026-10-16] (resumed): scanned=150, affected=5"), report);
+        assertNull(restarted.unfinishedRunKey(JOB));
+        // A finished run is not started again
+        assertNull(restarted.begin(JOB, "2026-10-16"));
+    }
+
+    @Test
+    void aFailedChunkLeavesTheCheckpointInPlace() {
+        JobCheckpointService service = new JobCheckpointService(jdbcTemplate);
+        JobCheckpointService.Checkpoint cp = service.begin(JOB, "2026-10-16");
+        service.processChunk(cp, LocalDateTime.of(2026, 10, 16, 9, 0), 42L, 100, () -> 3);
+
+        assertThrows(IllegalStateException.class, () -> service.processChunk(cp, LocalDateTime.of(2026, 10, 16, 10, 0), 90L, 50,
+                () -> {
+                    throw new IllegalStateException("deadlock");
+                }));
+        assertEquals(42L, row[3]);
+        assertEquals(100L, row[4]);
+        assertEquals(42L, cp.getLastId());
+    }
+
+    @Test
+    void aNewRunKeyStartsFromTheBeginning() {
+        JobCheckpointService service = new JobCheckpointService(jdbcTemplate);
+        JobCheckpointService.Checkpoint cp = service.begin(JOB, "2026-10-15");
+        service.processChunk(cp, LocalDateTime.of(2026, 10, 15, 9, 0), 42L, 100, () -> 3);
+
+        JobCheckpointService.Checkpoint next = service.begin(JOB, "2026-10-16");
+        assertNull(next.getLastCreateTime());
+        assertEquals(0L, next.getLastId());
+        assertEquals("2026-10-16", row[0]);
+        assertTrue(service.finish(next).startsWith("settleDay [2026-10-16]: scanned=0, affected=0"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderCounterServiceTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for OrderCounterService: per-user deltas merged into one batch in username
+ *              order, expired counted as cancelled, forgetting a user, the one-time backfill and
+ *              the open-order check before and after it.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class OrderCounterServiceTest {
+    private JdbcTemplate jdbcTemplate;
+    private OrderCounterService counters;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        counters = new OrderCounterService(jdbcTemplate);
+    }
+
+    @Test
+    void mergesDeltasPerUserInUsernameOrder() {
+        counters.moved(List.of(order("zoe", "amy"), order("zoe", "bob"), order("bob", "amy")), "pending", "expired");
+
+        List<Object[]> rows = batch();
+        assertEquals(3, rows.size());
+        // username, then the eight inserted values, then the eight increments
+        // (buyer pending/paid/received/cancelled, seller pending/paid/received/cancelled)
+        assertArrayEquals(new Object[]{"amy", 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 0, -2, 0, 0, 2}, rows.get(0));
+        assertArrayEquals(new Object[]{"bob", 0, 0, 0, 1, 0, 0, 0, 1, -1, 0, 0, 1, -1, 0, 0, 1}, rows.get(1));
+        assertArrayEquals(new Object[]{"zoe", 0, 0, 0, 2, 0, 0, 0, 0, -2, 0, 0, 2, 0, 0, 0, 0}, rows.get(2));
+    }
+
+    @Test
+    void countsNewOrdersAndIgnoresNoOpMoves() {
+        counters.created(List.of(order("amy", "bob")));
+        List<Object[]> rows = batch();
+        assertArrayEquals(new Object[]{"amy", 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0}, rows.get(0));
+        assertArrayEquals(new Object[]{"bob", 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0}, rows.get(1));
+
+        // expired and cancelled share a column
+        counters.moved(List.of(order("amy", "bob")), "cancelled", "expired");
+        counters.moved(List.of(), "pending", "paid");
+        counters.moved(null, "pending", "paid");
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void forgettingAUserUncountsTheOtherParties() throws Exception {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            handler.processRow(row("amy", "bob", "paid"));
+            handler.processRow(row("carl", "amy", "expired"));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT buyer_name, seller_name, status"), any(RowCallbackHandler.class), any(Object[].class));
+
+        counters.forgetUser("amy");
+
+        List<Object[]> rows = batch();
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[]{"bob", 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, 0, 0}, rows.get(0));
+        assertArrayEquals(new Object[]{"carl", 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, 0, 0, 0, 0}, rows.get(1));
+        verify(jdbcTemplate).update("DELETE FROM user_order_counter WHERE username = ?", "amy");
+    }
+
+    @Test
+    void answersFromOrdersUntilTheBackfillIsDone() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COUNT(1) FROM orders"), eq(Integer.class), any(Object[].class))).thenReturn(1);
+        when(jdbcTemplate.queryForList(startsWith("SELECT buyer_pending"), eq(Integer.class), any(Object[].class))).thenReturn(List.of(0));
+        assertTrue(counters.hasOpenOrders("amy"));
+
+        // Claimed elsewhere: nothing is recounted, but the counters are trusted from now on
+        when(jdbcTemplate.update(startsWith("INSERT IGNORE INTO job_checkpoint"), any(Object[].class))).thenReturn(0);
+        assertEquals(0, counters.backfill());
+        verify(jdbcTemplate, never()).update(startsWith("INSERT INTO user_order_counter"));
+        assertFalse(counters.hasOpenOrders("amy"));
+        assertEquals(0, counters.backfill());
+    }
+
+    @Test
+    void readsCountsByRole() throws Exception {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getInt("buyer_paid")).thenReturn(2);
+            when(rs.getInt("seller_cancelled")).thenReturn(1);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT buyer_pending"), any(RowCallbackHandler.class), any(Object[].class));
+
+        Map<String, Map<String, Integer>> counts = counters.counts("amy");
+        assertEquals(Map.of("pending", 0, "paid", 2, "received", 0, "cancelled", 0), counts.get("buyer"));
+        assertEquals(Map.of("pending", 0, "paid", 0, "received", 0, "cancelled", 1), counts.get("seller"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> batch() {
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO user_order_counter"), args.capture());
+        return args.getValue();
+    }
+
+    private static Order order(String buyer, String seller) {
+        Order o = new Order();
+        o.setBuyerName(buyer);
+        o.setSellerName(seller);
+        return o;
+    }
+
+    private static ResultSet row(String buyer, String seller, String status) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("buyer_name")).thenReturn(buyer);
+        when(rs.getString("seller_name")).thenReturn(seller);
+        when(rs.getString("status")).thenReturn(status);
+        return rs;
+    }
+}
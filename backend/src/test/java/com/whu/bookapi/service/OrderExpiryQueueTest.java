@@ -0,0 +1,149 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderExpiryQueueTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for OrderExpiryQueue: orders expire in expire_at order and not before it,
+ *              an order is queued once, a failed expiry is retried, and the startup load versus the
+ *              one-minute catch-up window of sync.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class OrderExpiryQueueTest {
+    private JdbcTemplate jdbcTemplate;
+    private OrderService orderService;
+    private OrderExpiryQueue queue;
+    /** Order ids in the order the worker expired them */
+    private final BlockingQueue<Long> expired = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        orderService = mock(OrderService.class);
+        when(orderService.expire(anyLong(), anyLong())).thenAnswer(inv -> {
+            expired.add(inv.getArgument(0));
+            return true;
+        });
+        queue = new OrderExpiryQueue(jdbcTemplate, orderService);
+        queue.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.stop();
+    }
+
+    @Test
+    void expiresInDeadlineOrderAndNotBefore() throws Exception {
+        long now = System.currentTimeMillis();
+        queue.schedule(order(1L, now + 300));
+        queue.schedule(order(2L, now + 100));
+        queue.schedule(order(3L, now - 1000));
+
+        assertEquals(3L, expired.poll(2, TimeUnit.SECONDS));
+        assertEquals(2L, expired.poll(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() >= now + 100);
+        assertEquals(1L, expired.poll(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() >= now + 300);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void queuesAnOrderOnlyOnce() throws Exception {
+        long at = System.currentTimeMillis() + 100;
+        queue.schedule(order(1L, at));
+        queue.schedule(order(1L, at));
+        assertEquals(1, queue.size());
+        queue.schedule(null);
+        queue.schedule(order(null, at));
+        queue.schedule(order(2L, null));
+        assertEquals(1, queue.size());
+
+        assertEquals(1L, expired.poll(2, TimeUnit.SECONDS));
+        assertNull(expired.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void retriesAFailedExpiry() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(inv -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("database unavailable");
+            expired.add(inv.getArgument(0));
+            return true;
+        }).when(orderService).expire(anyLong(), anyLong());
+        queue.schedule(order(7L, System.currentTimeMillis()));
+
+        assertEquals(7L, expired.poll(10, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void loadsEveryPendingOrderOnceThenOnlyTheLookaheadWindow() throws Exception {
+        List<Object[]> args = new ArrayList<>();
+        long far = System.currentTimeMillis() + 3_600_000L;
+        doAnswer(inv -> {
+            Object[] all = inv.getArguments();
+            Object[] bound = new Object[all.length - 2];
+            System.arraycopy(all, 2, bound, 0, bound.length);
+            args.add(bound);
+            RowCallbackHandler handler = inv.getArgument(1);
+            handler.processRow(row(5L, far));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, book_id, expire_at FROM orders"), any(RowCallbackHandler.class), any(Object[].class));
+
+        queue.sync();
+        queue.sync();
+
+        assertEquals(2, args.size());
+        assertEquals(0, args.get(0).length);
+        assertEquals(1, args.get(1).length);
+        long lookahead = (Long) args.get(1)[0] - System.currentTimeMillis();
+        assertTrue(lookahead > 50_000 && lookahead <= 60_000, "lookahead " + lookahead);
+        // The same pending order read twice is queued once
+        assertEquals(1, queue.size());
+    }
+
+    private static Order order(Long id, Long expireAt) {
+        Order o = new Order();
+        o.setId(id);
+        o.setBookId(id == null ? 1L : id * 10);
+        o.setExpireAt(expireAt);
+        return o;
+    }
+
+    private static ResultSet row(long id, long expireAt) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getLong("book_id")).thenReturn(id * 10);
+        when(rs.getLong("expire_at")).thenReturn(expireAt);
+        return rs;
+    }
+}
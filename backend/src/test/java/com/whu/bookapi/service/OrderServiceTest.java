@@ -0,0 +1,339 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.CheckoutResult;
+import com.whu.bookapi.dto.CursorPageResponse;
+import com.whu.bookapi.dto.OrderPlacement;
+import com.whu.bookapi.model.Book;
+import com.whu.bookapi.model.CartItem;
+import com.whu.bookapi.model.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderServiceTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for OrderService: single-book orders placed through the conditional
+ *              reservation, multi-item cart checkout (one order per copy, a reason for every item left
+ *              out, one multi-row insert) and keyset pages of a user's orders.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Order history pages.
+ * WiseBookPal Team  2026-10-17      1.2                Single-book placement.
+ * WiseBookPal Team  2026-10-17      1.3                Checkout sends one multi-row INSERT.
+ */
+class OrderServiceTest {
+    private JdbcTemplate jdbcTemplate;
+    private OrderExpiryQueue expiryQueue;
+    private BookService bookService;
+    private CartService cartService;
+    private OrderCounterService counters;
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        expiryQueue = mock(OrderExpiryQueue.class);
+        bookService = mock(BookService.class);
+        cartService = mock(CartService.class);
+        counters = mock(OrderCounterService.class);
+        orderService = new OrderService(jdbcTemplate, expiryQueue, bookService, cartService, counters,
+                mock(OutboxService.class), mock(OrderStateMachine.class));
+    }
+
+    @Test
+    void placesAnOrderOnTheReservedRow() throws Exception {
+        when(bookService.reserveForOrder(1L, "amy")).thenReturn(book(1L, "bob", "on_sale"));
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), any(String[].class))).thenReturn(ps);
+        doAnswer(inv -> {
+            PreparedStatementCreator creator = inv.getArgument(0);
+            creator.createPreparedStatement(connection);
+            GeneratedKeyHolder keys = inv.getArgument(1);
+            keys.getKeyList().add(Map.of("id", 42L));
+            return 1;
+        }).when(jdbcTemplate).update(any(PreparedStatementCreator.class), any(KeyHolder.class));
+
+        OrderPlacement placement = orderService.place(1L, "amy");
+
+        Order o = placement.getOrder();
+        assertNotNull(o);
+        assertNull(placement.getFailure());
+        assertEquals(42L, o.getId());
+        assertEquals("bob", o.getSellerName());
+        assertEquals("pending", o.getStatus());
+        verify(ps).setString(5, "amy");
+        verify(counters).created(List.of(o));
+        verify(expiryQueue).schedule(o);
+        verify(cartService).remove("amy", 1L);
+        // The reservation already said yes, so the listing is not read again
+        verify(bookService, never()).get(anyLong());
+    }
+
+    @Test
+    void explainsAFailedReservationWithoutWriting() {
+        when(bookService.reserveForOrder(anyLong(), eq("amy"))).thenReturn(null);
+        when(bookService.get(3L)).thenReturn(book(3L, "bob", "off_sale"));
+        when(bookService.get(4L)).thenReturn(book(4L, "amy", "on_sale"));
+        when(bookService.get(6L)).thenReturn(book(6L, "bob", "on_sale"));
+
+        assertEquals(OrderPlacement.Failure.NOT_ON_SALE, orderService.place(3L, "amy").getFailure());
+        assertEquals(OrderPlacement.Failure.OWN_BOOK, orderService.place(4L, "amy").getFailure());
+        assertEquals(OrderPlacement.Failure.NOT_FOUND, orderService.place(5L, "amy").getFailure());
+        assertEquals(OrderPlacement.Failure.OUT_OF_STOCK, orderService.place(6L, "amy").getFailure());
+        verify(jdbcTemplate, never()).update(any(PreparedStatementCreator.class), any(KeyHolder.class));
+        verify(expiryQueue, never()).schedule(any(Order.class));
+        verify(cartService, never()).remove(anyString(), anyLong());
+    }
+
+    @Test
+    void checksOutTheSelectedItemsAndExplainsTheRest() throws Exception {
+        when(cartService.list("amy")).thenReturn(List.of(item(2L, 1), item(1L, 2), item(3L, 1), item(4L, 1), item(5L, 1), item(6L, 1), item(7L, 1)));
+        SortedMap<Long, Integer> wanted = new TreeMap<>(Map.of(1L, 2, 2L, 1, 3L, 1, 4L, 1, 5L, 1, 6L, 1));
+        when(bookService.reserveAllForOrder(wanted, "amy")).thenReturn(Map.of(1L, book(1L, "bob", "on_sale"), 2L, book(2L, "carl", "on_sale")));
+        when(bookService.getAll(List.of(3L, 4L, 5L, 6L))).thenReturn(List.of(
+                book(3L, "bob", "off_sale"), book(4L, "amy", "on_sale"), book(6L, "bob", "on_sale")));
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement insert = stubInsert(prepared);
+
+        CheckoutResult result = orderService.checkout("amy", List.of(1L, 2L, 3L, 4L, 5L, 6L, 9L, 9L));
+
+        Map<Long, OrderPlacement.Failure> reasons = new TreeMap<>();
+        for (CheckoutResult.ItemFailure f : result.getFailures()) reasons.put(f.getBookId(), f.getReason());
+        assertEquals(Map.of(
+                3L, OrderPlacement.Failure.NOT_ON_SALE,
+                4L, OrderPlacement.Failure.OWN_BOOK,
+                5L, OrderPlacement.Failure.NOT_FOUND,
+                6L, OrderPlacement.Failure.OUT_OF_STOCK,
+                9L, OrderPlacement.Failure.NOT_IN_CART), reasons);
+        assertEquals(5, result.getFailures().size());
+
+        // Two copies of book 1, one of book 2, all inserted with one three-row statement
+        assertEquals(1, prepared.size());
+        assertTrue(prepared.get(0).startsWith("INSERT INTO orders"), prepared.get(0));
+        assertEquals(3, prepared.get(0).split("\\(\\?").length - 1);
+        verify(insert, times(1)).executeUpdate();
+        verify(insert, never()).addBatch();
+        verify(insert, never()).executeBatch();
+        List<Order> orders = result.getOrders();
+        assertEquals(3, orders.size());
+        List<Long> bookIds = new ArrayList<>();
+        for (Order o : orders) {
+            bookIds.add(o.getBookId());
+            assertEquals("pending", o.getStatus());
+            assertEquals("amy", o.getBuyerName());
+            assertTrue(o.getExpireAt() > System.currentTimeMillis());
+        }
+        bookIds.sort(null);
+        assertEquals(List.of(1L, 1L, 2L), bookIds);
+        assertEquals(Set.of(100L, 101L, 102L), Set.of(orders.get(0).getId(), orders.get(1).getId(), orders.get(2).getId()));
+        verify(cartService).removeAll("amy", Set.of(1L, 2L));
+        verify(counters).created(orders);
+        verify(expiryQueue, times(3)).schedule(any(Order.class));
+    }
+
+    @Test
+    void emptySelectionBuysTheWholeCart() throws Exception {
+        when(cartService.list("amy")).thenReturn(List.of(item(1L, null)));
+        when(bookService.reserveAllForOrder(new TreeMap<>(Map.of(1L, 1)), "amy")).thenReturn(Map.of(1L, book(1L, "bob", "on_sale")));
+        stubInsert(new ArrayList<>());
+
+        CheckoutResult result = orderService.checkout("amy", null);
+        assertEquals(1, result.getOrders().size());
+        assertTrue(result.getFailures().isEmpty());
+    }
+
+    @Test
+    void nothingReservedWritesNothing() {
+        when(cartService.list("amy")).thenReturn(List.of(item(1L, 1)));
+        when(bookService.reserveAllForOrder(any(), eq("amy"))).thenReturn(Map.of());
+        when(bookService.getAll(anyList())).thenReturn(List.of(book(1L, "bob", "on_sale")));
+
+        CheckoutResult result = orderService.checkout("amy", List.of(1L));
+        assertEquals(OrderPlacement.Failure.OUT_OF_STOCK, result.getFailures().get(0).getReason());
+        verify(jdbcTemplate, never()).execute(any(ConnectionCallback.class));
+        verify(cartService, never()).removeAll(anyString(), any());
+    }
+
+    @Test
+    void pagesThroughOrdersSharingACreateTime() {
+        LocalDateTime t = LocalDateTime.of(2026, 10, 16, 9, 0);
+        List<Order> table = List.of(
+                stored(1L, "amy", "paid", t), stored(2L, "amy", "pending", t.plusMinutes(1)),
+                stored(3L, "amy", "paid", t.plusMinutes(1)), stored(4L, "amy", "cancelled", t.plusMinutes(1)),
+                stored(5L, "bob", "paid", t.plusMinutes(1)), stored(6L, "amy", "received", t.plusMinutes(2)),
+                stored(7L, "amy", "paid", t));
+        stubOrders(table);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageResponse<Order> page = orderService.pageByBuyer("amy", null, cursor, 2);
+            for (Order o : page.getRecords()) seen.add(o.getId());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Newest first, ties on create_time broken by id, no row repeated or skipped
+        assertEquals(List.of(6L, 4L, 3L, 2L, 7L, 1L), seen);
+        assertEquals(3, pages);
+
+        List<Long> paid = new ArrayList<>();
+        for (Order o : orderService.pageByBuyer("amy", List.of("paid", "received"), null, 10).getRecords()) paid.add(o.getId());
+        assertEquals(List.of(6L, 3L, 7L, 1L), paid);
+    }
+
+    @Test
+    void malformedCursorsAndPageSizesFallBackSafely() {
+        List<Object[]> bound = stubOrders(List.of());
+        orderService.pageBySeller("bob", null, "not-a-cursor", 0);
+        orderService.pageBySeller("bob", null, new PageCursor("price_asc", "10", 5L).encode(), 500);
+        orderService.pageBySeller("bob", null, new PageCursor("orders", "yesterday", 5L).encode(), 20);
+
+        // No seek condition from a foreign or unreadable cursor; the size is clamped to 1..100 (+1 probe row)
+        assertEquals(List.of(2, 2, 2), Arrays.asList(bound.get(0).length, bound.get(1).length, bound.get(2).length));
+        assertEquals(2, bound.get(0)[1]);
+        assertEquals(101, bound.get(1)[1]);
+        assertEquals(21, bound.get(2)[1]);
+        assertNull(orderService.pageBySeller(null, null, null, 10).getNextCursor());
+    }
+
+    /** Answers the page query from an in-memory orders table, evaluating the bound parameters; returns them */
+    private List<Object[]> stubOrders(List<Order> table) {
+        List<Object[]> bound = new ArrayList<>();
+        doAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            Object[] args = Arrays.copyOfRange(inv.getArguments(), 2, inv.getArguments().length);
+            bound.add(args);
+            String column = sql.contains("WHERE buyer_name") ? "buyer" : "seller";
+            int statuses = sql.contains("status IN (") ? sql.split("status IN \\(")[1].split("\\)")[0].split(",").length : 0;
+            List<Object> wanted = Arrays.asList(args).subList(1, 1 + statuses);
+            boolean seek = sql.contains("create_time <");
+            RowMapper<Order> mapper = inv.getArgument(1);
+            List<Order> res = new ArrayList<>();
+            for (Order o : table) {
+                String user = "buyer".equals(column) ? o.getBuyerName() : o.getSellerName();
+                if (!args[0].equals(user) || (statuses > 0 && !wanted.contains(o.getStatus()))) continue;
+                if (seek) {
+                    LocalDateTime after = ((Timestamp) args[1 + statuses]).toLocalDateTime();
+                    long afterId = (Long) args[3 + statuses];
+                    int c = o.getCreateTime().compareTo(after);
+                    if (c > 0 || (c == 0 && o.getId() >= afterId)) continue;
+                }
+                res.add(o);
+            }
+            res.sort(Comparator.comparing(Order::getCreateTime).thenComparing(Order::getId).reversed());
+            List<Order> mapped = new ArrayList<>();
+            for (Order o : res.subList(0, Math.min(res.size(), (Integer) args[args.length - 1]))) mapped.add(mapper.mapRow(row(o), 0));
+            return mapped;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, book_id"), any(RowMapper.class), any(Object[].class));
+        return bound;
+    }
+
+    private static ResultSet row(Order o) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(o.getId());
+        when(rs.getLong("book_id")).thenReturn(1L);
+        when(rs.getString("buyer_name")).thenReturn(o.getBuyerName());
+        when(rs.getString("seller_name")).thenReturn(o.getSellerName());
+        when(rs.getString("status")).thenReturn(o.getStatus());
+        when(rs.getTimestamp("create_time")).thenReturn(Timestamp.valueOf(o.getCreateTime()));
+        return rs;
+    }
+
+    private static Order stored(Long id, String buyer, String status, LocalDateTime createTime) {
+        Order o = new Order();
+        o.setId(id);
+        o.setBuyerName(buyer);
+        o.setSellerName("bob".equals(buyer) ? "amy" : "bob");
+        o.setStatus(status);
+        o.setCreateTime(createTime);
+        return o;
+    }
+
+    /**
+     * Runs the multi-row insert against a mocked connection that hands out ids from 100; the SQL of every
+     * prepared statement is added to prepared, and the statement is returned
+     */
+    private PreparedStatement stubInsert(List<String> prepared) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet generated = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenAnswer(inv -> {
+            prepared.add(inv.getArgument(0));
+            return ps;
+        });
+        when(ps.getGeneratedKeys()).thenReturn(generated);
+        when(generated.next()).thenReturn(true);
+        when(generated.getLong(1)).thenAnswer(inv -> {
+            long id = 100L + ids.size();
+            ids.add(id);
+            return id;
+        });
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(inv -> {
+            ConnectionCallback<?> callback = inv.getArgument(0);
+            return callback.doInConnection(connection);
+        });
+        return ps;
+    }
+
+    private static CartItem item(Long bookId, Integer quantity) {
+        CartItem c = new CartItem();
+        c.setBookId(bookId);
+        c.setUsername("amy");
+        c.setQuantity(quantity);
+        return c;
+    }
+
+    private static Book book(Long id, String seller, String status) {
+        Book b = new Book();
+        b.setId(id);
+        b.setBookName("教材" + id);
+        b.setSellerName(seller);
+        b.setStatus(status);
+        b.setSellPrice(10.0);
+        return b;
+    }
+}
@@ -0,0 +1,184 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.dto.OrderTransition;
+import com.whu.bookapi.model.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OrderStateMachineTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for OrderStateMachine: the legal moves, the compare-and-set on status and
+ *              version (one winner among concurrent transitions), and expiry by id. The orders row is
+ *              held in memory and updated the way the conditional UPDATE would.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class OrderStateMachineTest {
+    private final Row row = new Row();
+    private OrderCounterService counters;
+    private OutboxService outbox;
+    private OrderStateMachine machine;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            String to = (String) args[1];
+            String from = (String) args[3];
+            Integer version = args.length > 4 ? (Integer) args[4] : null;
+            return row.compareAndSet(from, version, to);
+        }).when(jdbcTemplate).update(startsWith("UPDATE orders SET status = ?"), any(Object[].class));
+        doAnswer(inv -> row.compareAndSet(OrderStateMachine.PENDING, null, OrderStateMachine.EXPIRED))
+                .when(jdbcTemplate).update(startsWith("UPDATE orders SET status = 'expired'"), any(Object[].class));
+        doAnswer(inv -> {
+            RowMapper<Order> mapper = inv.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("book_id")).thenReturn(3L);
+            when(rs.getString("buyer_name")).thenReturn("buyer");
+            when(rs.getString("seller_name")).thenReturn("seller");
+            when(rs.getObject("price")).thenReturn(12.5);
+            return List.of(mapper.mapRow(rs, 0));
+        }).when(jdbcTemplate).query(startsWith("SELECT book_id"), any(RowMapper.class), any(Object[].class));
+        counters = mock(OrderCounterService.class);
+        outbox = mock(OutboxService.class);
+        machine = new OrderStateMachine(jdbcTemplate, counters, outbox);
+    }
+
+    @Test
+    void allowsOnlyTheLifecycleMoves() {
+        assertTrue(OrderStateMachine.canMove("pending", "paid"));
+        assertTrue(OrderStateMachine.canMove("pending", "cancelled"));
+        assertTrue(OrderStateMachine.canMove("pending", "expired"));
+        assertTrue(OrderStateMachine.canMove("paid", "received"));
+        assertFalse(OrderStateMachine.canMove("paid", "cancelled"));
+        assertFalse(OrderStateMachine.canMove("pending", "received"));
+        assertFalse(OrderStateMachine.canMove("expired", "paid"));
+        assertFalse(OrderStateMachine.canMove(null, "paid"));
+
+        OrderTransition t = machine.transition(snapshot("received", 3), "paid");
+        assertEquals(OrderTransition.Failure.ILLEGAL, t.getFailure());
+        assertNull(t.getOrder());
+        assertEquals(OrderTransition.Failure.ILLEGAL, machine.transition(null, "paid").getFailure());
+    }
+
+    @Test
+    void movesTheSnapshotAndBumpsItsVersion() {
+        Order paid = machine.transition(snapshot("pending", 0), "paid").getOrder();
+        assertEquals("paid", paid.getStatus());
+        assertEquals(1, paid.getVersion());
+        assertEquals("buyer", paid.getBuyerName());
+        assertEquals("paid", row.status);
+        verify(counters).moved(any(), eq("pending"), eq("paid"));
+        verify(outbox).publish(eq("order.paid"), eq(1L), anyMap());
+
+        // A second actor still holding version 0 loses, even for a move that is legal from its snapshot
+        OrderTransition stale = machine.transition(snapshot("pending", 0), "cancelled");
+        assertEquals(OrderTransition.Failure.CONFLICT, stale.getFailure());
+        assertEquals("paid", row.status);
+
+        assertEquals("received", machine.transition(paid, "received").getOrder().getStatus());
+        assertEquals(2, row.version);
+        verify(counters, times(2)).moved(any(), anyString(), anyString());
+    }
+
+    @Test
+    void exactlyOneOfConcurrentTransitionsWins() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OrderTransition>> attempts = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String to = i % 2 == 0 ? "paid" : "cancelled";
+            attempts.add(pool.submit(() -> {
+                start.await();
+                return machine.transition(snapshot("pending", 0), to);
+            }));
+        }
+        start.countDown();
+        int won = 0;
+        for (Future<OrderTransition> f : attempts) {
+            OrderTransition t = f.get(10, TimeUnit.SECONDS);
+            if (t.getOrder() != null) {
+                won++;
+                assertEquals(row.status, t.getOrder().getStatus());
+            } else {
+                assertEquals(OrderTransition.Failure.CONFLICT, t.getFailure());
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, won);
+        assertEquals(1, row.version);
+        verify(counters, times(1)).moved(any(), anyString(), anyString());
+        verify(outbox, times(1)).publish(anyString(), eq(1L), anyMap());
+    }
+
+    @Test
+    void expiresOnlyAPendingOrder() {
+        assertTrue(machine.expire(1L));
+        assertEquals("expired", row.status);
+        verify(counters).moved(any(), eq("pending"), eq("expired"));
+        verify(outbox).publish(eq("order.expired"), eq(1L), anyMap());
+
+        // No longer pending: neither a second expiry nor a payment from a stale snapshot applies
+        assertFalse(machine.expire(1L));
+        assertEquals(OrderTransition.Failure.CONFLICT, machine.transition(snapshot("pending", 1), "paid").getFailure());
+        verify(outbox, never()).publish(eq("order.paid"), any(), anyMap());
+    }
+
+    private static Order snapshot(String status, Integer version) {
+        Order o = new Order();
+        o.setId(1L);
+        o.setBookId(3L);
+        o.setBuyerName("buyer");
+        o.setSellerName("seller");
+        o.setPrice(12.5);
+        o.setStatus(status);
+        o.setVersion(version);
+        return o;
+    }
+
+    /** The orders row with id 1 */
+    private static final class Row {
+        private String status = OrderStateMachine.PENDING;
+        private int version = 0;
+
+        /** UPDATE ... WHERE status = from [AND version = version]: the affected row count */
+        synchronized int compareAndSet(String from, Integer expectedVersion, String to) {
+            if (!status.equals(from) || (expectedVersion != null && expectedVersion != version)) return 0;
+            status = to;
+            version++;
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.whu.bookapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whu.bookapi.model.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: OutboxDispatcherTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for OutboxDispatcher: exponential backoff, per-consumer retry without
+ *              re-running consumers that succeeded, dead-lettering after the last attempt or of an
+ *              unreadable payload, and the bound on consumers running at once.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class OutboxDispatcherTest {
+    private JdbcTemplate jdbcTemplate;
+    /** Rows returned for the current claim: id, payload, attempts, done_consumers */
+    private final List<Object[]> rows = new ArrayList<>();
+    /** Consumer runs as "consumer:eventId" */
+    private final List<String> runs = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(inv -> rows.size())
+                .when(jdbcTemplate).update(startsWith("UPDATE outbox_event SET locked_by"), any(Object[].class));
+        doAnswer(inv -> {
+            RowMapper<OutboxEvent> mapper = inv.getArgument(1);
+            List<OutboxEvent> res = new ArrayList<>();
+            for (Object[] r : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("id")).thenReturn((Long) r[0]);
+                when(rs.getString("event_type")).thenReturn("order.paid");
+                when(rs.getLong("aggregate_id")).thenReturn(1L);
+                when(rs.getString("payload")).thenReturn((String) r[1]);
+                when(rs.getInt("attempts")).thenReturn((Integer) r[2]);
+                when(rs.getString("done_consumers")).thenReturn((String) r[3]);
+                res.add(mapper.mapRow(rs, res.size()));
+            }
+            return res;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, event_type"), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void backsOffExponentiallyUpToTheCap() {
+        assertEquals(1_000L, OutboxDispatcher.backoffMs(0));
+        assertEquals(2_000L, OutboxDispatcher.backoffMs(1));
+        assertEquals(8_000L, OutboxDispatcher.backoffMs(3));
+        assertEquals(600_000L, OutboxDispatcher.backoffMs(10));
+        assertEquals(600_000L, OutboxDispatcher.backoffMs(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void retriesOnlyTheConsumerThatFailed() {
+        rows.add(new Object[]{1L, "{\"bookId\":3}", 0, null});
+        rows.add(new Object[]{2L, "{\"bookId\":4}", 2, "mail"});
+        OutboxDispatcher dispatcher = dispatcher(4, consumer("mail", 1L), consumer("stats", null));
+
+        long before = System.currentTimeMillis();
+        assertEquals(2, dispatcher.dispatchDue());
+
+        // Event 1: mail failed, stats succeeded. Event 2: mail was done earlier, only stats ran
+        assertEquals(List.of("mail:1", "stats:1", "stats:2"), sorted(runs));
+        ArgumentCaptor<Object[]> done = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(startsWith("UPDATE outbox_event SET status = 'done'"), done.capture());
+        assertEquals(2L, done.getValue()[2]);
+        assertEquals(3, done.getValue().length);
+
+        Object[] retry = failed().get(0);
+        assertEquals("pending", retry[0]);
+        assertEquals(1, retry[1]);
+        long next = (Long) retry[2] - before;
+        assertTrue(next >= 2_000L && next < 12_000L, "next attempt in " + next);
+        assertEquals("stats", retry[3]);
+        assertTrue(((String) retry[4]).startsWith("mail: "));
+        assertEquals(1L, retry[5]);
+        assertEquals(1L, dispatcher.stats().get("retried"));
+    }
+
+    @Test
+    void parksAnEventAfterTheLastAttempt() {
+        rows.add(new Object[]{1L, "{}", 9, null});
+        OutboxDispatcher dispatcher = dispatcher(4, consumer("mail", 1L));
+        dispatcher.dispatchDue();
+
+        Object[] dead = failed().get(0);
+        assertEquals("dead", dead[0]);
+        assertEquals(10, dead[1]);
+        assertEquals(1L, dispatcher.stats().get("dead"));
+    }
+
+    @Test
+    void deadLettersAnUnreadablePayloadWithoutRunningConsumers() {
+        rows.add(new Object[]{1L, "{not json", 0, null});
+        rows.add(new Object[]{2L, null, 0, null});
+        OutboxDispatcher dispatcher = dispatcher(4, consumer("mail", null));
+        dispatcher.dispatchDue();
+
+        assertEquals(List.of("mail:2"), runs);
+        Object[] dead = failed().get(0);
+        assertEquals("dead", dead[0]);
+        assertEquals(1, dead[1]);
+        assertTrue(((String) dead[4]).startsWith("payload: "));
+        assertEquals(1L, dead[5]);
+    }
+
+    @Test
+    void nothingClaimedReadsNothing() {
+        OutboxDispatcher dispatcher = dispatcher(4, consumer("mail", null));
+        assertEquals(0, dispatcher.dispatchDue());
+        verify(jdbcTemplate, never()).query(startsWith("SELECT id, event_type"), any(RowMapper.class), any(Object[].class));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void runsAtMostTheConfiguredNumberOfConsumersAtOnce() {
+        for (long id = 1; id <= 12; id++) rows.add(new Object[]{id, "{}", 0, null});
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        OutboxConsumer slow = new OutboxConsumer() {
+            @Override
+            public String name() {
+                return "slow";
+            }
+
+            @Override
+            public boolean accepts(String eventType) {
+                return true;
+            }
+
+            @Override
+            public void handle(OutboxEvent event) {
+                peak.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inside.decrementAndGet();
+            }
+        };
+        OutboxDispatcher dispatcher = dispatcher(2, slow);
+
+        assertEquals(12, dispatcher.dispatchDue());
+        assertTrue(peak.get() <= 2, "peak " + peak.get());
+        assertEquals(12L, dispatcher.stats().get("delivered"));
+    }
+
+    private OutboxDispatcher dispatcher(int concurrency, OutboxConsumer... consumers) {
+        when(jdbcTemplate.queryForObject(anyString(), any(Class.class))).thenReturn(0L);
+        return new OutboxDispatcher(jdbcTemplate, new ObjectMapper(), Arrays.asList(consumers), concurrency, 60_000L);
+    }
+
+    /** A consumer recording its runs that fails for the given event id */
+    private OutboxConsumer consumer(String name, Long failFor) {
+        return new OutboxConsumer() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public boolean accepts(String eventType) {
+                return eventType.startsWith("order.");
+            }
+
+            @Override
+            public void handle(OutboxEvent event) {
+                runs.add(name + ":" + event.getId());
+                if (event.getId().equals(failFor)) throw new IllegalStateException("smtp down");
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> failed() {
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE outbox_event SET status = ?"), args.capture());
+        return args.getValue();
+    }
+
+    private static List<String> sorted(List<String> runs) {
+        List<String> res = new ArrayList<>(runs);
+        res.sort(null);
+        return res;
+    }
+}
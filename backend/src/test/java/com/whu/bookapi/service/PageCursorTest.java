@@ -0,0 +1,64 @@
+package com.whu.bookapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: PageCursorTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for PageCursor encoding, decoding and key parsing.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class PageCursorTest {
+
+    @Test
+    void roundTripsEachSortOrder() {
+        PageCursor price = PageCursor.decode(new PageCursor("price_desc", "12.5", 42L).encode());
+        assertEquals("price_desc", price.getSort());
+        assertEquals(12.5, price.keyAsDouble());
+        assertEquals(42L, price.getId());
+
+        PageCursor created = PageCursor.decode(new PageCursor("created_desc", "1760000000000", 7L).encode());
+        assertEquals(1760000000000L, created.keyAsLong());
+
+        PageCursor byId = PageCursor.decode(new PageCursor(null, null, 3L).encode());
+        assertEquals("", byId.getSort());
+        assertNull(byId.keyAsDouble());
+        assertEquals(3L, byId.getId());
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new PageCursor("price_asc", "99.99", Long.MAX_VALUE).encode();
+        assertFalse(token.contains("+") || token.contains("/") || token.contains("="));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(" "));
+        assertNull(PageCursor.decode("not base64!"));
+        assertNull(PageCursor.decode(encodeRaw("price_asc|1.0")));
+        assertNull(PageCursor.decode(encodeRaw("price_asc|1.0|abc")));
+    }
+
+    @Test
+    void nonNumericKeysParseAsNull() {
+        PageCursor c = new PageCursor("price_asc", "cheap", 1L);
+        assertNull(c.keyAsDouble());
+        assertNull(c.keyAsLong());
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
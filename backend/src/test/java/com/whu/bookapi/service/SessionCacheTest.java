@@ -0,0 +1,149 @@
+package com.whu.bookapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whu.bookapi.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SessionCacheTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for SessionCache: TTL, LRU eviction, loads racing an invalidation, copies,
+ *              and invalidations applied from auth_revocation rows written by another instance.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class SessionCacheTest {
+
+    @Test
+    void expiresEntriesAfterTheTtl() throws Exception {
+        SessionCache cache = new SessionCache(10, 50);
+        cache.put("t1", user("amy"), cache.generation());
+        assertNotNull(cache.get("t1"));
+        Thread.sleep(80);
+        assertNull(cache.get("t1"));
+        assertEquals(1L, cache.stats().get("expirations"));
+
+        // A TTL of 0 disables caching
+        SessionCache off = new SessionCache(10, 0);
+        off.put("t1", user("amy"), off.generation());
+        assertNull(off.get("t1"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSession() {
+        SessionCache cache = new SessionCache(2, 60_000);
+        cache.put("t1", user("amy"), cache.generation());
+        cache.put("t2", user("bob"), cache.generation());
+        cache.get("t1");
+        cache.put("t3", user("carl"), cache.generation());
+
+        assertNotNull(cache.get("t1"));
+        assertNull(cache.get("t2"));
+        assertNotNull(cache.get("t3"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void dropsALoadThatRacedAnInvalidationAndHandsOutCopies() {
+        SessionCache cache = new SessionCache(10, 60_000);
+        long loadedAt = cache.generation();
+        // Another thread changes the user while this one is still reading the old row
+        cache.invalidateUser("amy");
+        cache.put("t1", user("amy"), loadedAt);
+        assertNull(cache.get("t1"));
+
+        cache.put("t1", user("amy"), cache.generation());
+        User first = cache.get("t1");
+        first.setRole("admin");
+        assertNotSame(first, cache.get("t1"));
+        assertEquals("user", cache.get("t1").getRole());
+    }
+
+    @Test
+    void invalidatesOneTokenOrEverySessionOfAUser() {
+        SessionCache cache = new SessionCache(10, 60_000);
+        cache.put("t1", user("amy"), cache.generation());
+        cache.put("t2", user("amy"), cache.generation());
+        cache.put("t3", user("bob"), cache.generation());
+
+        cache.invalidateToken("t1");
+        assertNull(cache.get("t1"));
+        assertNotNull(cache.get("t2"));
+
+        cache.invalidateUser("amy");
+        assertNull(cache.get("t2"));
+        assertNotNull(cache.get("t3"));
+        assertEquals(2L, cache.stats().get("invalidations"));
+    }
+
+    @Test
+    void appliesInvalidationsPolledFromOtherInstances() throws Exception {
+        SessionCache cache = new SessionCache(10, 60_000);
+        cache.put("random-a", user("amy"), cache.generation());
+        cache.put("random-b", user("amy"), cache.generation());
+        cache.put("random-c", user("bob"), cache.generation());
+        cache.put("random-d", user("carl"), cache.generation());
+        cache.put("random-e", user("dan"), cache.generation());
+
+        List<String[]> rows = new ArrayList<>();
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            long far = System.currentTimeMillis() + 60_000;
+            for (String[] r : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("kind")).thenReturn(r[0]);
+                when(rs.getString("subject")).thenReturn(r[1]);
+                when(rs.getLong("cutoff_at")).thenReturn(far - 60_000);
+                when(rs.getLong("expires_at")).thenReturn(far);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT kind, subject"), any(RowCallbackHandler.class), any(Object[].class));
+        SignedTokenService tokens = new SignedTokenService(jdbcTemplate, new ObjectMapper(), cache, false, 3_600_000L);
+
+        // Written by other instances: a logout, a profile change, a blacklisting, a role change
+        rows.add(new String[]{"logout", "random-a"});
+        rows.add(new String[]{"session", "bob"});
+        rows.add(new String[]{"user", "carl"});
+        rows.add(new String[]{"roles", "dan"});
+        tokens.syncRevocations();
+
+        assertNull(cache.get("random-a"));
+        assertNotNull(cache.get("random-b"));
+        assertNull(cache.get("random-c"));
+        assertNull(cache.get("random-d"));
+        assertNull(cache.get("random-e"));
+
+        // A revoked signed token is not a session cache key and leaves amy's other session alone
+        rows.clear();
+        rows.add(new String[]{"token", "random-b"});
+        tokens.syncRevocations();
+        assertNotNull(cache.get("random-b"));
+    }
+
+    private static User user(String username) {
+        User u = new User();
+        u.setUsername(username);
+        u.setRole("user");
+        return u;
+    }
+}
@@ -0,0 +1,258 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Notification;
+import com.whu.bookapi.model.Order;
+import com.whu.bookapi.model.OutboxEvent;
+import com.whu.bookapi.model.Settlement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SettlementServiceTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for SettlementService: an order is credited once however often (or however
+ *              concurrently) it is settled, and the seller export streams over a forward-only cursor.
+ *              The unique order_id index and the seller balance are held in memory.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Voucher backfill from notifications.
+ * WiseBookPal Team  2026-10-17      1.2                order.received consumer fails unsettleable orders.
+ * WiseBookPal Team  2026-10-17      1.3                Export order has an id tiebreak.
+ */
+class SettlementServiceTest {
+    private final Set<Long> ledger = new HashSet<>();
+    private double balance = 100.0;
+    private JdbcTemplate jdbcTemplate;
+    private OutboxService outbox;
+    private SettlementService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(startsWith("SELECT balance FROM users"), eq(Double.class), any(Object[].class)))
+                .thenAnswer(inv -> "alice".equals(inv.getArgument(2)) ? List.of(balance()) : List.of());
+        doAnswer(inv -> insert(inv.getArgument(1)))
+                .when(jdbcTemplate).update(startsWith("INSERT IGNORE INTO funds_settlement"), any(Object[].class));
+        doAnswer(inv -> credit(inv.getArgument(1)))
+                .when(jdbcTemplate).update(startsWith("UPDATE users SET balance"), any(Object[].class));
+        outbox = mock(OutboxService.class);
+        service = new SettlementService(jdbcTemplate, outbox);
+    }
+
+    @Test
+    void settlesAnOrderOnce() {
+        Settlement s = service.settle(order(7L, "alice"), 19.0, 1_000L);
+        assertNotNull(s);
+        assertEquals(119.0, s.getBalanceAfter());
+        assertEquals("SET-7-1000", s.getVoucherNo());
+        assertEquals(20.0, s.getAmount());
+
+        // Retried by the outbox or re-run by the nightly job
+        assertNull(service.settle(order(7L, "alice"), 19.0, 2_000L));
+        assertEquals(119.0, balance());
+        verify(outbox, times(1)).publish(eq("settlement.settled"), eq(7L), anyMap());
+    }
+
+    @Test
+    void concurrentSettlementsCreditOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Settlement>> attempts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            attempts.add(pool.submit(() -> {
+                start.await();
+                return service.settle(order(7L, "alice"), 19.0, 1_000L);
+            }));
+        }
+        start.countDown();
+        int settled = 0;
+        for (Future<Settlement> f : attempts) {
+            if (f.get(10, TimeUnit.SECONDS) != null) settled++;
+        }
+        pool.shutdown();
+
+        assertEquals(1, settled);
+        assertEquals(119.0, balance());
+    }
+
+    @Test
+    void skipsAMissingSellerAndIncompleteOrders() {
+        assertNull(service.settle(order(7L, "ghost"), 19.0, 1_000L));
+        assertNull(service.settle(order(null, "alice"), 19.0, 1_000L));
+        assertNull(service.settle(null, 19.0, 1_000L));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT IGNORE INTO funds_settlement"), any(Object[].class));
+        verify(outbox, never()).publish(anyString(), any(), anyMap());
+    }
+
+    @Test
+    void streamsTheExportOverAForwardOnlyCursor() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        doAnswer(inv -> {
+            PreparedStatementCreator creator = inv.getArgument(0);
+            creator.createPreparedStatement(connection);
+            RowCallbackHandler handler = inv.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("order_id")).thenReturn(7L);
+            when(rs.getLong("settle_time")).thenReturn(1_000L);
+            when(rs.getDouble("amount")).thenReturn(20.0);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        List<Settlement> rows = new ArrayList<>();
+        service.streamBySeller("alice", 500L, null, rows::add);
+
+        verify(connection).prepareStatement(endsWith(" ORDER BY f.settle_time DESC, f.id DESC"), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY));
+        verify(ps).setFetchSize(Integer.MIN_VALUE);
+        verify(ps).setObject(1, "alice");
+        verify(ps).setObject(2, 500L);
+        verify(ps, never()).setObject(eq(3), any());
+        assertEquals(1, rows.size());
+        // Rows settled before the voucher column existed get the same voucher number
+        assertEquals("SET-7-1000", rows.get(0).getVoucherNo());
+    }
+
+    @Test
+    void readsTheLedgerRowBackFromVoucherText() {
+        NotificationService notifications = new NotificationService(jdbcTemplate);
+        Notification n = notifications.settlementVoucher("alice", 7L, "高等数学（第七版）", 20.0, 19.5, 1_000L);
+        assertArrayEquals(new Object[]{7L, "alice", "高等数学（第七版）", 20.0, 19.5, "SET-7-1000", 1_000L, 5L},
+                SettlementService.voucherRow("alice", n.getContent(), 5L));
+        Notification noBook = notifications.settlementVoucher("alice", 8L, null, 0.0, 0.0, 2_000L);
+        assertNull(SettlementService.voucherRow("alice", noBook.getContent(), 5L)[2]);
+
+        assertNull(SettlementService.voucherRow("alice", "订单#7存在未解决投诉，结算已中止", 5L));
+        assertNull(SettlementService.voucherRow("alice", null, 5L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void backfillsNotificationVouchersOnce() {
+        Set<String> claims = new HashSet<>();
+        doAnswer(inv -> claims.add(inv.getArgument(1)) ? 1 : 0)
+                .when(jdbcTemplate).update(startsWith("INSERT IGNORE INTO job_checkpoint"), any(Object[].class));
+        String voucher = new NotificationService(jdbcTemplate).settlementVoucher("alice", 7L, "高等数学", 20.0, 20.0, 1_000L).getContent();
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (String content : List.of(voucher, "订单#9因账户状态异常已暂停结算")) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("to_user")).thenReturn("alice");
+                when(rs.getString("content")).thenReturn(content);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT to_user, content FROM notifications"), any(RowCallbackHandler.class));
+        List<Object[]> copied = new ArrayList<>();
+        doAnswer(inv -> {
+            List<Object[]> rows = inv.getArgument(1);
+            int[] counts = new int[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                copied.add(rows.get(i));
+                counts[i] = insert((Long) rows.get(i)[0]);
+            }
+            return counts;
+        }).when(jdbcTemplate).batchUpdate(startsWith("INSERT IGNORE INTO funds_settlement"), anyList());
+
+        assertEquals(1, service.backfillVouchers());
+        assertEquals(List.of(7L, "alice", "SET-7-1000"), Arrays.asList(copied.get(0)[0], copied.get(0)[1], copied.get(0)[5]));
+        // The voucher is history only: no credit, and the order now counts as settled
+        assertEquals(100.0, balance());
+        assertNull(service.settle(order(7L, "alice"), 19.0, 2_000L));
+
+        // Another instance finds the checkpoint claimed; this one does not look again
+        assertEquals(0, new SettlementService(jdbcTemplate, outbox).backfillVouchers());
+        assertEquals(0, service.backfillVouchers());
+        assertEquals(1, copied.size());
+    }
+
+    @Test
+    void theReceivedConsumerFailsAnOrderItCannotSettle() {
+        when(jdbcTemplate.queryForList(startsWith("SELECT order_id FROM funds_settlement"), eq(Long.class), any(Object[].class)))
+                .thenAnswer(inv -> settled((Long) inv.getArgument(2)));
+        SettlementOutboxConsumer consumer = new SettlementOutboxConsumer(service);
+
+        consumer.handle(received(7L, "alice"));
+        // A redelivery finds the ledger row and passes
+        consumer.handle(received(7L, "alice"));
+        assertEquals(120.0, balance());
+
+        // No seller row: neither settled now nor before, so the dispatcher retries and dead-letters it
+        assertThrows(IllegalStateException.class, () -> consumer.handle(received(8L, "ghost")));
+    }
+
+    private synchronized List<Long> settled(Long orderId) {
+        return ledger.contains(orderId) ? List.of(orderId) : List.of();
+    }
+
+    private static OutboxEvent received(Long orderId, String seller) {
+        OutboxEvent e = new OutboxEvent();
+        e.setEventType("order.received");
+        e.setAggregateId(orderId);
+        e.setPayload(Map.of("sellerName", seller, "bookName", "高等数学", "price", 20.0));
+        return e;
+    }
+
+    private synchronized double balance() {
+        return balance;
+    }
+
+    /** INSERT IGNORE against the unique index on order_id */
+    private synchronized int insert(Long orderId) {
+        return ledger.add(orderId) ? 1 : 0;
+    }
+
+    private synchronized int credit(Double amount) {
+        balance += amount;
+        return 1;
+    }
+
+    private static Order order(Long id, String seller) {
+        Order o = new Order();
+        o.setId(id);
+        o.setSellerName(seller);
+        o.setBookName("高等数学");
+        o.setPrice(20.0);
+        return o;
+    }
+}
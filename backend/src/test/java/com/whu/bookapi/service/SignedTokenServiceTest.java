@@ -0,0 +1,385 @@
+package com.whu.bookapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SignedTokenServiceTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for SignedTokenService: issue and verify, rejection of tampered, forged,
+ *              expired and future tokens, key rotation and retirement, and revocations (token, user,
+ *              roles) seen by a second instance. Two instances share in-memory auth_signing_key and
+ *              auth_revocation tables.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ * WiseBookPal Team  2026-10-17      1.1                Key reload in the middle of a rotation.
+ * WiseBookPal Team  2026-10-17      1.2                Revocations inside a transaction apply on commit only.
+ */
+class SignedTokenServiceTest {
+    private static final long TTL_MS = 3_600_000L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AuthTables tables;
+    private SignedTokenService a;
+    private SignedTokenService b;
+
+    @BeforeEach
+    void setUp() {
+        tables = new AuthTables();
+        a = instance();
+        b = instance();
+    }
+
+    @Test
+    void issuesTokensThatVerifyOnEveryInstance() {
+        String token = a.issue("amy", List.of("user", "seller"));
+        assertTrue(a.isSigned(token));
+        assertFalse(a.isSigned("3f2a9c"));
+        assertEquals(3, token.split("\\.").length);
+
+        SignedTokenService.Claims c = b.verify(token);
+        assertNotNull(c);
+        assertEquals("amy", c.getUsername());
+        assertEquals(Set.of("user", "seller"), c.getRoles());
+        assertEquals("k0", c.getKid());
+        assertEquals(1, tables.keys.size());
+    }
+
+    @Test
+    void rejectsTamperedAndForgedTokens() throws Exception {
+        String token = a.issue("amy", List.of("user"));
+        String[] parts = token.split("\\.");
+        String other = a.issue("mallory", List.of("admin"));
+
+        // Claims of another token under this token's signature
+        assertNull(a.verify("v1." + other.split("\\.")[1] + "." + parts[2]));
+        // Elevated roles re-encoded without the key
+        Map<String, Object> claims = claims("amy", List.of("admin"), System.currentTimeMillis(), "k0");
+        assertNull(a.verify("v1." + encode(objectMapper.writeValueAsBytes(claims)) + "." + parts[2]));
+        // Signed with a key of the attacker's choosing
+        assertNull(a.verify(sign(claims, "attacker-key".getBytes(StandardCharsets.UTF_8))));
+        // Broken signature, unknown key id, garbage
+        assertNull(a.verify(parts[0] + "." + parts[1] + "." + parts[2].substring(1)));
+        assertNull(a.verify(sign(claims("amy", List.of(), System.currentTimeMillis(), "nope"), tables.secret("k0"))));
+        assertNull(a.verify("v1.%%%.###"));
+        assertNull(a.verify("v1."));
+        assertNull(a.verify(null));
+
+        // The same claims signed with the real key do verify
+        assertNotNull(a.verify(sign(claims, tables.secret("k0"))));
+        assertEquals(7L, a.stats().get("rejected"));
+    }
+
+    @Test
+    void rejectsExpiredAndFutureTokens() throws Exception {
+        a.issue("amy", List.of());
+        byte[] key = tables.secret("k0");
+        long now = System.currentTimeMillis();
+        assertNull(a.verify(sign(claims("amy", List.of(), now - TTL_MS - 1, "k0"), key)));
+        assertNull(a.verify(sign(claims("amy", List.of(), now + 120_000, "k0"), key)));
+        // Within the tolerated clock skew
+        assertNotNull(a.verify(sign(claims("amy", List.of(), now + 30_000, "k0"), key)));
+    }
+
+    @Test
+    void rotatedKeysKeepVerifyingUntilRetired() throws Exception {
+        String old = a.issue("amy", List.of());
+        assertNotNull(b.verify(old));
+        String kid = a.rotate();
+        String fresh = a.issue("amy", List.of());
+        assertEquals(kid, a.verify(fresh).getKid());
+        assertNotNull(a.verify(old));
+
+        // b reloaded its keys a moment ago, so the unknown key id waits for the scheduled reload
+        assertNull(b.verify(fresh));
+        b.reloadKeys();
+        assertNotNull(b.verify(fresh));
+        assertEquals(kid, b.stats().get("activeKid"));
+        assertEquals(kid, b.verify(b.issue("bob", List.of())).getKid());
+
+        // Superseded longer than the TTL ago: the next rotation retires k0 and its tokens stop verifying
+        tables.supersede("k0", System.currentTimeMillis() - TTL_MS - 1);
+        a.rotate();
+        assertNull(a.verify(old));
+        assertNotNull(a.verify(fresh));
+    }
+
+    @Test
+    void instancesStartingTogetherCreateOneFirstKey() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<SignedTokenService> instances = new ArrayList<>();
+        List<Future<String>> tokens = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            SignedTokenService s = instance();
+            instances.add(s);
+            tokens.add(pool.submit(() -> {
+                start.await();
+                return s.issue("amy", List.of());
+            }));
+        }
+        start.countDown();
+        for (Future<String> f : tokens) {
+            String token = f.get(10, TimeUnit.SECONDS);
+            for (SignedTokenService s : instances) assertNotNull(s.verify(token));
+        }
+        pool.shutdown();
+        assertEquals(1, tables.keys.size());
+    }
+
+    @Test
+    void revocationsHoldOnEveryInstance() throws Exception {
+        String t1 = a.issue("amy", List.of("user"));
+        String t2 = a.issue("amy", List.of("user"));
+        String t3 = a.issue("bob", List.of("user"));
+        // Issued back to back, possibly in the same millisecond: still two tokens
+        assertNotEquals(t1, t2);
+        assertNotNull(b.verify(t1));
+
+        // Logout revokes that token only
+        a.revoke(t1);
+        assertNull(a.verify(t1));
+        assertNotNull(a.verify(t2));
+        assertNotNull(b.verify(t1));
+        b.syncRevocations();
+        assertNull(b.verify(t1));
+        assertNotNull(b.verify(t2));
+
+        // Blacklisting revokes every token issued so far, but not the ones issued after it
+        a.revokeUser("amy");
+        Thread.sleep(2);
+        String t4 = a.issue("amy", List.of("user"));
+        b.syncRevocations();
+        assertNull(b.verify(t2));
+        assertNotNull(b.verify(t4));
+        assertNotNull(b.verify(t3));
+
+        // A role change marks existing tokens as carrying outdated roles
+        a.rolesChanged("bob");
+        Thread.sleep(2);
+        String t5 = a.issue("bob", List.of("user", "seller"));
+        b.syncRevocations();
+        assertTrue(b.rolesOutdated(b.verify(t3)));
+        assertFalse(b.rolesOutdated(b.verify(t5)));
+
+        // A restarted instance loads every live revocation before its first verification
+        SignedTokenService restarted = instance();
+        assertNull(restarted.verify(t1));
+        assertNull(restarted.verify(t2));
+        assertTrue(restarted.rolesOutdated(restarted.verify(t3)));
+        assertNotEquals(0L, restarted.stats().get("revocationsSyncedAt"));
+    }
+
+    @Test
+    void aReloadDuringRotationStillFindsAnActiveKey() {
+        a.issue("amy", List.of());
+        // b reloads after the rotation's first statement, as its scheduled reload may
+        tables.afterKeyWrite = b::reloadKeys;
+        String kid = a.rotate();
+
+        assertNotNull(b.stats().get("activeKid"));
+        String token = b.issue("bob", List.of());
+        // b neither recreated a first key nor rotated again on top of a's key
+        assertEquals(2, tables.keys.size());
+        assertNotNull(a.verify(token));
+        b.reloadKeys();
+        assertEquals(kid, b.stats().get("activeKid"));
+    }
+
+    @Test
+    void aRevocationInsideATransactionAppliesOnCommitOnly() {
+        String token = a.issue("amy", List.of());
+        a.verify(token);
+
+        // Rolled back: the row never commits, so this instance must not enforce it either
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            a.revokeUser("amy");
+            assertNotNull(a.verify(token));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNotNull(a.verify(token));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            a.revokeUser("amy");
+            assertNotNull(a.verify(token));
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) sync.afterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNull(a.verify(token));
+    }
+
+    private SignedTokenService instance() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(inv -> tables.update(inv.getArgument(0), Arrays.copyOfRange(inv.getArguments(), 1, inv.getArguments().length)))
+                .when(jdbcTemplate).update(anyString(), any(Object[].class));
+        doAnswer(inv -> {
+            tables.readKeys(inv.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT kid, secret"), any(RowCallbackHandler.class));
+        doAnswer(inv -> {
+            tables.readRevocations(inv.getArgument(1), inv.getArgument(2), inv.getArgument(3));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT kind, subject"), any(RowCallbackHandler.class), any(Object[].class));
+        return new SignedTokenService(jdbcTemplate, objectMapper, mock(SessionCache.class), true, TTL_MS);
+    }
+
+    private static Map<String, Object> claims(String sub, List<String> roles, long iat, String kid) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("sub", sub);
+        m.put("roles", roles);
+        m.put("iat", iat);
+        m.put("kid", kid);
+        return m;
+    }
+
+    private String sign(Map<String, Object> claims, byte[] key) throws Exception {
+        String input = "v1." + encode(objectMapper.writeValueAsBytes(claims));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return input + "." + encode(mac.doFinal(input.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /** auth_signing_key and auth_revocation, shared by the instances of a test */
+    private static final class AuthTables {
+        /** kid, secret, created_at, superseded_at, retired_at */
+        private final List<Object[]> keys = new ArrayList<>();
+        /** kind, subject, cutoff_at, expires_at, created_at */
+        private final List<Object[]> revocations = new ArrayList<>();
+        /** Run once, right after the next auth_signing_key write, to interleave another instance */
+        private Runnable afterKeyWrite;
+
+        synchronized int update(String sql, Object[] args) {
+            if (sql.startsWith("INSERT IGNORE INTO auth_signing_key") || sql.startsWith("INSERT INTO auth_signing_key")) {
+                for (Object[] k : keys) {
+                    if (k[0].equals(args[0])) return 0;
+                }
+                keys.add(new Object[]{args[0], args[1], args[2], null, null});
+                interleave();
+                return 1;
+            }
+            if (sql.startsWith("UPDATE auth_signing_key SET superseded_at")) {
+                int n = 0;
+                for (Object[] k : keys) {
+                    if (k[3] == null && !k[0].equals(args[1])) {
+                        k[3] = args[0];
+                        n++;
+                    }
+                }
+                interleave();
+                return n;
+            }
+            if (sql.startsWith("UPDATE auth_signing_key SET retired_at")) {
+                int n = 0;
+                for (Object[] k : keys) {
+                    if (k[4] == null && k[3] != null && (Long) k[3] < (Long) args[1]) {
+                        k[4] = args[0];
+                        n++;
+                    }
+                }
+                return n;
+            }
+            if (sql.startsWith("INSERT INTO auth_revocation")) {
+                revocations.add(args.clone());
+                return 1;
+            }
+            if (sql.startsWith("DELETE FROM auth_revocation")) {
+                int before = revocations.size();
+                revocations.removeIf(r -> (Long) r[3] <= (Long) args[0]);
+                return before - revocations.size();
+            }
+            throw new IllegalArgumentException(sql);
+        }
+
+        private void interleave() {
+            Runnable r = afterKeyWrite;
+            afterKeyWrite = null;
+            if (r != null) r.run();
+        }
+
+        synchronized void readKeys(RowCallbackHandler handler) throws Exception {
+            List<Object[]> live = new ArrayList<>();
+            for (Object[] k : keys) {
+                if (k[4] == null) live.add(k);
+            }
+            live.sort(Comparator.comparingLong((Object[] k) -> (Long) k[2]).thenComparing(k -> (String) k[0]));
+            for (Object[] k : live) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("kid")).thenReturn((String) k[0]);
+                when(rs.getString("secret")).thenReturn((String) k[1]);
+                when(rs.getObject("superseded_at")).thenReturn(k[3]);
+                handler.processRow(rs);
+            }
+        }
+
+        synchronized void readRevocations(RowCallbackHandler handler, long since, long now) throws Exception {
+            for (Object[] r : revocations) {
+                if ((Long) r[4] < since || (Long) r[3] <= now) continue;
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("kind")).thenReturn((String) r[0]);
+                when(rs.getString("subject")).thenReturn((String) r[1]);
+                when(rs.getLong("cutoff_at")).thenReturn((Long) r[2]);
+                when(rs.getLong("expires_at")).thenReturn((Long) r[3]);
+                handler.processRow(rs);
+            }
+        }
+
+        synchronized byte[] secret(String kid) {
+            for (Object[] k : keys) {
+                if (k[0].equals(kid)) return Base64.getDecoder().decode((String) k[1]);
+            }
+            return null;
+        }
+
+        synchronized void supersede(String kid, long at) {
+            for (Object[] k : keys) {
+                if (k[0].equals(kid)) k[3] = at;
+            }
+        }
+    }
+}
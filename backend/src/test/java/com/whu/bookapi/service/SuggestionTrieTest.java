@@ -0,0 +1,86 @@
+package com.whu.bookapi.service;
+
+import com.whu.bookapi.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Copyright (C), 2024-2025, WiseBookPal Tech. Co., Ltd.
+ * File name: SuggestionTrieTest.java
+ * Author: WiseBookPal Team Version: 1.0 Date: 2026-10-17
+ * Description: Unit tests for SuggestionTrie: text, pinyin and initials prefixes, frequency ranking,
+ *              and incremental updates fed by BookSearchIndex.
+ * History:
+ * <author>          <time>          <version>          <desc>
+ * WiseBookPal Team  2026-10-17      1.0                Initial implementation.
+ */
+class SuggestionTrieTest {
+    private BookSearchIndex searchIndex;
+    private SuggestionTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new BookSearchIndex();
+        trie = new SuggestionTrie(searchIndex);
+        trie.register();
+        searchIndex.rebuild(List.of(
+                book(1L, "高等数学", "同济大学"),
+                book(2L, "高等数学", "同济大学"),
+                book(3L, "高等代数", "北京大学"),
+                book(4L, "Java 编程思想", "Bruce Eckel")
+        ));
+    }
+
+    @Test
+    void matchesTextPinyinAndInitials() {
+        assertTrue(trie.isReady());
+        assertEquals(List.of("高等数学"), trie.suggest("高等数", 10));
+        assertEquals(List.of("高等数学"), trie.suggest("gaodengshu", 10));
+        assertEquals(List.of("高等数学"), trie.suggest("gdsx", 10));
+        assertEquals(List.of("Java 编程思想"), trie.suggest("JAVA编", 10));
+        assertEquals(List.of("Bruce Eckel"), trie.suggest("bruce", 10));
+    }
+
+    @Test
+    void ranksByListingCountAndHonoursTheLimit() {
+        assertEquals(List.of("高等数学", "高等代数"), trie.suggest("高等", 10));
+        assertEquals(List.of("高等数学"), trie.suggest("gd", 1));
+        assertEquals(List.of(), trie.suggest("  ", 10));
+        assertEquals(List.of(), trie.suggest("物理", 10));
+    }
+
+    @Test
+    void followsListingChanges() {
+        Book renamed = book(3L, "概率论", "北京大学");
+        searchIndex.upsert(renamed);
+        assertEquals(List.of("高等数学"), trie.suggest("高等", 10));
+        assertEquals(List.of("概率论"), trie.suggest("gl", 10));
+
+        searchIndex.remove(3L);
+        assertEquals(List.of(), trie.suggest("gl", 10));
+        assertEquals(List.of(), trie.suggest("北京", 10));
+
+        // One of two copies leaving keeps the suggestion
+        searchIndex.remove(1L);
+        assertEquals(List.of("高等数学"), trie.suggest("gdsx", 10));
+        searchIndex.remove(2L);
+        assertEquals(List.of(), trie.suggest("gdsx", 10));
+    }
+
+    private static Book book(Long id, String name, String author) {
+        Book b = new Book();
+        b.setId(id);
+        b.setBookName(name);
+        b.setAuthor(author);
+        b.setSellPrice(10.0);
+        b.setStatus("on_sale");
+        b.setStock(1);
+        b.setCreatedAt(id);
+        return b;
+    }
+}